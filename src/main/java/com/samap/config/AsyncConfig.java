@@ -1,9 +1,14 @@
 package com.samap.config;
 
+import com.samap.config.ExecutorBulkheads.RejectionPolicy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -11,27 +16,127 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import java.util.concurrent.Executor;
 
 /**
- * Async configuration for handling asynchronous operations
+ * Async configuration for handling asynchronous operations.
+ *
+ * Besides the default executor there is one bulkhead per workload, selected with
+ * {@code @Async("<name>Executor")} and sized under {@code async.executors.<name>}.
  */
 @Configuration
 @EnableAsync
+@RequiredArgsConstructor
 @Slf4j
 public class AsyncConfig implements AsyncConfigurer {
 
+    public static final String AUDIT_EXECUTOR = "auditExecutor";
+    public static final String MONITORING_EXECUTOR = "monitoringExecutor";
+    public static final String NOTIFICATION_EXECUTOR = "notificationExecutor";
+    public static final String RISK_EXECUTOR = "riskExecutor";
+
+    private final Environment environment;
+    private final ExecutorBulkheads bulkheads = new ExecutorBulkheads();
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${samap.virtual-threads.async-concurrency-limit:-1}")
+    private int virtualConcurrencyLimit;
+
     @Bean(name = "taskExecutor")
     @Override
     public Executor getAsyncExecutor() {
+        if (useVirtualThreads()) {
+            return virtualThreadExecutor("SAMAP-Async-");
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(20);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("SAMAP-Async-");
+        executor.setTaskDecorator(CorrelationId::propagate);
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         executor.initialize();
         return executor;
     }
 
+    @Bean
+    public ExecutorBulkheads executorBulkheads() {
+        return bulkheads;
+    }
+
+    /**
+     * Background audit maintenance (archiving, retention); never drops work
+     */
+    @Bean(name = AUDIT_EXECUTOR)
+    public Executor auditExecutor() {
+        return workloadExecutor("audit", 1, 2, 10, RejectionPolicy.CALLER_RUNS);
+    }
+
+    /**
+     * Real-time threat detection fed from the login and request paths
+     */
+    @Bean(name = MONITORING_EXECUTOR)
+    public Executor monitoringExecutor() {
+        return workloadExecutor("monitoring", 4, 8, 500, RejectionPolicy.CALLER_RUNS);
+    }
+
+    /**
+     * Outbound alert delivery; under a backlog the oldest pending notification goes first
+     */
+    @Bean(name = NOTIFICATION_EXECUTOR)
+    public Executor notificationExecutor() {
+        return workloadExecutor("notification", 2, 4, 200, RejectionPolicy.DISCARD_OLDEST);
+    }
+
+    /**
+     * Risk reports; callers get a rejection instead of queueing behind a saturated pool
+     */
+    @Bean(name = RISK_EXECUTOR)
+    public Executor riskExecutor() {
+        return workloadExecutor("risk", 2, 8, 50, RejectionPolicy.ABORT);
+    }
+
+    private Executor workloadExecutor(String name, int coreSize, int maxSize, int queueCapacity,
+                                      RejectionPolicy policy) {
+        String prefix = "async.executors." + name + ".";
+        int max = environment.getProperty(prefix + "max-size", Integer.class, maxSize);
+        int queue = environment.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity);
+        RejectionPolicy rejection = environment.getProperty(prefix + "rejection-policy", RejectionPolicy.class, policy);
+        if (useVirtualThreads()) {
+            return bulkheads.createVirtual(name, max, queue, rejection);
+        }
+        return bulkheads.createPool(name,
+            environment.getProperty(prefix + "core-size", Integer.class, coreSize),
+            max, queue, rejection);
+    }
+
+    /**
+     * Virtual threads need Java 21; on older runtimes the setting is ignored, as Spring Boot does for Tomcat
+     */
+    private boolean useVirtualThreads() {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads - using platform threads",
+                Runtime.version().feature());
+            return false;
+        }
+        return virtualThreads;
+    }
+
+    /**
+     * One virtual thread per task (Java 21+). There is no queue to overflow; an optional
+     * concurrency limit throttles submitters instead of rejecting work.
+     */
+    private Executor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(virtualConcurrencyLimit);
+        executor.setTaskTerminationTimeout(60_000);
+        executor.setTaskDecorator(CorrelationId::propagate);
+        log.info("Async executor {} running on virtual threads", threadNamePrefix);
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return (throwable, method, objects) -> {
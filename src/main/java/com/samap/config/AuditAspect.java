@@ -1,18 +1,16 @@
 package com.samap.config;
 
-import com.samap.model.AuditLog;
-import com.samap.service.AuditService;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.annotation.*;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -24,12 +22,9 @@ import java.lang.annotation.Target;
  */
 @Aspect
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class AuditAspect {
 
-    private final AuditService auditService;
-
     /**
      * Custom annotation for audit logging
      */
@@ -52,114 +47,47 @@ public class AuditAspect {
     public void controllerMethods() {}
 
     /**
-     * Pointcut for methods annotated with @Auditable
+     * Around advice for controller methods. Nothing is written here: the outcome is
+     * recorded on the request's {@link AuditContext} and {@link AuditRequestFilter}
+     * emits a single event once the response status is known.
      */
-    @Pointcut("@annotation(auditable)")
-    public void auditableMethods(Auditable auditable) {}
+    @Around("controllerMethods()")
+    public Object auditControllerMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        AuditContext context = AuditContext.current();
+        if (context == null || context.isHandled()) {
+            return joinPoint.proceed();
+        }
 
-    /**
-     * Around advice for auditable methods
-     */
-    @Around("auditableMethods(auditable)")
-    public Object auditMethod(ProceedingJoinPoint joinPoint, Auditable auditable) throws Throwable {
-        long startTime = System.currentTimeMillis();
-        String username = getCurrentUsername();
-        HttpServletRequest request = getCurrentRequest();
-        
-        String action = auditable.action().isEmpty() ? 
-            joinPoint.getSignature().getName().toUpperCase() : auditable.action();
-        String resource = auditable.resource().isEmpty() ? 
-            joinPoint.getTarget().getClass().getSimpleName() : auditable.resource();
+        Auditable auditable = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(Auditable.class);
+        context.setHandled(true);
+        if (auditable != null) {
+            context.setExplicit(true);
+            context.setSkipped(auditable.skipAudit());
+            context.setHighRisk(auditable.highRisk());
+            context.setAction(auditable.action().isEmpty() ? null : auditable.action());
+            context.setResource(auditable.resource().isEmpty() ?
+                joinPoint.getTarget().getClass().getSimpleName() : auditable.resource());
+            if (auditable.logParameters()) {
+                context.setRequestParams(getRequestParameters(joinPoint));
+            }
+        }
 
         try {
             Object result = joinPoint.proceed();
-            long executionTime = System.currentTimeMillis() - startTime;
-
-            // Log successful execution
-            String details = buildAuditDetails(joinPoint, auditable, result, true);
-            auditService.logApiAccess(
-                username,
-                getEndpoint(request),
-                request.getMethod(),
-                auditable.logParameters() ? getRequestParameters(joinPoint) : null,
-                200, // Assume success
-                executionTime,
-                getClientIpAddress(request),
-                request.getHeader("User-Agent"),
-                request.getSession(false) != null ? request.getSession().getId() : null
-            );
-
+            if (auditable != null) {
+                context.setDetails(buildAuditDetails(joinPoint, auditable, result, true));
+            }
             return result;
 
         } catch (Exception e) {
-            long executionTime = System.currentTimeMillis() - startTime;
-
-            // Log failed execution
-            String details = buildAuditDetails(joinPoint, auditable, null, false) + 
-                "; Error: " + e.getMessage();
-            
-            auditService.logSecurityEvent(
-                username,
-                action + "_FAILED",
-                details,
-                getClientIpAddress(request),
-                request.getHeader("User-Agent"),
-                AuditLog.ActionStatus.FAILURE
-            );
-
+            context.setErrorMessage(e.getMessage());
+            context.setDetails(auditable != null
+                ? buildAuditDetails(joinPoint, auditable, null, false)
+                : "Controller method failed: " + joinPoint.getSignature().getName());
             throw e;
-        }
-    }
-
-    /**
-     * After advice for successful controller method execution
-     */
-    @AfterReturning(pointcut = "controllerMethods()", returning = "result")
-    public void logControllerSuccess(JoinPoint joinPoint, Object result) {
-        try {
-            String username = getCurrentUsername();
-            HttpServletRequest request = getCurrentRequest();
-            
-            if (request != null && !isPublicEndpoint(request.getServletPath())) {
-                auditService.logApiAccess(
-                    username,
-                    getEndpoint(request),
-                    request.getMethod(),
-                    null, // Don't log parameters by default
-                    200,
-                    null, // Execution time not available here
-                    getClientIpAddress(request),
-                    request.getHeader("User-Agent"),
-                    request.getSession(false) != null ? request.getSession().getId() : null
-                );
-            }
-        } catch (Exception e) {
-            log.warn("Failed to log controller success: {}", e.getMessage());
-        }
-    }
 
-    /**
-     * After throwing advice for failed controller method execution
-     */
-    @AfterThrowing(pointcut = "controllerMethods()", throwing = "exception")
-    public void logControllerFailure(JoinPoint joinPoint, Exception exception) {
-        try {
-            String username = getCurrentUsername();
-            HttpServletRequest request = getCurrentRequest();
-            
-            if (request != null && !isPublicEndpoint(request.getServletPath())) {
-                auditService.logSecurityEvent(
-                    username,
-                    "API_ERROR",
-                    "Controller method failed: " + joinPoint.getSignature().getName() + 
-                    "; Error: " + exception.getMessage(),
-                    getClientIpAddress(request),
-                    request.getHeader("User-Agent"),
-                    AuditLog.ActionStatus.FAILURE
-                );
-            }
-        } catch (Exception e) {
-            log.warn("Failed to log controller failure: {}", e.getMessage());
+        } finally {
+            context.setUsername(getCurrentUsername());
         }
     }
 
@@ -173,32 +101,6 @@ public class AuditAspect {
         return "anonymous";
     }
 
-    private HttpServletRequest getCurrentRequest() {
-        ServletRequestAttributes attributes = 
-            (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-        return attributes != null ? attributes.getRequest() : null;
-    }
-
-    private String getClientIpAddress(HttpServletRequest request) {
-        if (request == null) return "unknown";
-        
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
-        
-        return request.getRemoteAddr();
-    }
-
-    private String getEndpoint(HttpServletRequest request) {
-        return request != null ? request.getRequestURI() : "unknown";
-    }
-
     private String getRequestParameters(JoinPoint joinPoint) {
         Object[] args = joinPoint.getArgs();
         if (args == null || args.length == 0) {
@@ -232,7 +134,10 @@ public class AuditAspect {
     private String buildAuditDetails(JoinPoint joinPoint, Auditable auditable, 
                                    Object result, boolean success) {
         StringBuilder details = new StringBuilder();
-        details.append("Method: ").append(joinPoint.getSignature().getName());
+        String action = auditable.action().isEmpty() ?
+            joinPoint.getSignature().getName().toUpperCase() : auditable.action();
+        details.append("Action: ").append(action);
+        details.append("; Method: ").append(joinPoint.getSignature().getName());
         
         if (auditable.logParameters()) {
             String params = getRequestParameters(joinPoint);
@@ -251,24 +156,4 @@ public class AuditAspect {
         
         return details.toString();
     }
-
-    private boolean isPublicEndpoint(String path) {
-        if (path == null) return false;
-        
-        String[] publicPaths = {
-            "/api/auth/",
-            "/api/public/",
-            "/actuator/health",
-            "/swagger-ui/",
-            "/v3/api-docs/"
-        };
-
-        for (String publicPath : publicPaths) {
-            if (path.startsWith(publicPath)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
 }
@@ -0,0 +1,47 @@
+package com.samap.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Audit data collected while a single HTTP request is processed.
+ *
+ * Created by {@link AuditRequestFilter} when the request starts, filled in by
+ * {@link AuditAspect} while the controller runs, and turned into exactly one audit
+ * event by the filter once the response status is known; for async requests that is
+ * when the async processing completes.
+ */
+@Getter
+@Setter
+public class AuditContext {
+
+    static final String ATTRIBUTE = AuditContext.class.getName();
+
+    private final long startNanos;
+    private boolean handled;
+    private boolean explicit;
+    private boolean skipped;
+    private boolean highRisk;
+    private String username;
+    private String action;
+    private String resource;
+    private String requestParams;
+    private String details;
+    private String errorMessage;
+
+    public AuditContext(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Context of the request bound to the current thread, or null outside a request
+     */
+    public static AuditContext current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+            ? (AuditContext) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+            : null;
+    }
+}
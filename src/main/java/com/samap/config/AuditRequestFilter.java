@@ -0,0 +1,206 @@
+package com.samap.config;
+
+import com.samap.service.AuditService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits one audit event per controller-handled request, after the response status
+ * is final. Runs inside the security filter chain so the caller is still known.
+ * Failed requests (status 400 and up, or an escaping exception) and
+ * {@code @Auditable(highRisk = true)} operations are emitted as security events, which
+ * are evaluated for anomalies and reported to security monitoring; the rest as API access.
+ * A correlation ID sent by the caller is kept in the event's details, next to the
+ * server-minted one.
+ *
+ * Async requests (streamed exports, deferred results) leave the first dispatch with the
+ * response still open and are not filtered again on the async dispatch, so their event
+ * is emitted by an {@link AsyncListener} when the async processing completes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AuditRequestFilter extends OncePerRequestFilter {
+
+    private static final String[] PUBLIC_PATHS = {
+        "/api/auth/",
+        "/api/public/",
+        "/actuator/health",
+        "/swagger-ui/",
+        "/v3/api-docs/"
+    };
+
+    private final AuditService auditService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                  FilterChain filterChain) throws ServletException, IOException {
+
+        AuditContext context = new AuditContext(System.nanoTime());
+        request.setAttribute(AuditContext.ATTRIBUTE, context);
+
+        boolean failed = false;
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failed = true;
+            if (context.getErrorMessage() == null) {
+                context.setErrorMessage(e.getMessage());
+            }
+            throw e;
+        } finally {
+            if (shouldAudit(request, context)) {
+                if (!failed && request.isAsyncStarted()) {
+                    request.getAsyncContext().addListener(new CompletionListener(request, response, context));
+                } else {
+                    emit(request, response, context, failed, System.nanoTime() - context.getStartNanos());
+                }
+            }
+        }
+    }
+
+    private boolean shouldAudit(HttpServletRequest request, AuditContext context) {
+        if (!context.isHandled() || context.isSkipped()) {
+            return false;
+        }
+        return context.isExplicit() || !isPublicEndpoint(request.getServletPath());
+    }
+
+    private void emit(HttpServletRequest request, HttpServletResponse response, AuditContext context,
+                      boolean failed, long elapsedNanos) {
+        try {
+            // An exception escaping the servlet is turned into a 500 by the container later on
+            int status = failed && response.getStatus() < 400 ? 500 : response.getStatus();
+            HttpSession session = request.getSession(false);
+            String details = withClientCorrelationId(context.getDetails(), request);
+
+            if (status >= 400 || context.isHighRisk()) {
+                auditService.logRequestSecurityEvent(
+                    context.getUsername(),
+                    context.getAction(),
+                    context.getResource(),
+                    request.getRequestURI(),
+                    request.getMethod(),
+                    context.getRequestParams(),
+                    status,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    getClientIpAddress(request),
+                    request.getHeader("User-Agent"),
+                    session != null ? session.getId() : null,
+                    details,
+                    context.getErrorMessage(),
+                    context.isHighRisk()
+                );
+                return;
+            }
+
+            auditService.logApiAccess(
+                context.getUsername(),
+                context.getAction(),
+                context.getResource(),
+                request.getRequestURI(),
+                request.getMethod(),
+                context.getRequestParams(),
+                status,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                getClientIpAddress(request),
+                request.getHeader("User-Agent"),
+                session != null ? session.getId() : null,
+                details,
+                context.getErrorMessage()
+            );
+        } catch (Exception e) {
+            log.warn("Failed to audit request {} {}: {}", request.getMethod(), request.getRequestURI(), e.getMessage());
+        }
+    }
+
+    /**
+     * Emits the event of an async request once, when it completes, under the
+     * correlation ID of the dispatch that started it
+     */
+    private final class CompletionListener implements AsyncListener {
+        private final AuditContext context;
+        private final Runnable emitter;
+        private volatile boolean failed;
+
+        private CompletionListener(HttpServletRequest request, HttpServletResponse response, AuditContext context) {
+            this.context = context;
+            this.emitter = CorrelationId.propagate(() ->
+                emit(request, response, context, failed, System.nanoTime() - context.getStartNanos()));
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            emitter.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            failed = true;
+            if (context.getErrorMessage() == null) {
+                context.setErrorMessage("Async request timed out");
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            failed = true;
+            if (context.getErrorMessage() == null && event.getThrowable() != null) {
+                context.setErrorMessage(event.getThrowable().getMessage());
+            }
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Re-register for a nested startAsync, which clears the listeners
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private String withClientCorrelationId(String details, HttpServletRequest request) {
+        String clientId = request.getHeader(CorrelationId.HEADER);
+        if (clientId == null || clientId.isEmpty()) {
+            return details;
+        }
+        String recorded = "Client correlation ID: " + (CorrelationId.isValid(clientId) ? clientId : "[invalid]");
+        return details != null ? details + "; " + recorded : recorded;
+    }
+
+    private String getClientIpAddress(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+
+        String xRealIp = request.getHeader("X-Real-IP");
+        if (xRealIp != null && !xRealIp.isEmpty()) {
+            return xRealIp;
+        }
+
+        return request.getRemoteAddr();
+    }
+
+    private boolean isPublicEndpoint(String path) {
+        if (path == null) return false;
+
+        for (String publicPath : PUBLIC_PATHS) {
+            if (path.startsWith(publicPath)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
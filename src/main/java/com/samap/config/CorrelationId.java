@@ -0,0 +1,86 @@
+package com.samap.config;
+
+import org.slf4j.MDC;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Correlation IDs shared by everything one request produces: audit rows, security
+ * alerts, queued messages and log lines.
+ *
+ * IDs are UUIDv7-style: a 48-bit millisecond timestamp and a 12-bit counter followed by
+ * random bits. The timestamp and counter only ever grow within the JVM, so IDs sort in
+ * creation order even within one millisecond (appending to indexes instead of scattering
+ * inserts); the random bits come from {@link ThreadLocalRandom} without the shared lock
+ * of SecureRandom.
+ *
+ * IDs are always minted here: a caller-supplied {@value #HEADER} is recorded alongside,
+ * never adopted, so clients cannot inject or collide with the IDs of other requests.
+ */
+public final class CorrelationId {
+
+    public static final String MDC_KEY = "correlationId";
+    public static final String HEADER = "X-Correlation-ID";
+
+    private static final Pattern VALID = Pattern.compile("[A-Za-z0-9._:-]{1,100}");
+
+    /** Timestamp (upper 48 bits) and counter (lower 12 bits) of the last ID handed out */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private CorrelationId() {
+    }
+
+    /**
+     * New time-ordered ID
+     */
+    public static String next() {
+        long timestamp = System.currentTimeMillis() & 0xFFFF_FFFF_FFFFL;
+        // A counter overflow within one millisecond carries into the timestamp, running slightly ahead of the clock
+        long state = LAST.updateAndGet(last -> Math.max(timestamp << 12, last + 1));
+        long mostSigBits = ((state >>> 12) << 16) | 0x7000L | (state & 0x0FFFL);
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFF_FFFF_FFFF_FFFFL) | 0x8000_0000_0000_0000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    /**
+     * ID of the work running on this thread, or a new one if there is none
+     */
+    public static String current() {
+        String id = MDC.get(MDC_KEY);
+        return id != null ? id : next();
+    }
+
+    /**
+     * Wrap a task so it runs under the correlation ID of the thread submitting it;
+     * used as the task decorator of the async executors
+     */
+    public static Runnable propagate(Runnable task) {
+        String id = MDC.get(MDC_KEY);
+        if (id == null) {
+            return task;
+        }
+        return () -> {
+            String previous = MDC.get(MDC_KEY);
+            MDC.put(MDC_KEY, id);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    MDC.put(MDC_KEY, previous);
+                } else {
+                    MDC.remove(MDC_KEY);
+                }
+            }
+        };
+    }
+
+    /**
+     * Whether an ID is safe to log and store verbatim
+     */
+    public static boolean isValid(String id) {
+        return id != null && VALID.matcher(id).matches();
+    }
+}
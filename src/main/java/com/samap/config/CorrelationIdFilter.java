@@ -0,0 +1,39 @@
+package com.samap.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Assigns the request a server-minted correlation ID before anything else runs (including
+ * the security chain) and keeps it in the MDC until the response is written. The ID is
+ * returned in the {@value CorrelationId#HEADER} response header. A {@value CorrelationId#HEADER}
+ * sent by the caller is not adopted; {@link AuditRequestFilter} records it in the audit
+ * event's details instead.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                  FilterChain filterChain) throws ServletException, IOException {
+
+        String correlationId = CorrelationId.next();
+        MDC.put(CorrelationId.MDC_KEY, correlationId);
+        response.setHeader(CorrelationId.HEADER, correlationId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(CorrelationId.MDC_KEY);
+        }
+    }
+}
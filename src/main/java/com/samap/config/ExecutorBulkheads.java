@@ -0,0 +1,374 @@
+package com.samap.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named, independently sized executors, one per workload, so a backlog in one
+ * (say notifications) cannot starve another (say security monitoring).
+ *
+ * Each bulkhead reports queue depth, active threads, pool size and rejections, and
+ * can be resized at runtime. Created by {@link AsyncConfig}.
+ *
+ * On virtual threads a bulkhead keeps its contract: at most the concurrency limit of
+ * tasks run at once, up to the queue capacity wait, and beyond that the bulkhead's
+ * rejection policy applies, so a submitter is never blocked by a full bulkhead.
+ */
+@Slf4j
+public class ExecutorBulkheads implements MeterBinder {
+
+    /**
+     * What happens to a task when the bulkhead's pool and queue are both full
+     */
+    public enum RejectionPolicy {
+        /** Run the task on the submitting thread, slowing the producer down */
+        CALLER_RUNS,
+        /** Fail the submission with a TaskRejectedException */
+        ABORT,
+        /** Drop the new task */
+        DISCARD,
+        /** Drop the oldest queued task to make room */
+        DISCARD_OLDEST;
+
+        RejectedExecutionHandler handler() {
+            return switch (this) {
+                case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+                case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+                case DISCARD -> new ThreadPoolExecutor.DiscardPolicy();
+                case DISCARD_OLDEST -> new ThreadPoolExecutor.DiscardOldestPolicy();
+            };
+        }
+    }
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * Bounded platform-thread pool for a workload
+     */
+    Executor createPool(String name, int coreSize, int maxSize, int queueCapacity, RejectionPolicy policy) {
+        Bulkhead bulkhead = new Bulkhead(name, policy, queueCapacity);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(Math.max(coreSize, maxSize));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("SAMAP-" + name + "-");
+        executor.setRejectedExecutionHandler(bulkhead.countingHandler());
+        executor.setTaskDecorator(CorrelationId::propagate);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        bulkhead.pool = executor;
+
+        register(bulkhead);
+        log.info("Executor {}: core={}, max={}, queue={}, rejection={}", name, coreSize, maxSize, queueCapacity, policy);
+        return executor;
+    }
+
+    /**
+     * Virtual-thread executor for a workload: the concurrency limit takes the place of
+     * the pool size, and the queue capacity and rejection policy apply as for a pool
+     */
+    Executor createVirtual(String name, int concurrencyLimit, int queueCapacity, RejectionPolicy policy) {
+        SimpleAsyncTaskExecutor threads = new SimpleAsyncTaskExecutor("SAMAP-" + name + "-");
+        threads.setVirtualThreads(true);
+        threads.setTaskTerminationTimeout(60_000);
+        Executor executor = createThrottled(name, concurrencyLimit, queueCapacity, policy, threads);
+        log.info("Executor {} running on virtual threads: concurrency limit={}, queue={}, rejection={}",
+            name, concurrencyLimit, queueCapacity, policy);
+        return executor;
+    }
+
+    /**
+     * Bulkhead that starts each task on a new thread of the given executor, within the
+     * concurrency limit and queue capacity
+     */
+    ThrottledExecutor createThrottled(String name, int concurrencyLimit, int queueCapacity, RejectionPolicy policy,
+                                      SimpleAsyncTaskExecutor threads) {
+        Bulkhead bulkhead = new Bulkhead(name, policy, queueCapacity);
+        ThrottledExecutor executor = new ThrottledExecutor(bulkhead, threads, concurrencyLimit);
+        bulkhead.virtual = executor;
+        register(bulkhead);
+        return executor;
+    }
+
+    private void register(Bulkhead bulkhead) {
+        if (bulkheads.putIfAbsent(bulkhead.name, bulkhead) != null) {
+            throw new IllegalStateException("Executor " + bulkhead.name + " is already defined");
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            Gauge.builder("samap_executor_queue_depth", bulkhead, Bulkhead::queueDepth)
+                    .description("Tasks waiting for a thread")
+                    .tag("executor", bulkhead.name)
+                    .register(registry);
+
+            Gauge.builder("samap_executor_active_threads", bulkhead, Bulkhead::activeCount)
+                    .description("Threads currently running a task")
+                    .tag("executor", bulkhead.name)
+                    .register(registry);
+
+            Gauge.builder("samap_executor_pool_size", bulkhead, Bulkhead::poolSize)
+                    .description("Threads currently in the pool")
+                    .tag("executor", bulkhead.name)
+                    .register(registry);
+
+            FunctionCounter.builder("samap_executor_rejected_total", bulkhead, b -> b.rejected.get())
+                    .description("Tasks rejected because the pool and queue were full")
+                    .tag("executor", bulkhead.name)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Current sizing and saturation of every executor
+     */
+    public List<Map<String, Object>> getStats() {
+        return bulkheads.values().stream()
+                .sorted((a, b) -> a.name.compareTo(b.name))
+                .map(Bulkhead::stats)
+                .toList();
+    }
+
+    /**
+     * Change the pool size of an executor at runtime; for virtual-thread executors
+     * maxSize becomes the concurrency limit. Queue capacity is fixed at startup.
+     */
+    public Map<String, Object> resize(String name, int coreSize, int maxSize) {
+        Bulkhead bulkhead = bulkheads.get(name);
+        if (bulkhead == null) {
+            throw new NoSuchElementException("Unknown executor: " + name);
+        }
+        if (coreSize < 0 || maxSize < 1 || coreSize > maxSize) {
+            throw new IllegalArgumentException("Require 0 <= coreSize <= maxSize and maxSize >= 1");
+        }
+
+        if (bulkhead.pool != null) {
+            // Grow max before core and shrink core before max so core never exceeds max
+            if (maxSize >= bulkhead.pool.getMaxPoolSize()) {
+                bulkhead.pool.setMaxPoolSize(maxSize);
+                bulkhead.pool.setCorePoolSize(coreSize);
+            } else {
+                bulkhead.pool.setCorePoolSize(coreSize);
+                bulkhead.pool.setMaxPoolSize(maxSize);
+            }
+        } else {
+            bulkhead.virtual.setConcurrencyLimit(maxSize);
+        }
+
+        log.info("Executor {} resized: core={}, max={}", name, coreSize, maxSize);
+        return bulkhead.stats();
+    }
+
+    private static final class Bulkhead {
+        private final String name;
+        private final RejectionPolicy policy;
+        private final int queueCapacity;
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicInteger virtualActive = new AtomicInteger();
+        private ThreadPoolTaskExecutor pool;
+        private ThrottledExecutor virtual;
+
+        private Bulkhead(String name, RejectionPolicy policy, int queueCapacity) {
+            this.name = name;
+            this.policy = policy;
+            this.queueCapacity = queueCapacity;
+        }
+
+        RejectedExecutionHandler countingHandler() {
+            RejectedExecutionHandler delegate = policy.handler();
+            return (task, executor) -> {
+                countRejection();
+                delegate.rejectedExecution(task, executor);
+            };
+        }
+
+        void countRejection() {
+            long total = rejected.incrementAndGet();
+            // Log the first rejection and then every 100th to avoid flooding under saturation
+            if (total == 1 || total % 100 == 0) {
+                log.warn("Executor {} saturated ({} rejections so far, policy {})", name, total, policy);
+            }
+        }
+
+        TaskDecorator activeCounting() {
+            return task -> {
+                Runnable propagating = CorrelationId.propagate(task);
+                return () -> {
+                    virtualActive.incrementAndGet();
+                    try {
+                        propagating.run();
+                    } finally {
+                        virtualActive.decrementAndGet();
+                    }
+                };
+            };
+        }
+
+        double queueDepth() {
+            return pool != null ? pool.getThreadPoolExecutor().getQueue().size() : virtual.queueDepth();
+        }
+
+        double activeCount() {
+            return pool != null ? pool.getActiveCount() : virtualActive.get();
+        }
+
+        double poolSize() {
+            return pool != null ? pool.getPoolSize() : virtualActive.get();
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", name);
+            stats.put("virtualThreads", virtual != null);
+            if (pool != null) {
+                stats.put("coreSize", pool.getCorePoolSize());
+                stats.put("maxSize", pool.getMaxPoolSize());
+            } else {
+                stats.put("concurrencyLimit", virtual.getConcurrencyLimit());
+            }
+            stats.put("queueCapacity", queueCapacity);
+            stats.put("rejectionPolicy", policy);
+            stats.put("poolSize", (int) poolSize());
+            stats.put("activeCount", (int) activeCount());
+            stats.put("queueDepth", (int) queueDepth());
+            stats.put("rejectedCount", rejected.get());
+            return stats;
+        }
+    }
+
+    /**
+     * Runs at most {@code concurrencyLimit} tasks at once, each on a new thread, and holds
+     * up to the bulkhead's queue capacity of further tasks; a thread that finishes its task
+     * picks up the next queued one. Beyond that the bulkhead's rejection policy applies on
+     * the submitting thread, as it would for a {@link ThreadPoolTaskExecutor}.
+     */
+    public static final class ThrottledExecutor implements Executor, AutoCloseable {
+        private final Bulkhead bulkhead;
+        private final SimpleAsyncTaskExecutor threads;
+        private final Deque<Runnable> queue = new ArrayDeque<>();
+        private int concurrencyLimit;
+        private int running;
+
+        private ThrottledExecutor(Bulkhead bulkhead, SimpleAsyncTaskExecutor threads, int concurrencyLimit) {
+            this.bulkhead = bulkhead;
+            this.threads = threads;
+            this.concurrencyLimit = concurrencyLimit;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            Runnable decorated = bulkhead.activeCounting().decorate(task);
+            boolean free;
+            synchronized (this) {
+                free = running < concurrencyLimit;
+                if (free) {
+                    running++;
+                } else if (queue.size() < bulkhead.queueCapacity) {
+                    queue.addLast(decorated);
+                    return;
+                } else if (bulkhead.policy == RejectionPolicy.DISCARD_OLDEST && !queue.isEmpty()) {
+                    queue.pollFirst();
+                    queue.addLast(decorated);
+                    bulkhead.countRejection();
+                    return;
+                }
+            }
+            if (free) {
+                start(decorated);
+            } else {
+                // Outside the lock, since CALLER_RUNS runs the task right here
+                reject(decorated);
+            }
+        }
+
+        private void start(Runnable task) {
+            try {
+                threads.execute(() -> runAndDrain(task));
+            } catch (RuntimeException e) {
+                // Shutting down: give the slot back
+                synchronized (this) {
+                    running--;
+                }
+                throw e;
+            }
+        }
+
+        private void runAndDrain(Runnable task) {
+            Runnable next = task;
+            while (next != null) {
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    log.error("Task on executor {} failed: {}", bulkhead.name, e.getMessage(), e);
+                }
+                synchronized (this) {
+                    next = running <= concurrencyLimit ? queue.pollFirst() : null;
+                    if (next == null) {
+                        running--;
+                    }
+                }
+            }
+        }
+
+        private void reject(Runnable task) {
+            bulkhead.countRejection();
+            switch (bulkhead.policy) {
+                case CALLER_RUNS -> task.run();
+                case ABORT -> throw new TaskRejectedException("Executor " + bulkhead.name + " is saturated");
+                case DISCARD, DISCARD_OLDEST -> {
+                    // Dropped; with no queue there is no older task to make room
+                }
+            }
+        }
+
+        synchronized int getConcurrencyLimit() {
+            return concurrencyLimit;
+        }
+
+        void setConcurrencyLimit(int concurrencyLimit) {
+            List<Runnable> started = new ArrayList<>();
+            synchronized (this) {
+                this.concurrencyLimit = concurrencyLimit;
+                while (running < concurrencyLimit && !queue.isEmpty()) {
+                    running++;
+                    started.add(queue.pollFirst());
+                }
+            }
+            started.forEach(this::start);
+        }
+
+        synchronized int queueDepth() {
+            return queue.size();
+        }
+
+        @Override
+        public void close() {
+            threads.close();
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package com.samap.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.slf4j.MDC;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 /**
  * RabbitMQ configuration for asynchronous message processing
@@ -36,12 +41,16 @@ public class MessageQueueConfig {
     public static final String NOTIFICATION_ROUTING_KEY = "notification";
     public static final String RISK_ASSESSMENT_ROUTING_KEY = "risk.assessment";
 
+    // Listener container factories
+    public static final String AUDIT_BATCH_CONTAINER_FACTORY = "auditBatchContainerFactory";
+
     /**
-     * Message converter for JSON serialization
+     * Message converter for JSON serialization; the builder registers the java.time
+     * module needed for the LocalDateTime fields of audit events and alerts
      */
     @Bean
     public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+        return new Jackson2JsonMessageConverter(Jackson2ObjectMapperBuilder.json().build());
     }
 
     /**
@@ -51,6 +60,14 @@ public class MessageQueueConfig {
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(jsonMessageConverter());
+        // Carry the correlation ID of the publishing request on every message
+        template.setBeforePublishPostProcessors(message -> {
+            String correlationId = MDC.get(CorrelationId.MDC_KEY);
+            if (correlationId != null) {
+                message.getMessageProperties().setHeader(CorrelationId.HEADER, correlationId);
+            }
+            return message;
+        });
         return template;
     }
 
@@ -64,9 +81,57 @@ public class MessageQueueConfig {
         factory.setMessageConverter(jsonMessageConverter());
         factory.setConcurrentConsumers(3);
         factory.setMaxConcurrentConsumers(10);
+        factory.setAdviceChain(correlationIdAdvice());
+        return factory;
+    }
+
+    /**
+     * Batch consumer for audit events: each listener call receives up to batch-size
+     * messages and acknowledges them together once they are persisted. Prefetch should
+     * be at least the batch size so a batch can fill without waiting on the broker.
+     */
+    @Bean(name = AUDIT_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory auditBatchContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${audit.ingestion.rabbitmq.batch-size:200}") int batchSize,
+            @Value("${audit.ingestion.rabbitmq.prefetch:400}") int prefetch,
+            @Value("${audit.ingestion.rabbitmq.receive-timeout-ms:500}") long receiveTimeoutMs,
+            @Value("${audit.ingestion.rabbitmq.consumers:2}") int consumers,
+            @Value("${audit.ingestion.rabbitmq.max-consumers:4}") int maxConsumers) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConcurrentConsumers(consumers);
+        factory.setMaxConcurrentConsumers(Math.max(consumers, maxConsumers));
         return factory;
     }
 
+    /**
+     * Restore the publisher's correlation ID into the MDC while a listener handles the message
+     */
+    private MethodInterceptor correlationIdAdvice() {
+        return invocation -> {
+            Object data = invocation.getArguments().length > 1 ? invocation.getArguments()[1] : null;
+            String correlationId = data instanceof Message message
+                ? message.getMessageProperties().getHeader(CorrelationId.HEADER)
+                : null;
+            if (!CorrelationId.isValid(correlationId)) {
+                return invocation.proceed();
+            }
+            MDC.put(CorrelationId.MDC_KEY, correlationId);
+            try {
+                return invocation.proceed();
+            } finally {
+                MDC.remove(CorrelationId.MDC_KEY);
+            }
+        };
+    }
+
     // Security Exchange and Queue
     @Bean
     public TopicExchange securityExchange() {
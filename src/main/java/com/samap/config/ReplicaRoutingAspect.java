@@ -0,0 +1,54 @@
+package com.samap.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringValueResolver;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies per-method replica staleness tolerances to {@link ReplicaRoutingDataSource}
+ */
+@Aspect
+@Component
+public class ReplicaRoutingAspect implements EmbeddedValueResolverAware {
+
+    /**
+     * Replication lag, in milliseconds, a read-only method accepts when served by a
+     * replica; "0" pins it to the primary. Property placeholders are resolved, so the
+     * tolerance can come from configuration.
+     */
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface ReplicaLag {
+        String value();
+    }
+
+    private final Map<String, Long> resolved = new ConcurrentHashMap<>();
+    private StringValueResolver resolver;
+
+    @Override
+    public void setEmbeddedValueResolver(StringValueResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    @Around("@annotation(replicaLag)")
+    public Object applyReplicaLag(ProceedingJoinPoint joinPoint, ReplicaLag replicaLag) throws Throwable {
+        long maxLagMs = resolved.computeIfAbsent(replicaLag.value(),
+            value -> Long.parseLong(resolver.resolveStringValue(value).trim()));
+        Long previous = ReplicaRoutingDataSource.setMaxLag(maxLagMs);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingDataSource.setMaxLag(previous);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.samap.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-replica routing: the application DataSource becomes a lazy proxy over
+ * {@link ReplicaRoutingDataSource}, with the primary pool built from
+ * {@code spring.datasource.*} and one pool per replica URL.
+ */
+@Configuration
+@ConditionalOnProperty(name = "samap.datasource.replicas.enabled", havingValue = "true")
+@Slf4j
+public class ReplicaRoutingConfig {
+
+    @Value("${samap.datasource.replicas.urls:}")
+    private String[] replicaUrls;
+
+    @Value("${samap.datasource.replicas.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${samap.datasource.replicas.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${samap.datasource.replicas.pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${samap.datasource.replicas.connection-timeout-ms:2000}")
+    private long replicaConnectionTimeoutMs;
+
+    @Value("${samap.datasource.replicas.default-max-lag-ms:5000}")
+    private long defaultMaxLagMs;
+
+    /** Defaults to {@link ReplicaRoutingDataSource#POSTGRES_LAG_QUERY} */
+    @Value("${samap.datasource.replicas.lag-query:}")
+    private String lagQuery;
+
+    /**
+     * Primary pool, configured exactly like the auto-configured one would be
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties properties) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setConnectionTimeout(replicaConnectionTimeoutMs);
+            replica.setReadOnly(true);
+            // Start even when a replica is unreachable; it is routed to once a probe succeeds
+            replica.setInitializationFailTimeout(-1);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        log.info("Read-only transactions routed across {} replica(s), default lag tolerance {} ms",
+            replicas.size(), defaultMaxLagMs);
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+            lagQuery.isBlank() ? ReplicaRoutingDataSource.POSTGRES_LAG_QUERY : lagQuery, defaultMaxLagMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
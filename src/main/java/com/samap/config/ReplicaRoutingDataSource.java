@@ -0,0 +1,200 @@
+package com.samap.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a healthy read replica and everything else to the
+ * primary.
+ *
+ * Replicas are probed on a schedule with a lag query (milliseconds behind the primary).
+ * A read-only transaction uses the next replica, round robin, that answered the last
+ * probe and lags no more than the transaction tolerates: the value set for the current
+ * call by {@link ReplicaRoutingAspect.ReplicaLag}, else the configured default. A
+ * tolerance of 0 always reads from the primary. If no replica qualifies, or a replica
+ * refuses the connection (it is then marked down until the next successful probe), the
+ * primary serves the read.
+ *
+ * The decision needs the transaction's read-only flag, which Spring sets after the
+ * transaction manager asks for a connection, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}. Hibernate
+ * holds a session's connection until the session closes, so routing is per transaction
+ * only while no session outlives one: {@code spring.jpa.open-in-view} must stay off.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements InitializingBean, Closeable {
+
+    /**
+     * Replication lag in milliseconds on PostgreSQL; 0 on a primary and on a replica that
+     * has replayed everything it received (so an idle primary does not look like lag)
+     */
+    public static final String POSTGRES_LAG_QUERY =
+        "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+        "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+        "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private static final ThreadLocal<Long> MAX_LAG_MS = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final long defaultMaxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    String lagQuery, long defaultMaxLagMs) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.lagQuery = lagQuery;
+        this.defaultMaxLagMs = defaultMaxLagMs;
+    }
+
+    /**
+     * Set the lag the current thread's reads tolerate; null restores the default.
+     * Returns the previous value so callers can restore it.
+     */
+    public static Long setMaxLag(Long maxLagMs) {
+        Long previous = MAX_LAG_MS.get();
+        if (maxLagMs == null) {
+            MAX_LAG_MS.remove();
+        } else {
+            MAX_LAG_MS.set(maxLagMs);
+        }
+        return previous;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        checkReplicas();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    /**
+     * Probe every replica's health and lag
+     */
+    @Scheduled(fixedDelayString = "${samap.datasource.replicas.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                long lagMs = resultSet.next() ? Math.max(0, Math.round(resultSet.getDouble(1))) : Long.MAX_VALUE;
+                replica.markUp(lagMs);
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    /**
+     * Name, health and last measured lag of each replica
+     */
+    public List<Map<String, Object>> getReplicaStatus() {
+        return replicas.stream()
+            .map(replica -> Map.<String, Object>of(
+                "name", replica.name,
+                "healthy", replica.healthy,
+                "lagMs", replica.lagMs))
+            .toList();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Connection route(ConnectionFactory factory) throws SQLException {
+        Replica replica = selectReplica();
+        if (replica != null) {
+            try {
+                return factory.connect(replica.dataSource);
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        return factory.connect(primary);
+    }
+
+    private Replica selectReplica() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        Long override = MAX_LAG_MS.get();
+        long maxLagMs = override != null ? override : defaultMaxLagMs;
+        if (maxLagMs <= 0) {
+            return null;
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy && replica.lagMs <= maxLagMs) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface ConnectionFactory {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile boolean probed;
+        private volatile long lagMs = Long.MAX_VALUE;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void markUp(long lagMs) {
+            if (!healthy) {
+                log.info("Read replica {} is up ({} ms behind)", name, lagMs);
+            }
+            this.lagMs = lagMs;
+            this.healthy = true;
+            this.probed = true;
+        }
+
+        void markDown(SQLException e) {
+            if (healthy || !probed) {
+                log.warn("Read replica {} is down, reads fall back to the primary: {}", name, e.getMessage());
+            }
+            this.healthy = false;
+            this.probed = true;
+        }
+    }
+}
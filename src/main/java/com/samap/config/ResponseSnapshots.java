@@ -0,0 +1,164 @@
+package com.samap.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Shared snapshots of polled GET responses with strong ETags.
+ *
+ * The body for a key is computed at most once per refresh interval, however many
+ * clients poll it. One request recomputes a stale key, without holding a lock; the
+ * others meanwhile get the previous snapshot, or wait for the new one if there is none
+ * yet. The ETag is a hash of the JSON body without the fields listed in
+ * {@code samap.snapshots.etag-ignored-fields} (generation timestamps, uptime), so it
+ * changes when the content does rather than on every refresh. A poll whose
+ * If-None-Match matches gets a 304 from Spring MVC without a body, and Cache-Control
+ * lets browsers reuse the response for the refresh interval.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResponseSnapshots {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${samap.snapshots.enabled:true}")
+    private boolean enabled;
+
+    @Value("${samap.snapshots.refresh-ms:5000}")
+    private long refreshMs;
+
+    @Value("${samap.snapshots.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${samap.snapshots.etag-ignored-fields:timestamp,uptime}")
+    private List<String> etagIgnoredFields;
+
+    private final Map<String, Holder> holders = new ConcurrentHashMap<>();
+
+    /**
+     * 200 with the current snapshot for the key, or 304 when the client already has it.
+     * Keys must include everything the body depends on: parameters and, for per-user
+     * content, the username.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> respond(String key, Supplier<T> supplier) {
+        if (!enabled) {
+            return ResponseEntity.ok(supplier.get());
+        }
+
+        Snapshot snapshot = snapshot(key, supplier);
+        return ResponseEntity.ok()
+            .eTag(snapshot.etag)
+            .cacheControl(CacheControl.maxAge(refreshMs, TimeUnit.MILLISECONDS).cachePrivate().mustRevalidate())
+            .body((T) snapshot.body);
+    }
+
+    private Snapshot snapshot(String key, Supplier<?> supplier) {
+        Holder holder = holders.get(key);
+        if (holder == null) {
+            if (holders.size() >= maxEntries) {
+                evictStale();
+            }
+            holder = holders.computeIfAbsent(key, k -> new Holder());
+        }
+
+        Snapshot current = holder.snapshot;
+        if (current != null && System.nanoTime() - current.takenAt < TimeUnit.MILLISECONDS.toNanos(refreshMs)) {
+            return current;
+        }
+
+        CompletableFuture<Snapshot> refresh = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = holder.refresh.compareAndExchange(null, refresh);
+        if (running != null) {
+            return current != null ? current : await(running);
+        }
+        try {
+            // Another request may have finished a refresh since the check above
+            Snapshot latest = holder.snapshot;
+            if (latest != null && System.nanoTime() - latest.takenAt < TimeUnit.MILLISECONDS.toNanos(refreshMs)) {
+                refresh.complete(latest);
+                return latest;
+            }
+            Object body = supplier.get();
+            Snapshot snapshot = new Snapshot(body, etag(body), System.nanoTime());
+            holder.snapshot = snapshot;
+            refresh.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            holder.refresh.set(null);
+        }
+    }
+
+    private static Snapshot await(CompletableFuture<Snapshot> refresh) {
+        try {
+            return refresh.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private String etag(Object body) {
+        try {
+            JsonNode tree = objectMapper.valueToTree(body);
+            removeIgnoredFields(tree);
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(tree));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new IllegalStateException("Response body is not serializable", e);
+        }
+    }
+
+    private void removeIgnoredFields(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            object.remove(etagIgnoredFields);
+        }
+        for (JsonNode child : node) {
+            removeIgnoredFields(child);
+        }
+    }
+
+    /**
+     * Drop snapshots past their refresh interval; if every key is fresh, start over
+     */
+    private void evictStale() {
+        long now = System.nanoTime();
+        long refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMs);
+        holders.values().removeIf(holder -> {
+            Snapshot snapshot = holder.snapshot;
+            return snapshot != null && now - snapshot.takenAt >= refreshNanos;
+        });
+        if (holders.size() >= maxEntries) {
+            log.debug("Response snapshot cache full with {} fresh entries, clearing", holders.size());
+            holders.clear();
+        }
+    }
+
+    private static final class Holder {
+        private volatile Snapshot snapshot;
+        private final AtomicReference<CompletableFuture<Snapshot>> refresh = new AtomicReference<>();
+    }
+
+    private record Snapshot(Object body, String etag, long takenAt) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.samap.config;
+
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Schema work that has to finish before Hibernate builds the EntityManagerFactory.
+ *
+ * The listed beans do their work when they are initialized, so making the
+ * EntityManagerFactory depend on them runs it before any repository, the audit writer
+ * thread, the schedulers or the web server can touch the tables.
+ */
+@Configuration
+public class SchemaInitializationConfig {
+
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor schemaInitializersBeforeJpa() {
+        return new EntityManagerFactoryDependsOnPostProcessor("sequenceAlignmentService", "auditPartitionService",
+            "auditDictionaryService");
+    }
+}
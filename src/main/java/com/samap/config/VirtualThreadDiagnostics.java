@@ -0,0 +1,86 @@
+package com.samap.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Reports virtual threads pinned to their carrier (inside synchronized blocks or
+ * native/JDBC calls) using the JFR jdk.VirtualThreadPinned event. Each pin longer
+ * than the threshold is logged with the first application frame and counted in
+ * samap_virtual_thread_pinned_total, tagged by that frame.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualThreadDiagnostics {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.samap.";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${samap.virtual-threads.pinned-threshold-ms:20}")
+    private long pinnedThresholdMs;
+
+    private RecordingStream recordingStream;
+
+    @PostConstruct
+    public void start() {
+        if (Runtime.version().feature() < 21) {
+            return;
+        }
+
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT)
+            .withThreshold(Duration.ofMillis(pinnedThresholdMs))
+            .withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        log.info("Virtual thread pinning diagnostics enabled (threshold {}ms)", pinnedThresholdMs);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String site = pinnedSite(event);
+        Counter.builder("samap_virtual_thread_pinned_total")
+            .description("Virtual threads pinned to a carrier thread longer than the threshold")
+            .tag("site", site)
+            .register(meterRegistry)
+            .increment();
+        log.warn("Virtual thread pinned for {}ms at {}", event.getDuration().toMillis(), site);
+    }
+
+    private String pinnedSite(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "unknown";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        RecordedFrame site = frames.stream()
+            .filter(frame -> frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+            .findFirst()
+            .orElse(frames.isEmpty() ? null : frames.get(0));
+        return site != null
+            ? site.getMethod().getType().getName() + "." + site.getMethod().getName()
+            : "unknown";
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+}
@@ -2,19 +2,36 @@ package com.samap.controller;
 
 import com.samap.config.AuditAspect.Auditable;
 import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
+import com.samap.service.AuditExportService;
+import com.samap.service.AuditExportService.ExportFilter;
+import com.samap.service.AuditExportService.Format;
 import com.samap.service.AuditService;
 import com.samap.service.AuditService.*;
+import com.samap.service.DistinctCountService;
+import com.samap.service.DistinctCountService.DistinctCount;
+import com.samap.service.HeavyHitterService;
+import com.samap.service.HeavyHitterService.HeavyHitter;
+import com.samap.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Audit controller for security monitoring and log analysis
@@ -25,7 +42,13 @@ import java.util.List;
 @Slf4j
 public class AuditController {
 
+    private static final DateTimeFormatter EXPORT_FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
     private final AuditService auditService;
+    private final NotificationService notificationService;
+    private final AuditExportService auditExportService;
+    private final HeavyHitterService heavyHitterService;
+    private final DistinctCountService distinctCountService;
 
     /**
      * Get all audit logs with pagination
@@ -33,22 +56,35 @@ public class AuditController {
     @GetMapping("/logs")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR')")
     @Auditable(action = "AUDIT_VIEW", resource = "AUDIT")
-    public ResponseEntity<Page<AuditLog>> getAuditLogs(Pageable pageable) {
-        Page<AuditLog> auditLogs = auditService.getAuditLogs(pageable);
+    public ResponseEntity<Page<AuditLogSummary>> getAuditLogs(Pageable pageable) {
+        Page<AuditLogSummary> auditLogs = auditService.getAuditLogs(pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
+    /**
+     * Get one audit log with its details, request parameters, error message and risk
+     * and anomaly analysis, which the listings leave out
+     */
+    @GetMapping("/logs/{id:\\d+}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_VIEW_DETAIL", resource = "AUDIT", logParameters = true)
+    public ResponseEntity<AuditLog> getAuditLog(@PathVariable Long id) {
+        return auditService.getAuditLog(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Get audit logs by username
      */
     @GetMapping("/logs/user/{username}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or #username == authentication.name")
     @Auditable(action = "AUDIT_VIEW_USER", resource = "AUDIT", logParameters = true)
-    public ResponseEntity<Page<AuditLog>> getAuditLogsByUsername(
+    public ResponseEntity<Page<AuditLogSummary>> getAuditLogsByUsername(
             @PathVariable String username,
             Pageable pageable) {
         
-        Page<AuditLog> auditLogs = auditService.getAuditLogsByUsername(username, pageable);
+        Page<AuditLogSummary> auditLogs = auditService.getAuditLogsByUsername(username, pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
@@ -58,22 +94,36 @@ public class AuditController {
     @GetMapping("/logs/action/{action}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR')")
     @Auditable(action = "AUDIT_VIEW_ACTION", resource = "AUDIT", logParameters = true)
-    public ResponseEntity<Page<AuditLog>> getAuditLogsByAction(
+    public ResponseEntity<Page<AuditLogSummary>> getAuditLogsByAction(
             @PathVariable String action,
             Pageable pageable) {
         
-        Page<AuditLog> auditLogs = auditService.getAuditLogsByAction(action, pageable);
+        Page<AuditLogSummary> auditLogs = auditService.getAuditLogsByAction(action, pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
+    /**
+     * Get everything recorded under one correlation ID: audit logs and security alerts
+     */
+    @GetMapping("/correlation/{correlationId}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_VIEW_CORRELATION", resource = "AUDIT", logParameters = true)
+    public ResponseEntity<Map<String, Object>> getByCorrelationId(@PathVariable String correlationId) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("correlationId", correlationId);
+        response.put("auditLogs", auditService.getAuditLogsByCorrelationId(correlationId));
+        response.put("securityAlerts", notificationService.getAlertsByCorrelationId(correlationId));
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Get high-risk activities
      */
     @GetMapping("/logs/high-risk")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
     @Auditable(action = "AUDIT_VIEW_HIGH_RISK", resource = "AUDIT")
-    public ResponseEntity<Page<AuditLog>> getHighRiskActivities(Pageable pageable) {
-        Page<AuditLog> auditLogs = auditService.getHighRiskActivities(pageable);
+    public ResponseEntity<Page<AuditLogSummary>> getHighRiskActivities(Pageable pageable) {
+        Page<AuditLogSummary> auditLogs = auditService.getHighRiskActivities(pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
@@ -83,8 +133,8 @@ public class AuditController {
     @GetMapping("/logs/anomalies")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
     @Auditable(action = "AUDIT_VIEW_ANOMALIES", resource = "AUDIT")
-    public ResponseEntity<Page<AuditLog>> getAnomalousActivities(Pageable pageable) {
-        Page<AuditLog> auditLogs = auditService.getAnomalousActivities(pageable);
+    public ResponseEntity<Page<AuditLogSummary>> getAnomalousActivities(Pageable pageable) {
+        Page<AuditLogSummary> auditLogs = auditService.getAnomalousActivities(pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
@@ -94,8 +144,8 @@ public class AuditController {
     @GetMapping("/logs/failed-logins")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
     @Auditable(action = "AUDIT_VIEW_FAILED_LOGINS", resource = "AUDIT")
-    public ResponseEntity<Page<AuditLog>> getFailedLoginAttempts(Pageable pageable) {
-        Page<AuditLog> auditLogs = auditService.getFailedLoginAttempts(pageable);
+    public ResponseEntity<Page<AuditLogSummary>> getFailedLoginAttempts(Pageable pageable) {
+        Page<AuditLogSummary> auditLogs = auditService.getFailedLoginAttempts(pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
@@ -105,11 +155,11 @@ public class AuditController {
     @GetMapping("/logs/search")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR')")
     @Auditable(action = "AUDIT_SEARCH", resource = "AUDIT", logParameters = true)
-    public ResponseEntity<Page<AuditLog>> searchAuditLogs(
+    public ResponseEntity<Page<AuditLogSummary>> searchAuditLogs(
             @RequestParam String query,
             Pageable pageable) {
         
-        Page<AuditLog> auditLogs = auditService.searchAuditLogs(query, pageable);
+        Page<AuditLogSummary> auditLogs = auditService.searchAuditLogs(query, pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
@@ -119,15 +169,103 @@ public class AuditController {
     @GetMapping("/logs/date-range")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR')")
     @Auditable(action = "AUDIT_VIEW_DATE_RANGE", resource = "AUDIT", logParameters = true)
-    public ResponseEntity<Page<AuditLog>> getAuditLogsByDateRange(
+    public ResponseEntity<Page<AuditLogSummary>> getAuditLogsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
             Pageable pageable) {
         
-        Page<AuditLog> auditLogs = auditService.getAuditLogsByDateRange(startDate, endDate, pageable);
+        Page<AuditLogSummary> auditLogs = auditService.getAuditLogsByDateRange(startDate, endDate, pageable);
         return ResponseEntity.ok(auditLogs);
     }
 
+    /**
+     * Get all audit logs by cursor; pass nextCursor from the previous response to continue
+     */
+    @GetMapping("/logs/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR')")
+    @Auditable(action = "AUDIT_VIEW", resource = "AUDIT")
+    public ResponseEntity<CursorSlice> getAuditLogsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.getAuditLogsAfter(cursor, size));
+    }
+
+    /**
+     * Get audit logs by username by cursor
+     */
+    @GetMapping("/logs/user/{username}/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or #username == authentication.name")
+    @Auditable(action = "AUDIT_VIEW_USER", resource = "AUDIT", logParameters = true)
+    public ResponseEntity<CursorSlice> getAuditLogsByUsernameByCursor(
+            @PathVariable String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.getAuditLogsByUsernameAfter(username, cursor, size));
+    }
+
+    /**
+     * Get audit logs by action by cursor
+     */
+    @GetMapping("/logs/action/{action}/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR')")
+    @Auditable(action = "AUDIT_VIEW_ACTION", resource = "AUDIT", logParameters = true)
+    public ResponseEntity<CursorSlice> getAuditLogsByActionByCursor(
+            @PathVariable String action,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.getAuditLogsByActionAfter(action, cursor, size));
+    }
+
+    /**
+     * Get high-risk activities by cursor
+     */
+    @GetMapping("/logs/high-risk/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_VIEW_HIGH_RISK", resource = "AUDIT")
+    public ResponseEntity<CursorSlice> getHighRiskActivitiesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.getHighRiskActivitiesAfter(cursor, size));
+    }
+
+    /**
+     * Get anomalous activities by cursor
+     */
+    @GetMapping("/logs/anomalies/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_VIEW_ANOMALIES", resource = "AUDIT")
+    public ResponseEntity<CursorSlice> getAnomalousActivitiesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.getAnomalousActivitiesAfter(cursor, size));
+    }
+
+    /**
+     * Get failed login attempts by cursor
+     */
+    @GetMapping("/logs/failed-logins/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_VIEW_FAILED_LOGINS", resource = "AUDIT")
+    public ResponseEntity<CursorSlice> getFailedLoginAttemptsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.getFailedLoginAttemptsAfter(cursor, size));
+    }
+
+    /**
+     * Get audit logs within date range by cursor
+     */
+    @GetMapping("/logs/date-range/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR')")
+    @Auditable(action = "AUDIT_VIEW_DATE_RANGE", resource = "AUDIT", logParameters = true)
+    public ResponseEntity<CursorSlice> getAuditLogsByDateRangeByCursor(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.getAuditLogsByDateRangeAfter(startDate, endDate, cursor, size));
+    }
+
     /**
      * Get activity statistics
      */
@@ -173,19 +311,98 @@ public class AuditController {
     }
 
     /**
-     * Export audit logs (placeholder for future implementation)
+     * Live top users, IP addresses and endpoints in a sliding window (5m, 1h or 24h)
+     */
+    @GetMapping("/statistics/heavy-hitters")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_HEAVY_HITTERS", resource = "AUDIT")
+    public ResponseEntity<Map<String, Object>> getHeavyHitters(
+            @RequestParam(defaultValue = "5m") String window,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        HeavyHitterService.Window slidingWindow = HeavyHitterService.Window.parse(window);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("window", slidingWindow.getLabel());
+        response.putAll(heavyHitterService.getTop(slidingWindow, limit));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Live top keys of one dimension (users, ips or endpoints) in a sliding window
+     */
+    @GetMapping("/statistics/heavy-hitters/{dimension}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_HEAVY_HITTERS", resource = "AUDIT", logParameters = true)
+    public ResponseEntity<List<HeavyHitter>> getHeavyHittersByDimension(
+            @PathVariable String dimension,
+            @RequestParam(defaultValue = "5m") String window,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        List<HeavyHitter> heavyHitters = heavyHitterService.getTop(
+            HeavyHitterService.Dimension.parse(dimension), HeavyHitterService.Window.parse(window), limit);
+        return ResponseEntity.ok(heavyHitters);
+    }
+
+    /**
+     * Approximate distinct users, IP addresses and user agents in a window (5m, 1h or
+     * 24h), each with its relative standard error and ~95% bounds
+     */
+    @GetMapping("/statistics/distinct")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('SECURITY_OFFICER')")
+    @Auditable(action = "AUDIT_DISTINCT_COUNTS", resource = "AUDIT")
+    public ResponseEntity<Map<String, DistinctCount>> getDistinctCounts(
+            @RequestParam(defaultValue = "1h") String window) {
+
+        return ResponseEntity.ok(distinctCountService.getDistinct(DistinctCountService.Window.parse(window)));
+    }
+
+    /**
+     * Export audit logs as CSV or NDJSON, optionally gzipped; the response is streamed
+     * so exports of any size use constant memory
      */
     @GetMapping("/export")
     @PreAuthorize("hasRole('ADMIN') or hasPermission('AUDIT_EXPORT')")
     @Auditable(action = "AUDIT_EXPORT", resource = "AUDIT", logParameters = true)
-    public ResponseEntity<String> exportAuditLogs(
+    public ResponseEntity<StreamingResponseBody> exportAuditLogs(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
-            @RequestParam(defaultValue = "CSV") String format) {
-        
-        // TODO: Implement audit log export functionality
-        // This would typically generate CSV, Excel, or PDF reports
-        
-        return ResponseEntity.ok("Export functionality will be implemented in future version");
+            @RequestParam(defaultValue = "CSV") String format,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) AuditLog.ActionStatus status,
+            @RequestParam(required = false) AuditLog.RiskLevel minRiskLevel,
+            @RequestParam(defaultValue = "false") boolean anomaliesOnly,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("startDate must not be after endDate");
+        }
+        Format exportFormat = Format.parse(format);
+
+        ExportFilter filter = new ExportFilter();
+        filter.setStartDate(startDate);
+        filter.setEndDate(endDate);
+        filter.setUsername(username);
+        filter.setAction(action);
+        filter.setStatus(status);
+        filter.setMinRiskLevel(minRiskLevel);
+        filter.setAnomaliesOnly(anomaliesOnly);
+
+        String filename = "audit-export-" + EXPORT_FILE_TIMESTAMP.format(LocalDateTime.now()) + "." +
+            exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                auditExportService.export(filter, exportFormat, compressed);
+                compressed.finish();
+            } else {
+                auditExportService.export(filter, exportFormat, out);
+            }
+        };
+
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+            .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+            .body(body);
     }
 }
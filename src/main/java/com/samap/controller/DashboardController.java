@@ -1,11 +1,16 @@
 package com.samap.controller;
 
 import com.samap.config.AuditAspect.Auditable;
+import com.samap.config.ResponseSnapshots;
 import com.samap.service.AuditService;
+import com.samap.service.DistinctCountService;
 import com.samap.service.RiskAssessmentService;
+import com.samap.service.RiskAssessmentService.RiskAssessmentReport;
 import com.samap.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -14,6 +19,9 @@ import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Dashboard controller providing system overview and analytics
@@ -26,18 +34,41 @@ public class DashboardController {
 
     private final UserService userService;
     private final AuditService auditService;
+    private final DistinctCountService distinctCountService;
     private final RiskAssessmentService riskAssessmentService;
+    private final ResponseSnapshots responseSnapshots;
+
+    @Value("${samap.dashboard.risk-report-timeout-ms:2000}")
+    private long riskReportTimeoutMs;
 
     /**
-     * Get dashboard overview
+     * Get dashboard overview; a snapshot per user with an ETag, refreshed every few seconds
      */
     @GetMapping("/overview")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AUDITOR') or hasRole('USER')")
     @Auditable(action = "DASHBOARD_VIEW", resource = "DASHBOARD")
     public ResponseEntity<Map<String, Object>> getDashboardOverview(Authentication authentication) {
+        String user = authentication != null ? authentication.getName() : "";
+        return responseSnapshots.respond("dashboard-overview:" + user, () -> buildOverview(authentication));
+    }
+
+    private Map<String, Object> buildOverview(Authentication authentication) {
         Map<String, Object> overview = new HashMap<>();
+        LocalDateTime since = LocalDateTime.now().minusHours(24);
+
+        // Start the risk report first so it runs on the risk executor while the rest is gathered
+        CompletableFuture<RiskAssessmentReport> riskReportFuture = null;
         
         try {
+            if (authentication != null) {
+                try {
+                    riskReportFuture = riskAssessmentService.generateRiskReportAsync(authentication.getName(), since);
+                } catch (TaskRejectedException e) {
+                    log.warn("Risk executor saturated, skipping user risk assessment");
+                    overview.put("userRiskAssessment", Map.of("available", false));
+                }
+            }
+
             // User statistics
             var userStats = userService.getUserStatistics();
             overview.put("userStatistics", Map.of(
@@ -48,7 +79,6 @@ public class DashboardController {
             ));
 
             // Activity statistics (last 24 hours)
-            LocalDateTime since = LocalDateTime.now().minusHours(24);
             var activityStats = auditService.getActivityStatistics(since);
             overview.put("activityStatistics", Map.of(
                 "total", activityStats.getTotalActivities(),
@@ -67,6 +97,9 @@ public class DashboardController {
             var hourlyTrends = auditService.getActivityTrendsByHour(since);
             overview.put("hourlyActivityTrends", hourlyTrends);
 
+            // Distinct users, IPs and user agents (last 24 hours, approximate)
+            overview.put("distinctCounts", distinctCountService.getDistinct(DistinctCountService.Window.ONE_DAY));
+
             // System status
             overview.put("systemStatus", Map.of(
                 "status", "OPERATIONAL",
@@ -75,18 +108,21 @@ public class DashboardController {
             ));
 
             // User-specific data
-            if (authentication != null) {
-                String username = authentication.getName();
-                
+            if (riskReportFuture != null) {
                 // User risk assessment
-                var riskReport = riskAssessmentService.generateRiskReport(username, since);
-                overview.put("userRiskAssessment", Map.of(
-                    "riskLevel", riskReport.getRiskLevel(),
-                    "averageRiskScore", riskReport.getAverageRiskScore(),
-                    "totalActivities", riskReport.getTotalActivities(),
-                    "highRiskActivities", riskReport.getHighRiskActivities(),
-                    "anomalousActivities", riskReport.getAnomalousActivities()
-                ));
+                try {
+                    var riskReport = riskReportFuture.get(riskReportTimeoutMs, TimeUnit.MILLISECONDS);
+                    overview.put("userRiskAssessment", Map.of(
+                        "riskLevel", riskReport.getRiskLevel(),
+                        "averageRiskScore", riskReport.getAverageRiskScore(),
+                        "totalActivities", riskReport.getTotalActivities(),
+                        "highRiskActivities", riskReport.getHighRiskActivities(),
+                        "anomalousActivities", riskReport.getAnomalousActivities()
+                    ));
+                } catch (TimeoutException e) {
+                    log.warn("User risk assessment did not finish within {} ms", riskReportTimeoutMs);
+                    overview.put("userRiskAssessment", Map.of("available", false));
+                }
             }
 
         } catch (Exception e) {
@@ -94,7 +130,7 @@ public class DashboardController {
             overview.put("error", "Unable to load complete dashboard data");
         }
 
-        return ResponseEntity.ok(overview);
+        return overview;
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.samap.controller;
 
+import com.samap.config.ExecutorBulkheads;
+import com.samap.config.ResponseSnapshots;
 import com.samap.service.HealthCheckService;
 import com.samap.service.MonitoringService;
 import lombok.RequiredArgsConstructor;
@@ -8,12 +10,16 @@ import org.springframework.boot.actuate.health.Health;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * Monitoring and health check endpoints
@@ -26,6 +32,8 @@ public class MonitoringController {
 
     private final HealthCheckService healthCheckService;
     private final MonitoringService monitoringService;
+    private final ExecutorBulkheads executorBulkheads;
+    private final ResponseSnapshots responseSnapshots;
 
     /**
      * Get comprehensive system health status
@@ -89,19 +97,20 @@ public class MonitoringController {
     }
 
     /**
-     * Get real-time system metrics
+     * Get real-time system metrics; a shared snapshot with an ETag, refreshed every few seconds
      */
     @GetMapping("/metrics")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Map<String, Object>> getSystemMetrics() {
         try {
-            Map<String, Object> metrics = monitoringService.getSystemMetrics();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("timestamp", LocalDateTime.now());
-            response.put("data", metrics);
-            
-            return ResponseEntity.ok(response);
+            return responseSnapshots.respond("monitoring-metrics", () -> {
+                Map<String, Object> metrics = monitoringService.getSystemMetrics();
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("timestamp", LocalDateTime.now());
+                response.put("data", metrics);
+                return response;
+            });
         } catch (Exception e) {
             log.error("Error getting system metrics", e);
             return ResponseEntity.internalServerError()
@@ -257,4 +266,47 @@ public class MonitoringController {
                     ));
         }
     }
+
+    /**
+     * Get sizing and saturation of the async executors
+     */
+    @GetMapping("/executors")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getExecutors() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("timestamp", LocalDateTime.now());
+        response.put("data", executorBulkheads.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Resize an async executor at runtime
+     */
+    @PutMapping("/executors/{name}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> resizeExecutor(
+            @PathVariable String name,
+            @RequestParam int coreSize,
+            @RequestParam int maxSize) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            response.put("data", executorBulkheads.resize(name, coreSize, maxSize));
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                        "success", false,
+                        "timestamp", LocalDateTime.now(),
+                        "error", Map.of(
+                            "code", "INVALID_EXECUTOR_SIZE",
+                            "message", e.getMessage()
+                        )
+                    ));
+        }
+    }
 }
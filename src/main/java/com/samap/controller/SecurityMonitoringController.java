@@ -1,6 +1,7 @@
 package com.samap.controller;
 
 import com.samap.config.AuditAspect.Auditable;
+import com.samap.config.ResponseSnapshots;
 import com.samap.service.NotificationService;
 import com.samap.service.SecurityMonitoringService;
 import com.samap.service.SecurityMonitoringService.SecurityAlert;
@@ -26,29 +27,30 @@ public class SecurityMonitoringController {
 
     private final SecurityMonitoringService securityMonitoringService;
     private final NotificationService notificationService;
+    private final ResponseSnapshots responseSnapshots;
 
     /**
-     * Get current security status
+     * Get current security status; a shared snapshot with an ETag, refreshed every few seconds
      */
     @GetMapping("/status")
     @PreAuthorize("hasRole('ADMIN') or hasRole('SECURITY_OFFICER') or hasRole('AUDITOR')")
     @Auditable(action = "SECURITY_STATUS_VIEW", resource = "SECURITY")
     public ResponseEntity<SecurityStatus> getSecurityStatus() {
-        SecurityStatus status = securityMonitoringService.getCurrentSecurityStatus();
-        return ResponseEntity.ok(status);
+        return responseSnapshots.respond("security-status", securityMonitoringService::getCurrentSecurityStatus);
     }
 
     /**
-     * Get recent security alerts
+     * Get recent security alerts; a shared snapshot with an ETag, refreshed every few seconds
      */
     @GetMapping("/alerts")
     @PreAuthorize("hasRole('ADMIN') or hasRole('SECURITY_OFFICER') or hasRole('AUDITOR')")
     @Auditable(action = "SECURITY_ALERTS_VIEW", resource = "SECURITY")
     public ResponseEntity<List<SecurityAlert>> getRecentAlerts(
             @RequestParam(defaultValue = "20") int limit) {
-        
-        List<SecurityAlert> alerts = notificationService.getRecentAlerts(limit);
-        return ResponseEntity.ok(alerts);
+
+        // Only the most recent alerts are kept; clamping also bounds the snapshot keys
+        int clamped = Math.max(0, Math.min(limit, NotificationService.MAX_RECENT_ALERTS));
+        return responseSnapshots.respond("security-alerts:" + clamped, () -> notificationService.getRecentAlerts(clamped));
     }
 
     /**
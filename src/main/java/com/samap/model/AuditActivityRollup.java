@@ -0,0 +1,84 @@
+package com.samap.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated audit activity: event counts per time bucket, username, action,
+ * status and risk level. Kept at minute and hour granularity in two tables and
+ * maintained by {@link com.samap.service.AuditActivityRollupService}.
+ */
+@MappedSuperclass
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public abstract class AuditActivityRollup {
+
+    @Id
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Id
+    @Column(nullable = false, length = 50)
+    private String username;
+
+    /** Audit dictionary id of the action; 0 when the action is unknown */
+    @Id
+    @Column(name = "action_ref", nullable = false)
+    private Integer actionRef;
+
+    @Id
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Id
+    @Column(name = "risk_level", nullable = false, length = 20)
+    private String riskLevel;
+
+    @Column(name = "event_count", nullable = false)
+    private Long eventCount;
+
+    @Column(name = "anomaly_count", nullable = false)
+    private Long anomalyCount;
+
+    /** Sum of the risk scores of the counted events that had one, for per-user averages */
+    @Column(name = "risk_score_sum")
+    private Double riskScoreSum;
+
+    @Column(name = "risk_scored_count")
+    private Long riskScoredCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDateTime bucketStart;
+        private String username;
+        private Integer actionRef;
+        private String status;
+        private String riskLevel;
+    }
+
+    @Entity(name = "AuditActivityMinute")
+    @Table(name = "audit_activity_minute", indexes = {
+        @Index(name = "idx_activity_minute_bucket", columnList = "bucket_start"),
+        @Index(name = "idx_activity_minute_user", columnList = "username, bucket_start")
+    })
+    @IdClass(Key.class)
+    public static class Minute extends AuditActivityRollup {
+    }
+
+    @Entity(name = "AuditActivityHour")
+    @Table(name = "audit_activity_hour", indexes = {
+        @Index(name = "idx_activity_hour_bucket", columnList = "bucket_start"),
+        @Index(name = "idx_activity_hour_user", columnList = "username, bucket_start")
+    })
+    @IdClass(Key.class)
+    public static class Hour extends AuditActivityRollup {
+    }
+}
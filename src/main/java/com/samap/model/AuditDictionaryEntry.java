@@ -0,0 +1,39 @@
+package com.samap.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lookup entry for a repeated audit string (user agent, action, endpoint, ...).
+ * Audit rows store the entry id instead of the full value.
+ */
+@Entity
+@Table(name = "audit_dictionary", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_audit_dictionary_kind_value", columnNames = {"kind", "entry_value"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditDictionaryEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Kind kind;
+
+    @Column(name = "entry_value", nullable = false, length = 500)
+    private String value;
+
+    public enum Kind {
+        ACTION,
+        RESOURCE,
+        ENDPOINT,
+        HTTP_METHOD,
+        USER_AGENT
+    }
+}
@@ -1,41 +1,47 @@
 package com.samap.model;
 
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditDictionaryMapping;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
 
 /**
- * Audit Log entity for comprehensive security auditing
+ * Audit Log entity for comprehensive security auditing.
+ *
+ * Only the indexes a new table needs from the start are declared here. The composite,
+ * partial and BRIN indexes that follow the repository query shapes are built online by
+ * {@link com.samap.service.PostgresIndexService}, since a schema update would build
+ * them with a CREATE INDEX that blocks writes.
  */
 @Entity
 @Table(name = "audit_logs", indexes = {
-    @Index(name = "idx_audit_user", columnList = "username"),
-    @Index(name = "idx_audit_action", columnList = "action"),
-    @Index(name = "idx_audit_timestamp", columnList = "timestamp"),
-    @Index(name = "idx_audit_ip", columnList = "ipAddress"),
-    @Index(name = "idx_audit_status", columnList = "status"),
-    @Index(name = "idx_audit_risk_score", columnList = "riskScore")
+    @Index(name = "idx_audit_resource", columnList = "resource_ref"),
+    @Index(name = "idx_audit_correlation", columnList = "correlation_id")
 })
+@EntityListeners({AuditDictionaryMapping.InternListener.class, AuditActivityRollupService.RollupListener.class})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class AuditLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_logs_seq")
+    @SequenceGenerator(name = "audit_logs_seq", sequenceName = "audit_logs_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 50)
     private String username;
 
-    @Column(nullable = false, length = 100)
+    @Convert(converter = AuditDictionaryMapping.ActionConverter.class)
+    @Column(name = "action_ref")
     private String action;
 
-    @Column(length = 100)
+    @Convert(converter = AuditDictionaryMapping.ResourceConverter.class)
+    @Column(name = "resource_ref")
     private String resource;
 
     @Column(name = "resource_id")
@@ -48,16 +54,19 @@ public class AuditLog {
     @Column(name = "ip_address", length = 45)
     private String ipAddress;
 
-    @Column(name = "user_agent", length = 500)
+    @Convert(converter = AuditDictionaryMapping.UserAgentConverter.class)
+    @Column(name = "user_agent_ref")
     private String userAgent;
 
     @Column(name = "session_id", length = 100)
     private String sessionId;
 
-    @Column(length = 100)
+    @Convert(converter = AuditDictionaryMapping.EndpointConverter.class)
+    @Column(name = "endpoint_ref")
     private String endpoint;
 
-    @Column(name = "http_method", length = 10)
+    @Convert(converter = AuditDictionaryMapping.HttpMethodConverter.class)
+    @Column(name = "http_method_ref")
     private String httpMethod;
 
     @Column(name = "request_params", columnDefinition = "TEXT")
@@ -100,13 +109,26 @@ public class AuditLog {
     @Column(name = "anomaly_reasons", columnDefinition = "TEXT")
     private String anomalyReasons;
 
-    @CreationTimestamp
+    // Event time, set by whoever creates the entry; spooled and queued events are persisted later
     @Column(nullable = false, updatable = false)
     private LocalDateTime timestamp;
 
     @Column(name = "correlation_id", length = 100)
     private String correlationId;
 
+    // Roll-up summary rows only: number of requests folded into the row and their latency
+    @Column(name = "event_count")
+    private Integer eventCount;
+
+    @Column(name = "latency_min_ms")
+    private Long latencyMinMs;
+
+    @Column(name = "latency_max_ms")
+    private Long latencyMaxMs;
+
+    @Column(name = "latency_sum_ms")
+    private Long latencySumMs;
+
     public enum ActionStatus {
         SUCCESS,
         FAILURE,
@@ -135,9 +157,18 @@ public class AuditLog {
     public static final String ACTION_PERMISSION_GRANT = "PERMISSION_GRANT";
     public static final String ACTION_PERMISSION_REVOKE = "PERMISSION_REVOKE";
     public static final String ACTION_DATA_ACCESS = "DATA_ACCESS";
+    public static final String ACTION_DATA_ACCESS_ROLLUP = "DATA_ACCESS_ROLLUP";
     public static final String ACTION_DATA_EXPORT = "DATA_EXPORT";
     public static final String ACTION_SYSTEM_CONFIG = "SYSTEM_CONFIG";
     public static final String ACTION_SECURITY_ALERT = "SECURITY_ALERT";
+    public static final String ACTION_API_ERROR = "API_ERROR";
+
+    @PrePersist
+    protected void onCreate() {
+        if (timestamp == null) {
+            timestamp = LocalDateTime.now();
+        }
+    }
 
     // Convenience methods
     public boolean isHighRisk() {
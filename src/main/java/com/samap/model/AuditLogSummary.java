@@ -0,0 +1,57 @@
+package com.samap.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of an audit log listing: the short columns of {@link AuditLog} without the TEXT
+ * payloads (details, request parameters, error message, risk factors, anomaly reasons),
+ * which are fetched one entry at a time from the detail endpoint. Repository list queries
+ * select straight into this class, so the omitted columns are never read.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditLogSummary {
+
+    private Long id;
+    private LocalDateTime timestamp;
+    private String username;
+    private String action;
+    private String resource;
+    private String resourceId;
+    private AuditLog.ActionStatus status;
+    private String ipAddress;
+    private String endpoint;
+    private String httpMethod;
+    private Integer responseStatus;
+    private Long executionTimeMs;
+    private AuditLog.RiskLevel riskLevel;
+    private Double riskScore;
+    private Boolean isAnomaly;
+    private String correlationId;
+    private Integer eventCount;
+
+    /**
+     * Summary of a fully loaded row, e.g. one read back from the archive
+     */
+    public static AuditLogSummary of(AuditLog auditLog) {
+        return new AuditLogSummary(auditLog.getId(), auditLog.getTimestamp(), auditLog.getUsername(),
+            auditLog.getAction(), auditLog.getResource(), auditLog.getResourceId(), auditLog.getStatus(),
+            auditLog.getIpAddress(), auditLog.getEndpoint(), auditLog.getHttpMethod(), auditLog.getResponseStatus(),
+            auditLog.getExecutionTimeMs(), auditLog.getRiskLevel(), auditLog.getRiskScore(), auditLog.getIsAnomaly(),
+            auditLog.getCorrelationId(), auditLog.getEventCount());
+    }
+
+    // Convenience methods, as on AuditLog
+    public boolean isHighRisk() {
+        return AuditLog.RiskLevel.HIGH.equals(riskLevel) || AuditLog.RiskLevel.CRITICAL.equals(riskLevel);
+    }
+
+    public boolean isFailedAction() {
+        return AuditLog.ActionStatus.FAILURE.equals(status) || AuditLog.ActionStatus.BLOCKED.equals(status);
+    }
+}
@@ -29,7 +29,8 @@ import java.util.Set;
 public class Permission {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "permissions_seq")
+    @SequenceGenerator(name = "permissions_seq", sequenceName = "permissions_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false, length = 100)
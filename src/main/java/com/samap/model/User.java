@@ -20,7 +20,7 @@ import java.util.Set;
 @Table(name = "users", indexes = {
     @Index(name = "idx_user_username", columnList = "username"),
     @Index(name = "idx_user_email", columnList = "email"),
-    @Index(name = "idx_user_status", columnList = "accountStatus")
+    @Index(name = "idx_user_status", columnList = "account_status")
 })
 @Getter
 @Setter
@@ -31,7 +31,8 @@ import java.util.Set;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false, length = 50)
@@ -1,14 +1,18 @@
 package com.samap.repository;
 
 import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -17,15 +21,63 @@ import java.util.List;
 @Repository
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
 
+    /**
+     * Seek condition for keyset pagination. The redundant "timestamp <= :ts" bound lets
+     * the timestamp index start at the cursor instead of walking past earlier pages.
+     */
+    String KEYSET = "a.timestamp <= :ts AND (a.timestamp < :ts OR a.id < :id)";
+
+    /**
+     * Failed-login condition. The action is bound as a parameter: a literal compared with
+     * the dictionary-encoded column is converted once, when the query is first compiled,
+     * and stays at the unknown reference if LOGIN_FAILED had not been interned yet.
+     */
+    String FAILED_LOGIN = "a.action = :#{T(com.samap.model.AuditLog).ACTION_LOGIN_FAILED}";
+
+    /**
+     * Listing projection: selects only the {@link AuditLogSummary} columns, leaving the
+     * TEXT payloads unread. List queries return summaries; the full row is loaded by id.
+     */
+    String SUMMARY = "SELECT new com.samap.model.AuditLogSummary(a.id, a.timestamp, a.username, a.action, " +
+        "a.resource, a.resourceId, a.status, a.ipAddress, a.endpoint, a.httpMethod, a.responseStatus, " +
+        "a.executionTimeMs, a.riskLevel, a.riskScore, a.isAnomaly, a.correlationId, a.eventCount) FROM AuditLog a";
+
+    /**
+     * List all audit logs
+     */
+    @Query(value = SUMMARY, countQuery = "SELECT COUNT(a) FROM AuditLog a")
+    Page<AuditLogSummary> findAllSummaries(Pageable pageable);
+
+    /**
+     * List audit logs by id, in no particular order
+     */
+    @Query(SUMMARY + " WHERE a.id IN :ids")
+    List<AuditLogSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Find audit logs by username
      */
     Page<AuditLog> findByUsernameOrderByTimestampDesc(String username, Pageable pageable);
 
+    /**
+     * List audit logs by username
+     */
+    @Query(value = SUMMARY + " WHERE a.username = :username ORDER BY a.timestamp DESC",
+           countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE a.username = :username")
+    Page<AuditLogSummary> findSummariesByUsername(@Param("username") String username, Pageable pageable);
+
+    /**
+     * Find every audit log written under a correlation ID, in order
+     */
+    @Query(SUMMARY + " WHERE a.correlationId = :correlationId ORDER BY a.timestamp ASC, a.id ASC")
+    List<AuditLogSummary> findByCorrelationIdOrderByTimestampAscIdAsc(@Param("correlationId") String correlationId);
+
     /**
      * Find audit logs by action
      */
-    Page<AuditLog> findByActionOrderByTimestampDesc(String action, Pageable pageable);
+    @Query(value = SUMMARY + " WHERE a.action = :action ORDER BY a.timestamp DESC",
+           countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE a.action = :action")
+    Page<AuditLogSummary> findByActionOrderByTimestampDesc(@Param("action") String action, Pageable pageable);
 
     /**
      * Find audit logs by status
@@ -40,90 +92,120 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     /**
      * Find audit logs within date range
      */
-    @Query("SELECT a FROM AuditLog a WHERE a.timestamp BETWEEN :startDate AND :endDate ORDER BY a.timestamp DESC")
-    Page<AuditLog> findByTimestampBetween(@Param("startDate") LocalDateTime startDate, 
-                                         @Param("endDate") LocalDateTime endDate, 
-                                         Pageable pageable);
+    @Query(value = SUMMARY + " WHERE a.timestamp BETWEEN :startDate AND :endDate ORDER BY a.timestamp DESC",
+           countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE a.timestamp BETWEEN :startDate AND :endDate")
+    Page<AuditLogSummary> findByTimestampBetween(@Param("startDate") LocalDateTime startDate,
+                                                 @Param("endDate") LocalDateTime endDate,
+                                                 Pageable pageable);
+
+    /**
+     * Oldest audit logs before the cutoff, for archiving
+     */
+    List<AuditLog> findByTimestampBeforeOrderByTimestampAscIdAsc(LocalDateTime cutoff, Pageable pageable);
 
     /**
      * Find failed login attempts
      */
-    @Query("SELECT a FROM AuditLog a WHERE a.action = 'LOGIN_FAILED' ORDER BY a.timestamp DESC")
-    Page<AuditLog> findFailedLoginAttempts(Pageable pageable);
+    @Query(value = SUMMARY + " WHERE " + FAILED_LOGIN + " ORDER BY a.timestamp DESC",
+           countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE " + FAILED_LOGIN)
+    Page<AuditLogSummary> findFailedLoginAttempts(Pageable pageable);
 
     /**
      * Find failed login attempts by username
      */
-    @Query("SELECT a FROM AuditLog a WHERE a.username = :username AND a.action = 'LOGIN_FAILED' ORDER BY a.timestamp DESC")
+    @Query("SELECT a FROM AuditLog a WHERE a.username = :username AND " + FAILED_LOGIN + " ORDER BY a.timestamp DESC")
     List<AuditLog> findFailedLoginAttemptsByUsername(@Param("username") String username);
 
     /**
      * Find failed login attempts by IP address
      */
-    @Query("SELECT a FROM AuditLog a WHERE a.ipAddress = :ipAddress AND a.action = 'LOGIN_FAILED' ORDER BY a.timestamp DESC")
+    @Query("SELECT a FROM AuditLog a WHERE a.ipAddress = :ipAddress AND " + FAILED_LOGIN + " ORDER BY a.timestamp DESC")
     List<AuditLog> findFailedLoginAttemptsByIp(@Param("ipAddress") String ipAddress);
 
     /**
      * Find high-risk activities
      */
-    @Query("SELECT a FROM AuditLog a WHERE a.riskLevel IN ('HIGH', 'CRITICAL') ORDER BY a.timestamp DESC")
-    Page<AuditLog> findHighRiskActivities(Pageable pageable);
+    @Query(value = SUMMARY + " WHERE a.riskLevel IN ('HIGH', 'CRITICAL') ORDER BY a.timestamp DESC",
+           countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE a.riskLevel IN ('HIGH', 'CRITICAL')")
+    Page<AuditLogSummary> findHighRiskActivities(Pageable pageable);
 
     /**
      * Find anomalous activities
      */
-    Page<AuditLog> findByIsAnomalyTrueOrderByTimestampDesc(Pageable pageable);
+    @Query(value = SUMMARY + " WHERE a.isAnomaly = true ORDER BY a.timestamp DESC",
+           countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE a.isAnomaly = true")
+    Page<AuditLogSummary> findByIsAnomalyTrueOrderByTimestampDesc(Pageable pageable);
 
     /**
      * Find activities by IP address
      */
     Page<AuditLog> findByIpAddressOrderByTimestampDesc(String ipAddress, Pageable pageable);
 
+    /** Search condition, shared by the listing and its count query */
+    String SEARCH_PREDICATE = "LOWER(a.username) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+        "a.action IN :actions OR " +
+        "a.resource IN :resources OR " +
+        "LOWER(a.ipAddress) LIKE LOWER(CONCAT('%', :searchTerm, '%'))";
+
     /**
-     * Search audit logs
+     * Search audit logs. Action and resource are dictionary encoded, so callers pass
+     * the dictionary values that match the term instead of matching the column text.
      */
-    @Query("SELECT a FROM AuditLog a WHERE " +
-           "LOWER(a.username) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-           "LOWER(a.action) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-           "LOWER(a.resource) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-           "LOWER(a.ipAddress) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
-           "ORDER BY a.timestamp DESC")
-    Page<AuditLog> searchAuditLogs(@Param("searchTerm") String searchTerm, Pageable pageable);
+    @Query(value = SUMMARY + " WHERE " + SEARCH_PREDICATE + " ORDER BY a.timestamp DESC",
+           countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE " + SEARCH_PREDICATE)
+    Page<AuditLogSummary> searchAuditLogs(@Param("searchTerm") String searchTerm,
+                                          @Param("actions") List<String> actions,
+                                          @Param("resources") List<String> resources,
+                                          Pageable pageable);
 
     /**
      * Count failed login attempts in time period
      */
-    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.action = 'LOGIN_FAILED' AND a.timestamp >= :since")
+    @Query("SELECT COUNT(a) FROM AuditLog a WHERE " + FAILED_LOGIN + " AND a.timestamp >= :since")
     long countFailedLoginsSince(@Param("since") LocalDateTime since);
 
     /**
      * Count failed login attempts by username in time period
      */
-    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.username = :username AND a.action = 'LOGIN_FAILED' AND a.timestamp >= :since")
+    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.username = :username AND " + FAILED_LOGIN + " AND a.timestamp >= :since")
     long countFailedLoginsByUserSince(@Param("username") String username, @Param("since") LocalDateTime since);
 
     /**
      * Count failed login attempts by IP in time period
      */
-    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.ipAddress = :ipAddress AND a.action = 'LOGIN_FAILED' AND a.timestamp >= :since")
+    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.ipAddress = :ipAddress AND " + FAILED_LOGIN + " AND a.timestamp >= :since")
     long countFailedLoginsByIpSince(@Param("ipAddress") String ipAddress, @Param("since") LocalDateTime since);
 
     /**
-     * Get activity statistics
+     * Get activity statistics; roll-up summary rows count once per folded event
      */
     @Query("SELECT " +
-           "COUNT(a) as totalActivities, " +
-           "SUM(CASE WHEN a.status = 'SUCCESS' THEN 1 ELSE 0 END) as successfulActivities, " +
-           "SUM(CASE WHEN a.status = 'FAILURE' THEN 1 ELSE 0 END) as failedActivities, " +
-           "SUM(CASE WHEN a.riskLevel IN ('HIGH', 'CRITICAL') THEN 1 ELSE 0 END) as highRiskActivities, " +
-           "SUM(CASE WHEN a.isAnomaly = true THEN 1 ELSE 0 END) as anomalousActivities " +
+           "COALESCE(SUM(COALESCE(a.eventCount, 1)), 0) as totalActivities, " +
+           "COALESCE(SUM(CASE WHEN a.status = 'SUCCESS' THEN COALESCE(a.eventCount, 1) ELSE 0 END), 0) as successfulActivities, " +
+           "COALESCE(SUM(CASE WHEN a.status = 'FAILURE' THEN COALESCE(a.eventCount, 1) ELSE 0 END), 0) as failedActivities, " +
+           "COALESCE(SUM(CASE WHEN a.riskLevel IN ('HIGH', 'CRITICAL') THEN COALESCE(a.eventCount, 1) ELSE 0 END), 0) as highRiskActivities, " +
+           "COALESCE(SUM(CASE WHEN a.isAnomaly = true THEN COALESCE(a.eventCount, 1) ELSE 0 END), 0) as anomalousActivities " +
            "FROM AuditLog a WHERE a.timestamp >= :since")
     Object[] getActivityStatistics(@Param("since") LocalDateTime since);
 
+    /**
+     * One user's activity totals since the given time, for risk reports: a single row of
+     * total, high risk, anomalous, risk score sum and number of scored events. Roll-up
+     * summary rows count once per folded event.
+     */
+    @Query("SELECT " +
+           "COALESCE(SUM(COALESCE(a.eventCount, 1)), 0), " +
+           "COALESCE(SUM(CASE WHEN a.riskLevel IN ('HIGH', 'CRITICAL') THEN COALESCE(a.eventCount, 1) ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN a.isAnomaly = true THEN COALESCE(a.eventCount, 1) ELSE 0 END), 0), " +
+           "COALESCE(SUM(a.riskScore * COALESCE(a.eventCount, 1)), 0), " +
+           "COALESCE(SUM(CASE WHEN a.riskScore IS NOT NULL THEN COALESCE(a.eventCount, 1) ELSE 0 END), 0) " +
+           "FROM AuditLog a WHERE a.username = :username AND a.timestamp >= :since")
+    List<Object[]> getUserRiskTotals(@Param("username") String username, @Param("since") LocalDateTime since);
+
     /**
      * Get top active users
      */
-    @Query("SELECT a.username, COUNT(a) as activityCount FROM AuditLog a " +
+    @Query("SELECT a.username, SUM(COALESCE(a.eventCount, 1)) as activityCount FROM AuditLog a " +
            "WHERE a.timestamp >= :since " +
            "GROUP BY a.username " +
            "ORDER BY activityCount DESC")
@@ -141,16 +223,51 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     /**
      * Get activity trends by hour
      */
-    @Query("SELECT HOUR(a.timestamp) as hour, COUNT(a) as activityCount FROM AuditLog a " +
+    @Query("SELECT HOUR(a.timestamp) as hour, SUM(COALESCE(a.eventCount, 1)) as activityCount FROM AuditLog a " +
            "WHERE a.timestamp >= :since " +
            "GROUP BY HOUR(a.timestamp) " +
            "ORDER BY hour")
     List<Object[]> getActivityTrendsByHour(@Param("since") LocalDateTime since);
 
     /**
-     * Delete old audit logs
+     * Delete old audit logs in a single bulk statement
      */
-    void deleteByTimestampBefore(LocalDateTime cutoffDate);
+    @Modifying
+    @Query("DELETE FROM AuditLog a WHERE a.timestamp < :cutoffDate")
+    int deleteByTimestampBefore(@Param("cutoffDate") LocalDateTime cutoffDate);
+
+    // Keyset pagination: rows strictly after the (timestamp, id) cursor, newest first,
+    // fetched as a Slice so no count query runs
+
+    @Query(SUMMARY + " WHERE " + KEYSET + " ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<AuditLogSummary> findAfter(@Param("ts") LocalDateTime ts, @Param("id") long id, Pageable pageable);
+
+    @Query(SUMMARY + " WHERE a.username = :username AND " + KEYSET +
+           " ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<AuditLogSummary> findByUsernameAfter(@Param("username") String username,
+                                               @Param("ts") LocalDateTime ts, @Param("id") long id, Pageable pageable);
+
+    @Query(SUMMARY + " WHERE a.action = :action AND " + KEYSET +
+           " ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<AuditLogSummary> findByActionAfter(@Param("action") String action,
+                                             @Param("ts") LocalDateTime ts, @Param("id") long id, Pageable pageable);
+
+    @Query(SUMMARY + " WHERE a.riskLevel IN ('HIGH', 'CRITICAL') AND " + KEYSET +
+           " ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<AuditLogSummary> findHighRiskActivitiesAfter(@Param("ts") LocalDateTime ts, @Param("id") long id, Pageable pageable);
+
+    @Query(SUMMARY + " WHERE a.isAnomaly = true AND " + KEYSET +
+           " ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<AuditLogSummary> findAnomalousActivitiesAfter(@Param("ts") LocalDateTime ts, @Param("id") long id, Pageable pageable);
 
+    @Query(SUMMARY + " WHERE " + FAILED_LOGIN + " AND " + KEYSET +
+           " ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<AuditLogSummary> findFailedLoginAttemptsAfter(@Param("ts") LocalDateTime ts, @Param("id") long id, Pageable pageable);
 
+    @Query(SUMMARY + " WHERE a.timestamp BETWEEN :startDate AND :endDate AND " + KEYSET +
+           " ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<AuditLogSummary> findByTimestampBetweenAfter(@Param("startDate") LocalDateTime startDate,
+                                                       @Param("endDate") LocalDateTime endDate,
+                                                       @Param("ts") LocalDateTime ts, @Param("id") long id,
+                                                       Pageable pageable);
 }
@@ -0,0 +1,499 @@
+package com.samap.service;
+
+import com.samap.config.AsyncConfig;
+import com.samap.model.AuditDictionaryEntry.Kind;
+import com.samap.model.AuditLog;
+import com.samap.service.AuditService.ActivityStatistics;
+import com.samap.service.AuditService.HourlyActivity;
+import com.samap.service.AuditService.UserActivity;
+import com.samap.service.RiskAssessmentService.RiskTotals;
+import jakarta.persistence.PrePersist;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Minute and hour roll-ups of audit activity (see {@link com.samap.model.AuditActivityRollup}).
+ *
+ * Every persisted audit row is counted by {@link RollupListener}. Counts are collected
+ * per transaction and upserted just before it commits, on the same connection, so the
+ * roll-ups change exactly when the raw rows do; a batch of a few hundred events becomes
+ * one upsert per distinct bucket. Statistics for a window are then summed from whole
+ * hours plus the minutes at either edge, independent of the size of audit_logs.
+ *
+ * Rows are bucketed by their own timestamp, so events that reach the database late
+ * (queued, spooled or replayed) are counted when they happened.
+ *
+ * Minute rows are kept for {@code audit.activity-rollup.minute-retention-hours}; older
+ * window edges fall back to whole hours. Shortly after startup, activity older than the
+ * oldest bucket of each table is backfilled from audit_logs in the background, one
+ * time range per statement, so enabling roll-ups on an existing database only loses
+ * the part of the current bucket written before the upgrade.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditActivityRollupService {
+
+    private static final String MINUTE_TABLE = "audit_activity_minute";
+    private static final String HOUR_TABLE = "audit_activity_hour";
+    private static final String COLUMNS =
+        "bucket_start, username, action_ref, status, risk_level, event_count, anomaly_count, risk_score_sum, risk_scored_count";
+
+    // Deliberately no JPA dependencies: the entity listener that needs this bean is created while JPA starts
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditDictionaryService auditDictionaryService;
+
+    @Value("${audit.activity-rollup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.activity-rollup.minute-retention-hours:168}")
+    private int minuteRetentionHours;
+
+    @Value("${audit.activity-rollup.hour-retention-days:400}")
+    private int hourRetentionDays;
+
+    @Value("${audit.activity-rollup.backfill:true}")
+    private boolean backfill;
+
+    @Value("${audit.activity-rollup.backfill-chunk-hours:24}")
+    private int backfillChunkHours;
+
+    private volatile boolean backfilled;
+
+    private volatile Boolean postgres;
+
+    /**
+     * Counts audit rows as they are persisted. Created through Spring's bean container.
+     *
+     * Pre-persist rather than post-persist: Hibernate runs post-persist callbacks while
+     * flushing, which for a commit-time flush is after before-commit synchronizations.
+     */
+    public static class RollupListener {
+        private final AuditActivityRollupService rollups;
+
+        public RollupListener(AuditActivityRollupService rollups) {
+            this.rollups = rollups;
+        }
+
+        @PrePersist
+        public void count(AuditLog auditLog) {
+            rollups.record(auditLog);
+        }
+    }
+
+    /**
+     * Backfill activity that predates the roll-ups. Runs off the startup path; a run
+     * that fails is retried later and resumes from the oldest bucket written so far.
+     */
+    @Scheduled(initialDelayString = "${audit.activity-rollup.backfill-delay-ms:30000}",
+               fixedDelayString = "${audit.activity-rollup.backfill-retry-ms:3600000}")
+    @Async(AsyncConfig.AUDIT_EXECUTOR)
+    public void backfillHistory() {
+        if (!enabled || !backfill || backfilled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int hours = backfill(HOUR_TABLE, ChronoUnit.HOURS,
+                hourRetentionDays > 0 ? LocalDateTime.now().minusDays(hourRetentionDays) : null);
+            int minutes = backfill(MINUTE_TABLE, ChronoUnit.MINUTES, LocalDateTime.now().minusHours(minuteRetentionHours));
+            backfilled = true;
+            if (hours > 0 || minutes > 0) {
+                log.info("Backfilled {} hour and {} minute activity roll-up rows from audit_logs in {} ms",
+                    hours, minutes, System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            log.error("Activity roll-up backfill failed, will retry: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Whether statistics can be read from the roll-ups
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Count a persisted audit row; applied when the surrounding transaction commits
+     */
+    void record(AuditLog auditLog) {
+        if (!enabled) {
+            return;
+        }
+        Bucket bucket = Bucket.of(auditLog, auditDictionaryService.lookup(Kind.ACTION, auditLog.getAction()));
+        Counts counts = Counts.of(auditLog);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Bucket, Counts> single = new TreeMap<>();
+            single.put(bucket, counts);
+            apply(single);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Bucket, Counts> pending = (Map<Bucket, Counts>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Bucket, Counts> deltas = new TreeMap<>();
+            TransactionSynchronizationManager.bindResource(this, deltas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    apply(deltas);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AuditActivityRollupService.this);
+                }
+            });
+            pending = deltas;
+        }
+        pending.computeIfAbsent(bucket, key -> new Counts()).add(counts);
+    }
+
+    /**
+     * Upsert minute deltas and their hourly sums. Buckets are written in key order so
+     * concurrent writers lock rows in the same order and cannot deadlock.
+     */
+    private void apply(Map<Bucket, Counts> minuteDeltas) {
+        if (minuteDeltas.isEmpty()) {
+            return;
+        }
+        Map<Bucket, Counts> hourDeltas = new TreeMap<>();
+        minuteDeltas.forEach((bucket, counts) ->
+            hourDeltas.computeIfAbsent(bucket.truncatedTo(ChronoUnit.HOURS), key -> new Counts()).add(counts));
+        upsert(MINUTE_TABLE, minuteDeltas);
+        upsert(HOUR_TABLE, hourDeltas);
+    }
+
+    private void upsert(String table, Map<Bucket, Counts> deltas) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((bucket, counts) -> rows.add(new Object[] {
+            Timestamp.valueOf(bucket.start()), bucket.username(), bucket.actionRef(), bucket.status(), bucket.riskLevel(),
+            counts.events, counts.anomalies, counts.riskScoreSum, counts.riskScored}));
+
+        // Risk score columns were added later and are null on rows written before
+        String sql = isPostgres()
+            ? "INSERT INTO " + table + " (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+              "ON CONFLICT (bucket_start, username, action_ref, status, risk_level) DO UPDATE SET " +
+              "event_count = " + table + ".event_count + EXCLUDED.event_count, " +
+              "anomaly_count = " + table + ".anomaly_count + EXCLUDED.anomaly_count, " +
+              "risk_score_sum = COALESCE(" + table + ".risk_score_sum, 0) + EXCLUDED.risk_score_sum, " +
+              "risk_scored_count = COALESCE(" + table + ".risk_scored_count, 0) + EXCLUDED.risk_scored_count"
+            : "MERGE INTO " + table + " t USING (VALUES (CAST(? AS TIMESTAMP), CAST(? AS VARCHAR(50)), CAST(? AS INTEGER), " +
+              "CAST(? AS VARCHAR(20)), CAST(? AS VARCHAR(20)), CAST(? AS BIGINT), CAST(? AS BIGINT), " +
+              "CAST(? AS DOUBLE PRECISION), CAST(? AS BIGINT))) " +
+              "v(bucket_start, username, action_ref, status, risk_level, event_count, anomaly_count, " +
+              "risk_score_sum, risk_scored_count) " +
+              "ON t.bucket_start = v.bucket_start AND t.username = v.username AND t.action_ref = v.action_ref " +
+              "AND t.status = v.status AND t.risk_level = v.risk_level " +
+              "WHEN MATCHED THEN UPDATE SET event_count = t.event_count + v.event_count, " +
+              "anomaly_count = t.anomaly_count + v.anomaly_count, " +
+              "risk_score_sum = COALESCE(t.risk_score_sum, 0) + v.risk_score_sum, " +
+              "risk_scored_count = COALESCE(t.risk_scored_count, 0) + v.risk_scored_count " +
+              "WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ") VALUES (v.bucket_start, v.username, v.action_ref, " +
+              "v.status, v.risk_level, v.event_count, v.anomaly_count, v.risk_score_sum, v.risk_scored_count)";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    /**
+     * Activity totals since the given time
+     */
+    public ActivityStatistics getActivityStatistics(LocalDateTime since) {
+        Window window = Window.since(since, minuteRetentionHours);
+        Map<String, Object> totals = named().queryForMap(
+            "SELECT COALESCE(SUM(event_count), 0) AS total, " +
+            "COALESCE(SUM(CASE WHEN status = 'SUCCESS' THEN event_count ELSE 0 END), 0) AS successful, " +
+            "COALESCE(SUM(CASE WHEN status = 'FAILURE' THEN event_count ELSE 0 END), 0) AS failed, " +
+            "COALESCE(SUM(CASE WHEN risk_level IN ('HIGH', 'CRITICAL') THEN event_count ELSE 0 END), 0) AS high_risk, " +
+            "COALESCE(SUM(anomaly_count), 0) AS anomalous " +
+            "FROM (" + window.sql("status, risk_level, event_count, anomaly_count") + ") r",
+            window.params());
+
+        return ActivityStatistics.builder()
+                .totalActivities(longValue(totals, "total"))
+                .successfulActivities(longValue(totals, "successful"))
+                .failedActivities(longValue(totals, "failed"))
+                .highRiskActivities(longValue(totals, "high_risk"))
+                .anomalousActivities(longValue(totals, "anomalous"))
+                .build();
+    }
+
+    /**
+     * Most active users since the given time
+     */
+    public List<UserActivity> getTopActiveUsers(LocalDateTime since, Pageable pageable) {
+        Window window = Window.since(since, minuteRetentionHours);
+        MapSqlParameterSource params = window.params()
+            .addValue("limit", pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE)
+            .addValue("offset", pageable.isPaged() ? pageable.getOffset() : 0);
+        return named().query(
+            "SELECT username, SUM(event_count) AS activity_count " +
+            "FROM (" + window.sql("username, event_count") + ") r " +
+            "GROUP BY username ORDER BY activity_count DESC, username LIMIT :limit OFFSET :offset",
+            params,
+            (rs, rowNum) -> new UserActivity(rs.getString("username"), rs.getLong("activity_count")));
+    }
+
+    /**
+     * Activity per hour of day since the given time
+     */
+    public List<HourlyActivity> getActivityTrendsByHour(LocalDateTime since) {
+        Window window = Window.since(since, minuteRetentionHours);
+        return named().query(
+            "SELECT EXTRACT(HOUR FROM bucket_start) AS hour_of_day, SUM(event_count) AS activity_count " +
+            "FROM (" + window.sql("bucket_start, event_count") + ") r " +
+            "GROUP BY EXTRACT(HOUR FROM bucket_start) ORDER BY hour_of_day",
+            window.params(),
+            (rs, rowNum) -> new HourlyActivity(rs.getInt("hour_of_day"), rs.getLong("activity_count")));
+    }
+
+    /**
+     * One user's activity totals since the given time; reads only that user's buckets
+     */
+    public RiskTotals getUserRiskTotals(String username, LocalDateTime since) {
+        Window window = Window.since(since, minuteRetentionHours);
+        Map<String, Object> totals = named().queryForMap(
+            "SELECT COALESCE(SUM(event_count), 0) AS total, " +
+            "COALESCE(SUM(CASE WHEN risk_level IN ('HIGH', 'CRITICAL') THEN event_count ELSE 0 END), 0) AS high_risk, " +
+            "COALESCE(SUM(anomaly_count), 0) AS anomalous, " +
+            "COALESCE(SUM(risk_score_sum), 0) AS risk_score_sum, " +
+            "COALESCE(SUM(risk_scored_count), 0) AS risk_scored " +
+            "FROM (" + window.sql("event_count, risk_level, anomaly_count, risk_score_sum, risk_scored_count",
+                "username = :username") + ") r",
+            window.params().addValue("username", username));
+
+        return new RiskTotals(
+            longValue(totals, "total"),
+            longValue(totals, "high_risk"),
+            longValue(totals, "anomalous"),
+            doubleValue(totals, "risk_score_sum"),
+            longValue(totals, "risk_scored"));
+    }
+
+    /**
+     * Drop roll-up rows past their retention
+     */
+    @Scheduled(cron = "${audit.activity-rollup.prune-cron:0 5 * * * ?}")
+    @Async(AsyncConfig.AUDIT_EXECUTOR)
+    public void pruneExpiredBuckets() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int minutes = jdbcTemplate.update("DELETE FROM " + MINUTE_TABLE + " WHERE bucket_start < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(minuteRetentionHours)));
+            int hours = hourRetentionDays > 0
+                ? jdbcTemplate.update("DELETE FROM " + HOUR_TABLE + " WHERE bucket_start < ?",
+                    Timestamp.valueOf(LocalDateTime.now().minusDays(hourRetentionDays)))
+                : 0;
+            log.debug("Pruned {} minute and {} hour activity roll-up rows", minutes, hours);
+        } catch (Exception e) {
+            log.error("Failed to prune activity roll-ups: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Aggregate audit rows older than the table's oldest bucket into it, walking back
+     * from that bucket one chunk at a time; each chunk is its own statement and commit,
+     * so no single statement scans all of audit_logs and an interrupted run resumes
+     * where it stopped. Buckets at or after the starting point were counted as the rows
+     * were written, so nothing is counted twice. The exception is a late event older
+     * than the backfill position that arrives while the backfill runs, which is counted
+     * live and again by its chunk.
+     */
+    int backfill(String table, ChronoUnit unit, LocalDateTime notBefore) {
+        LocalDateTime oldestBucket = jdbcTemplate.queryForObject("SELECT MIN(bucket_start) FROM " + table, LocalDateTime.class);
+        LocalDateTime oldestEvent = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM audit_logs", LocalDateTime.class);
+        if (oldestEvent == null) {
+            return 0;
+        }
+        LocalDateTime upper = oldestBucket != null ? oldestBucket : LocalDateTime.now().truncatedTo(unit);
+        LocalDateTime floor = oldestEvent.truncatedTo(unit);
+        if (notBefore != null && notBefore.truncatedTo(unit).isAfter(floor)) {
+            floor = notBefore.truncatedTo(unit);
+        }
+
+        int rows = 0;
+        while (upper.isAfter(floor)) {
+            LocalDateTime lower = upper.minusHours(Math.max(1, backfillChunkHours));
+            if (lower.isBefore(floor)) {
+                lower = floor;
+            }
+            rows += backfillChunk(table, unit, lower, upper);
+            upper = lower;
+        }
+        return rows;
+    }
+
+    // Chunk bounds are aligned to the table's unit, so every bucket falls in exactly one chunk
+    private int backfillChunk(String table, ChronoUnit unit, LocalDateTime from, LocalDateTime to) {
+        String bucket = "DATE_TRUNC('" + (unit == ChronoUnit.HOURS ? "hour" : "minute") + "', a.timestamp)";
+        String keys = bucket + ", a.username, COALESCE(a.action_ref, 0), a.status, COALESCE(a.risk_level, 'LOW')";
+        MapSqlParameterSource params = new MapSqlParameterSource("from", from).addValue("to", to);
+        return named().update(
+            "INSERT INTO " + table + " (" + COLUMNS + ") " +
+            "SELECT " + keys + ", SUM(COALESCE(a.event_count, 1)), " +
+            "SUM(CASE WHEN a.is_anomaly = TRUE THEN COALESCE(a.event_count, 1) ELSE 0 END), " +
+            "COALESCE(SUM(a.risk_score * COALESCE(a.event_count, 1)), 0), " +
+            "SUM(CASE WHEN a.risk_score IS NOT NULL THEN COALESCE(a.event_count, 1) ELSE 0 END) " +
+            "FROM audit_logs a WHERE a.timestamp >= :from AND a.timestamp < :to " +
+            "GROUP BY " + keys,
+            params);
+    }
+
+    private NamedParameterJdbcTemplate named() {
+        return new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    private long longValue(Map<String, Object> row, String column) {
+        return number(row, column).longValue();
+    }
+
+    private double doubleValue(Map<String, Object> row, String column) {
+        return number(row, column).doubleValue();
+    }
+
+    private Number number(Map<String, Object> row, String column) {
+        Object value = row.entrySet().stream()
+            .filter(entry -> entry.getKey().equalsIgnoreCase(column))
+            .map(Map.Entry::getValue)
+            .filter(Objects::nonNull)
+            .findFirst()
+            .orElse(0L);
+        return (Number) value;
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = result;
+        }
+        return result;
+    }
+
+    /**
+     * Counts added to one bucket
+     */
+    static final class Counts {
+        private long events;
+        private long anomalies;
+        private double riskScoreSum;
+        private long riskScored;
+
+        static Counts of(AuditLog auditLog) {
+            Counts counts = new Counts();
+            counts.events = auditLog.getEventCount() != null ? auditLog.getEventCount() : 1;
+            counts.anomalies = Boolean.TRUE.equals(auditLog.getIsAnomaly()) ? counts.events : 0;
+            if (auditLog.getRiskScore() != null) {
+                counts.riskScoreSum = auditLog.getRiskScore() * counts.events;
+                counts.riskScored = counts.events;
+            }
+            return counts;
+        }
+
+        void add(Counts other) {
+            events += other.events;
+            anomalies += other.anomalies;
+            riskScoreSum += other.riskScoreSum;
+            riskScored += other.riskScored;
+        }
+    }
+
+    /**
+     * Roll-up key of one audit row at minute granularity
+     */
+    record Bucket(LocalDateTime start, String username, int actionRef, String status, String riskLevel)
+            implements Comparable<Bucket> {
+
+        private static final Comparator<Bucket> ORDER = Comparator.comparing(Bucket::start)
+            .thenComparing(Bucket::username)
+            .thenComparingInt(Bucket::actionRef)
+            .thenComparing(Bucket::status)
+            .thenComparing(Bucket::riskLevel);
+
+        static Bucket of(AuditLog auditLog, Integer actionRef) {
+            // Entity listeners run before AuditLog's own pre-persist fills in a missing timestamp
+            LocalDateTime at = auditLog.getTimestamp() != null ? auditLog.getTimestamp() : LocalDateTime.now();
+            return new Bucket(
+                at.truncatedTo(ChronoUnit.MINUTES),
+                auditLog.getUsername(),
+                actionRef != null ? actionRef : AuditDictionaryService.UNKNOWN_REF,
+                auditLog.getStatus() != null ? auditLog.getStatus().name() : AuditLog.ActionStatus.SUCCESS.name(),
+                auditLog.getRiskLevel() != null ? auditLog.getRiskLevel().name() : AuditLog.RiskLevel.LOW.name());
+        }
+
+        Bucket truncatedTo(ChronoUnit unit) {
+            return new Bucket(start.truncatedTo(unit), username, actionRef, status, riskLevel);
+        }
+
+        @Override
+        public int compareTo(Bucket other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**
+     * A statistics window split into whole hours read from the hour table and the
+     * minutes at either edge read from the minute table
+     */
+    private record Window(LocalDateTime since, LocalDateTime hourFrom, LocalDateTime hourTo) {
+
+        static Window since(LocalDateTime since, int minuteRetentionHours) {
+            LocalDateTime sinceMinute = since.truncatedTo(ChronoUnit.MINUTES);
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime hourFrom = since.truncatedTo(ChronoUnit.HOURS);
+            // Leading minutes that are still retained are read exactly; otherwise the whole first hour counts
+            if (hourFrom.isBefore(sinceMinute) && !sinceMinute.isBefore(now.minusHours(minuteRetentionHours))) {
+                hourFrom = hourFrom.plusHours(1);
+            }
+            LocalDateTime hourTo = now.truncatedTo(ChronoUnit.HOURS);
+            if (!hourFrom.isBefore(hourTo)) {
+                return new Window(sinceMinute, sinceMinute, sinceMinute);
+            }
+            return new Window(sinceMinute, hourFrom, hourTo);
+        }
+
+        String sql(String columns) {
+            return sql(columns, "TRUE");
+        }
+
+        String sql(String columns, String condition) {
+            return "SELECT " + columns + " FROM " + HOUR_TABLE +
+                " WHERE " + condition + " AND bucket_start >= :hourFrom AND bucket_start < :hourTo" +
+                " UNION ALL SELECT " + columns + " FROM " + MINUTE_TABLE +
+                " WHERE " + condition + " AND ((bucket_start >= :since AND bucket_start < :hourFrom) OR bucket_start >= :hourTo)";
+        }
+
+        MapSqlParameterSource params() {
+            return new MapSqlParameterSource("since", since)
+                .addValue("hourFrom", hourFrom)
+                .addValue("hourTo", hourTo);
+        }
+    }
+}
@@ -0,0 +1,569 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable, column-oriented file holding archived audit rows.
+ *
+ * Layout: an uncompressed header (row count, id and timestamp ranges, username bloom
+ * filter) followed by one deflate-compressed block per column. Timestamps and ids are
+ * delta encoded and every string column is dictionary encoded, which is what makes
+ * repetitive audit data compress well. Readers can prune a segment from the header
+ * alone and only decode the remaining columns when at least one row matches.
+ */
+public final class AuditArchiveSegment {
+
+    private static final int MAGIC = 0x53414152; // "SAAR"
+    private static final short VERSION = 2;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final List<StringColumn> STRING_COLUMNS = List.of(
+        new StringColumn(AuditLog::getUsername, AuditLog::setUsername),
+        new StringColumn(AuditLog::getAction, AuditLog::setAction),
+        new StringColumn(AuditLog::getResource, AuditLog::setResource),
+        new StringColumn(AuditLog::getResourceId, AuditLog::setResourceId),
+        new StringColumn(a -> a.getStatus() != null ? a.getStatus().name() : null,
+            (a, v) -> a.setStatus(v != null ? AuditLog.ActionStatus.valueOf(v) : null)),
+        new StringColumn(AuditLog::getIpAddress, AuditLog::setIpAddress),
+        new StringColumn(AuditLog::getUserAgent, AuditLog::setUserAgent),
+        new StringColumn(AuditLog::getSessionId, AuditLog::setSessionId),
+        new StringColumn(AuditLog::getEndpoint, AuditLog::setEndpoint),
+        new StringColumn(AuditLog::getHttpMethod, AuditLog::setHttpMethod),
+        new StringColumn(AuditLog::getRequestParams, AuditLog::setRequestParams),
+        new StringColumn(AuditLog::getDetails, AuditLog::setDetails),
+        new StringColumn(AuditLog::getErrorMessage, AuditLog::setErrorMessage),
+        new StringColumn(a -> a.getRiskLevel() != null ? a.getRiskLevel().name() : null,
+            (a, v) -> a.setRiskLevel(v != null ? AuditLog.RiskLevel.valueOf(v) : null)),
+        new StringColumn(AuditLog::getRiskFactors, AuditLog::setRiskFactors),
+        new StringColumn(AuditLog::getLocationCountry, AuditLog::setLocationCountry),
+        new StringColumn(AuditLog::getLocationCity, AuditLog::setLocationCity),
+        new StringColumn(AuditLog::getDeviceFingerprint, AuditLog::setDeviceFingerprint),
+        new StringColumn(AuditLog::getAnomalyReasons, AuditLog::setAnomalyReasons),
+        new StringColumn(AuditLog::getCorrelationId, AuditLog::setCorrelationId)
+    );
+
+    private static final int USERNAME_COLUMN = 0;
+
+    private final Path path;
+    private final short version;
+    private final int rowCount;
+    private final long minId;
+    private final long maxId;
+    private final LocalDateTime minTimestamp;
+    private final LocalDateTime maxTimestamp;
+    private final BloomFilter usernames;
+
+    private AuditArchiveSegment(Path path, short version, int rowCount, long minId, long maxId,
+                                LocalDateTime minTimestamp, LocalDateTime maxTimestamp, BloomFilter usernames) {
+        this.path = path;
+        this.version = version;
+        this.rowCount = rowCount;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.usernames = usernames;
+    }
+
+    public Path getPath() { return path; }
+    public int getRowCount() { return rowCount; }
+    public long getMinId() { return minId; }
+    public long getMaxId() { return maxId; }
+    public LocalDateTime getMinTimestamp() { return minTimestamp; }
+    public LocalDateTime getMaxTimestamp() { return maxTimestamp; }
+
+    /**
+     * Whether the segment may hold rows in the range; null bounds are open
+     */
+    public boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        return (start == null || !maxTimestamp.isBefore(start)) && (end == null || !minTimestamp.isAfter(end));
+    }
+
+    /**
+     * Whether every row of the segment is in the range; null bounds are open
+     */
+    public boolean within(LocalDateTime start, LocalDateTime end) {
+        return (start == null || !minTimestamp.isBefore(start)) && (end == null || !maxTimestamp.isAfter(end));
+    }
+
+    /**
+     * False means the username is definitely not in the segment
+     */
+    public boolean mightContainUsername(String username) {
+        return usernames.mightContain(username);
+    }
+
+    /**
+     * Write rows (already ordered by timestamp) to a new segment file, atomically
+     */
+    public static AuditArchiveSegment write(Path path, List<AuditLog> rows) throws IOException {
+        return write(path, rows, VERSION);
+    }
+
+    /**
+     * Write rows in the given format version; older versions are only written to check
+     * that segments archived by earlier releases stay readable
+     */
+    static AuditArchiveSegment write(Path path, List<AuditLog> rows, short version) throws IOException {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Cannot write an empty archive segment");
+        }
+
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        LocalDateTime minTimestamp = rows.get(0).getTimestamp();
+        LocalDateTime maxTimestamp = minTimestamp;
+        LinkedHashSet<String> distinctUsernames = new LinkedHashSet<>();
+        for (AuditLog row : rows) {
+            minId = Math.min(minId, row.getId());
+            maxId = Math.max(maxId, row.getId());
+            if (row.getTimestamp().isBefore(minTimestamp)) {
+                minTimestamp = row.getTimestamp();
+            }
+            if (row.getTimestamp().isAfter(maxTimestamp)) {
+                maxTimestamp = row.getTimestamp();
+            }
+            distinctUsernames.add(row.getUsername());
+        }
+
+        BloomFilter bloom = BloomFilter.create(distinctUsernames.size(), BLOOM_FALSE_POSITIVE_RATE);
+        distinctUsernames.forEach(bloom::put);
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel), 64 * 1024));
+
+            out.writeInt(MAGIC);
+            out.writeShort(version);
+            out.writeInt(rows.size());
+            out.writeLong(minId);
+            out.writeLong(maxId);
+            out.writeLong(toMicros(minTimestamp));
+            out.writeLong(toMicros(maxTimestamp));
+            bloom.writeTo(out);
+
+            writeBlock(out, block -> {
+                long previous = 0;
+                for (AuditLog row : rows) {
+                    writeVarLong(block, row.getId() - previous);
+                    previous = row.getId();
+                }
+            });
+            writeBlock(out, block -> {
+                long previous = 0;
+                for (AuditLog row : rows) {
+                    long micros = toMicros(row.getTimestamp());
+                    writeVarLong(block, micros - previous);
+                    previous = micros;
+                }
+            });
+            for (StringColumn column : STRING_COLUMNS) {
+                writeBlock(out, block -> writeDictionary(block, rows, column.getter));
+            }
+            writeBlock(out, block -> {
+                for (AuditLog row : rows) {
+                    writeNullableLong(block, row.getResponseStatus() != null ? row.getResponseStatus().longValue() : null);
+                    writeNullableLong(block, row.getExecutionTimeMs());
+                    block.writeBoolean(row.getRiskScore() != null);
+                    if (row.getRiskScore() != null) {
+                        block.writeDouble(row.getRiskScore());
+                    }
+                    block.writeByte(row.getIsAnomaly() == null ? -1 : row.getIsAnomaly() ? 1 : 0);
+                    if (version < 2) {
+                        continue;
+                    }
+                    writeNullableLong(block, row.getEventCount() != null ? row.getEventCount().longValue() : null);
+                    writeNullableLong(block, row.getLatencyMinMs());
+                    writeNullableLong(block, row.getLatencyMaxMs());
+                    writeNullableLong(block, row.getLatencySumMs());
+                }
+            });
+
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new AuditArchiveSegment(path, version, rows.size(), minId, maxId, minTimestamp, maxTimestamp, bloom);
+    }
+
+    /**
+     * Read only the header of a segment file
+     */
+    public static AuditArchiveSegment open(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readHeader(path, in);
+        }
+    }
+
+    /**
+     * Decode the rows in [start, end] (null bounds are open) belonging to the username (null matches all)
+     */
+    public List<AuditLog> read(LocalDateTime start, LocalDateTime end, String username) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            readHeader(path, in);
+
+            long[] ids = new long[rowCount];
+            DataInputStream idBlock = readBlock(in);
+            long previous = 0;
+            for (int i = 0; i < rowCount; i++) {
+                previous += readVarLong(idBlock);
+                ids[i] = previous;
+            }
+
+            long startMicros = start != null ? toMicros(start) : Long.MIN_VALUE;
+            long endMicros = end != null ? toMicros(end) : Long.MAX_VALUE;
+            long[] timestamps = new long[rowCount];
+            BitSet matches = new BitSet(rowCount);
+            DataInputStream timestampBlock = readBlock(in);
+            previous = 0;
+            for (int i = 0; i < rowCount; i++) {
+                previous += readVarLong(timestampBlock);
+                timestamps[i] = previous;
+                if (previous >= startMicros && previous <= endMicros) {
+                    matches.set(i);
+                }
+            }
+
+            List<AuditLog> rows = new ArrayList<>();
+            if (matches.isEmpty()) {
+                return rows;
+            }
+
+            String[][] strings = new String[STRING_COLUMNS.size()][];
+            for (int c = 0; c < STRING_COLUMNS.size(); c++) {
+                strings[c] = readDictionary(readBlock(in), rowCount);
+                if (c == USERNAME_COLUMN && username != null) {
+                    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                        if (!username.equals(strings[c][i])) {
+                            matches.clear(i);
+                        }
+                    }
+                    if (matches.isEmpty()) {
+                        return rows;
+                    }
+                }
+            }
+
+            DataInputStream numericBlock = readBlock(in);
+            for (int i = 0; i < rowCount; i++) {
+                Long responseStatus = readNullableLong(numericBlock);
+                Long executionTime = readNullableLong(numericBlock);
+                Double riskScore = numericBlock.readBoolean() ? numericBlock.readDouble() : null;
+                byte anomaly = numericBlock.readByte();
+                // Roll-up columns were added in version 2
+                Long eventCount = version >= 2 ? readNullableLong(numericBlock) : null;
+                Long latencyMin = version >= 2 ? readNullableLong(numericBlock) : null;
+                Long latencyMax = version >= 2 ? readNullableLong(numericBlock) : null;
+                Long latencySum = version >= 2 ? readNullableLong(numericBlock) : null;
+                if (!matches.get(i)) {
+                    continue;
+                }
+
+                AuditLog row = new AuditLog();
+                row.setId(ids[i]);
+                row.setTimestamp(fromMicros(timestamps[i]));
+                for (int c = 0; c < STRING_COLUMNS.size(); c++) {
+                    STRING_COLUMNS.get(c).setter.accept(row, strings[c][i]);
+                }
+                row.setResponseStatus(responseStatus != null ? responseStatus.intValue() : null);
+                row.setExecutionTimeMs(executionTime);
+                row.setRiskScore(riskScore);
+                row.setIsAnomaly(anomaly < 0 ? null : anomaly == 1);
+                row.setEventCount(eventCount != null ? eventCount.intValue() : null);
+                row.setLatencyMinMs(latencyMin);
+                row.setLatencyMaxMs(latencyMax);
+                row.setLatencySumMs(latencySum);
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Count the rows in [start, end] (null bounds are open) belonging to the username (null
+     * matches all), decoding only the timestamp and username columns
+     */
+    public long count(LocalDateTime start, LocalDateTime end, String username) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            readHeader(path, in);
+            skipBlock(in);
+
+            long startMicros = start != null ? toMicros(start) : Long.MIN_VALUE;
+            long endMicros = end != null ? toMicros(end) : Long.MAX_VALUE;
+            BitSet matches = new BitSet(rowCount);
+            DataInputStream timestampBlock = readBlock(in);
+            long previous = 0;
+            for (int i = 0; i < rowCount; i++) {
+                previous += readVarLong(timestampBlock);
+                if (previous >= startMicros && previous <= endMicros) {
+                    matches.set(i);
+                }
+            }
+            if (username == null || matches.isEmpty()) {
+                return matches.cardinality();
+            }
+
+            String[] usernames = readDictionary(readBlock(in), rowCount);
+            long count = 0;
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                if (username.equals(usernames[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static AuditArchiveSegment readHeader(Path path, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an audit archive segment: " + path);
+        }
+        short version = in.readShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported audit archive segment version " + version + ": " + path);
+        }
+        int rowCount = in.readInt();
+        long minId = in.readLong();
+        long maxId = in.readLong();
+        LocalDateTime minTimestamp = fromMicros(in.readLong());
+        LocalDateTime maxTimestamp = fromMicros(in.readLong());
+        BloomFilter bloom = BloomFilter.readFrom(in);
+        return new AuditArchiveSegment(path, version, rowCount, minId, maxId, minTimestamp, maxTimestamp, bloom);
+    }
+
+    // Encoding helpers
+
+    private static void writeBlock(DataOutputStream out, BlockWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream block = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            writer.write(block);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static DataInputStream readBlock(DataInputStream in) throws IOException {
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        return new DataInputStream(new BufferedInputStream(
+            new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    private static void skipBlock(DataInputStream in) throws IOException {
+        in.skipNBytes(in.readInt());
+    }
+
+    private static void writeDictionary(DataOutputStream block, List<AuditLog> rows,
+                                        Function<AuditLog, String> getter) throws IOException {
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] encoded = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            String value = getter.apply(rows.get(i));
+            if (value == null) {
+                encoded[i] = 0;
+                continue;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                dictionary.add(value);
+                code = dictionary.size();
+                codes.put(value, code);
+            }
+            encoded[i] = code;
+        }
+
+        writeVarLong(block, dictionary.size());
+        for (String value : dictionary) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(block, utf8.length);
+            block.write(utf8);
+        }
+        for (int code : encoded) {
+            writeVarLong(block, code);
+        }
+    }
+
+    private static String[] readDictionary(DataInputStream block, int rowCount) throws IOException {
+        String[] dictionary = new String[(int) readVarLong(block) + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            byte[] utf8 = new byte[(int) readVarLong(block)];
+            block.readFully(utf8);
+            dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        String[] values = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            values[i] = dictionary[(int) readVarLong(block)];
+        }
+        return values;
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(out, value);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readVarLong(in) : null;
+    }
+
+    /**
+     * Zig-zag varint, so small deltas of either sign take one or two bytes
+     */
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.write((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.write((int) zigZag);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Truncated audit archive segment");
+            }
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed varint in audit archive segment");
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    @FunctionalInterface
+    private interface BlockWriter {
+        void write(DataOutputStream block) throws IOException;
+    }
+
+    private static final class StringColumn {
+        private final Function<AuditLog, String> getter;
+        private final BiConsumer<AuditLog, String> setter;
+
+        private StringColumn(Function<AuditLog, String> getter, BiConsumer<AuditLog, String> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    /**
+     * Minimal bloom filter over strings using double hashing of a 64-bit FNV-1a hash
+     */
+    static final class BloomFilter {
+        private final long[] words;
+        private final int bitCount;
+        private final int hashCount;
+
+        private BloomFilter(long[] words, int hashCount) {
+            this.words = words;
+            this.bitCount = words.length * 64;
+            this.hashCount = hashCount;
+        }
+
+        static BloomFilter create(int expectedEntries, double falsePositiveRate) {
+            int entries = Math.max(1, expectedEntries);
+            long bits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int hashes = Math.max(1, (int) Math.round((double) bits / entries * Math.log(2)));
+            return new BloomFilter(new long[(int) Math.max(1, (bits + 63) / 64)], hashes);
+        }
+
+        void put(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = index(hash, i);
+                words[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = index(hash, i);
+                if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(hashCount);
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        static BloomFilter readFrom(DataInputStream in) throws IOException {
+            int hashCount = in.readInt();
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new BloomFilter(words, hashCount);
+        }
+
+        private int index(long hash, int i) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            return Math.floorMod(h1 + i * h2, bitCount);
+        }
+
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            if (value != null) {
+                for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                    hash ^= b;
+                    hash *= 0x100000001b3L;
+                }
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.samap.service;
+
+import com.samap.config.AsyncConfig;
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier for audit history.
+ *
+ * A nightly job moves rows older than the configured age out of the database into
+ * compressed columnar segment files ({@link AuditArchiveSegment}); a segment is fully
+ * written and synced before its rows are deleted. Segment headers are kept in memory
+ * so date-range and username lookups only open files whose timestamp range overlaps
+ * the query and whose bloom filter may contain the username.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditArchiveService {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final AuditLogRepository auditLogRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${audit.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${audit.archive.directory:data/audit-archive}")
+    private String directory;
+
+    @Value("${audit.archive.age-days:90}")
+    private int ageDays;
+
+    @Value("${audit.archive.rows-per-segment:20000}")
+    private int rowsPerSegment;
+
+    @Value("${audit.archive.max-segments-per-run:50}")
+    private int maxSegmentsPerRun;
+
+    @Value("${audit.archive.max-results:10000}")
+    private int maxResults;
+
+    private final List<AuditArchiveSegment> segments = new CopyOnWriteArrayList<>();
+    private Path archiveDir;
+
+    @PostConstruct
+    public void init() {
+        archiveDir = Paths.get(directory);
+        if (!Files.isDirectory(archiveDir)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Left over from a run that died before the rename; its rows were never deleted
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".seg")) {
+                    segments.add(AuditArchiveSegment.open(file));
+                }
+            }
+            log.info("Loaded {} audit archive segments from {}", segments.size(), archiveDir.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("Failed to load audit archive index from {}: {}", archiveDir, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Move audit rows older than the configured age into archive segments
+     */
+    @Scheduled(cron = "${audit.archive.cron:0 0 2 * * ?}")
+    @Async(AsyncConfig.AUDIT_EXECUTOR)
+    public void archiveOldLogs() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ageDays);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int archived = 0;
+
+        try {
+            Files.createDirectories(archiveDir);
+
+            for (int run = 0; run < maxSegmentsPerRun; run++) {
+                List<AuditLog> rows = auditLogRepository.findByTimestampBeforeOrderByTimestampAscIdAsc(
+                    cutoff, PageRequest.of(0, rowsPerSegment));
+                if (rows.isEmpty()) {
+                    break;
+                }
+
+                AuditLog first = rows.get(0);
+                Path file = archiveDir.resolve(String.format("audit-%s-%020d.seg",
+                    FILE_TIMESTAMP.format(first.getTimestamp()), first.getId()));
+                AuditArchiveSegment segment = AuditArchiveSegment.write(file, rows);
+
+                // If this delete fails the rows exist in both tiers; reads prefer the database copy
+                List<Long> ids = rows.stream().map(AuditLog::getId).toList();
+                transactionTemplate.executeWithoutResult(status -> auditLogRepository.deleteAllByIdInBatch(ids));
+
+                segments.add(segment);
+                archived += rows.size();
+            }
+        } catch (Exception e) {
+            log.error("Audit archiving stopped after {} rows: {}", archived, e.getMessage(), e);
+        }
+
+        if (archived > 0) {
+            log.info("Archived {} audit logs older than {} into {}", archived, cutoff, archiveDir);
+        }
+    }
+
+    /**
+     * Whether any archived data could fall in the range (null bounds are open)
+     */
+    public boolean mayContain(LocalDateTime start, LocalDateTime end) {
+        return segments.stream().anyMatch(segment -> segment.overlaps(start, end));
+    }
+
+    /**
+     * Archived rows in [start, end] for the username (either may be null), newest first,
+     * capped at the configured maximum
+     */
+    public List<AuditLog> find(LocalDateTime start, LocalDateTime end, String username) {
+        return find(start, end, username, row -> true, maxResults);
+    }
+
+    /**
+     * The newest limit archived rows in [start, end] for the username (either may be null)
+     * that pass the filter, newest first. Segments are read newest first and reading stops
+     * once the remaining segments only hold rows older than the ones already found.
+     */
+    public List<AuditLog> find(LocalDateTime start, LocalDateTime end, String username,
+                               Predicate<AuditLog> filter, int limit) {
+        Comparator<AuditLog> newestFirst =
+            Comparator.comparing(AuditLog::getTimestamp).thenComparing(AuditLog::getId).reversed();
+        List<AuditArchiveSegment> candidates = new ArrayList<>(findSegments(start, end, username));
+        candidates.sort(Comparator.comparing(AuditArchiveSegment::getMaxTimestamp).reversed());
+
+        List<AuditLog> results = new ArrayList<>();
+        for (AuditArchiveSegment segment : candidates) {
+            if (results.size() >= limit
+                    && segment.getMaxTimestamp().isBefore(results.get(results.size() - 1).getTimestamp())) {
+                break;
+            }
+            try {
+                segment.read(start, end, username).stream().filter(filter).forEach(results::add);
+            } catch (IOException e) {
+                log.error("Failed to read audit archive segment {}: {}", segment.getPath(), e.getMessage());
+            }
+            results.sort(newestFirst);
+            if (results.size() > limit) {
+                results.subList(limit, results.size()).clear();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Number of archived rows in [start, end] for the username (either may be null),
+     * uncapped. Segments entirely inside the range are counted from their header; the
+     * others only decode their timestamp and username columns.
+     */
+    public long count(LocalDateTime start, LocalDateTime end, String username) {
+        long total = 0;
+        for (AuditArchiveSegment segment : findSegments(start, end, username)) {
+            if (username == null && segment.within(start, end)) {
+                total += segment.getRowCount();
+                continue;
+            }
+            try {
+                total += segment.count(start, end, username);
+            } catch (IOException e) {
+                log.error("Failed to count audit archive segment {}: {}", segment.getPath(), e.getMessage());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Archived row with the given id; only segments whose id range covers it are read
+     */
+    public Optional<AuditLog> findById(long id) {
+        for (AuditArchiveSegment segment : segments) {
+            if (id < segment.getMinId() || id > segment.getMaxId()) {
+                continue;
+            }
+            try {
+                Optional<AuditLog> row = segment.read(null, null, null).stream()
+                    .filter(a -> a.getId() == id)
+                    .findFirst();
+                if (row.isPresent()) {
+                    return row;
+                }
+            } catch (IOException e) {
+                log.error("Failed to read audit archive segment {}: {}", segment.getPath(), e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Segments that may hold rows in [start, end] for the username (either may be null),
+     * oldest first. Segments are written in timestamp order, so reading them one after
+     * another yields archived rows in timestamp order.
+     */
+    public List<AuditArchiveSegment> findSegments(LocalDateTime start, LocalDateTime end, String username) {
+        return segments.stream()
+            .filter(segment -> segment.overlaps(start, end))
+            .filter(segment -> username == null || segment.mightContainUsername(username))
+            .sorted(Comparator.comparing(AuditArchiveSegment::getMinTimestamp).thenComparing(AuditArchiveSegment::getMinId))
+            .toList();
+    }
+
+    /**
+     * Number of archive segments currently indexed
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+}
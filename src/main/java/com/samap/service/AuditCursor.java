@@ -0,0 +1,82 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Seek position for keyset pagination over audit logs ordered by (timestamp, id)
+ * descending. Clients only ever see it as an opaque URL-safe token.
+ */
+public final class AuditCursor {
+
+    /** Position before the newest possible row, used for the first page */
+    public static final AuditCursor START = new AuditCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    private static final String VERSION = "1";
+
+    private final LocalDateTime timestamp;
+    private final long id;
+
+    private AuditCursor(LocalDateTime timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    /**
+     * Cursor positioned right after the given row
+     */
+    public static AuditCursor after(AuditLog auditLog) {
+        return new AuditCursor(auditLog.getTimestamp(), auditLog.getId());
+    }
+
+    /**
+     * Cursor positioned right after the given listing row
+     */
+    public static AuditCursor after(AuditLogSummary summary) {
+        return new AuditCursor(summary.getTimestamp(), summary.getId());
+    }
+
+    /**
+     * Cursor for a token from a previous response; null or blank means the first page
+     */
+    public static AuditCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new AuditCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = VERSION + "|" + timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Whether the row sorts after this position, i.e. belongs to a later page
+     */
+    public boolean precedes(AuditLog auditLog) {
+        int byTimestamp = auditLog.getTimestamp().compareTo(timestamp);
+        return byTimestamp < 0 || (byTimestamp == 0 && auditLog.getId() < id);
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
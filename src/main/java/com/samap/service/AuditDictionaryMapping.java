@@ -0,0 +1,87 @@
+package com.samap.service;
+
+import com.samap.model.AuditDictionaryEntry.Kind;
+import com.samap.model.AuditLog;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * JPA bindings that store dictionary-encoded {@link AuditLog} fields as integer
+ * references. Instances are created through Spring's bean container, so the
+ * dictionary is constructor-injected.
+ */
+public final class AuditDictionaryMapping {
+
+    private AuditDictionaryMapping() {
+    }
+
+    /**
+     * Interns new values before the row is written, so the converters below only
+     * ever look values up and queries for unseen values never create entries. The audit
+     * writers intern their batches up front, so for them this is a cache hit.
+     */
+    public static class InternListener {
+        private final AuditDictionaryService dictionary;
+
+        public InternListener(AuditDictionaryService dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @PrePersist
+        @PreUpdate
+        public void intern(AuditLog auditLog) {
+            dictionary.internAll(auditLog);
+        }
+    }
+
+    abstract static class DictionaryConverter implements AttributeConverter<String, Integer> {
+        private final AuditDictionaryService dictionary;
+        private final Kind kind;
+
+        DictionaryConverter(AuditDictionaryService dictionary, Kind kind) {
+            this.dictionary = dictionary;
+            this.kind = kind;
+        }
+
+        @Override
+        public Integer convertToDatabaseColumn(String value) {
+            return dictionary.lookup(kind, value);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Integer id) {
+            return dictionary.resolve(id);
+        }
+    }
+
+    public static class ActionConverter extends DictionaryConverter {
+        public ActionConverter(AuditDictionaryService dictionary) {
+            super(dictionary, Kind.ACTION);
+        }
+    }
+
+    public static class ResourceConverter extends DictionaryConverter {
+        public ResourceConverter(AuditDictionaryService dictionary) {
+            super(dictionary, Kind.RESOURCE);
+        }
+    }
+
+    public static class EndpointConverter extends DictionaryConverter {
+        public EndpointConverter(AuditDictionaryService dictionary) {
+            super(dictionary, Kind.ENDPOINT);
+        }
+    }
+
+    public static class HttpMethodConverter extends DictionaryConverter {
+        public HttpMethodConverter(AuditDictionaryService dictionary) {
+            super(dictionary, Kind.HTTP_METHOD);
+        }
+    }
+
+    public static class UserAgentConverter extends DictionaryConverter {
+        public UserAgentConverter(AuditDictionaryService dictionary) {
+            super(dictionary, Kind.USER_AGENT);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.samap.service;
+
+import com.samap.model.AuditDictionaryEntry.Kind;
+import com.samap.model.AuditLog;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Bidirectional dictionary for repeated audit strings.
+ *
+ * Values are interned into audit_dictionary once and cached both ways, so writes
+ * resolve a value to its id and reads resolve an id back to its value without a
+ * round trip. The cache holds up to {@code audit.dictionary.max-cached-entries} entries
+ * and evicts the least recently used one beyond that. New entries are committed on their
+ * own connection so an id handed out is never rolled back together with a failed audit batch;
+ * the audit writers therefore intern a batch before opening its transaction (see
+ * {@link #internAll(List)}), and the persist listener only falls back to it for other writes.
+ *
+ * Databases that still hold the full-string columns are migrated while the bean is
+ * initialized, which the EntityManagerFactory waits for
+ * ({@link com.samap.config.SchemaInitializationConfig}).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditDictionaryService {
+
+    /**
+     * Reference used for lookups of values that were never interned; matches no row
+     */
+    public static final int UNKNOWN_REF = 0;
+
+    private static final int MAX_VALUE_LENGTH = 500;
+
+    /** Columns that held the full strings before dictionary encoding */
+    private static final Map<Kind, String[]> COLUMNS = new EnumMap<>(Map.of(
+        Kind.ACTION, new String[]{"action", "action_ref"},
+        Kind.RESOURCE, new String[]{"resource", "resource_ref"},
+        Kind.ENDPOINT, new String[]{"endpoint", "endpoint_ref"},
+        Kind.HTTP_METHOD, new String[]{"http_method", "http_method_ref"},
+        Kind.USER_AGENT, new String[]{"user_agent", "user_agent_ref"}
+    ));
+
+    private final DataSource dataSource;
+
+    @Value("${audit.dictionary.max-cached-entries:100000}")
+    private int maxCachedEntries;
+
+    @Value("${audit.dictionary.migration-batch-size:10000}")
+    private int migrationBatchSize;
+
+    private final Map<Kind, Map<String, Integer>> idsByValue = Arrays.stream(Kind.values())
+        .collect(Collectors.toMap(kind -> kind, kind -> new ConcurrentHashMap<>(), (a, b) -> a,
+            () -> new EnumMap<>(Kind.class)));
+    // Access-ordered, so the eldest entry is the least recently used; evicting it also drops the reverse mapping
+    private final Map<Integer, CachedEntry> valuesById = Collections.synchronizedMap(
+        new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedEntry> eldest) {
+                if (size() <= maxCachedEntries) {
+                    return false;
+                }
+                idsByValue.get(eldest.getValue().kind()).remove(eldest.getValue().value(), eldest.getKey());
+                return true;
+            }
+        });
+
+    @PostConstruct
+    public void initialize() {
+        try {
+            migrateLegacyColumns();
+        } catch (Exception e) {
+            log.error("Audit dictionary migration failed: {}", e.getMessage(), e);
+        }
+        warmUp();
+    }
+
+    /**
+     * Id for the value, creating the dictionary entry if needed
+     */
+    public Integer intern(Kind kind, String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = normalize(value);
+        Integer id = idsByValue.get(kind).get(key);
+        if (id != null) {
+            valuesById.get(id); // marks the entry as recently used
+            return id;
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            id = selectId(connection, kind, key);
+            if (id == null) {
+                id = insert(connection, kind, key);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Failed to intern audit dictionary value", e);
+        }
+
+        cache(kind, key, id);
+        return id;
+    }
+
+    /**
+     * Id for the value without creating it; unknown values map to {@link #UNKNOWN_REF}
+     */
+    public Integer lookup(Kind kind, String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = normalize(value);
+        Integer id = idsByValue.get(kind).get(key);
+        if (id != null) {
+            valuesById.get(id); // marks the entry as recently used
+            return id;
+        }
+
+        List<Integer> ids = new JdbcTemplate(dataSource).queryForList(
+            "SELECT id FROM audit_dictionary WHERE kind = ? AND entry_value = ?", Integer.class, kind.name(), key);
+        if (ids.isEmpty()) {
+            return UNKNOWN_REF;
+        }
+        cache(kind, key, ids.get(0));
+        return ids.get(0);
+    }
+
+    /**
+     * Value for a dictionary id
+     */
+    public String resolve(Integer id) {
+        if (id == null || id == UNKNOWN_REF) {
+            return null;
+        }
+        CachedEntry cached = valuesById.get(id);
+        if (cached != null) {
+            return cached.value();
+        }
+
+        List<Map<String, Object>> rows = new JdbcTemplate(dataSource).queryForList(
+            "SELECT kind, entry_value FROM audit_dictionary WHERE id = ?", id);
+        if (rows.isEmpty()) {
+            log.warn("Unknown audit dictionary id {}", id);
+            return null;
+        }
+        String value = (String) rows.get(0).get("entry_value");
+        cache(Kind.valueOf((String) rows.get(0).get("kind")), value, id);
+        return value;
+    }
+
+    /**
+     * Dictionary values of a kind containing the term (case-insensitive)
+     */
+    public List<String> findValuesContaining(Kind kind, String term, int limit) {
+        List<String> values = new JdbcTemplate(dataSource).queryForList(
+            "SELECT entry_value FROM audit_dictionary WHERE kind = ? AND LOWER(entry_value) LIKE ? ESCAPE '\\'",
+            String.class, kind.name(), containsPattern(term));
+        return values.size() > limit ? values.subList(0, limit) : values;
+    }
+
+    /**
+     * Ids of the dictionary values of a kind containing the term (case-insensitive)
+     */
+    public List<Integer> findIdsContaining(Kind kind, String term, int limit) {
+        List<Integer> ids = new JdbcTemplate(dataSource).queryForList(
+            "SELECT id FROM audit_dictionary WHERE kind = ? AND LOWER(entry_value) LIKE ? ESCAPE '\\'",
+            Integer.class, kind.name(), containsPattern(term));
+        return ids.size() > limit ? ids.subList(0, limit) : ids;
+    }
+
+    // The term matched literally: % and _ in it are not wildcards
+    private static String containsPattern(String term) {
+        String escaped = term.toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Make sure every dictionary-encoded field of the row has an entry before it is written
+     */
+    public void internAll(AuditLog auditLog) {
+        intern(Kind.ACTION, auditLog.getAction());
+        intern(Kind.RESOURCE, auditLog.getResource());
+        intern(Kind.ENDPOINT, auditLog.getEndpoint());
+        intern(Kind.HTTP_METHOD, auditLog.getHttpMethod());
+        intern(Kind.USER_AGENT, auditLog.getUserAgent());
+    }
+
+    /**
+     * Intern a whole batch ahead of its write transaction, so the persist listener only
+     * hits the cache instead of taking a second connection while the batch holds one
+     */
+    public void internAll(List<AuditLog> auditLogs) {
+        auditLogs.forEach(this::internAll);
+    }
+
+    private Integer selectId(Connection connection, Kind kind, String value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id FROM audit_dictionary WHERE kind = ? AND entry_value = ?")) {
+            statement.setString(1, kind.name());
+            statement.setString(2, value);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private Integer insert(Connection connection, Kind kind, String value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO audit_dictionary (kind, entry_value) VALUES (?, ?)", new String[]{"id"})) {
+            statement.setString(1, kind.name());
+            statement.setString(2, value);
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        } catch (SQLException e) {
+            // Another node or thread inserted the same value first
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                Integer id = selectId(connection, kind, value);
+                if (id != null) {
+                    return id;
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void cache(Kind kind, String value, Integer id) {
+        idsByValue.get(kind).put(value, id);
+        valuesById.put(id, new CachedEntry(kind, value));
+    }
+
+    /**
+     * Number of dictionary entries currently cached
+     */
+    public int getCachedEntryCount() {
+        return valuesById.size();
+    }
+
+    private String normalize(String value) {
+        return value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value;
+    }
+
+    private void warmUp() {
+        try {
+            new JdbcTemplate(dataSource).query(
+                "SELECT id, kind, entry_value FROM audit_dictionary ORDER BY id",
+                rs -> {
+                    cache(Kind.valueOf(rs.getString("kind")), rs.getString("entry_value"), rs.getInt("id"));
+                });
+            log.info("Loaded {} audit dictionary entries", valuesById.size());
+        } catch (Exception e) {
+            log.warn("Could not preload audit dictionary: {}", e.getMessage());
+        }
+    }
+
+    private record CachedEntry(Kind kind, String value) {
+    }
+
+    /**
+     * One-time move of full-string audit columns into the dictionary. The dictionary table
+     * and reference columns are created first (Hibernate has not run yet), the distinct values
+     * are interned, and the references are filled in id ranges of
+     * {@code audit.dictionary.migration-batch-size} rows, each committed on its own. Only rows
+     * without a reference are touched, so an interrupted run resumes where it stopped. Each
+     * old column is dropped in its own statement once every range is done.
+     */
+    void migrateLegacyColumns() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<Kind> legacy = new ArrayList<>();
+        for (Map.Entry<Kind, String[]> column : COLUMNS.entrySet()) {
+            Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE LOWER(table_name) = 'audit_logs' AND LOWER(column_name) = ?",
+                Integer.class, column.getValue()[0]);
+            if (count != null && count > 0) {
+                legacy.add(column.getKey());
+            }
+        }
+        if (legacy.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS audit_dictionary (" +
+            "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, kind VARCHAR(20) NOT NULL, " +
+            "entry_value VARCHAR(" + MAX_VALUE_LENGTH + ") NOT NULL, " +
+            "CONSTRAINT uk_audit_dictionary_kind_value UNIQUE (kind, entry_value))");
+        List<String> assignments = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        for (Kind kind : legacy) {
+            String column = COLUMNS.get(kind)[0];
+            String ref = COLUMNS.get(kind)[1];
+            jdbcTemplate.execute("ALTER TABLE audit_logs ADD COLUMN IF NOT EXISTS " + ref + " INTEGER");
+            // Rows written after this point only carry the reference
+            jdbcTemplate.execute("ALTER TABLE audit_logs ALTER COLUMN " + column + " DROP NOT NULL");
+            jdbcTemplate.update(
+                "INSERT INTO audit_dictionary (kind, entry_value) " +
+                "SELECT DISTINCT ?, SUBSTRING(l." + column + ", 1, " + MAX_VALUE_LENGTH + ") FROM audit_logs l " +
+                "WHERE l." + column + " IS NOT NULL AND NOT EXISTS (SELECT 1 FROM audit_dictionary d " +
+                "WHERE d.kind = ? AND d.entry_value = SUBSTRING(l." + column + ", 1, " + MAX_VALUE_LENGTH + "))",
+                kind.name(), kind.name());
+            assignments.add(ref + " = COALESCE(" + ref + ", (SELECT d.id FROM audit_dictionary d WHERE d.kind = '" +
+                kind.name() + "' AND d.entry_value = SUBSTRING(audit_logs." + column + ", 1, " + MAX_VALUE_LENGTH + ")))");
+            pending.add("(" + ref + " IS NULL AND " + column + " IS NOT NULL)");
+        }
+
+        String backfill = "UPDATE audit_logs SET " + String.join(", ", assignments) +
+            " WHERE id >= ? AND id < ? AND (" + String.join(" OR ", pending) + ")";
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        Map<String, Object> range = jdbcTemplate.queryForMap(
+            "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM audit_logs WHERE " + String.join(" OR ", pending));
+        long updated = 0;
+        if (range.get("min_id") != null) {
+            long maxId = ((Number) range.get("max_id")).longValue();
+            for (long from = ((Number) range.get("min_id")).longValue(); from <= maxId; from += migrationBatchSize) {
+                long lower = from;
+                Integer rows = transactionTemplate.execute(status ->
+                    jdbcTemplate.update(backfill, lower, lower + migrationBatchSize));
+                updated += rows == null ? 0 : rows;
+            }
+        }
+
+        for (Kind kind : legacy) {
+            jdbcTemplate.execute("ALTER TABLE audit_logs DROP COLUMN " + COLUMNS.get(kind)[0]);
+        }
+        log.info("Dictionary-encoded {} audit columns across {} rows", legacy.size(), updated);
+    }
+}
@@ -0,0 +1,414 @@
+package com.samap.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.samap.model.AuditDictionaryEntry.Kind;
+import com.samap.model.AuditLog;
+import com.samap.model.AuditLog.ActionStatus;
+import com.samap.model.AuditLog.RiskLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Streaming audit log export.
+ *
+ * Archived rows are read one segment at a time, then the database is read through a
+ * forward-only cursor with a bounded fetch size, and every row is written out as soon
+ * as it is read, so memory use does not grow with the size of the export. Rows are
+ * written oldest first. A row that is in an archive segment and still in the database
+ * (archiving deletes rows after writing the segment, and the delete can fail) is
+ * exported once, from the database, as other reads prefer the database copy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditExportService {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() { return contentType; }
+        public String getExtension() { return extension; }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value + " (expected CSV or NDJSON)");
+            }
+        }
+    }
+
+    /** Exported fields, in column order */
+    private static final List<Column> COLUMNS = List.of(
+        new Column("id", AuditLog::getId),
+        new Column("timestamp", AuditLog::getTimestamp),
+        new Column("username", AuditLog::getUsername),
+        new Column("action", AuditLog::getAction),
+        new Column("resource", AuditLog::getResource),
+        new Column("resourceId", AuditLog::getResourceId),
+        new Column("status", AuditLog::getStatus),
+        new Column("ipAddress", AuditLog::getIpAddress),
+        new Column("userAgent", AuditLog::getUserAgent),
+        new Column("sessionId", AuditLog::getSessionId),
+        new Column("endpoint", AuditLog::getEndpoint),
+        new Column("httpMethod", AuditLog::getHttpMethod),
+        new Column("requestParams", AuditLog::getRequestParams),
+        new Column("responseStatus", AuditLog::getResponseStatus),
+        new Column("executionTimeMs", AuditLog::getExecutionTimeMs),
+        new Column("riskLevel", AuditLog::getRiskLevel),
+        new Column("riskScore", AuditLog::getRiskScore),
+        new Column("riskFactors", AuditLog::getRiskFactors),
+        new Column("isAnomaly", AuditLog::getIsAnomaly),
+        new Column("anomalyReasons", AuditLog::getAnomalyReasons),
+        new Column("locationCountry", AuditLog::getLocationCountry),
+        new Column("locationCity", AuditLog::getLocationCity),
+        new Column("deviceFingerprint", AuditLog::getDeviceFingerprint),
+        new Column("correlationId", AuditLog::getCorrelationId),
+        new Column("eventCount", AuditLog::getEventCount),
+        new Column("details", AuditLog::getDetails),
+        new Column("errorMessage", AuditLog::getErrorMessage)
+    );
+
+    private final DataSource dataSource;
+    private final AuditDictionaryService auditDictionaryService;
+    private final AuditArchiveService auditArchiveService;
+
+    @Value("${audit.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${audit.export.include-archive:true}")
+    private boolean includeArchive;
+
+    /**
+     * Write every audit log matching the filter to the stream and return the row count.
+     * The stream is flushed but not closed.
+     *
+     * The read-only transaction is what lets the PostgreSQL driver use a server-side
+     * cursor; with autocommit on it would buffer the whole result set.
+     */
+    @Transactional(readOnly = true)
+    public long export(ExportFilter filter, Format format, OutputStream out) throws IOException {
+        long started = System.currentTimeMillis();
+        RowWriter writer = format == Format.CSV ? new CsvWriter(out) : new NdjsonWriter(out);
+        long rows = 0;
+
+        Integer actionRef = filter.getAction() != null
+            ? auditDictionaryService.lookup(Kind.ACTION, filter.getAction())
+            : null;
+        // An action that was never interned cannot be on any row, archived or not
+        if (actionRef == null || actionRef != AuditDictionaryService.UNKNOWN_REF) {
+            if (includeArchive) {
+                rows += exportArchived(filter, writer);
+            }
+            rows += exportFromDatabase(filter, actionRef, writer);
+        }
+        writer.finish();
+
+        log.info("Exported {} audit logs as {} in {} ms", rows, format, System.currentTimeMillis() - started);
+        return rows;
+    }
+
+    private long exportArchived(ExportFilter filter, RowWriter writer) throws IOException {
+        long rows = 0;
+        for (AuditArchiveSegment segment : auditArchiveService.findSegments(
+                filter.getStartDate(), filter.getEndDate(), filter.getUsername())) {
+            // One segment (audit.archive.rows-per-segment rows at most) is held at a time
+            List<AuditLog> archived = new ArrayList<>(
+                segment.read(filter.getStartDate(), filter.getEndDate(), filter.getUsername()));
+            archived.sort(Comparator.comparing(AuditLog::getTimestamp).thenComparing(AuditLog::getId));
+            Set<Long> inDatabase = idsStillInDatabase(segment);
+            for (AuditLog auditLog : archived) {
+                if (filter.matches(auditLog) && !inDatabase.contains(auditLog.getId())) {
+                    writer.write(auditLog);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Ids of the segment's rows that were not deleted from the database after archiving;
+     * usually none
+     */
+    private Set<Long> idsStillInDatabase(AuditArchiveSegment segment) {
+        return new HashSet<>(new JdbcTemplate(dataSource).queryForList(
+            "SELECT id FROM audit_logs WHERE id BETWEEN ? AND ? AND timestamp BETWEEN ? AND ?", Long.class,
+            segment.getMinId(), segment.getMaxId(), segment.getMinTimestamp(), segment.getMaxTimestamp()));
+    }
+
+    private long exportFromDatabase(ExportFilter filter, Integer actionRef, RowWriter writer) throws IOException {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder(
+            "SELECT a.id, a.username, a.action_ref, a.resource_ref, a.resource_id, a.status, a.ip_address, " +
+            "a.user_agent_ref, a.session_id, a.endpoint_ref, a.http_method_ref, a.request_params, " +
+            "a.response_status, a.execution_time_ms, a.details, a.error_message, a.risk_level, a.risk_score, " +
+            "a.risk_factors, a.location_country, a.location_city, a.device_fingerprint, a.is_anomaly, " +
+            "a.anomaly_reasons, a.timestamp, a.correlation_id, a.event_count " +
+            "FROM audit_logs a WHERE 1 = 1");
+
+        if (filter.getStartDate() != null) {
+            sql.append(" AND a.timestamp >= :startDate");
+            params.addValue("startDate", filter.getStartDate());
+        }
+        if (filter.getEndDate() != null) {
+            sql.append(" AND a.timestamp <= :endDate");
+            params.addValue("endDate", filter.getEndDate());
+        }
+        if (filter.getUsername() != null) {
+            sql.append(" AND a.username = :username");
+            params.addValue("username", filter.getUsername());
+        }
+        if (actionRef != null) {
+            sql.append(" AND a.action_ref = :actionRef");
+            params.addValue("actionRef", actionRef);
+        }
+        if (filter.getStatus() != null) {
+            sql.append(" AND a.status = :status");
+            params.addValue("status", filter.getStatus().name());
+        }
+        if (filter.getMinRiskLevel() != null) {
+            sql.append(" AND a.risk_level IN (:riskLevels)");
+            params.addValue("riskLevels", Arrays.stream(RiskLevel.values())
+                .filter(level -> level.compareTo(filter.getMinRiskLevel()) >= 0)
+                .map(Enum::name)
+                .toList());
+        }
+        if (filter.isAnomaliesOnly()) {
+            sql.append(" AND a.is_anomaly = TRUE");
+        }
+        sql.append(" ORDER BY a.timestamp, a.id");
+
+        JdbcTemplate cursorTemplate = new JdbcTemplate(dataSource);
+        cursorTemplate.setFetchSize(fetchSize);
+        long[] rows = {0};
+        try {
+            new NamedParameterJdbcTemplate(cursorTemplate).query(sql.toString(), params, (RowCallbackHandler) rs -> {
+                try {
+                    writer.write(mapRow(rs));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; unwrap so the caller sees the I/O failure
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    private AuditLog mapRow(ResultSet rs) throws SQLException {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(rs.getLong("id"));
+        auditLog.setUsername(rs.getString("username"));
+        auditLog.setAction(resolve(rs, "action_ref"));
+        auditLog.setResource(resolve(rs, "resource_ref"));
+        auditLog.setResourceId(rs.getString("resource_id"));
+        String status = rs.getString("status");
+        auditLog.setStatus(status != null ? ActionStatus.valueOf(status) : null);
+        auditLog.setIpAddress(rs.getString("ip_address"));
+        auditLog.setUserAgent(resolve(rs, "user_agent_ref"));
+        auditLog.setSessionId(rs.getString("session_id"));
+        auditLog.setEndpoint(resolve(rs, "endpoint_ref"));
+        auditLog.setHttpMethod(resolve(rs, "http_method_ref"));
+        auditLog.setRequestParams(rs.getString("request_params"));
+        auditLog.setResponseStatus(rs.getObject("response_status", Integer.class));
+        auditLog.setExecutionTimeMs(rs.getObject("execution_time_ms", Long.class));
+        auditLog.setDetails(rs.getString("details"));
+        auditLog.setErrorMessage(rs.getString("error_message"));
+        String riskLevel = rs.getString("risk_level");
+        auditLog.setRiskLevel(riskLevel != null ? RiskLevel.valueOf(riskLevel) : null);
+        auditLog.setRiskScore(rs.getObject("risk_score", Double.class));
+        auditLog.setRiskFactors(rs.getString("risk_factors"));
+        auditLog.setLocationCountry(rs.getString("location_country"));
+        auditLog.setLocationCity(rs.getString("location_city"));
+        auditLog.setDeviceFingerprint(rs.getString("device_fingerprint"));
+        auditLog.setIsAnomaly(rs.getObject("is_anomaly", Boolean.class));
+        auditLog.setAnomalyReasons(rs.getString("anomaly_reasons"));
+        auditLog.setTimestamp(rs.getObject("timestamp", LocalDateTime.class));
+        auditLog.setCorrelationId(rs.getString("correlation_id"));
+        auditLog.setEventCount(rs.getObject("event_count", Integer.class));
+        return auditLog;
+    }
+
+    private String resolve(ResultSet rs, String column) throws SQLException {
+        // Recently used dictionary values are cached (an LRU of audit.dictionary.max-cached-entries),
+        // so only values missing from the cache cost a query
+        return auditDictionaryService.resolve(rs.getObject(column, Integer.class));
+    }
+
+    /**
+     * Optional export criteria; null fields do not filter
+     */
+    public static class ExportFilter {
+        private LocalDateTime startDate;
+        private LocalDateTime endDate;
+        private String username;
+        private String action;
+        private ActionStatus status;
+        private RiskLevel minRiskLevel;
+        private boolean anomaliesOnly;
+
+        /**
+         * Same criteria as the SQL, for archived rows
+         */
+        boolean matches(AuditLog auditLog) {
+            return (action == null || action.equals(auditLog.getAction()))
+                && (status == null || status == auditLog.getStatus())
+                && (minRiskLevel == null || (auditLog.getRiskLevel() != null && auditLog.getRiskLevel().compareTo(minRiskLevel) >= 0))
+                && (!anomaliesOnly || Boolean.TRUE.equals(auditLog.getIsAnomaly()));
+        }
+
+        // Getters and setters
+        public LocalDateTime getStartDate() { return startDate; }
+        public void setStartDate(LocalDateTime startDate) { this.startDate = startDate; }
+        public LocalDateTime getEndDate() { return endDate; }
+        public void setEndDate(LocalDateTime endDate) { this.endDate = endDate; }
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getAction() { return action; }
+        public void setAction(String action) { this.action = action; }
+        public ActionStatus getStatus() { return status; }
+        public void setStatus(ActionStatus status) { this.status = status; }
+        public RiskLevel getMinRiskLevel() { return minRiskLevel; }
+        public void setMinRiskLevel(RiskLevel minRiskLevel) { this.minRiskLevel = minRiskLevel; }
+        public boolean isAnomaliesOnly() { return anomaliesOnly; }
+        public void setAnomaliesOnly(boolean anomaliesOnly) { this.anomaliesOnly = anomaliesOnly; }
+    }
+
+    private record Column(String name, Function<AuditLog, Object> getter) {
+
+        /** Value as a string, number or boolean */
+        Object valueOf(AuditLog auditLog) {
+            Object value = getter.apply(auditLog);
+            return value instanceof Enum<?> || value instanceof LocalDateTime ? value.toString() : value;
+        }
+    }
+
+    private interface RowWriter {
+        void write(AuditLog auditLog) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvWriter implements RowWriter {
+        private final Writer out;
+
+        private CsvWriter(OutputStream stream) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(COLUMNS.get(i).name());
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        public void write(AuditLog auditLog) throws IOException {
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = COLUMNS.get(i).valueOf(auditLog);
+                if (value != null) {
+                    writeField(value.toString());
+                }
+            }
+            out.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            // Usernames, user agents and details are user-supplied; keep spreadsheets from evaluating them
+            boolean formula = !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0;
+            boolean quote = formula || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            if (formula) {
+                out.write('\'');
+            }
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator json;
+
+        private NdjsonWriter(OutputStream stream) throws IOException {
+            this.json = JSON_FACTORY.createGenerator(stream);
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Each object ends its own line instead of the default space between root values
+            json.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(AuditLog auditLog) throws IOException {
+            json.writeStartObject();
+            for (Column column : COLUMNS) {
+                Object value = column.valueOf(auditLog);
+                if (value != null) {
+                    json.writeObjectField(column.name(), value);
+                }
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            json.flush();
+        }
+    }
+}
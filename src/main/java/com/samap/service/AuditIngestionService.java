@@ -0,0 +1,385 @@
+package com.samap.service;
+
+import com.samap.config.CorrelationId;
+import com.samap.config.MessageQueueConfig.MessagePublisher;
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind pipeline for audit events.
+ *
+ * Request threads hand events to a bounded queue; a single writer thread drains it
+ * and persists them in batches, flushing when a batch is full or the flush interval
+ * elapses, so audit volume turns into a few large transactions instead of one
+ * transaction per event.
+ *
+ * With transport RABBITMQ the writer thread publishes the drained events to the audit
+ * exchange instead, and {@link AuditQueueConsumer} persists them on whichever nodes run
+ * it; request threads never wait on the broker. Events that cannot be published are
+ * persisted locally. After {@code audit.ingestion.rabbitmq.breaker-failure-threshold}
+ * consecutive publish failures a circuit breaker stops trying the broker for
+ * {@code audit.ingestion.rabbitmq.breaker-open-ms}, so an unreachable broker does not
+ * cost a connection timeout per batch; the first batch after that is the trial.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditIngestionService {
+
+    private final AuditLogRepository auditLogRepository;
+    private final AuditSpoolService auditSpoolService;
+    private final AuditDictionaryService auditDictionaryService;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<MessagePublisher> messagePublisher;
+
+    @Value("${audit.ingestion.transport:LOCAL}")
+    private Transport transport;
+
+    @Value("${audit.ingestion.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${audit.ingestion.batch-size:200}")
+    private int batchSize;
+
+    @Value("${audit.ingestion.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${audit.ingestion.overflow-policy:DROP_OLDEST}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${audit.ingestion.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @Value("${audit.ingestion.rabbitmq.breaker-failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${audit.ingestion.rabbitmq.breaker-open-ms:30000}")
+    private long breakerOpenMs;
+
+    private BlockingQueue<AuditLog> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // Publish circuit breaker, only touched by whichever thread is dispatching
+    private int consecutivePublishFailures;
+    private volatile long breakerOpenUntilNanos;
+    private volatile boolean breakerOpen;
+
+    private DistributionSummary batchSizeSummary;
+    private Timer flushTimer;
+    private Counter droppedCounter;
+    private Counter failedCounter;
+    private Counter publishedCounter;
+    private Counter publishFailedCounter;
+
+    /**
+     * Where submitted events go before they are persisted
+     */
+    public enum Transport {
+        /** In-process queue drained by the local writer thread */
+        LOCAL,
+        /** The RabbitMQ audit exchange, drained by batch consumers */
+        RABBITMQ
+    }
+
+    /**
+     * What to do with an event when the queue is full
+     */
+    public enum OverflowPolicy {
+        /** Discard the incoming event */
+        DROP_NEWEST,
+        /** Discard the oldest queued event to make room */
+        DROP_OLDEST,
+        /** Persist the event synchronously on the calling thread, which then waits on the database */
+        CALLER_RUNS
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Gauge.builder("samap_audit_queue_depth", queue, BlockingQueue::size)
+                .description("Audit events waiting to be persisted")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("samap_audit_batch_size")
+                .description("Number of audit events persisted per flush")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("samap_audit_flush_duration")
+                .description("Audit batch flush latency")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("samap_audit_dropped_total")
+                .description("Audit events dropped because the queue was full")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("samap_audit_failed_total")
+                .description("Audit events that could neither be persisted nor spooled")
+                .register(meterRegistry);
+        publishedCounter = Counter.builder("samap_audit_published_total")
+                .description("Audit events published to the message broker")
+                .register(meterRegistry);
+        publishFailedCounter = Counter.builder("samap_audit_publish_failed_total")
+                .description("Audit events persisted locally because publishing to the broker failed")
+                .register(meterRegistry);
+        Gauge.builder("samap_audit_publish_breaker_open", this, service -> service.breakerOpen ? 1 : 0)
+                .description("1 while the broker circuit breaker is open and audit events are persisted locally")
+                .register(meterRegistry);
+
+        if (transport == Transport.RABBITMQ && messagePublisher.getIfAvailable() == null) {
+            log.warn("audit.ingestion.transport is RABBITMQ but RabbitMQ is not enabled - using the local queue");
+        }
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "samap-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        log.info("Audit ingestion pipeline started (transport={}, capacity={}, batchSize={}, flushInterval={}ms, overflow={})",
+            transport, queueCapacity, batchSize, flushIntervalMs, overflowPolicy);
+    }
+
+    /**
+     * Queue an audit event for persistence without blocking the caller
+     */
+    public void submit(AuditLog auditLog) {
+        if (auditSpoolService.isWriteAhead()) {
+            if (!auditSpoolService.append(List.of(auditLog))) {
+                failedCounter.increment();
+            }
+            return;
+        }
+
+        if (queue.offer(auditLog)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                queue.poll();
+                droppedCounter.increment();
+                if (!queue.offer(auditLog)) {
+                    droppedCounter.increment();
+                }
+                break;
+            case CALLER_RUNS:
+                dispatch(List.of(auditLog));
+                break;
+            default:
+                droppedCounter.increment();
+                log.warn("Audit queue full - dropping event {} for {}", auditLog.getAction(), auditLog.getUsername());
+                break;
+        }
+    }
+
+    /**
+     * Persist a batch received from the broker. Returns true once the events are either
+     * in the database or in the local spool, i.e. safe to acknowledge.
+     */
+    public boolean persistBatch(List<AuditLog> batch) {
+        return flush(batch);
+    }
+
+    /**
+     * Number of events currently waiting in the queue
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Writer loop: wait for the first event, then keep collecting until the batch
+     * is full or the flush interval has elapsed.
+     */
+    private void runWriter() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                AuditLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    AuditLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Audit writer loop error: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Publish the batch to the broker with transport RABBITMQ, and persist whatever was
+     * not published
+     */
+    private void dispatch(List<AuditLog> batch) {
+        if (transport != Transport.RABBITMQ) {
+            flush(batch);
+            return;
+        }
+        int published = publish(batch);
+        if (published < batch.size()) {
+            flush(new ArrayList<>(batch.subList(published, batch.size())));
+        }
+    }
+
+    /**
+     * Publish events in order until one fails; returns how many were published
+     */
+    private int publish(List<AuditLog> batch) {
+        MessagePublisher publisher = messagePublisher.getIfAvailable();
+        if (publisher == null || (breakerOpen && System.nanoTime() < breakerOpenUntilNanos)) {
+            return 0;
+        }
+
+        int published = 0;
+        for (AuditLog auditLog : batch) {
+            // The publish post-processor takes the message's correlation ID from the MDC
+            String previous = MDC.get(CorrelationId.MDC_KEY);
+            if (auditLog.getCorrelationId() != null) {
+                MDC.put(CorrelationId.MDC_KEY, auditLog.getCorrelationId());
+            }
+            try {
+                publisher.publishAuditEvent(auditLog);
+            } catch (AmqpException e) {
+                publishFailed(batch.size() - published, e);
+                return published;
+            } finally {
+                if (previous != null) {
+                    MDC.put(CorrelationId.MDC_KEY, previous);
+                } else {
+                    MDC.remove(CorrelationId.MDC_KEY);
+                }
+            }
+            published++;
+        }
+
+        publishedCounter.increment(published);
+        if (breakerOpen) {
+            breakerOpen = false;
+            log.info("Audit broker reachable again - publishing resumed");
+        }
+        consecutivePublishFailures = 0;
+        return published;
+    }
+
+    private void publishFailed(int unpublished, AmqpException e) {
+        publishFailedCounter.increment(unpublished);
+        consecutivePublishFailures++;
+        if (consecutivePublishFailures < breakerFailureThreshold) {
+            log.debug("Audit publish failed, persisting {} events locally: {}", unpublished, e.getMessage());
+            return;
+        }
+        breakerOpenUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(breakerOpenMs);
+        if (!breakerOpen) {
+            breakerOpen = true;
+            log.warn("Audit publishing failed {} times in a row - persisting locally for the next {} ms: {}",
+                consecutivePublishFailures, breakerOpenMs, e.getMessage());
+        }
+    }
+
+    /**
+     * Persist a batch of events in a single transaction; false if they were lost
+     */
+    private boolean flush(List<AuditLog> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        // Database is known to be down: go straight to the spool instead of waiting on timeouts
+        if (auditSpoolService.shouldBypassDatabase()) {
+            if (!auditSpoolService.append(batch)) {
+                failedCounter.increment(batch.size());
+                return false;
+            }
+            return true;
+        }
+
+        long start = System.nanoTime();
+        try {
+            auditDictionaryService.internAll(batch);
+            transactionTemplate.executeWithoutResult(status -> auditLogRepository.saveAll(batch));
+            batchSizeSummary.record(batch.size());
+            return true;
+        } catch (Exception e) {
+            if (auditSpoolService.spoolAfterFailure(batch, e)) {
+                log.warn("Spooled {} audit events after database write failure: {}", batch.size(), e.getMessage());
+                return true;
+            }
+            failedCounter.increment(batch.size());
+            log.error("Failed to persist {} audit events: {}", batch.size(), e.getMessage(), e);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stop the writer and drain whatever is still queued before the context closes
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<AuditLog> remaining = new ArrayList<>(batchSize);
+        int drained = 0;
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            drained += remaining.size();
+            dispatch(remaining);
+            remaining.clear();
+        }
+
+        log.info("Audit ingestion pipeline stopped - drained {} pending events", drained);
+    }
+}
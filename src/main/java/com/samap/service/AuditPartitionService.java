@@ -0,0 +1,323 @@
+package com.samap.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Native range partitioning of audit_logs by timestamp (PostgreSQL only).
+ *
+ * The table layout is set up while this bean is initialized, which the
+ * EntityManagerFactory waits for ({@link com.samap.config.SchemaInitializationConfig}),
+ * so nothing can write to audit_logs yet. An unpartitioned audit_logs table is converted
+ * without copying rows: it is renamed and attached to a new partitioned parent as a
+ * MINVALUE partition that covers everything up to the end of the current period, and its
+ * indexes are adopted by the parent's partitioned indexes. On a new database the
+ * partitioned parent is created with just its key columns and Hibernate's schema update
+ * adds the rest. Future partitions are created ahead of time by a scheduled job, a
+ * DEFAULT partition catches anything outside them, and retention drops whole partitions
+ * instead of deleting rows.
+ *
+ * Two partitions have no lower bound that retention could wait for: the legacy one
+ * holding all pre-conversion history, and DEFAULT. Retention deletes their expired rows
+ * in small committed chunks until the legacy partition's upper bound passes the cutoff
+ * and it is dropped whole. If maintenance was missed and rows for a period landed in
+ * DEFAULT, creating that period's partition first moves them out of DEFAULT, since
+ * PostgreSQL refuses to add a partition whose range DEFAULT already holds rows for.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditPartitionService {
+
+    private static final String TABLE = "audit_logs";
+    private static final String LEGACY_PARTITION = "audit_logs_legacy";
+    private static final String DEFAULT_PARTITION = "audit_logs_default";
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${audit.partitioning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.partitioning.interval:MONTH}")
+    private PartitionInterval interval;
+
+    @Value("${audit.partitioning.premake:3}")
+    private int premake;
+
+    @Value("${audit.partitioning.retention-delete-batch-size:10000}")
+    private int retentionDeleteBatchSize;
+
+    private volatile boolean partitioned;
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Width of each partition
+     */
+    public enum PartitionInterval {
+        DAY,
+        MONTH
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled || !isPostgres()) {
+            return;
+        }
+
+        // Plain JDBC transactions: the JPA transaction manager does not exist yet. Each one is
+        // new, so retention chunks commit on their own even when called inside a JPA transaction.
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            if (!tableExists()) {
+                transactionTemplate.executeWithoutResult(status -> createPartitioned());
+            } else if (!checkPartitioned()) {
+                transactionTemplate.executeWithoutResult(status -> convertToPartitioned());
+            }
+            partitioned = checkPartitioned();
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+            ensureFuturePartitions();
+        } catch (Exception e) {
+            log.error("Audit log partitioning setup failed - continuing with existing table: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Whether audit_logs is a partitioned table
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Create upcoming partitions daily so inserts never land in the DEFAULT partition
+     */
+    @Scheduled(cron = "${audit.partitioning.maintenance-cron:0 15 0 * * ?}")
+    public void maintainPartitions() {
+        if (!partitioned) {
+            return;
+        }
+        try {
+            ensureFuturePartitions();
+        } catch (Exception e) {
+            log.error("Audit partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Detach and drop every partition whose upper bound is at or before the cutoff.
+     * Rows in the partition straddling the cutoff are kept until that partition expires.
+     */
+    public int dropPartitionsBefore(LocalDateTime cutoff) {
+        int dropped = 0;
+
+        for (Map.Entry<String, LocalDateTime> partition : listPartitionUpperBounds().entrySet()) {
+            LocalDateTime upperBound = partition.getValue();
+            if (upperBound == null || upperBound.isAfter(cutoff)) {
+                continue;
+            }
+
+            String name = partition.getKey();
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            jdbcTemplate.execute("DROP TABLE " + name);
+            log.info("Dropped audit partition {} (upper bound {})", name, upperBound);
+            dropped++;
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Delete rows older than the cutoff from the legacy and DEFAULT partitions, which
+     * dropping whole partitions never reaches. Each chunk commits on its own so the
+     * delete neither holds locks nor grows one huge transaction.
+     */
+    public long deleteExpiredUnboundedRows(LocalDateTime cutoff) {
+        Map<String, LocalDateTime> partitions = listPartitionUpperBounds();
+        long deleted = 0;
+        for (String partition : List.of(LEGACY_PARTITION, DEFAULT_PARTITION)) {
+            if (!partitions.containsKey(partition)) {
+                continue;
+            }
+            int chunk;
+            do {
+                chunk = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    "DELETE FROM " + partition + " WHERE ctid = ANY (ARRAY(SELECT ctid FROM " + partition +
+                    " WHERE timestamp < ? LIMIT ?))", Timestamp.valueOf(cutoff), retentionDeleteBatchSize));
+                deleted += chunk;
+            } while (chunk >= retentionDeleteBatchSize);
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} expired audit rows from the legacy and default partitions", deleted);
+        }
+        return deleted;
+    }
+
+    private void createPartitioned() {
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (id BIGINT NOT NULL, timestamp TIMESTAMP(6) NOT NULL, " +
+            "PRIMARY KEY (id, timestamp)) PARTITION BY RANGE (timestamp)");
+        log.info("Created partitioned table {}", TABLE);
+    }
+
+    private void convertToPartitioned() {
+        LocalDateTime maxTimestamp = jdbcTemplate.queryForObject(
+            "SELECT MAX(timestamp) FROM " + TABLE, LocalDateTime.class);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime legacyUpperBound = nextPeriodStart(
+            maxTimestamp != null && maxTimestamp.isAfter(now) ? maxTimestamp : now);
+
+        // Index definitions still reference audit_logs, so they can be replayed on the new parent
+        List<Map<String, Object>> indexes = jdbcTemplate.queryForList(
+            "SELECT i.relname AS name, pg_get_indexdef(i.oid) AS definition " +
+            "FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid " +
+            "WHERE x.indrelid = '" + TABLE + "'::regclass AND NOT x.indisprimary");
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+        for (Map<String, Object> index : indexes) {
+            jdbcTemplate.execute("ALTER INDEX " + index.get("name") + " RENAME TO " + index.get("name") + "_legacy");
+        }
+
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION +
+            " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (timestamp)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, timestamp)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION +
+            " FOR VALUES FROM (MINVALUE) TO ('" + BOUND_FORMAT.format(legacyUpperBound) + "')");
+
+        // Matching indexes on the legacy partition are attached rather than rebuilt
+        for (Map<String, Object> index : indexes) {
+            jdbcTemplate.execute((String) index.get("definition"));
+        }
+
+        log.info("Converted {} to a partitioned table; existing rows kept in {} (up to {})",
+            TABLE, LEGACY_PARTITION, legacyUpperBound);
+    }
+
+    private void ensureFuturePartitions() {
+        // Continue after the last range, e.g. the legacy partition, so periods missed while
+        // maintenance did not run are created as well; start now when there is none
+        LocalDateTime start = null;
+        for (LocalDateTime upperBound : listPartitionUpperBounds().values()) {
+            if (upperBound != null && (start == null || upperBound.isAfter(start))) {
+                start = upperBound;
+            }
+        }
+        if (start == null) {
+            start = periodStart(LocalDateTime.now());
+        }
+
+        LocalDateTime horizon = periodStart(LocalDateTime.now());
+        for (int i = 0; i <= premake; i++) {
+            horizon = nextPeriodStart(horizon);
+        }
+
+        while (start.isBefore(horizon)) {
+            LocalDateTime end = nextPeriodStart(start);
+            createPartition(partitionName(start), start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * Create the partition for [start, end). Rows DEFAULT already holds for that range
+     * are moved into it, in one transaction, before it is attached.
+     */
+    private void createPartition(String name, LocalDateTime start, LocalDateTime end) {
+        String bounds = " FOR VALUES FROM ('" + BOUND_FORMAT.format(start) + "') TO ('" + BOUND_FORMAT.format(end) + "')";
+        String range = " WHERE timestamp >= '" + BOUND_FORMAT.format(start) + "' AND timestamp < '"
+            + BOUND_FORMAT.format(end) + "'";
+
+        Boolean stranded = jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + range + ")", Boolean.class);
+        if (!Boolean.TRUE.equals(stranded)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE + bounds);
+            log.debug("Ensured audit partition {} [{} - {})", name, start, end);
+            return;
+        }
+
+        Integer moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + TABLE +
+                " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int rows = jdbcTemplate.update("INSERT INTO " + name + " SELECT * FROM " + DEFAULT_PARTITION + range);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + range);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + name + bounds);
+            return rows;
+        });
+        log.warn("Moved {} audit rows from {} into new partition {} [{} - {})", moved, DEFAULT_PARTITION, name, start, end);
+    }
+
+    /**
+     * Partition name to upper bound; the DEFAULT partition and MAXVALUE bounds map to null
+     */
+    private Map<String, LocalDateTime> listPartitionUpperBounds() {
+        Map<String, LocalDateTime> bounds = new TreeMap<>();
+        jdbcTemplate.query(
+            "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = '" + TABLE + "'::regclass",
+            rs -> {
+                Matcher matcher = UPPER_BOUND.matcher(rs.getString(2));
+                bounds.put(rs.getString(1), matcher.find()
+                    ? Timestamp.valueOf(matcher.group(1)).toLocalDateTime()
+                    : null);
+            });
+        return bounds;
+    }
+
+    private LocalDateTime periodStart(LocalDateTime time) {
+        LocalDate date = time.toLocalDate();
+        return (interval == PartitionInterval.DAY ? date : date.withDayOfMonth(1)).atStartOfDay();
+    }
+
+    private LocalDateTime nextPeriodStart(LocalDateTime time) {
+        LocalDateTime start = periodStart(time);
+        return interval == PartitionInterval.DAY ? start.plusDays(1) : start.plusMonths(1);
+    }
+
+    private String partitionName(LocalDateTime start) {
+        String pattern = interval == PartitionInterval.DAY ? "yyyyMMdd" : "yyyyMM";
+        return TABLE + "_p" + DateTimeFormatter.ofPattern(pattern).format(start);
+    }
+
+    private boolean tableExists() {
+        Boolean result = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, TABLE);
+        return Boolean.TRUE.equals(result);
+    }
+
+    private boolean checkPartitioned() {
+        Boolean result = jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+            "WHERE c.relname = ?)", Boolean.class, TABLE);
+        return Boolean.TRUE.equals(result);
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.samap.service;
+
+import com.rabbitmq.client.Channel;
+import com.samap.config.MessageQueueConfig;
+import com.samap.model.AuditLog;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the audit events queue into the database in batches.
+ *
+ * A batch is acknowledged with a single multiple-ack after it has been persisted (or
+ * spooled locally), and negatively acknowledged with requeue if it could be neither,
+ * so no event is lost between broker and database. Messages that cannot be decoded
+ * are rejected individually without requeue.
+ *
+ * Nodes that should only publish set {@code audit.ingestion.rabbitmq.consumer-enabled=false}.
+ */
+@Component
+@ConditionalOnExpression("'${audit.ingestion.transport:LOCAL}' == 'RABBITMQ' and ${spring.rabbitmq.enabled:false}")
+@RequiredArgsConstructor
+@Slf4j
+public class AuditQueueConsumer {
+
+    private final AuditIngestionService auditIngestionService;
+    private final MessageConverter messageConverter;
+
+    @RabbitListener(
+        id = "auditQueueConsumer",
+        queues = MessageQueueConfig.AUDIT_EVENTS_QUEUE,
+        containerFactory = MessageQueueConfig.AUDIT_BATCH_CONTAINER_FACTORY,
+        autoStartup = "${audit.ingestion.rabbitmq.consumer-enabled:true}")
+    public void onBatch(List<Message> messages, Channel channel) throws IOException {
+        List<AuditLog> batch = new ArrayList<>(messages.size());
+        // Highest tag still outstanding; acking a tag that was already rejected is a channel error
+        long lastDeliveryTag = -1;
+        for (Message message : messages) {
+            long deliveryTag = message.getMessageProperties().getDeliveryTag();
+            try {
+                batch.add((AuditLog) messageConverter.fromMessage(message));
+                lastDeliveryTag = deliveryTag;
+            } catch (MessageConversionException | ClassCastException e) {
+                log.error("Rejecting undecodable audit message {}: {}", deliveryTag, e.getMessage());
+                channel.basicReject(deliveryTag, false);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        if (auditIngestionService.persistBatch(batch)) {
+            channel.basicAck(lastDeliveryTag, true);
+        } else {
+            log.warn("Requeueing {} audit messages after persistence failure", batch.size());
+            channel.basicNack(lastDeliveryTag, true, true);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Roll-up mode for high-volume read audits.
+ *
+ * Successful requests to endpoints matching the roll-up policy are counted in memory
+ * per (user, endpoint, method, status, minute) with latency min/max/sum, and each
+ * bucket is written as a single summary row once its minute has closed. Everything
+ * else, including failed requests, is still written one row per event.
+ *
+ * Off by default ({@code audit.rollup.enabled}): once enabled, individual rolled-up
+ * requests can no longer be found in the audit trail, only their per-minute summary.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditRollupService {
+
+    private final AuditIngestionService auditIngestionService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${audit.rollup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${audit.rollup.endpoints:/api/users,/api/security/status,/api/audit/logs}")
+    private List<String> endpointPatterns;
+
+    @Value("${audit.rollup.methods:GET}")
+    private List<String> methods;
+
+    @Value("${audit.rollup.max-buckets:100000}")
+    private int maxBuckets;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<BucketKey, Bucket> buckets = new ConcurrentHashMap<>();
+    private Counter rolledUpCounter;
+
+    @PostConstruct
+    public void init() {
+        rolledUpCounter = Counter.builder("samap_audit_rolled_up_total")
+                .description("API access events folded into roll-up summary rows")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether requests to this endpoint are aggregated instead of logged individually
+     */
+    public boolean isRolledUp(String endpoint, String httpMethod, Integer responseStatus) {
+        if (!enabled || endpoint == null || responseStatus == null || responseStatus >= 400) {
+            return false;
+        }
+        if (methods.stream().noneMatch(method -> method.equalsIgnoreCase(httpMethod))) {
+            return false;
+        }
+        return endpointPatterns.stream().anyMatch(pattern -> pathMatcher.match(pattern.trim(), endpoint));
+    }
+
+    /**
+     * Add one request to its bucket; returns false if it must be logged individually
+     */
+    public boolean record(String username, String endpoint, String httpMethod, int responseStatus, long latencyMs) {
+        return record(username, endpoint, httpMethod, responseStatus, latencyMs, LocalDateTime.now());
+    }
+
+    boolean record(String username, String endpoint, String httpMethod, int responseStatus, long latencyMs,
+                   LocalDateTime at) {
+        BucketKey key = new BucketKey(username, endpoint, httpMethod, responseStatus, at.truncatedTo(ChronoUnit.MINUTES));
+
+        while (true) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxBuckets) {
+                    return false;
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+            }
+            // A sealed bucket was just flushed; retry with a fresh one
+            if (bucket.add(latencyMs)) {
+                rolledUpCounter.increment();
+                return true;
+            }
+            buckets.remove(key, bucket);
+        }
+    }
+
+    /**
+     * Write summary rows for every bucket whose minute has closed
+     */
+    @Scheduled(fixedDelayString = "${audit.rollup.flush-interval-ms:15000}")
+    public void flushClosedBuckets() {
+        flush(LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush(null);
+    }
+
+    /**
+     * Submit the buckets of minutes before openMinute, or all buckets when it is null
+     */
+    void flush(LocalDateTime openMinute) {
+        List<AuditLog> summaries = new ArrayList<>();
+
+        for (Map.Entry<BucketKey, Bucket> entry : buckets.entrySet()) {
+            BucketKey key = entry.getKey();
+            if (openMinute != null && !key.minute.isBefore(openMinute)) {
+                continue;
+            }
+            Bucket bucket = entry.getValue();
+            buckets.remove(key, bucket);
+            if (bucket.seal().count > 0) {
+                summaries.add(toSummary(key, bucket));
+            }
+        }
+
+        summaries.forEach(auditIngestionService::submit);
+        if (!summaries.isEmpty()) {
+            log.debug("Flushed {} audit roll-up buckets", summaries.size());
+        }
+    }
+
+    private AuditLog toSummary(BucketKey key, Bucket bucket) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(key.username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS_ROLLUP);
+        auditLog.setEndpoint(key.endpoint);
+        auditLog.setHttpMethod(key.httpMethod);
+        auditLog.setResponseStatus(key.responseStatus);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setEventCount(bucket.count);
+        auditLog.setLatencyMinMs(bucket.minLatency);
+        auditLog.setLatencyMaxMs(bucket.maxLatency);
+        auditLog.setLatencySumMs(bucket.sumLatency);
+        auditLog.setExecutionTimeMs(bucket.sumLatency / bucket.count);
+        auditLog.setTimestamp(key.minute);
+        return auditLog;
+    }
+
+    private static final class BucketKey {
+        private final String username;
+        private final String endpoint;
+        private final String httpMethod;
+        private final int responseStatus;
+        private final LocalDateTime minute;
+
+        private BucketKey(String username, String endpoint, String httpMethod, int responseStatus, LocalDateTime minute) {
+            this.username = username;
+            this.endpoint = endpoint;
+            this.httpMethod = httpMethod;
+            this.responseStatus = responseStatus;
+            this.minute = minute;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BucketKey other)) return false;
+            return responseStatus == other.responseStatus
+                && Objects.equals(username, other.username)
+                && Objects.equals(endpoint, other.endpoint)
+                && Objects.equals(httpMethod, other.httpMethod)
+                && minute.equals(other.minute);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, endpoint, httpMethod, responseStatus, minute);
+        }
+    }
+
+    private static final class Bucket {
+        private int count;
+        private long minLatency = Long.MAX_VALUE;
+        private long maxLatency;
+        private long sumLatency;
+        private boolean sealed;
+
+        synchronized boolean add(long latencyMs) {
+            if (sealed) {
+                return false;
+            }
+            count++;
+            minLatency = Math.min(minLatency, latencyMs);
+            maxLatency = Math.max(maxLatency, latencyMs);
+            sumLatency += latencyMs;
+            return true;
+        }
+
+        synchronized Bucket seal() {
+            sealed = true;
+            return this;
+        }
+    }
+}
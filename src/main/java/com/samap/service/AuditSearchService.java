@@ -0,0 +1,207 @@
+package com.samap.service;
+
+import com.samap.model.AuditDictionaryEntry.Kind;
+import com.samap.model.AuditLogSummary;
+import com.samap.repository.AuditLogRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Indexed audit log search (PostgreSQL only).
+ *
+ * Username and IP address get pg_trgm GIN indexes so substring matches no longer scan
+ * the table; action and resource are matched through their dictionary ids. Results are
+ * ranked in tiers - exact match, then prefix match, then substring or dictionary match -
+ * and by recency within a tier. Exact matches ignore case: the term is compared in the
+ * case variants it can be stored in (as typed, lower case, and the spelling of a user
+ * with that name), which the B-tree indexes on username and IP address serve. Terms
+ * shorter than a trigram only get the exact tier, as no other tier could use an index.
+ * Each tier reads at most offset + page size rows in timestamp order, so only the first
+ * {@code audit.search.max-window} hits can be paged through, and the reported total is
+ * capped at {@code audit.search.count-cap}.
+ *
+ * The trigram indexes are built in the background by {@link PostgresIndexBuilder}, and
+ * the indexed path is only used once both are valid. Until then, and on other
+ * databases, {@link AuditService} falls back to the portable LIKE query.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditSearchService {
+
+    /** pg_trgm can only use the index for patterns with at least one full trigram */
+    static final int MIN_SUBSTRING_TERM_LENGTH = 3;
+    private static final int MAX_DICTIONARY_MATCHES = 1000;
+    private static final String TABLE = "audit_logs";
+    private static final String USERNAME_INDEX = "idx_audit_username_trgm";
+    private static final String IP_INDEX = "idx_audit_ip_trgm";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditLogRepository auditLogRepository;
+    private final AuditDictionaryService auditDictionaryService;
+    private final PostgresIndexBuilder indexBuilder;
+
+    @Value("${audit.search.indexed:true}")
+    private boolean indexed;
+
+    @Value("${audit.search.max-window:10000}")
+    private int maxWindow;
+
+    @Value("${audit.search.count-cap:10000}")
+    private int countCap;
+
+    private volatile boolean available;
+
+    /**
+     * Build the trigram indexes, partition by partition and without blocking writes, and
+     * switch to the indexed search once they are valid. Runs after startup and again
+     * periodically, which rebuilds an index left invalid by a failed build.
+     */
+    @Scheduled(initialDelayString = "${audit.search.index-build-delay-ms:60000}",
+               fixedDelayString = "${audit.search.index-check-interval-ms:3600000}")
+    public void ensureIndexes() {
+        if (!indexed || !indexBuilder.isPostgres()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            boolean usernameIndex = indexBuilder.ensureIndex(USERNAME_INDEX, TABLE, "USING gin (username gin_trgm_ops)");
+            boolean ipIndex = indexBuilder.ensureIndex(IP_INDEX, TABLE, "USING gin (ip_address gin_trgm_ops)");
+            if ((usernameIndex && ipIndex) != available) {
+                log.info(usernameIndex && ipIndex ? "Audit search using trigram indexes"
+                    : "Audit search trigram indexes not valid - falling back to LIKE scans");
+            }
+            available = usernameIndex && ipIndex;
+        } catch (Exception e) {
+            available = indexBuilder.isValid(USERNAME_INDEX) && indexBuilder.isValid(IP_INDEX);
+            log.warn("Building trigram search indexes failed, retrying later{}: {}",
+                available ? "" : " - audit search falls back to LIKE scans", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the indexed search path can be used
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Search username, IP address, action and resource, best matches first. The sort
+     * of the pageable is ignored in favour of relevance and recency.
+     */
+    public Page<AuditLogSummary> search(String searchTerm, Pageable pageable) {
+        String term = searchTerm.trim();
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : maxWindow;
+        if (term.isEmpty() || offset >= maxWindow) {
+            return Page.empty(pageable);
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("exact", exactValues(term))
+            .addValue("prefix", escapeLike(term) + "%")
+            .addValue("contains", "%" + escapeLike(term) + "%")
+            .addValue("window", (int) Math.min(offset + limit, maxWindow))
+            .addValue("countWindow", countCap)
+            .addValue("limit", limit)
+            .addValue("offset", offset);
+
+        String exact = "(a.username IN (:exact) OR a.ip_address IN (:exact))";
+        List<String> tiers = new ArrayList<>();
+        tiers.add(exact);
+
+        if (term.length() >= MIN_SUBSTRING_TERM_LENGTH) {
+            // Tiers are disjoint: every exact match is also a prefix match (ILIKE is case-insensitive)
+            String prefix = "(a.username ILIKE :prefix OR a.ip_address ILIKE :prefix)";
+            tiers.add(prefix + " AND " + exact + " IS NOT TRUE");
+
+            List<String> broad = new ArrayList<>();
+            broad.add("a.username ILIKE :contains OR a.ip_address ILIKE :contains");
+            List<Integer> actionIds = auditDictionaryService.findIdsContaining(Kind.ACTION, term, MAX_DICTIONARY_MATCHES);
+            if (!actionIds.isEmpty()) {
+                broad.add("a.action_ref IN (:actionIds)");
+                params.addValue("actionIds", actionIds);
+            }
+            List<Integer> resourceIds = auditDictionaryService.findIdsContaining(Kind.RESOURCE, term, MAX_DICTIONARY_MATCHES);
+            if (!resourceIds.isEmpty()) {
+                broad.add("a.resource_ref IN (:resourceIds)");
+                params.addValue("resourceIds", resourceIds);
+            }
+            tiers.add("(" + String.join(" OR ", broad) + ") AND " + prefix + " IS NOT TRUE");
+        }
+
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbcTemplate);
+        List<Long> ids = named.queryForList(
+            "SELECT id FROM (" + union(tiers, ":window") + ") hits " +
+            "ORDER BY relevance DESC, ts DESC, id DESC LIMIT :limit OFFSET :offset",
+            params, Long.class);
+
+        // A short page is the last one, so its total is known; otherwise count through the
+        // same index-ordered tier scans rather than one OR over every predicate
+        long total = offset + ids.size();
+        if (ids.size() == limit) {
+            Long counted = named.queryForObject(
+                "SELECT COUNT(*) FROM (" + union(tiers, ":countWindow") + ") hits", params, Long.class);
+            total = Math.max(Math.min(Objects.requireNonNullElse(counted, 0L), countCap), total);
+        }
+
+        return new PageImpl<>(loadInOrder(ids), pageable, total);
+    }
+
+    /**
+     * The spellings an exact match can be stored in: as typed, lower case, and the
+     * username of any user whose name equals the term ignoring case
+     */
+    private List<String> exactValues(String term) {
+        Set<String> values = new LinkedHashSet<>();
+        values.add(term);
+        values.add(term.toLowerCase(Locale.ROOT));
+        values.addAll(jdbcTemplate.queryForList(
+            "SELECT username FROM users WHERE UPPER(username) = UPPER(?)", String.class, term));
+        return new ArrayList<>(values);
+    }
+
+    // Highest relevance first: tier i of n scores n - i
+    private String union(List<String> tiers, String window) {
+        List<String> selects = new ArrayList<>();
+        for (int i = 0; i < tiers.size(); i++) {
+            selects.add("(SELECT a.id, a.timestamp AS ts, " + (tiers.size() - i) + " AS relevance " +
+                "FROM audit_logs a WHERE " + tiers.get(i) + " ORDER BY a.timestamp DESC, a.id DESC LIMIT " + window + ")");
+        }
+        return String.join(" UNION ALL ", selects);
+    }
+
+    private List<AuditLogSummary> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, AuditLogSummary> byId = auditLogRepository.findSummariesByIdIn(ids).stream()
+            .collect(Collectors.toMap(AuditLogSummary::getId, Function.identity()));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    private String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
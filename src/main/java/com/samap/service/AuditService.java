@@ -1,18 +1,35 @@
 package com.samap.service;
 
+import com.samap.config.AsyncConfig;
+import com.samap.config.CorrelationId;
+import com.samap.config.ReplicaRoutingAspect.ReplicaLag;
+import com.samap.model.AuditDictionaryEntry.Kind;
 import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
 import com.samap.repository.AuditLogRepository;
+import com.samap.service.RiskAssessmentService.AnomalyAssessment;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Audit service for comprehensive security logging and monitoring
@@ -22,14 +39,33 @@ import java.util.UUID;
 @Slf4j
 public class AuditService {
 
+    private static final int MAX_SEARCH_DICTIONARY_MATCHES = 1000;
+    private static final int MAX_CURSOR_PAGE_SIZE = 500;
+    /** Lowest risk score of an {@code @Auditable(highRisk = true)} operation, i.e. RiskLevel.HIGH */
+    private static final double HIGH_RISK_OPERATION_SCORE = 0.6;
+
     private final AuditLogRepository auditLogRepository;
     private final RiskAssessmentService riskAssessmentService;
+    private final AuditIngestionService auditIngestionService;
+    private final AuditPartitionService auditPartitionService;
+    private final AuditArchiveService auditArchiveService;
+    private final AuditDictionaryService auditDictionaryService;
+    private final AuditRollupService auditRollupService;
+    private final AuditSearchService auditSearchService;
+    private final AuditActivityRollupService auditActivityRollupService;
+    private final HeavyHitterService heavyHitterService;
+    private final DistinctCountService distinctCountService;
+    private final SecurityMonitoringService securityMonitoringService;
+
+    @Value("${audit.retention.days:0}")
+    private int retentionDays;
+
+    @Value("${audit.archive.max-offset-rows:10000}")
+    private int maxArchiveOffsetRows;
 
     /**
-     * Log security event asynchronously
+     * Log security event through the write-behind pipeline
      */
-    @Async
-    @Transactional
     public void logSecurityEvent(String username, String action, String details, 
                                String ipAddress, String userAgent, AuditLog.ActionStatus status) {
         logSecurityEvent(username, action, details, ipAddress, userAgent, status, 0.0);
@@ -38,12 +74,13 @@ public class AuditService {
     /**
      * Log security event with risk score
      */
-    @Async
-    @Transactional
     public void logSecurityEvent(String username, String action, String details, 
                                String ipAddress, String userAgent, AuditLog.ActionStatus status, 
                                double riskScore) {
         try {
+            heavyHitterService.record(username, ipAddress, null);
+            distinctCountService.record(username, ipAddress, userAgent);
+
             AuditLog auditLog = new AuditLog();
             auditLog.setUsername(username);
             auditLog.setAction(action);
@@ -53,88 +90,184 @@ public class AuditService {
             auditLog.setStatus(status);
             auditLog.setRiskScore(riskScore);
             auditLog.setRiskLevelFromScore();
-            auditLog.setCorrelationId(UUID.randomUUID().toString());
+            auditLog.setCorrelationId(CorrelationId.current());
             auditLog.setTimestamp(LocalDateTime.now());
 
-            // Perform anomaly detection
-            boolean isAnomaly = riskAssessmentService.isAnomalousActivity(auditLog);
-            auditLog.setIsAnomaly(isAnomaly);
+            submitSecurityEvent(auditLog);
 
-            if (isAnomaly) {
-                auditLog.setAnomalyReasons(riskAssessmentService.getAnomalyReasons(auditLog));
-            }
+        } catch (Exception e) {
+            log.error("Failed to log audit event: {}", e.getMessage(), e);
+        }
+    }
 
-            auditLogRepository.save(auditLog);
+    /**
+     * Log a request that failed or ran an {@code @Auditable(highRisk = true)} operation as a
+     * security event. The event keeps the request fields but, unlike {@link #logApiAccess},
+     * is never rolled up and goes through anomaly evaluation and security monitoring. A
+     * failed request is logged as {@code <ACTION>_FAILED}, or API_ERROR without an action.
+     */
+    public void logRequestSecurityEvent(String username, String action, String resource, String endpoint,
+                                        String httpMethod, String requestParams, Integer responseStatus,
+                                        Long executionTime, String ipAddress, String userAgent, String sessionId,
+                                        String details, String errorMessage, boolean highRisk) {
+        try {
+            heavyHitterService.record(username, ipAddress, endpoint);
+            distinctCountService.record(username, ipAddress, userAgent);
 
-            // Log high-risk activities
-            if (auditLog.isHighRisk()) {
-                log.warn("High-risk activity detected: {} by {} from {} - Risk Score: {}", 
-                    action, username, ipAddress, riskScore);
-            }
+            boolean failed = responseStatus == null || responseStatus >= 400;
+            String eventAction = !failed ? (action != null ? action : AuditLog.ACTION_DATA_ACCESS)
+                : action != null ? action + "_FAILED" : AuditLog.ACTION_API_ERROR;
+            AuditLog auditLog = apiAccessLog(username, eventAction, resource, endpoint, httpMethod, requestParams,
+                responseStatus, executionTime, ipAddress, userAgent, sessionId, details, errorMessage);
+
+            double riskScore = riskAssessmentService.calculateApiAccessRiskScore(auditLog);
+            auditLog.setRiskScore(highRisk ? Math.max(riskScore, HIGH_RISK_OPERATION_SCORE) : riskScore);
+            auditLog.setRiskLevelFromScore();
+
+            submitSecurityEvent(auditLog);
 
         } catch (Exception e) {
-            log.error("Failed to log audit event: {}", e.getMessage(), e);
+            log.error("Failed to log request security event: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Anomaly evaluation, then the write-behind pipeline, then security monitoring
+     */
+    private void submitSecurityEvent(AuditLog auditLog) {
+        // Perform anomaly detection, then feed the event into the in-memory windows
+        AnomalyAssessment assessment = riskAssessmentService.evaluateAnomaly(auditLog);
+        riskAssessmentService.recordActivity(auditLog);
+        auditLog.setIsAnomaly(assessment.isAnomalous());
+
+        if (assessment.isAnomalous()) {
+            auditLog.setAnomalyReasons(assessment.getReasons());
+        }
+
+        auditIngestionService.submit(auditLog);
+
+        // Log high-risk activities
+        if (auditLog.isHighRisk()) {
+            log.warn("High-risk activity detected: {} by {} from {} - Risk Score: {}",
+                auditLog.getAction(), auditLog.getUsername(), auditLog.getIpAddress(), auditLog.getRiskScore());
+            securityMonitoringService.monitorHighRiskActivity(auditLog);
+        }
+        if (assessment.isAnomalous()) {
+            securityMonitoringService.monitorAnomalousActivity(auditLog);
         }
     }
 
     /**
      * Log API access
      */
-    @Async
-    @Transactional
     public void logApiAccess(String username, String endpoint, String httpMethod, 
                            String requestParams, Integer responseStatus, Long executionTime,
                            String ipAddress, String userAgent, String sessionId) {
+        logApiAccess(username, null, null, endpoint, httpMethod, requestParams, responseStatus, executionTime,
+            ipAddress, userAgent, sessionId, null, null);
+    }
+
+    /**
+     * Log API access for a completed request, including the audited action and resource and
+     * outcome details; a null action is logged as DATA_ACCESS
+     */
+    public void logApiAccess(String username, String action, String resource, String endpoint, String httpMethod,
+                           String requestParams, Integer responseStatus, Long executionTime,
+                           String ipAddress, String userAgent, String sessionId,
+                           String details, String errorMessage) {
         try {
-            AuditLog auditLog = new AuditLog();
-            auditLog.setUsername(username);
-            auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
-            auditLog.setEndpoint(endpoint);
-            auditLog.setHttpMethod(httpMethod);
-            auditLog.setRequestParams(requestParams);
-            auditLog.setResponseStatus(responseStatus);
-            auditLog.setExecutionTimeMs(executionTime);
-            auditLog.setIpAddress(ipAddress);
-            auditLog.setUserAgent(userAgent);
-            auditLog.setSessionId(sessionId);
-            auditLog.setStatus(responseStatus >= 200 && responseStatus < 300 ? 
-                AuditLog.ActionStatus.SUCCESS : AuditLog.ActionStatus.FAILURE);
-            auditLog.setCorrelationId(UUID.randomUUID().toString());
-            auditLog.setTimestamp(LocalDateTime.now());
+            // Counted before roll-up folding so heavy hitters and distinct counts see every request
+            heavyHitterService.record(username, ipAddress, endpoint);
+            distinctCountService.record(username, ipAddress, userAgent);
+
+            if (auditRollupService.isRolledUp(endpoint, httpMethod, responseStatus)
+                    && auditRollupService.record(username, endpoint, httpMethod, responseStatus,
+                        executionTime != null ? executionTime : 0)) {
+                return;
+            }
+
+            AuditLog auditLog = apiAccessLog(username, action != null ? action : AuditLog.ACTION_DATA_ACCESS,
+                resource, endpoint, httpMethod, requestParams, responseStatus, executionTime, ipAddress, userAgent,
+                sessionId, details, errorMessage);
 
             // Calculate risk score for API access
             double riskScore = riskAssessmentService.calculateApiAccessRiskScore(auditLog);
             auditLog.setRiskScore(riskScore);
             auditLog.setRiskLevelFromScore();
 
-            auditLogRepository.save(auditLog);
+            auditIngestionService.submit(auditLog);
 
         } catch (Exception e) {
             log.error("Failed to log API access: {}", e.getMessage(), e);
         }
     }
 
+    private AuditLog apiAccessLog(String username, String action, String resource, String endpoint, String httpMethod,
+                                  String requestParams, Integer responseStatus, Long executionTime, String ipAddress,
+                                  String userAgent, String sessionId, String details, String errorMessage) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(username);
+        auditLog.setAction(action);
+        auditLog.setResource(resource);
+        auditLog.setDetails(details);
+        auditLog.setErrorMessage(errorMessage);
+        auditLog.setEndpoint(endpoint);
+        auditLog.setHttpMethod(httpMethod);
+        auditLog.setRequestParams(requestParams);
+        auditLog.setResponseStatus(responseStatus);
+        auditLog.setExecutionTimeMs(executionTime);
+        auditLog.setIpAddress(ipAddress);
+        auditLog.setUserAgent(userAgent);
+        auditLog.setSessionId(sessionId);
+        auditLog.setStatus(responseStatus != null && responseStatus >= 200 && responseStatus < 400 ?
+            AuditLog.ActionStatus.SUCCESS : AuditLog.ActionStatus.FAILURE);
+        auditLog.setCorrelationId(CorrelationId.current());
+        auditLog.setTimestamp(LocalDateTime.now());
+        return auditLog;
+    }
+
+    /**
+     * Get one audit log with all its details, from the database or else the archive
+     */
+    @Transactional(readOnly = true)
+    public Optional<AuditLog> getAuditLog(Long id) {
+        return auditLogRepository.findById(id)
+            .or(() -> auditArchiveService.findById(id));
+    }
+
     /**
      * Get audit logs with pagination
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> getAuditLogs(Pageable pageable) {
-        return auditLogRepository.findAll(pageable);
+    public Page<AuditLogSummary> getAuditLogs(Pageable pageable) {
+        return auditLogRepository.findAllSummaries(pageable);
+    }
+
+    /**
+     * Get every audit log sharing a correlation ID
+     */
+    @Transactional(readOnly = true)
+    public List<AuditLogSummary> getAuditLogsByCorrelationId(String correlationId) {
+        return auditLogRepository.findByCorrelationIdOrderByTimestampAscIdAsc(correlationId);
     }
 
     /**
      * Get audit logs by username
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> getAuditLogsByUsername(String username, Pageable pageable) {
-        return auditLogRepository.findByUsernameOrderByTimestampDesc(username, pageable);
+    public Page<AuditLogSummary> getAuditLogsByUsername(String username, Pageable pageable) {
+        if (!auditArchiveService.mayContain(null, null)) {
+            return auditLogRepository.findSummariesByUsername(username, pageable);
+        }
+        return mergeWithArchive(null, null, username, pageable,
+            head -> auditLogRepository.findSummariesByUsername(username, head));
     }
 
     /**
      * Get audit logs by action
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> getAuditLogsByAction(String action, Pageable pageable) {
+    public Page<AuditLogSummary> getAuditLogsByAction(String action, Pageable pageable) {
         return auditLogRepository.findByActionOrderByTimestampDesc(action, pageable);
     }
 
@@ -142,7 +275,7 @@ public class AuditService {
      * Get high-risk activities
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> getHighRiskActivities(Pageable pageable) {
+    public Page<AuditLogSummary> getHighRiskActivities(Pageable pageable) {
         return auditLogRepository.findHighRiskActivities(pageable);
     }
 
@@ -150,7 +283,7 @@ public class AuditService {
      * Get anomalous activities
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> getAnomalousActivities(Pageable pageable) {
+    public Page<AuditLogSummary> getAnomalousActivities(Pageable pageable) {
         return auditLogRepository.findByIsAnomalyTrueOrderByTimestampDesc(pageable);
     }
 
@@ -158,32 +291,214 @@ public class AuditService {
      * Get failed login attempts
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> getFailedLoginAttempts(Pageable pageable) {
+    public Page<AuditLogSummary> getFailedLoginAttempts(Pageable pageable) {
         return auditLogRepository.findFailedLoginAttempts(pageable);
     }
 
     /**
-     * Search audit logs
+     * Search audit logs; ranked and index-backed on PostgreSQL, plain LIKE elsewhere
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> searchAuditLogs(String searchTerm, Pageable pageable) {
-        return auditLogRepository.searchAuditLogs(searchTerm, pageable);
+    public Page<AuditLogSummary> searchAuditLogs(String searchTerm, Pageable pageable) {
+        if (auditSearchService.isAvailable()) {
+            return auditSearchService.search(searchTerm, pageable);
+        }
+        return auditLogRepository.searchAuditLogs(searchTerm,
+            matchingDictionaryValues(Kind.ACTION, searchTerm),
+            matchingDictionaryValues(Kind.RESOURCE, searchTerm),
+            pageable);
+    }
+
+    private List<String> matchingDictionaryValues(Kind kind, String searchTerm) {
+        List<String> values = auditDictionaryService.findValuesContaining(kind, searchTerm, MAX_SEARCH_DICTIONARY_MATCHES);
+        // An empty IN list is not portable; an unknown value matches nothing
+        return values.isEmpty() ? List.of("") : values;
     }
 
     /**
      * Get audit logs within date range
      */
     @Transactional(readOnly = true)
-    public Page<AuditLog> getAuditLogsByDateRange(LocalDateTime startDate, LocalDateTime endDate, 
-                                                 Pageable pageable) {
-        return auditLogRepository.findByTimestampBetween(startDate, endDate, pageable);
+    public Page<AuditLogSummary> getAuditLogsByDateRange(LocalDateTime startDate, LocalDateTime endDate,
+                                                        Pageable pageable) {
+        if (!auditArchiveService.mayContain(startDate, endDate)) {
+            return auditLogRepository.findByTimestampBetween(startDate, endDate, pageable);
+        }
+        return mergeWithArchive(startDate, endDate, null, pageable,
+            head -> auditLogRepository.findByTimestampBetween(startDate, endDate, head));
     }
 
     /**
-     * Get activity statistics
+     * Merge archived rows in [start, end] for the username into a database query ordered
+     * by timestamp desc. Both sources are read from the start up to the end of the
+     * requested page so they can be interleaved, so offset pages must end within
+     * audit.archive.max-offset-rows; deeper pages are served by the cursor endpoints.
+     * Rows present in both tiers keep the database copy. The total counts archived rows
+     * from the segments rather than from the capped read.
+     */
+    private Page<AuditLogSummary> mergeWithArchive(LocalDateTime start, LocalDateTime end, String username,
+                                                   Pageable pageable,
+                                                   Function<Pageable, Page<AuditLogSummary>> hotQuery) {
+        long pageEnd = pageable.getOffset() + pageable.getPageSize();
+        if (pageEnd > maxArchiveOffsetRows) {
+            throw new IllegalArgumentException("Pages including archived audit logs must end within the first "
+                + maxArchiveOffsetRows + " rows; use the /cursor endpoint to page further");
+        }
+        int limit = (int) pageEnd;
+        List<AuditLog> archived = auditArchiveService.find(start, end, username, row -> true, limit);
+        if (archived.isEmpty()) {
+            return hotQuery.apply(pageable);
+        }
+
+        Page<AuditLogSummary> hot = hotQuery.apply(PageRequest.of(0, Math.max(1, limit)));
+        Set<Long> hotIds = hot.getContent().stream().map(AuditLogSummary::getId).collect(Collectors.toSet());
+
+        List<AuditLogSummary> merged = new ArrayList<>(hot.getContent().size() + archived.size());
+        Iterator<AuditLogSummary> hotRows = hot.getContent().iterator();
+        List<AuditLogSummary> cold = archived.stream()
+            .filter(a -> !hotIds.contains(a.getId()))
+            .map(AuditLogSummary::of)
+            .toList();
+        Iterator<AuditLogSummary> coldRows = cold.iterator();
+        AuditLogSummary nextHot = hotRows.hasNext() ? hotRows.next() : null;
+        AuditLogSummary nextCold = coldRows.hasNext() ? coldRows.next() : null;
+        while (merged.size() < limit && (nextHot != null || nextCold != null)) {
+            if (nextCold == null || (nextHot != null && !nextHot.getTimestamp().isBefore(nextCold.getTimestamp()))) {
+                merged.add(nextHot);
+                nextHot = hotRows.hasNext() ? hotRows.next() : null;
+            } else {
+                merged.add(nextCold);
+                nextCold = coldRows.hasNext() ? coldRows.next() : null;
+            }
+        }
+
+        // Rows found in both tiers are counted once
+        long duplicates = archived.size() - cold.size();
+        long total = hot.getTotalElements() + auditArchiveService.count(start, end, username) - duplicates;
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        return new PageImpl<>(merged.subList(from, merged.size()), pageable, total);
+    }
+
+    /**
+     * Get audit logs one keyset page at a time; deep pages cost the same as the first
      */
     @Transactional(readOnly = true)
+    public CursorSlice getAuditLogsAfter(String cursor, int size) {
+        return keysetPage(cursor, size, auditLogRepository::findAfter);
+    }
+
+    /**
+     * Get audit logs by username one keyset page at a time, including archived rows
+     */
+    @Transactional(readOnly = true)
+    public CursorSlice getAuditLogsByUsernameAfter(String username, String cursor, int size) {
+        return keysetPageWithArchive(cursor, size, null, null, username,
+            (ts, id, page) -> auditLogRepository.findByUsernameAfter(username, ts, id, page));
+    }
+
+    /**
+     * Get audit logs by action one keyset page at a time
+     */
+    @Transactional(readOnly = true)
+    public CursorSlice getAuditLogsByActionAfter(String action, String cursor, int size) {
+        return keysetPage(cursor, size, (ts, id, page) -> auditLogRepository.findByActionAfter(action, ts, id, page));
+    }
+
+    /**
+     * Get high-risk activities one keyset page at a time
+     */
+    @Transactional(readOnly = true)
+    public CursorSlice getHighRiskActivitiesAfter(String cursor, int size) {
+        return keysetPage(cursor, size, auditLogRepository::findHighRiskActivitiesAfter);
+    }
+
+    /**
+     * Get anomalous activities one keyset page at a time
+     */
+    @Transactional(readOnly = true)
+    public CursorSlice getAnomalousActivitiesAfter(String cursor, int size) {
+        return keysetPage(cursor, size, auditLogRepository::findAnomalousActivitiesAfter);
+    }
+
+    /**
+     * Get failed login attempts one keyset page at a time
+     */
+    @Transactional(readOnly = true)
+    public CursorSlice getFailedLoginAttemptsAfter(String cursor, int size) {
+        return keysetPage(cursor, size, auditLogRepository::findFailedLoginAttemptsAfter);
+    }
+
+    /**
+     * Get audit logs within date range one keyset page at a time, including archived rows
+     */
+    @Transactional(readOnly = true)
+    public CursorSlice getAuditLogsByDateRangeAfter(LocalDateTime startDate, LocalDateTime endDate,
+                                                    String cursor, int size) {
+        return keysetPageWithArchive(cursor, size, startDate, endDate, null,
+            (ts, id, page) -> auditLogRepository.findByTimestampBetweenAfter(startDate, endDate, ts, id, page));
+    }
+
+    @FunctionalInterface
+    private interface KeysetQuery {
+        Slice<AuditLogSummary> fetch(LocalDateTime ts, long id, Pageable pageable);
+    }
+
+    private CursorSlice keysetPage(String cursor, int size, KeysetQuery query) {
+        AuditCursor position = AuditCursor.decode(cursor);
+        Slice<AuditLogSummary> slice = query.fetch(position.getTimestamp(), position.getId(), PageRequest.of(0, cursorPageSize(size)));
+        return CursorSlice.of(slice.getContent(), slice.hasNext());
+    }
+
+    /**
+     * Keyset page over the database and the archive. Only archived rows between the cursor
+     * and the oldest database row on the page can interleave with it; once the database is
+     * exhausted the page is topped up from the archive down to the lower bound.
+     */
+    private CursorSlice keysetPageWithArchive(String cursor, int size, LocalDateTime lowerBound,
+                                              LocalDateTime upperBound, String username, KeysetQuery query) {
+        AuditCursor position = AuditCursor.decode(cursor);
+        int limit = cursorPageSize(size);
+        Slice<AuditLogSummary> hot = query.fetch(position.getTimestamp(), position.getId(), PageRequest.of(0, limit));
+
+        LocalDateTime archiveFrom = hot.hasNext() && hot.hasContent()
+            ? hot.getContent().get(hot.getNumberOfElements() - 1).getTimestamp()
+            : lowerBound;
+        LocalDateTime archiveTo = upperBound != null && upperBound.isBefore(position.getTimestamp())
+            ? upperBound
+            : position.getTimestamp();
+        if (!auditArchiveService.mayContain(archiveFrom, archiveTo)) {
+            return CursorSlice.of(hot.getContent(), hot.hasNext());
+        }
+
+        Set<Long> hotIds = hot.getContent().stream().map(AuditLogSummary::getId).collect(Collectors.toSet());
+        List<AuditLogSummary> merged = new ArrayList<>(hot.getContent());
+        // At most a page of archived rows can make it onto the page; one more tells whether there is a next page
+        auditArchiveService.find(archiveFrom, archiveTo, username,
+                row -> position.precedes(row) && !hotIds.contains(row.getId()), limit + 1).stream()
+            .map(AuditLogSummary::of)
+            .forEach(merged::add);
+        merged.sort(Comparator.comparing(AuditLogSummary::getTimestamp).thenComparing(AuditLogSummary::getId).reversed());
+
+        boolean hasNext = hot.hasNext() || merged.size() > limit;
+        return CursorSlice.of(merged.size() > limit ? merged.subList(0, limit) : merged, hasNext);
+    }
+
+    private int cursorPageSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return Math.min(size, MAX_CURSOR_PAGE_SIZE);
+    }
+
+    /**
+     * Get activity statistics; read from the activity roll-ups unless they are disabled
+     */
+    @Transactional(readOnly = true)
+    @ReplicaLag("${samap.datasource.replicas.max-lag-ms.dashboard:30000}")
     public ActivityStatistics getActivityStatistics(LocalDateTime since) {
+        if (auditActivityRollupService.isEnabled()) {
+            return auditActivityRollupService.getActivityStatistics(since);
+        }
         Object[] stats = auditLogRepository.getActivityStatistics(since);
         
         return ActivityStatistics.builder()
@@ -199,7 +514,11 @@ public class AuditService {
      * Get top active users
      */
     @Transactional(readOnly = true)
+    @ReplicaLag("${samap.datasource.replicas.max-lag-ms.dashboard:30000}")
     public List<UserActivity> getTopActiveUsers(LocalDateTime since, Pageable pageable) {
+        if (auditActivityRollupService.isEnabled()) {
+            return auditActivityRollupService.getTopActiveUsers(since, pageable);
+        }
         List<Object[]> results = auditLogRepository.getTopActiveUsers(since, pageable);
         
         return results.stream()
@@ -214,7 +533,11 @@ public class AuditService {
      * Get activity trends by hour
      */
     @Transactional(readOnly = true)
+    @ReplicaLag("${samap.datasource.replicas.max-lag-ms.dashboard:30000}")
     public List<HourlyActivity> getActivityTrendsByHour(LocalDateTime since) {
+        if (auditActivityRollupService.isEnabled()) {
+            return auditActivityRollupService.getActivityTrendsByHour(since);
+        }
         List<Object[]> results = auditLogRepository.getActivityTrendsByHour(since);
         
         return results.stream()
@@ -226,13 +549,35 @@ public class AuditService {
     }
 
     /**
-     * Clean up old audit logs
+     * Clean up old audit logs. On a partitioned table whole partitions are dropped and
+     * expired rows are deleted from the legacy and default partitions; otherwise rows are
+     * bulk deleted.
      */
     @Transactional
     public void cleanupOldAuditLogs(int retentionDays) {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(retentionDays);
-        auditLogRepository.deleteByTimestampBefore(cutoffDate);
-        log.info("Cleaned up audit logs older than {} days", retentionDays);
+
+        if (auditPartitionService.isPartitioned()) {
+            int dropped = auditPartitionService.dropPartitionsBefore(cutoffDate);
+            long deleted = auditPartitionService.deleteExpiredUnboundedRows(cutoffDate);
+            log.info("Dropped {} audit partitions and {} rows older than {} days", dropped, deleted, retentionDays);
+            return;
+        }
+
+        int deleted = auditLogRepository.deleteByTimestampBefore(cutoffDate);
+        log.info("Cleaned up {} audit logs older than {} days", deleted, retentionDays);
+    }
+
+    /**
+     * Apply the configured retention period nightly (disabled when retention is 0)
+     */
+    @Scheduled(cron = "${audit.retention.cron:0 30 1 * * ?}")
+    @Async(AsyncConfig.AUDIT_EXECUTOR)
+    @Transactional
+    public void applyRetentionPolicy() {
+        if (retentionDays > 0) {
+            cleanupOldAuditLogs(retentionDays);
+        }
     }
 
     // DTOs
@@ -334,4 +679,31 @@ public class AuditService {
         public long getActivityCount() { return activityCount; }
         public void setActivityCount(long activityCount) { this.activityCount = activityCount; }
     }
+
+    /**
+     * One page of a keyset-paginated listing; nextCursor is null on the last page
+     */
+    public static class CursorSlice {
+        private final List<AuditLogSummary> content;
+        private final boolean hasNext;
+        private final String nextCursor;
+
+        private CursorSlice(List<AuditLogSummary> content, boolean hasNext, String nextCursor) {
+            this.content = content;
+            this.hasNext = hasNext;
+            this.nextCursor = nextCursor;
+        }
+
+        static CursorSlice of(List<AuditLogSummary> content, boolean hasNext) {
+            String nextCursor = hasNext && !content.isEmpty()
+                ? AuditCursor.after(content.get(content.size() - 1)).encode()
+                : null;
+            return new CursorSlice(List.copyOf(content), nextCursor != null, nextCursor);
+        }
+
+        public List<AuditLogSummary> getContent() { return content; }
+        public int getSize() { return content.size(); }
+        public boolean isHasNext() { return hasNext; }
+        public String getNextCursor() { return nextCursor; }
+    }
 }
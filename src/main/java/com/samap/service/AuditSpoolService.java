@@ -0,0 +1,570 @@
+package com.samap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable local spool for audit events.
+ *
+ * Events are appended to memory-mapped, fixed-size segment files as CRC-framed JSON
+ * records. In FALLBACK mode the spool only receives batches the database could not
+ * take, and once a write has failed all further batches go straight to disk until the
+ * replayer has drained the backlog, so an outage does not stall the ingestion
+ * pipeline on connection timeouts. In WRITE_AHEAD mode every event is spooled first
+ * and the replayer is the only database writer.
+ *
+ * Replay is at-least-once: a crash between a committed batch and the checkpoint
+ * update replays that batch again. A record that fails its CRC is counted as discarded
+ * and replay resumes at the next valid record header; a segment with any such damage
+ * is renamed with the quarantine suffix and kept for inspection instead of deleted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditSpoolService {
+
+    private static final int HEADER_BYTES = 8; // payload length + CRC32
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String QUARANTINE_SUFFIX = ".corrupt";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final AuditLogRepository auditLogRepository;
+    private final AuditDictionaryService auditDictionaryService;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${audit.spool.mode:FALLBACK}")
+    private SpoolMode mode;
+
+    @Value("${audit.spool.directory:data/audit-spool}")
+    private String directory;
+
+    @Value("${audit.spool.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${audit.spool.fsync:INTERVAL}")
+    private FsyncPolicy fsyncPolicy;
+
+    @Value("${audit.spool.replay-batch-size:500}")
+    private int replayBatchSize;
+
+    // A lock rather than synchronized: appends may fsync, and must not pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Path spoolDir;
+    private TransactionTemplate transactionTemplate;
+    private Segment active;
+    private boolean dirty;
+    private volatile boolean databaseAvailable = true;
+
+    private Counter spooledCounter;
+    private Counter replayedCounter;
+    private Counter discardedCounter;
+
+    /**
+     * When events are written to the spool
+     */
+    public enum SpoolMode {
+        /** Spool is not used */
+        DISABLED,
+        /** Spool batches the database rejected, and everything while it is down */
+        FALLBACK,
+        /** Spool every event first; the replayer persists them */
+        WRITE_AHEAD
+    }
+
+    /**
+     * When appended records are forced to disk
+     */
+    public enum FsyncPolicy {
+        /** After every append */
+        ALWAYS,
+        /** On a fixed schedule (audit.spool.fsync-interval-ms) */
+        INTERVAL,
+        /** Leave it to the operating system */
+        NEVER
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (mode == SpoolMode.DISABLED) {
+            return;
+        }
+
+        spoolDir = Paths.get(directory);
+        Files.createDirectories(spoolDir);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // Always start a fresh segment; anything left from a previous run is replayed
+        List<Path> existing = listSegments();
+        long nextId = existing.isEmpty() ? 1 : segmentId(existing.get(existing.size() - 1)) + 1;
+        active = openSegment(nextId, segmentCapacity());
+
+        spooledCounter = Counter.builder("samap_audit_spooled_total")
+                .description("Audit events written to the local spool")
+                .register(meterRegistry);
+        replayedCounter = Counter.builder("samap_audit_replayed_total")
+                .description("Spooled audit events replayed into the database")
+                .register(meterRegistry);
+        discardedCounter = Counter.builder("samap_audit_spool_discarded_total")
+                .description("Spooled audit records that could not be replayed")
+                .register(meterRegistry);
+        Gauge.builder("samap_audit_spool_segments", this, spool -> spool.listSegments().size())
+                .description("Audit spool segment files on disk")
+                .register(meterRegistry);
+
+        log.info("Audit spool started in {} mode at {} ({} pending segments, fsync={})",
+            mode, spoolDir.toAbsolutePath(), existing.size(), fsyncPolicy);
+    }
+
+    /**
+     * Whether events should bypass the pipeline and be spooled first
+     */
+    public boolean isWriteAhead() {
+        return mode == SpoolMode.WRITE_AHEAD;
+    }
+
+    /**
+     * Whether database writes should be skipped because the spool is still draining
+     */
+    public boolean shouldBypassDatabase() {
+        return mode == SpoolMode.FALLBACK && !databaseAvailable;
+    }
+
+    /**
+     * Spool a batch the database could not persist. Returns false if the spool is disabled.
+     */
+    public boolean spoolAfterFailure(List<AuditLog> auditLogs, Exception cause) {
+        if (mode == SpoolMode.DISABLED) {
+            return false;
+        }
+        if (isOutage(cause) && databaseAvailable) {
+            databaseAvailable = false;
+            log.warn("Database unavailable for audit writes - spooling locally until it recovers: {}",
+                cause.getMessage());
+        }
+        return append(auditLogs);
+    }
+
+    /**
+     * Append events to the active segment
+     */
+    public boolean append(List<AuditLog> auditLogs) {
+        if (mode == SpoolMode.DISABLED) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            for (AuditLog auditLog : auditLogs) {
+                writeRecord(objectMapper.writeValueAsBytes(auditLog));
+            }
+
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                active.buffer.force();
+            } else {
+                dirty = true;
+            }
+            spooledCounter.increment(auditLogs.size());
+            return true;
+
+        } catch (IOException e) {
+            log.error("Failed to spool {} audit events: {}", auditLogs.size(), e.getMessage(), e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Periodic fsync for the INTERVAL policy
+     */
+    @Scheduled(fixedDelayString = "${audit.spool.fsync-interval-ms:1000}")
+    public void sync() {
+        lock.lock();
+        try {
+            if (active != null && dirty && fsyncPolicy == FsyncPolicy.INTERVAL) {
+                active.buffer.force();
+                dirty = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drain spooled segments into the database, oldest first
+     */
+    @Scheduled(fixedDelayString = "${audit.spool.replay-interval-ms:5000}")
+    public void replay() {
+        if (mode == SpoolMode.DISABLED) {
+            return;
+        }
+
+        for (Path segment : sealedSegments()) {
+            if (!replaySegment(segment)) {
+                return;
+            }
+        }
+
+        // Backlog is gone: seal what was written meanwhile and replay it as well
+        Path sealed = sealActiveSegment();
+        if (sealed != null && !replaySegment(sealed)) {
+            return;
+        }
+
+        if (!databaseAvailable) {
+            databaseAvailable = true;
+            log.info("Audit spool drained - database writes resumed");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            if (active != null) {
+                active.buffer.force();
+                closeQuietly(active.channel);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeRecord(byte[] payload) throws IOException {
+        int required = HEADER_BYTES + payload.length;
+        if (active.buffer.remaining() < required) {
+            rollSegment(required);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        active.buffer.putInt(payload.length);
+        active.buffer.putInt((int) crc.getValue());
+        active.buffer.put(payload);
+    }
+
+    private void rollSegment(int minCapacity) throws IOException {
+        active.buffer.force();
+        closeQuietly(active.channel);
+        active = openSegment(active.id + 1, Math.max(segmentCapacity(), minCapacity));
+        dirty = false;
+    }
+
+    private Path sealActiveSegment() {
+        lock.lock();
+        try {
+            if (active.buffer.position() == 0) {
+                return null;
+            }
+            Path sealed = active.path;
+            rollSegment(0);
+            return sealed;
+        } catch (IOException e) {
+            log.error("Failed to roll audit spool segment: {}", e.getMessage(), e);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean replaySegment(Path path) {
+        long id = segmentId(path);
+        long[] checkpoint = readCheckpoint();
+        int offset = checkpoint[0] == id ? (int) checkpoint[1] : 0;
+
+        // Damage already skipped before the checkpoint still quarantines the segment
+        Damage damage = new Damage();
+        damage.regions = checkpoint[0] == id ? (int) checkpoint[2] : 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            while (true) {
+                List<AuditLog> batch = new ArrayList<>(replayBatchSize);
+                int next = readBatch(buffer, offset, batch, damage);
+                if (next == offset) {
+                    break;
+                }
+                if (!batch.isEmpty() && !persist(batch)) {
+                    return false;
+                }
+                offset = next;
+                writeCheckpoint(id, offset, damage.regions);
+            }
+        } catch (IOException e) {
+            log.error("Failed to read audit spool segment {}: {}", path, e.getMessage(), e);
+            return false;
+        }
+
+        if (damage.regions > 0) {
+            quarantine(path, damage);
+            return true;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Replayed audit spool segment {} could not be deleted: {}", path, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Read up to replayBatchSize records starting at offset; returns the offset after the
+     * last one read. Corrupt records are skipped up to the next valid header and recorded
+     * in damage; with no valid header after them the rest of the segment is lost.
+     */
+    private int readBatch(ByteBuffer buffer, int offset, List<AuditLog> batch, Damage damage) {
+        int position = offset;
+        int records = 0;
+
+        while (records < replayBatchSize && position + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break; // end of written data, the rest of the segment is zero-filled
+            }
+
+            byte[] payload = readPayload(buffer, position, length);
+            if (payload == null) {
+                int resume = nextValidRecord(buffer, position + 1);
+                damage.regions++;
+                discardedCounter.increment();
+                if (resume < 0) {
+                    log.error("Corrupt audit spool record at offset {} and no valid record after it - "
+                        + "the rest of the segment is lost", position);
+                    position = buffer.limit();
+                    break;
+                }
+                log.error("Corrupt audit spool record at offset {} - skipped {} bytes to the next valid record",
+                    position, resume - position);
+                position = resume;
+                continue;
+            }
+
+            try {
+                AuditLog auditLog = objectMapper.readValue(payload, AuditLog.class);
+                auditLog.setId(null);
+                batch.add(auditLog);
+            } catch (IOException e) {
+                discardedCounter.increment();
+                log.error("Discarding unreadable audit spool record: {}",
+                    new String(payload, StandardCharsets.UTF_8), e);
+            }
+
+            position += HEADER_BYTES + length;
+            records++;
+        }
+
+        return position;
+    }
+
+    /**
+     * Payload of the record at position, or null when its length or CRC is invalid
+     */
+    private static byte[] readPayload(ByteBuffer buffer, int position, int length) {
+        if (length < 0 || length > buffer.limit() - position - HEADER_BYTES) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? payload : null;
+    }
+
+    /**
+     * Offset of the first record at or after from whose header and CRC are valid, or -1
+     */
+    private static int nextValidRecord(ByteBuffer buffer, int from) {
+        for (int position = from; position + HEADER_BYTES <= buffer.limit(); position++) {
+            int length = buffer.getInt(position);
+            if (length > 0 && readPayload(buffer, position, length) != null) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Keep a damaged segment under another name so it is neither replayed again nor lost
+     */
+    private void quarantine(Path path, Damage damage) {
+        String name = path.getFileName().toString();
+        Path target = path.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + QUARANTINE_SUFFIX);
+        try {
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+            log.error("Audit spool segment {} had {} corrupt region(s); valid records were replayed and the "
+                + "segment is kept as {}", path, damage.regions, target);
+        } catch (IOException e) {
+            log.error("Damaged audit spool segment {} could not be quarantined: {}", path, e.getMessage(), e);
+        }
+    }
+
+    private boolean persist(List<AuditLog> batch) {
+        try {
+            auditDictionaryService.internAll(batch);
+            transactionTemplate.executeWithoutResult(status -> auditLogRepository.saveAll(batch));
+            replayedCounter.increment(batch.size());
+            return true;
+        } catch (Exception e) {
+            if (isOutage(e)) {
+                databaseAvailable = false;
+                log.debug("Audit spool replay deferred - database still unavailable: {}", e.getMessage());
+                return false;
+            }
+        }
+
+        // Not an outage: one of the records is bad, so persist them one by one
+        for (AuditLog auditLog : batch) {
+            try {
+                auditLog.setId(null);
+                auditDictionaryService.internAll(auditLog);
+                transactionTemplate.executeWithoutResult(status -> auditLogRepository.save(auditLog));
+                replayedCounter.increment();
+            } catch (Exception e) {
+                if (isOutage(e)) {
+                    databaseAvailable = false;
+                    return false;
+                }
+                discardedCounter.increment();
+                log.error("Discarding spooled audit event {} for {}: {}",
+                    auditLog.getAction(), auditLog.getUsername(), e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private boolean isOutage(Exception e) {
+        return e instanceof CannotCreateTransactionException
+            || e instanceof DataAccessResourceFailureException
+            || e instanceof TransientDataAccessException
+            || e instanceof RecoverableDataAccessException;
+    }
+
+    private List<Path> sealedSegments() {
+        long activeId;
+        lock.lock();
+        try {
+            activeId = active.id;
+        } finally {
+            lock.unlock();
+        }
+        return listSegments().stream()
+                .filter(path -> segmentId(path) < activeId)
+                .toList();
+    }
+
+    private List<Path> listSegments() {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted((a, b) -> Long.compare(segmentId(a), segmentId(b)))
+                    .toList();
+        } catch (IOException e) {
+            log.error("Failed to list audit spool segments: {}", e.getMessage(), e);
+            return List.of();
+        }
+    }
+
+    private Segment openSegment(long id, int capacity) throws IOException {
+        Path path = spoolDir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return new Segment(id, path, channel, buffer);
+    }
+
+    private int segmentCapacity() {
+        return segmentSizeMb * 1024 * 1024;
+    }
+
+    private long segmentId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private long[] readCheckpoint() {
+        try {
+            Path file = spoolDir.resolve(CHECKPOINT_FILE);
+            if (Files.exists(file)) {
+                String[] parts = Files.readString(file).trim().split(" ");
+                long damaged = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+                return new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]), damaged };
+            }
+        } catch (Exception e) {
+            log.warn("Unreadable audit spool checkpoint - replaying from segment start: {}", e.getMessage());
+        }
+        return new long[] { 0, 0, 0 };
+    }
+
+    private void writeCheckpoint(long segmentId, long offset, int damagedRegions) throws IOException {
+        Path tmp = spoolDir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(tmp, segmentId + " " + offset + " " + damagedRegions);
+        Files.move(tmp, spoolDir.resolve(CHECKPOINT_FILE),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close audit spool segment: {}", e.getMessage());
+        }
+    }
+
+    private static final class Damage {
+        private int regions;
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
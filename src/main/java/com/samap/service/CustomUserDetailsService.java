@@ -1,5 +1,6 @@
 package com.samap.service;
 
+import com.samap.config.ReplicaRoutingAspect.ReplicaLag;
 import com.samap.model.User;
 import com.samap.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +29,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     @Override
     @Transactional(readOnly = true)
+    @ReplicaLag("${samap.datasource.replicas.max-lag-ms.authentication:0}") // lock and password changes apply immediately
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Loading user by username: {}", username);
         
@@ -0,0 +1,376 @@
+package com.samap.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Approximate distinct users, IP addresses and user agents over the last 5 minutes,
+ * hour and day, fed by every audit event as it is logged. Each dimension keeps one
+ * HyperLogLog sketch per minute (last hour) and per hour (last day); a window is the
+ * union of its buckets, so no COUNT(DISTINCT) ever runs against the audit table.
+ *
+ * With {@code audit.distinct-counts.redis.enabled} every node periodically writes its
+ * buckets to Redis (one hash per bucket, one field per node) and reads merge the
+ * other nodes' sketches, giving cluster-wide counts with the same error bound.
+ */
+@Service
+@Slf4j
+public class DistinctCountService {
+
+    private static final String KEY_PREFIX = "samap:hll:";
+
+    /**
+     * What the distinct values are counted over
+     */
+    public enum Dimension {
+        USERNAME("users"),
+        IP_ADDRESS("ips"),
+        USER_AGENT("user-agents");
+
+        private final String pathName;
+
+        Dimension(String pathName) {
+            this.pathName = pathName;
+        }
+
+        public String getPathName() { return pathName; }
+    }
+
+    /**
+     * Bucket sizes; each keeps enough buckets to cover the longest window built on it
+     */
+    enum Granularity {
+        MINUTE(Duration.ofMinutes(1), 60),
+        HOUR(Duration.ofHours(1), 24);
+
+        private final long millis;
+        private final int buckets;
+
+        Granularity(Duration duration, int buckets) {
+            this.millis = duration.toMillis();
+            this.buckets = buckets;
+        }
+
+        long epoch(long nowMillis) {
+            return nowMillis / millis;
+        }
+
+        Duration retention() {
+            return Duration.ofMillis(millis * (buckets + 1L));
+        }
+    }
+
+    /**
+     * Windows a count can be asked for; the oldest bucket of a window may be partly
+     * outside it, so a window can lag behind wall-clock time by up to one bucket
+     */
+    public enum Window {
+        FIVE_MINUTES("5m", Granularity.MINUTE, 5),
+        ONE_HOUR("1h", Granularity.MINUTE, 60),
+        ONE_DAY("24h", Granularity.HOUR, 24);
+
+        private final String label;
+        private final Granularity granularity;
+        private final int buckets;
+
+        Window(String label, Granularity granularity, int buckets) {
+            this.label = label;
+            this.granularity = granularity;
+            this.buckets = buckets;
+        }
+
+        public String getLabel() { return label; }
+
+        public static Window parse(String value) {
+            String normalized = value.trim().toLowerCase(Locale.ROOT);
+            return Arrays.stream(values())
+                .filter(window -> window.label.equals(normalized))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown window: " + value + " (expected 5m, 1h or 24h)"));
+        }
+    }
+
+    @Value("${audit.distinct-counts.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.distinct-counts.precision:14}")
+    private int precision;
+
+    @Value("${audit.distinct-counts.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${audit.distinct-counts.redis.node-id:}")
+    private String nodeId;
+
+    private final ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider;
+    private final Map<Dimension, Map<Granularity, Bucket[]>> buckets = new EnumMap<>(Dimension.class);
+
+    public DistinctCountService(ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider) {
+        this.redisTemplateProvider = redisTemplateProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Dimension dimension : Dimension.values()) {
+            Map<Granularity, Bucket[]> rings = new EnumMap<>(Granularity.class);
+            for (Granularity granularity : Granularity.values()) {
+                Bucket[] ring = new Bucket[granularity.buckets];
+                for (int i = 0; i < ring.length; i++) {
+                    ring[i] = new Bucket(new HyperLogLog(precision));
+                }
+                rings.put(granularity, ring);
+            }
+            buckets.put(dimension, rings);
+        }
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        if (redisEnabled && redisTemplateProvider.getIfAvailable() == null) {
+            log.warn("Distinct-count sharing through Redis requested but Redis is not available, counts are per node");
+            redisEnabled = false;
+        }
+        log.info("Distinct counts {} (precision {}, standard error {}%{})", enabled ? "enabled" : "disabled",
+            precision, String.format(Locale.ROOT, "%.2f", HyperLogLog.standardError(precision) * 100),
+            redisEnabled ? ", shared through Redis as node " + nodeId : "");
+    }
+
+    /**
+     * Count one audit event; null values are skipped
+     */
+    public void record(String username, String ipAddress, String userAgent) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        add(Dimension.USERNAME, username, now);
+        add(Dimension.IP_ADDRESS, ipAddress, now);
+        add(Dimension.USER_AGENT, userAgent, now);
+    }
+
+    private void add(Dimension dimension, String value, long nowMillis) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        long hash = HyperLogLog.hash(value);
+        for (Map.Entry<Granularity, Bucket[]> ring : buckets.get(dimension).entrySet()) {
+            long epoch = ring.getKey().epoch(nowMillis);
+            ring.getValue()[(int) (epoch % ring.getValue().length)].add(hash, epoch);
+        }
+    }
+
+    /**
+     * Estimated number of distinct values of a dimension in a window
+     */
+    public DistinctCount getDistinct(Dimension dimension, Window window) {
+        long currentEpoch = window.granularity.epoch(System.currentTimeMillis());
+        long oldestEpoch = currentEpoch - window.buckets + 1;
+
+        HyperLogLog union = new HyperLogLog(precision);
+        for (Bucket bucket : buckets.get(dimension).get(window.granularity)) {
+            bucket.mergeInto(union, oldestEpoch, currentEpoch);
+        }
+
+        int nodes = 1;
+        if (redisEnabled) {
+            nodes += mergeRemote(union, dimension, window.granularity, oldestEpoch, currentEpoch);
+        }
+        return new DistinctCount(window, union.estimate(), union.standardError(), nodes);
+    }
+
+    /**
+     * Estimated number of distinct values of every dimension in a window
+     */
+    public Map<String, DistinctCount> getDistinct(Window window) {
+        Map<String, DistinctCount> result = new LinkedHashMap<>();
+        for (Dimension dimension : Dimension.values()) {
+            result.put(dimension.getPathName(), getDistinct(dimension, window));
+        }
+        return result;
+    }
+
+    /**
+     * Publish buckets changed since the last flush so other nodes can merge them
+     */
+    @Scheduled(fixedDelayString = "${audit.distinct-counts.redis.flush-interval-ms:10000}")
+    public void flushToRedis() {
+        if (!enabled || !redisEnabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Publish> writes = new ArrayList<>();
+        for (Dimension dimension : Dimension.values()) {
+            for (Granularity granularity : Granularity.values()) {
+                long oldestEpoch = granularity.epoch(now) - granularity.buckets + 1;
+                for (Bucket bucket : buckets.get(dimension).get(granularity)) {
+                    Bucket.Dirty dirty = bucket.takeDirty(oldestEpoch);
+                    if (dirty != null) {
+                        writes.add(new Publish(bucket, dirty.epoch(), key(dimension, granularity, dirty.epoch()),
+                            dirty.registers(), granularity.retention().toSeconds()));
+                    }
+                }
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        byte[] field = nodeId.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplateProvider.getObject().execute((RedisCallback<Void>) connection -> {
+                connection.openPipeline();
+                for (Publish write : writes) {
+                    connection.hashCommands().hSet(write.key(), field, write.registers());
+                    connection.keyCommands().expire(write.key(), write.ttlSeconds());
+                }
+                connection.closePipeline();
+                return null;
+            });
+        } catch (Exception e) {
+            // Nothing is known to have been written; the buckets are re-sent on the next flush
+            for (Publish write : writes) {
+                write.bucket().markDirty(write.epoch());
+            }
+            log.warn("Failed to publish distinct-count sketches to Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Merge the other nodes' sketches for the window's buckets; returns how many nodes
+     * contributed. Redis failures degrade to the local count.
+     */
+    private int mergeRemote(HyperLogLog union, Dimension dimension, Granularity granularity,
+                            long oldestEpoch, long currentEpoch) {
+        byte[] ownField = nodeId.getBytes(StandardCharsets.UTF_8);
+        try {
+            List<Object> results = redisTemplateProvider.getObject().execute((RedisCallback<List<Object>>) connection -> {
+                connection.openPipeline();
+                for (long epoch = oldestEpoch; epoch <= currentEpoch; epoch++) {
+                    connection.hashCommands().hGetAll(key(dimension, granularity, epoch));
+                }
+                return connection.closePipeline();
+            });
+
+            List<String> nodes = new ArrayList<>();
+            for (Object result : results) {
+                if (!(result instanceof Map<?, ?> fields)) {
+                    continue;
+                }
+                for (Map.Entry<?, ?> entry : fields.entrySet()) {
+                    byte[] node = (byte[]) entry.getKey();
+                    if (Arrays.equals(node, ownField)) {
+                        continue;
+                    }
+                    HyperLogLog remote = HyperLogLog.fromBytes((byte[]) entry.getValue());
+                    if (remote.getPrecision() != precision) {
+                        continue;
+                    }
+                    union.merge(remote);
+                    String name = new String(node, StandardCharsets.UTF_8);
+                    if (!nodes.contains(name)) {
+                        nodes.add(name);
+                    }
+                }
+            }
+            return nodes.size();
+        } catch (Exception e) {
+            log.warn("Failed to read distinct-count sketches from Redis, using this node only: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private static byte[] key(Dimension dimension, Granularity granularity, long epoch) {
+        return (KEY_PREFIX + dimension.getPathName() + ":" + granularity.name().toLowerCase(Locale.ROOT) + ":" + epoch)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Publish(Bucket bucket, long epoch, byte[] key, byte[] registers, long ttlSeconds) {
+    }
+
+    /**
+     * One time bucket of a ring; reset when its slot is reused for a newer epoch
+     */
+    private static final class Bucket {
+        private final HyperLogLog sketch;
+        private long epoch = -1;
+        private boolean dirty;
+
+        Bucket(HyperLogLog sketch) {
+            this.sketch = sketch;
+        }
+
+        synchronized void add(long hash, long currentEpoch) {
+            if (epoch != currentEpoch) {
+                epoch = currentEpoch;
+                sketch.clear();
+            }
+            sketch.addHash(hash);
+            dirty = true;
+        }
+
+        synchronized void mergeInto(HyperLogLog union, long oldestEpoch, long currentEpoch) {
+            if (epoch >= oldestEpoch && epoch <= currentEpoch) {
+                union.merge(sketch);
+            }
+        }
+
+        synchronized Dirty takeDirty(long oldestEpoch) {
+            if (!dirty || epoch < oldestEpoch) {
+                return null;
+            }
+            dirty = false;
+            return new Dirty(epoch, sketch.toBytes());
+        }
+
+        /**
+         * Undo {@link #takeDirty} after a failed publish, unless the slot moved on to a newer epoch
+         */
+        synchronized void markDirty(long publishedEpoch) {
+            if (epoch == publishedEpoch) {
+                dirty = true;
+            }
+        }
+
+        record Dirty(long epoch, byte[] registers) {
+        }
+    }
+
+    public static class DistinctCount {
+        private final String window;
+        private final long count;
+        private final double standardError;
+        private final int nodes;
+
+        DistinctCount(Window window, long count, double standardError, int nodes) {
+            this.window = window.getLabel();
+            this.count = count;
+            this.standardError = standardError;
+            this.nodes = nodes;
+        }
+
+        // Estimate with its relative standard error; the bounds are +/- two standard errors (~95%)
+        public String getWindow() { return window; }
+        public long getCount() { return count; }
+        public double getStandardError() { return standardError; }
+        public long getLowerBound() { return Math.max(0, (long) Math.floor(count * (1 - 2 * standardError))); }
+        public long getUpperBound() { return (long) Math.ceil(count * (1 + 2 * standardError)); }
+        public int getNodes() { return nodes; }
+    }
+}
@@ -0,0 +1,165 @@
+package com.samap.service;
+
+import com.samap.service.SlidingHeavyHitters.Estimate;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Live top-K usernames, IP addresses and endpoints over the last 5 minutes, hour and
+ * day, fed by every audit event as it is logged (before roll-up folding), for
+ * brute-force and abuse triage. State is in memory and per node; nothing is read
+ * from the database.
+ */
+@Service
+@Slf4j
+public class HeavyHitterService {
+
+    /**
+     * What the events are counted by
+     */
+    public enum Dimension {
+        USERNAME("users"),
+        IP_ADDRESS("ips"),
+        ENDPOINT("endpoints");
+
+        private final String pathName;
+
+        Dimension(String pathName) {
+            this.pathName = pathName;
+        }
+
+        public String getPathName() { return pathName; }
+
+        public static Dimension parse(String value) {
+            return Arrays.stream(values())
+                .filter(dimension -> dimension.pathName.equalsIgnoreCase(value) || dimension.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown dimension: " + value + " (expected users, ips or endpoints)"));
+        }
+    }
+
+    /**
+     * Sliding windows tracked for every dimension; the slice count sets how far the
+     * window can lag behind wall-clock time (one slice)
+     */
+    public enum Window {
+        FIVE_MINUTES("5m", Duration.ofMinutes(5), 5),
+        ONE_HOUR("1h", Duration.ofHours(1), 12),
+        ONE_DAY("24h", Duration.ofHours(24), 24);
+
+        private final String label;
+        private final Duration duration;
+        private final int slices;
+
+        Window(String label, Duration duration, int slices) {
+            this.label = label;
+            this.duration = duration;
+            this.slices = slices;
+        }
+
+        public String getLabel() { return label; }
+
+        public static Window parse(String value) {
+            String normalized = value.trim().toLowerCase(Locale.ROOT);
+            return Arrays.stream(values())
+                .filter(window -> window.label.equals(normalized))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown window: " + value + " (expected 5m, 1h or 24h)"));
+        }
+    }
+
+    @Value("${audit.heavy-hitters.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.heavy-hitters.capacity:1000}")
+    private int capacity;
+
+    @Value("${audit.heavy-hitters.max-k:100}")
+    private int maxK;
+
+    private final Map<Dimension, Map<Window, SlidingHeavyHitters>> trackers = new EnumMap<>(Dimension.class);
+
+    @PostConstruct
+    public void init() {
+        for (Dimension dimension : Dimension.values()) {
+            Map<Window, SlidingHeavyHitters> windows = new EnumMap<>(Window.class);
+            for (Window window : Window.values()) {
+                windows.put(window, new SlidingHeavyHitters(window.duration, window.slices, capacity));
+            }
+            trackers.put(dimension, windows);
+        }
+        log.info("Heavy-hitter tracking {} (capacity {} keys per slice)", enabled ? "enabled" : "disabled", capacity);
+    }
+
+    /**
+     * Count one audit event; null values are skipped
+     */
+    public void record(String username, String ipAddress, String endpoint) {
+        if (!enabled) {
+            return;
+        }
+        add(Dimension.USERNAME, username);
+        add(Dimension.IP_ADDRESS, ipAddress);
+        add(Dimension.ENDPOINT, endpoint);
+    }
+
+    private void add(Dimension dimension, String key) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        for (SlidingHeavyHitters tracker : trackers.get(dimension).values()) {
+            tracker.add(key);
+        }
+    }
+
+    /**
+     * The k most active keys of a dimension in a window, most active first
+     */
+    public List<HeavyHitter> getTop(Dimension dimension, Window window, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return trackers.get(dimension).get(window).top(Math.min(k, maxK)).stream()
+            .map(HeavyHitter::new)
+            .toList();
+    }
+
+    /**
+     * The k most active keys of every dimension in a window
+     */
+    public Map<String, List<HeavyHitter>> getTop(Window window, int k) {
+        Map<String, List<HeavyHitter>> result = new LinkedHashMap<>();
+        for (Dimension dimension : Dimension.values()) {
+            result.put(dimension.getPathName(), getTop(dimension, window, k));
+        }
+        return result;
+    }
+
+    public static class HeavyHitter {
+        private final String key;
+        private final long count;
+        private final long error;
+
+        HeavyHitter(Estimate estimate) {
+            this.key = estimate.key();
+            this.count = estimate.count();
+            this.error = estimate.error();
+        }
+
+        // Estimated count, never below the true count; the true count is at least minCount
+        public String getKey() { return key; }
+        public long getCount() { return count; }
+        public long getError() { return error; }
+        public long getMinCount() { return count - error; }
+    }
+}
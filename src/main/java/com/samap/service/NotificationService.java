@@ -1,5 +1,6 @@
 package com.samap.service;
 
+import com.samap.config.AsyncConfig;
 import com.samap.service.SecurityMonitoringService.SecurityAlert;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,12 +23,12 @@ public class NotificationService {
 
     // In-memory storage for recent alerts (in production, use Redis or database)
     private final ConcurrentLinkedQueue<SecurityAlert> recentAlerts = new ConcurrentLinkedQueue<>();
-    private static final int MAX_RECENT_ALERTS = 100;
+    public static final int MAX_RECENT_ALERTS = 100;
 
     /**
      * Send security alert notification
      */
-    @Async
+    @Async(AsyncConfig.NOTIFICATION_EXECUTOR)
     public void sendSecurityAlert(SecurityAlert alert) {
         try {
             // Store alert in memory
@@ -82,13 +83,14 @@ public class NotificationService {
     private void logAlert(SecurityAlert alert) {
         String timestamp = alert.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
         
-        log.warn("🚨 SECURITY ALERT [{}] - {} | Type: {} | User: {} | IP: {} | Time: {}", 
+        log.warn("🚨 SECURITY ALERT [{}] - {} | Type: {} | User: {} | IP: {} | Time: {} | Correlation: {}", 
             alert.getSeverity(),
             alert.getMessage(),
             alert.getAlertType(),
             alert.getUsername(),
             alert.getIpAddress(),
-            timestamp
+            timestamp,
+            alert.getCorrelationId()
         );
     }
 
@@ -200,6 +202,16 @@ public class NotificationService {
                 .toList();
     }
 
+    /**
+     * Get recent alerts raised under a correlation ID
+     */
+    public List<SecurityAlert> getAlertsByCorrelationId(String correlationId) {
+        return recentAlerts.stream()
+                .filter(alert -> correlationId.equals(alert.getCorrelationId()))
+                .sorted((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()))
+                .toList();
+    }
+
     /**
      * Get alert statistics
      */
@@ -240,7 +252,7 @@ public class NotificationService {
     /**
      * Send system notification
      */
-    @Async
+    @Async(AsyncConfig.NOTIFICATION_EXECUTOR)
     public void sendSystemNotification(String message, String level) {
         log.info("📢 SYSTEM NOTIFICATION [{}]: {}", level, message);
 
@@ -0,0 +1,150 @@
+package com.samap.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Online index builds on PostgreSQL, shared by the background index jobs.
+ *
+ * A plain table is indexed with CREATE INDEX CONCURRENTLY. A partitioned table cannot
+ * be, so its index is created ON ONLY the parent (a catalog entry, invalid until every
+ * partition has a matching index), each partition's index is built concurrently and then
+ * attached; the parent index turns valid when the last one is attached. Partitions
+ * created later get their index automatically. A concurrent build that failed leaves an
+ * INVALID index behind, which IF NOT EXISTS would skip, so invalid indexes are dropped
+ * and rebuilt, and callers only rely on an index once {@link #isValid} says so.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresIndexBuilder {
+
+    /** Partitioned indexes cannot be dropped concurrently; give up rather than queue behind long queries */
+    private static final String DROP_LOCK_TIMEOUT = "5s";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPostgres() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Build the index if it is missing or invalid; the definition is everything after
+     * "ON table", e.g. "USING gin (username gin_trgm_ops)". Returns whether the index is
+     * valid afterwards. Each statement runs in its own autocommit transaction, as
+     * CONCURRENTLY requires.
+     */
+    public boolean ensureIndex(String name, String table, String definition) {
+        if (!isPartitioned(table)) {
+            return ensureConcurrently(name, table, definition);
+        }
+
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + " ON ONLY " + table + " " + definition);
+        Set<String> indexed = new HashSet<>(jdbcTemplate.queryForList(
+            "SELECT t.relname FROM pg_inherits i JOIN pg_index x ON x.indexrelid = i.inhrelid " +
+            "JOIN pg_class t ON t.oid = x.indrelid WHERE i.inhparent = to_regclass(?)", String.class, name));
+
+        for (String partition : listPartitions(table)) {
+            if (indexed.contains(partition)) {
+                continue;
+            }
+            String partitionIndex = partitionIndexName(name, table, partition);
+            if (ensureConcurrently(partitionIndex, partition, definition)) {
+                jdbcTemplate.execute("ALTER INDEX " + name + " ATTACH PARTITION " + partitionIndex);
+                log.info("Index {} attached to {}", partitionIndex, name);
+            }
+        }
+        return isValid(name);
+    }
+
+    /**
+     * Drop an index without blocking writers for long: concurrently on a plain table,
+     * and with a short lock timeout on a partitioned one. Returns whether it is gone.
+     */
+    public boolean dropIndex(String name) {
+        String kind = jdbcTemplate.query("SELECT relkind FROM pg_class WHERE oid = to_regclass(?)",
+            rs -> rs.next() ? rs.getString(1) : null, name);
+        if (kind == null) {
+            return true;
+        }
+        if (!"I".equals(kind)) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+            return true;
+        }
+
+        TransactionTemplate transactionTemplate =
+            new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("SET LOCAL lock_timeout = '" + DROP_LOCK_TIMEOUT + "'");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + name);
+        });
+        return true;
+    }
+
+    /**
+     * Whether the index exists and can be used by the planner
+     */
+    public boolean isValid(String name) {
+        Boolean valid = jdbcTemplate.query(
+            "SELECT x.indisvalid FROM pg_index x WHERE x.indexrelid = to_regclass(?)",
+            rs -> rs.next() ? rs.getBoolean(1) : null, name);
+        return Boolean.TRUE.equals(valid);
+    }
+
+    public boolean isPartitioned(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM pg_class WHERE oid = to_regclass(?) AND relkind = 'p'", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean ensureConcurrently(String name, String table, String definition) {
+        Boolean valid = jdbcTemplate.query(
+            "SELECT x.indisvalid FROM pg_index x WHERE x.indexrelid = to_regclass(?)",
+            rs -> rs.next() ? rs.getBoolean(1) : null, name);
+        if (Boolean.TRUE.equals(valid)) {
+            return true;
+        }
+        if (valid != null) {
+            log.warn("Index {} is invalid (an earlier concurrent build failed), rebuilding it", name);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+        }
+
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON " + table + " " + definition);
+        boolean built = isValid(name);
+        if (built) {
+            log.info("Index {} on {} built in {} ms", name, table, System.currentTimeMillis() - start);
+        }
+        return built;
+    }
+
+    private List<String> listPartitions(String table) {
+        return jdbcTemplate.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname", String.class, table);
+    }
+
+    // idx_audit_username_trgm on audit_logs_2024_03 -> idx_audit_username_trgm_2024_03
+    private static String partitionIndexName(String name, String table, String partition) {
+        String suffix = partition.startsWith(table + "_") ? partition.substring(table.length() + 1) : partition;
+        String candidate = name + "_" + suffix;
+        // PostgreSQL truncates identifiers to 63 bytes
+        return candidate.length() <= 63 ? candidate
+            : name.substring(0, Math.min(name.length(), 50)) + "_" + Integer.toHexString(candidate.hashCode());
+    }
+}
@@ -0,0 +1,140 @@
+package com.samap.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Secondary indexes of the audit and user tables, built online after startup rather
+ * than by Hibernate's schema update, whose plain CREATE INDEX blocks writes to
+ * audit_logs for the length of the build.
+ *
+ * <ul>
+ *   <li>composite indexes following the repository query shapes: equality columns
+ *       first, then timestamp (and id, for keyset paging) so filtered listings read
+ *       rows already in order</li>
+ *   <li>a partial index over HIGH/CRITICAL rows ordered by (timestamp, id), so the
+ *       high-risk listing reads one small index in order instead of merging two risk
+ *       levels and sorting</li>
+ *   <li>a partial index over anomalous rows; anomalies are rare, so indexing only them
+ *       keeps the index small and spares every other insert the write</li>
+ *   <li>a BRIN index on timestamp for the wide range scans of the statistics, archive
+ *       and retention queries; rows arrive in timestamp order, so it stays tiny</li>
+ *   <li>upper() expression indexes on users, which is what the case-insensitive
+ *       username and email lookups compare</li>
+ *   <li>partial indexes over locked users and users who must change their password</li>
+ * </ul>
+ *
+ * On PostgreSQL every index is built through {@link PostgresIndexBuilder}: concurrently,
+ * partition by partition on the partitioned audit table, and rebuilt if a build left it
+ * invalid. The single-column audit indexes of the original schema are dropped once all
+ * of them are valid: the composites supersede them, and no query filters or sorts on
+ * risk_score. Other databases (the embedded ones used in tests) get the
+ * plain column indexes directly.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresIndexService {
+
+    private static final List<String> SUPERSEDED_INDEXES = List.of(
+        "idx_audit_user", "idx_audit_action", "idx_audit_timestamp", "idx_audit_status", "idx_audit_ip",
+        "idx_audit_risk_score");
+
+    /**
+     * One index; the definition is everything after "ON table". Portable definitions
+     * are plain column lists that any database can build.
+     */
+    public record IndexDefinition(String name, String table, String definition, boolean portable) {
+    }
+
+    public static final List<IndexDefinition> INDEXES = List.of(
+        new IndexDefinition("idx_audit_ts_id", "audit_logs", "(timestamp, id)", true),
+        new IndexDefinition("idx_audit_user_ts", "audit_logs", "(username, timestamp, id)", true),
+        new IndexDefinition("idx_audit_user_action_ts", "audit_logs", "(username, action_ref, timestamp)", true),
+        new IndexDefinition("idx_audit_action_ts", "audit_logs", "(action_ref, timestamp, id)", true),
+        new IndexDefinition("idx_audit_ip_ts", "audit_logs", "(ip_address, timestamp)", true),
+        new IndexDefinition("idx_audit_ip_action_ts", "audit_logs", "(ip_address, action_ref, timestamp)", true),
+        new IndexDefinition("idx_audit_status_ts", "audit_logs", "(status, timestamp)", true),
+        new IndexDefinition("idx_audit_risk_level_ts", "audit_logs", "(risk_level, timestamp, id)", true),
+        new IndexDefinition("idx_audit_high_risk_ts", "audit_logs",
+            "(timestamp, id) WHERE risk_level IN ('HIGH', 'CRITICAL')", false),
+        new IndexDefinition("idx_audit_anomaly_ts", "audit_logs", "(timestamp, id) WHERE is_anomaly", false),
+        new IndexDefinition("idx_audit_timestamp_brin", "audit_logs",
+            "USING brin (timestamp) WITH (pages_per_range = 32)", false),
+
+        new IndexDefinition("idx_user_last_login", "users", "(last_login)", true),
+        new IndexDefinition("idx_user_last_login_ip", "users", "(last_login_ip)", true),
+        new IndexDefinition("idx_user_created_at", "users", "(created_at)", true),
+        new IndexDefinition("idx_user_failed_attempts", "users", "(failed_login_attempts)", true),
+        // The join tables' primary keys lead with the owning side
+        new IndexDefinition("idx_user_roles_role", "user_roles", "(role_id)", true),
+        new IndexDefinition("idx_role_permissions_permission", "role_permissions", "(permission_id)", true),
+        new IndexDefinition("idx_user_username_upper", "users", "(upper(username))", false),
+        new IndexDefinition("idx_user_email_upper", "users", "(upper(email))", false),
+        new IndexDefinition("idx_user_locked_until", "users",
+            "(account_locked_until) WHERE account_locked_until IS NOT NULL", false),
+        new IndexDefinition("idx_user_must_change_password", "users", "(id) WHERE must_change_password", false));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PostgresIndexBuilder indexBuilder;
+
+    @Value("${samap.indexes.postgres.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Build missing or invalid indexes. Runs after startup and again periodically, so an
+     * index whose build failed is retried and a newly listed one is picked up.
+     */
+    @Scheduled(initialDelayString = "${samap.indexes.postgres.build-delay-ms:30000}",
+               fixedDelayString = "${samap.indexes.postgres.check-interval-ms:3600000}")
+    public void ensureIndexes() {
+        if (!enabled) {
+            return;
+        }
+        if (!indexBuilder.isPostgres()) {
+            createPortableIndexes();
+            return;
+        }
+
+        int invalid = 0;
+        for (IndexDefinition index : INDEXES) {
+            try {
+                if (!indexBuilder.ensureIndex(index.name(), index.table(), index.definition())) {
+                    invalid++;
+                }
+            } catch (Exception e) {
+                invalid++;
+                log.warn("Building index {} failed, retrying later - affected queries keep their previous plans: {}",
+                    index.name(), e.getMessage());
+            }
+        }
+        if (invalid > 0) {
+            log.warn("{} of {} indexes are not valid yet; superseded indexes are kept", invalid, INDEXES.size());
+            return;
+        }
+
+        for (String index : SUPERSEDED_INDEXES) {
+            try {
+                indexBuilder.dropIndex(index);
+            } catch (Exception e) {
+                log.warn("Dropping superseded index {} failed, retrying later: {}", index, e.getMessage());
+            }
+        }
+        log.debug("PostgreSQL composite, partial, expression and BRIN indexes in place");
+    }
+
+    private void createPortableIndexes() {
+        for (IndexDefinition index : INDEXES) {
+            if (index.portable()) {
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + index.name() + " ON " + index.table() + " "
+                    + index.definition());
+            }
+        }
+    }
+}
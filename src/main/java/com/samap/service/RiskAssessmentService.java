@@ -1,16 +1,21 @@
 package com.samap.service;
 
+import com.samap.config.AsyncConfig;
 import com.samap.model.AuditLog;
 import com.samap.model.User;
 import com.samap.repository.AuditLogRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Risk assessment service for calculating security risk scores and detecting anomalies
@@ -21,6 +26,16 @@ import java.util.List;
 public class RiskAssessmentService {
 
     private final AuditLogRepository auditLogRepository;
+    private final AuditActivityRollupService auditActivityRollupService;
+    private final UserBehaviorProfileService userBehaviorProfileService;
+
+    // In-memory activity windows, bounded by MAX_TRACKED_KEYS
+    private final SlidingWindowCounter failedLoginsByIp =
+        new SlidingWindowCounter(Duration.ofMinutes(10), 60, MAX_TRACKED_KEYS);
+    private final SlidingWindowCounter failedLoginsByUser =
+        new SlidingWindowCounter(Duration.ofHours(1), 60, MAX_TRACKED_KEYS);
+    private final SlidingWindowCounter loginsByUser =
+        new SlidingWindowCounter(Duration.ofHours(1), 60, MAX_TRACKED_KEYS);
 
     // Risk scoring weights
     private static final double FAILED_LOGIN_WEIGHT = 0.3;
@@ -34,17 +49,21 @@ public class RiskAssessmentService {
     private static final int FREQUENCY_THRESHOLD_PER_HOUR = 50;
     private static final LocalTime NORMAL_START_TIME = LocalTime.of(8, 0);
     private static final LocalTime NORMAL_END_TIME = LocalTime.of(18, 0);
+    private static final int PROFILE_MIN_LOGINS_FOR_HOURS = 10;
+    private static final double UNUSUAL_HOUR_SHARE = 0.05;
+    private static final int MAX_TRACKED_KEYS = 50_000;
 
     /**
-     * Calculate login risk score
+     * Calculate login risk score from the in-memory windows and the user's behaviour
+     * profile; no database queries
      */
     public double calculateLoginRiskScore(User user, String ipAddress, String userAgent) {
         double riskScore = 0.0;
         List<String> riskFactors = new ArrayList<>();
+        UserBehaviorProfileService.Profile profile = userBehaviorProfileService.getProfile(user.getUsername());
 
         // Check failed login attempts
-        long recentFailedAttempts = auditLogRepository.countFailedLoginsByUserSince(
-            user.getUsername(), LocalDateTime.now().minusHours(1));
+        long recentFailedAttempts = failedLoginsByUser.count(userKey(user.getUsername()));
         
         if (recentFailedAttempts >= FAILED_LOGIN_THRESHOLD) {
             double failedLoginRisk = Math.min(recentFailedAttempts / 10.0, 1.0);
@@ -54,20 +73,19 @@ public class RiskAssessmentService {
 
         // Check time-based anomaly
         LocalTime currentTime = LocalDateTime.now().toLocalTime();
-        if (currentTime.isBefore(NORMAL_START_TIME) || currentTime.isAfter(NORMAL_END_TIME)) {
+        if (isUnusualTime(profile, currentTime)) {
             riskScore += 0.4 * TIME_ANOMALY_WEIGHT;
             riskFactors.add("Login outside normal hours: " + currentTime);
         }
 
         // Check location anomaly (IP-based)
-        if (isNewLocation(user, ipAddress)) {
+        if (userBehaviorProfileService.isEnabled() && isNewLocation(profile, ipAddress)) {
             riskScore += 0.6 * LOCATION_ANOMALY_WEIGHT;
             riskFactors.add("Login from new location: " + ipAddress);
         }
 
-        // Check login frequency
-        long recentLogins = auditLogRepository.countFailedLoginsByUserSince(
-            user.getUsername(), LocalDateTime.now().minusHours(1));
+        // Check login frequency, successful and failed attempts alike
+        long recentLogins = loginsByUser.count(userKey(user.getUsername()));
         
         if (recentLogins > FREQUENCY_THRESHOLD_PER_HOUR) {
             double frequencyRisk = Math.min(recentLogins / 100.0, 1.0);
@@ -76,7 +94,7 @@ public class RiskAssessmentService {
         }
 
         // Check device anomaly (User-Agent based)
-        if (isNewDevice(user, userAgent)) {
+        if (userBehaviorProfileService.isEnabled() && isNewDevice(profile, userAgent)) {
             riskScore += 0.5 * DEVICE_ANOMALY_WEIGHT;
             riskFactors.add("Login from new device");
         }
@@ -117,84 +135,97 @@ public class RiskAssessmentService {
     }
 
     /**
-     * Check if activity is anomalous
+     * Evaluate an activity for anomalies, returning the verdict and its reasons together
      */
-    public boolean isAnomalousActivity(AuditLog auditLog) {
+    public AnomalyAssessment evaluateAnomaly(AuditLog auditLog) {
+        List<String> reasons = new ArrayList<>();
+
         // High risk score indicates anomaly
         if (auditLog.getRiskScore() != null && auditLog.getRiskScore() > 0.7) {
-            return true;
+            reasons.add("High risk score: " + String.format("%.2f", auditLog.getRiskScore()));
         }
 
         // Multiple failed attempts from same IP
         if (AuditLog.ACTION_LOGIN_FAILED.equals(auditLog.getAction())) {
-            long failedAttemptsFromIp = auditLogRepository.countFailedLoginsByIpSince(
-                auditLog.getIpAddress(), LocalDateTime.now().minusMinutes(10));
-            
+            long failedAttemptsFromIp = failedLoginsByIp.count(auditLog.getIpAddress());
+
             if (failedAttemptsFromIp > 5) {
-                return true;
+                reasons.add("Multiple failed attempts from IP: " + failedAttemptsFromIp);
             }
         }
 
         // Unusual time patterns
         LocalTime currentTime = auditLog.getTimestamp().toLocalTime();
         if (currentTime.isBefore(LocalTime.of(2, 0)) || currentTime.isAfter(LocalTime.of(23, 0))) {
-            return true;
+            reasons.add("Activity during unusual hours: " + currentTime);
         }
 
-        return false;
+        return new AnomalyAssessment(!reasons.isEmpty(), String.join("; ", reasons));
     }
 
     /**
-     * Get anomaly reasons
+     * Feed an activity into the in-memory sliding windows used for scoring
      */
-    public String getAnomalyReasons(AuditLog auditLog) {
-        List<String> reasons = new ArrayList<>();
-
-        if (auditLog.getRiskScore() != null && auditLog.getRiskScore() > 0.7) {
-            reasons.add("High risk score: " + String.format("%.2f", auditLog.getRiskScore()));
+    public void recordActivity(AuditLog auditLog) {
+        if (AuditLog.ACTION_LOGIN.equals(auditLog.getAction())
+                || AuditLog.ACTION_LOGIN_FAILED.equals(auditLog.getAction())) {
+            loginsByUser.increment(userKey(auditLog.getUsername()));
         }
 
         if (AuditLog.ACTION_LOGIN_FAILED.equals(auditLog.getAction())) {
-            long failedAttemptsFromIp = auditLogRepository.countFailedLoginsByIpSince(
-                auditLog.getIpAddress(), LocalDateTime.now().minusMinutes(10));
-            
-            if (failedAttemptsFromIp > 5) {
-                reasons.add("Multiple failed attempts from IP: " + failedAttemptsFromIp);
-            }
+            failedLoginsByIp.increment(auditLog.getIpAddress());
+            failedLoginsByUser.increment(userKey(auditLog.getUsername()));
+        } else if (AuditLog.ACTION_LOGIN.equals(auditLog.getAction())
+                && AuditLog.ActionStatus.SUCCESS.equals(auditLog.getStatus())) {
+            userBehaviorProfileService.recordLogin(auditLog.getUsername(), auditLog.getIpAddress(),
+                auditLog.getUserAgent(), auditLog.getTimestamp());
         }
+    }
 
-        LocalTime currentTime = auditLog.getTimestamp().toLocalTime();
-        if (currentTime.isBefore(LocalTime.of(2, 0)) || currentTime.isAfter(LocalTime.of(23, 0))) {
-            reasons.add("Activity during unusual hours: " + currentTime);
-        }
+    /**
+     * Drop idle keys from the sliding windows
+     */
+    @Scheduled(fixedRate = 600000) // Every 10 minutes
+    public void purgeActivityWindows() {
+        failedLoginsByIp.purgeExpired();
+        failedLoginsByUser.purgeExpired();
+        loginsByUser.purgeExpired();
+    }
 
-        return String.join("; ", reasons);
+    /**
+     * Window key of a user; usernames match case-insensitively, as behaviour profiles do
+     */
+    private static String userKey(String username) {
+        return username != null ? UserBehaviorProfileService.normalize(username) : null;
+    }
+
+    /**
+     * Check whether the user rarely logs in around this time; until the profile has
+     * enough logins, anything outside business hours counts
+     */
+    private boolean isUnusualTime(UserBehaviorProfileService.Profile profile, LocalTime time) {
+        if (profile.getLogins() < PROFILE_MIN_LOGINS_FOR_HOURS) {
+            return time.isBefore(NORMAL_START_TIME) || time.isAfter(NORMAL_END_TIME);
+        }
+        return profile.getHourShare(time.getHour()) < UNUSUAL_HOUR_SHARE;
     }
 
     /**
      * Check if IP address is from a new location for user
      */
-    private boolean isNewLocation(User user, String ipAddress) {
+    private boolean isNewLocation(UserBehaviorProfileService.Profile profile, String ipAddress) {
         // Simple implementation - in production, use GeoIP service
-        List<AuditLog> recentLogins = auditLogRepository.findFailedLoginAttemptsByUsername(user.getUsername());
-        
-        return recentLogins.stream()
-                .limit(10) // Check last 10 logins
-                .noneMatch(log -> ipAddress.equals(log.getIpAddress()));
+        return !profile.hasIp(ipAddress);
     }
 
     /**
      * Check if user agent indicates a new device
      */
-    private boolean isNewDevice(User user, String userAgent) {
+    private boolean isNewDevice(UserBehaviorProfileService.Profile profile, String userAgent) {
         if (userAgent == null) return false;
-        
+
         // Simple implementation - in production, parse user agent properly
-        List<AuditLog> recentLogins = auditLogRepository.findFailedLoginAttemptsByUsername(user.getUsername());
-        
-        return recentLogins.stream()
-                .limit(5) // Check last 5 logins
-                .noneMatch(log -> userAgent.equals(log.getUserAgent()));
+        return !profile.hasUserAgent(userAgent);
     }
 
     /**
@@ -229,26 +260,27 @@ public class RiskAssessmentService {
     }
 
     /**
-     * Generate risk assessment report
+     * Generate the risk report on the risk executor instead of the caller's thread
      */
-    public RiskAssessmentReport generateRiskReport(String username, LocalDateTime since) {
-        List<AuditLog> userActivities = auditLogRepository.findByUsernameOrderByTimestampDesc(
-            username, org.springframework.data.domain.Pageable.unpaged()).getContent();
+    @Async(AsyncConfig.RISK_EXECUTOR)
+    public CompletableFuture<RiskAssessmentReport> generateRiskReportAsync(String username, LocalDateTime since) {
+        return CompletableFuture.completedFuture(generateRiskReport(username, since));
+    }
 
-        long totalActivities = userActivities.size();
-        long highRiskActivities = userActivities.stream()
-                .mapToLong(log -> log.isHighRisk() ? 1 : 0)
-                .sum();
-        
-        long anomalousActivities = userActivities.stream()
-                .mapToLong(log -> Boolean.TRUE.equals(log.getIsAnomaly()) ? 1 : 0)
-                .sum();
+    /**
+     * Generate risk assessment report for the user's activity since the given time.
+     * Totals are summed from the user's activity roll-up buckets, or aggregated from
+     * audit_logs over the period when roll-ups are disabled, so no rows are loaded.
+     */
+    public RiskAssessmentReport generateRiskReport(String username, LocalDateTime since) {
+        RiskTotals totals = auditActivityRollupService.isEnabled()
+            ? auditActivityRollupService.getUserRiskTotals(username, since)
+            : RiskTotals.of(auditLogRepository.getUserRiskTotals(username, since).get(0));
 
-        double averageRiskScore = userActivities.stream()
-                .filter(log -> log.getRiskScore() != null)
-                .mapToDouble(AuditLog::getRiskScore)
-                .average()
-                .orElse(0.0);
+        long totalActivities = totals.getTotalActivities();
+        long highRiskActivities = totals.getHighRiskActivities();
+        long anomalousActivities = totals.getAnomalousActivities();
+        double averageRiskScore = totals.getAverageRiskScore();
 
         return RiskAssessmentReport.builder()
                 .username(username)
@@ -278,7 +310,52 @@ public class RiskAssessmentService {
         }
     }
 
-    // DTO
+    // DTOs
+    public static class AnomalyAssessment {
+        private final boolean anomalous;
+        private final String reasons;
+
+        public AnomalyAssessment(boolean anomalous, String reasons) {
+            this.anomalous = anomalous;
+            this.reasons = reasons;
+        }
+
+        public boolean isAnomalous() { return anomalous; }
+        public String getReasons() { return reasons; }
+    }
+
+    /**
+     * Activity totals behind a risk report
+     */
+    public static class RiskTotals {
+        private final long totalActivities;
+        private final long highRiskActivities;
+        private final long anomalousActivities;
+        private final double riskScoreSum;
+        private final long riskScoredActivities;
+
+        public RiskTotals(long totalActivities, long highRiskActivities, long anomalousActivities,
+                          double riskScoreSum, long riskScoredActivities) {
+            this.totalActivities = totalActivities;
+            this.highRiskActivities = highRiskActivities;
+            this.anomalousActivities = anomalousActivities;
+            this.riskScoreSum = riskScoreSum;
+            this.riskScoredActivities = riskScoredActivities;
+        }
+
+        static RiskTotals of(Object[] row) {
+            return new RiskTotals(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                ((Number) row[2]).longValue(), ((Number) row[3]).doubleValue(), ((Number) row[4]).longValue());
+        }
+
+        public long getTotalActivities() { return totalActivities; }
+        public long getHighRiskActivities() { return highRiskActivities; }
+        public long getAnomalousActivities() { return anomalousActivities; }
+        public double getAverageRiskScore() {
+            return riskScoredActivities > 0 ? riskScoreSum / riskScoredActivities : 0.0;
+        }
+    }
+
     public static class RiskAssessmentReport {
         private String username;
         private LocalDateTime assessmentPeriod;
@@ -1,5 +1,7 @@
 package com.samap.service;
 
+import com.samap.config.AsyncConfig;
+import com.samap.config.CorrelationId;
 import com.samap.model.AuditLog;
 import com.samap.repository.AuditLogRepository;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +26,8 @@ public class SecurityMonitoringService {
 
     private final AuditLogRepository auditLogRepository;
     private final NotificationService notificationService;
+    private final AuditActivityRollupService auditActivityRollupService;
+    private final DistinctCountService distinctCountService;
 
     // In-memory threat tracking
     private final Map<String, AtomicInteger> failedLoginsByIp = new ConcurrentHashMap<>();
@@ -39,7 +43,7 @@ public class SecurityMonitoringService {
     /**
      * Monitor failed login attempts in real-time
      */
-    @Async
+    @Async(AsyncConfig.MONITORING_EXECUTOR)
     public void monitorFailedLogin(String username, String ipAddress) {
         log.debug("Monitoring failed login: user={}, ip={}", username, ipAddress);
 
@@ -69,7 +73,7 @@ public class SecurityMonitoringService {
     /**
      * Monitor high-risk activities
      */
-    @Async
+    @Async(AsyncConfig.MONITORING_EXECUTOR)
     public void monitorHighRiskActivity(AuditLog auditLog) {
         if (auditLog.getRiskScore() != null && auditLog.getRiskScore() > 0.7) {
             triggerSecurityAlert("HIGH_RISK_ACTIVITY",
@@ -82,7 +86,7 @@ public class SecurityMonitoringService {
     /**
      * Monitor anomalous activities
      */
-    @Async
+    @Async(AsyncConfig.MONITORING_EXECUTOR)
     public void monitorAnomalousActivity(AuditLog auditLog) {
         if (Boolean.TRUE.equals(auditLog.getIsAnomaly())) {
             triggerSecurityAlert("ANOMALY_DETECTED",
@@ -189,12 +193,23 @@ public class SecurityMonitoringService {
         
         try {
             // Get activity statistics
-            Object[] stats = auditLogRepository.getActivityStatistics(since);
-            
-            long totalActivities = ((Number) stats[0]).longValue();
-            long failedActivities = ((Number) stats[2]).longValue();
-            long highRiskActivities = ((Number) stats[3]).longValue();
-            long anomalousActivities = ((Number) stats[4]).longValue();
+            long totalActivities;
+            long failedActivities;
+            long highRiskActivities;
+            long anomalousActivities;
+            if (auditActivityRollupService.isEnabled()) {
+                AuditService.ActivityStatistics stats = auditActivityRollupService.getActivityStatistics(since);
+                totalActivities = stats.getTotalActivities();
+                failedActivities = stats.getFailedActivities();
+                highRiskActivities = stats.getHighRiskActivities();
+                anomalousActivities = stats.getAnomalousActivities();
+            } else {
+                Object[] stats = auditLogRepository.getActivityStatistics(since);
+                totalActivities = ((Number) stats[0]).longValue();
+                failedActivities = ((Number) stats[2]).longValue();
+                highRiskActivities = ((Number) stats[3]).longValue();
+                anomalousActivities = ((Number) stats[4]).longValue();
+            }
 
             // Calculate threat level
             String threatLevel = calculateThreatLevel(failedActivities, highRiskActivities, anomalousActivities);
@@ -207,6 +222,9 @@ public class SecurityMonitoringService {
                 .anomalousActivities(anomalousActivities)
                 .activeIpThreats(failedLoginsByIp.size())
                 .activeUserThreats(failedLoginsByUser.size())
+                .distinctUsers(distinctLastHour(DistinctCountService.Dimension.USERNAME))
+                .distinctIpAddresses(distinctLastHour(DistinctCountService.Dimension.IP_ADDRESS))
+                .distinctUserAgents(distinctLastHour(DistinctCountService.Dimension.USER_AGENT))
                 .timestamp(LocalDateTime.now())
                 .build();
 
@@ -219,6 +237,13 @@ public class SecurityMonitoringService {
         }
     }
 
+    /**
+     * Approximate distinct values seen in the last hour, from the HyperLogLog sketches
+     */
+    private long distinctLastHour(DistinctCountService.Dimension dimension) {
+        return distinctCountService.getDistinct(dimension, DistinctCountService.Window.ONE_HOUR).getCount();
+    }
+
     /**
      * Calculate overall threat level
      */
@@ -242,6 +267,7 @@ public class SecurityMonitoringService {
         private String ipAddress;
         private String username;
         private LocalDateTime timestamp;
+        private String correlationId;
 
         public static SecurityAlertBuilder builder() {
             return new SecurityAlertBuilder();
@@ -260,6 +286,8 @@ public class SecurityMonitoringService {
         public void setUsername(String username) { this.username = username; }
         public LocalDateTime getTimestamp() { return timestamp; }
         public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+        public String getCorrelationId() { return correlationId; }
+        public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
 
         public static class SecurityAlertBuilder {
             private String alertType;
@@ -268,6 +296,7 @@ public class SecurityMonitoringService {
             private String ipAddress;
             private String username;
             private LocalDateTime timestamp;
+            private String correlationId;
 
             public SecurityAlertBuilder alertType(String alertType) {
                 this.alertType = alertType;
@@ -299,6 +328,14 @@ public class SecurityMonitoringService {
                 return this;
             }
 
+            public SecurityAlertBuilder correlationId(String correlationId) {
+                this.correlationId = correlationId;
+                return this;
+            }
+
+            /**
+             * Alerts without an explicit correlation ID inherit the one of the current request
+             */
             public SecurityAlert build() {
                 SecurityAlert alert = new SecurityAlert();
                 alert.alertType = this.alertType;
@@ -307,6 +344,7 @@ public class SecurityMonitoringService {
                 alert.ipAddress = this.ipAddress;
                 alert.username = this.username;
                 alert.timestamp = this.timestamp;
+                alert.correlationId = this.correlationId != null ? this.correlationId : CorrelationId.current();
                 return alert;
             }
         }
@@ -320,6 +358,9 @@ public class SecurityMonitoringService {
         private long anomalousActivities;
         private int activeIpThreats;
         private int activeUserThreats;
+        private long distinctUsers;
+        private long distinctIpAddresses;
+        private long distinctUserAgents;
         private LocalDateTime timestamp;
 
         public static SecurityStatusBuilder builder() {
@@ -341,6 +382,12 @@ public class SecurityMonitoringService {
         public void setActiveIpThreats(int activeIpThreats) { this.activeIpThreats = activeIpThreats; }
         public int getActiveUserThreats() { return activeUserThreats; }
         public void setActiveUserThreats(int activeUserThreats) { this.activeUserThreats = activeUserThreats; }
+        public long getDistinctUsers() { return distinctUsers; }
+        public void setDistinctUsers(long distinctUsers) { this.distinctUsers = distinctUsers; }
+        public long getDistinctIpAddresses() { return distinctIpAddresses; }
+        public void setDistinctIpAddresses(long distinctIpAddresses) { this.distinctIpAddresses = distinctIpAddresses; }
+        public long getDistinctUserAgents() { return distinctUserAgents; }
+        public void setDistinctUserAgents(long distinctUserAgents) { this.distinctUserAgents = distinctUserAgents; }
         public LocalDateTime getTimestamp() { return timestamp; }
         public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
 
@@ -352,6 +399,9 @@ public class SecurityMonitoringService {
             private long anomalousActivities;
             private int activeIpThreats;
             private int activeUserThreats;
+            private long distinctUsers;
+            private long distinctIpAddresses;
+            private long distinctUserAgents;
             private LocalDateTime timestamp;
 
             public SecurityStatusBuilder threatLevel(String threatLevel) {
@@ -389,6 +439,21 @@ public class SecurityMonitoringService {
                 return this;
             }
 
+            public SecurityStatusBuilder distinctUsers(long distinctUsers) {
+                this.distinctUsers = distinctUsers;
+                return this;
+            }
+
+            public SecurityStatusBuilder distinctIpAddresses(long distinctIpAddresses) {
+                this.distinctIpAddresses = distinctIpAddresses;
+                return this;
+            }
+
+            public SecurityStatusBuilder distinctUserAgents(long distinctUserAgents) {
+                this.distinctUserAgents = distinctUserAgents;
+                return this;
+            }
+
             public SecurityStatusBuilder timestamp(LocalDateTime timestamp) {
                 this.timestamp = timestamp;
                 return this;
@@ -403,6 +468,9 @@ public class SecurityMonitoringService {
                 status.anomalousActivities = this.anomalousActivities;
                 status.activeIpThreats = this.activeIpThreats;
                 status.activeUserThreats = this.activeUserThreats;
+                status.distinctUsers = this.distinctUsers;
+                status.distinctIpAddresses = this.distinctIpAddresses;
+                status.distinctUserAgents = this.distinctUserAgents;
                 status.timestamp = this.timestamp;
                 return status;
             }
@@ -0,0 +1,82 @@
+package com.samap.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Migration path from IDENTITY columns to pooled sequences.
+ *
+ * Databases created before the entities switched to sequence generation already
+ * hold rows whose ids came from the identity columns. Each entity sequence is created
+ * if missing and moved past the highest existing id so the pooled optimizer never hands
+ * out an id that is already taken. This runs while the bean is initialized, which the
+ * EntityManagerFactory waits for ({@link com.samap.config.SchemaInitializationConfig}),
+ * so it is done before anything can insert.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SequenceAlignmentService {
+
+    /** Must match the allocationSize of the entity @SequenceGenerator mappings */
+    public static final int ALLOCATION_SIZE = 50;
+
+    private static final Map<String, String> TABLE_SEQUENCES = Map.of(
+        "users", "users_seq",
+        "roles", "roles_seq",
+        "permissions", "permissions_seq",
+        "audit_logs", "audit_logs_seq"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${database.sequences.align-on-startup:true}")
+    private boolean alignOnStartup;
+
+    @PostConstruct
+    public void alignSequences() {
+        if (!alignOnStartup || !isPostgres()) {
+            return;
+        }
+
+        TABLE_SEQUENCES.forEach(this::alignSequence);
+    }
+
+    private void alignSequence(String table, String sequence) {
+        try {
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + sequence +
+                " START WITH 1 INCREMENT BY " + ALLOCATION_SIZE);
+
+            Long maxId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            Long current = jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM " + sequence, Long.class);
+
+            // The pooled optimizer treats a sequence value as the upper bound of the next block
+            long required = maxId + ALLOCATION_SIZE;
+            if (current == null || current < required) {
+                jdbcTemplate.queryForObject("SELECT setval(?, ?, true)", Long.class, sequence, required);
+                log.info("Aligned sequence {} to {} (max {}.id = {})", sequence, required, table, maxId);
+            }
+        } catch (Exception e) {
+            log.warn("Could not align sequence {} for table {}: {}", sequence, table, e.getMessage());
+        }
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.samap.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate top-K keys over a sliding time window in bounded memory.
+ *
+ * The window is split into slices, each a Space-Saving summary holding at most
+ * {@code capacity} keys in an indexed min-heap: a new key arriving at a full slice
+ * replaces the least frequent one and inherits its count as error. Queries merge the
+ * live slices, so counts are never under-estimated and over-estimated by at most the
+ * reported error; any key with more than window total / capacity events is guaranteed
+ * to be tracked. Memory is fixed at slices x capacity entries.
+ */
+public class SlidingHeavyHitters {
+
+    private final long sliceMillis;
+    private final int sliceCount;
+    private final int capacity;
+    private final Slice[] slices;
+
+    public SlidingHeavyHitters(Duration window, int sliceCount, int capacity) {
+        this.sliceCount = sliceCount;
+        this.sliceMillis = Math.max(1, window.toMillis() / sliceCount);
+        this.capacity = capacity;
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    /**
+     * Record one event for the key
+     */
+    public void add(String key) {
+        add(key, 1, System.currentTimeMillis());
+    }
+
+    void add(String key, long weight, long nowMillis) {
+        if (key == null || weight <= 0) {
+            return;
+        }
+        long epoch = nowMillis / sliceMillis;
+        slices[(int) (epoch % sliceCount)].add(key, weight, epoch);
+    }
+
+    /**
+     * The k most frequent keys in the window, most frequent first
+     */
+    public List<Estimate> top(int k) {
+        return top(k, System.currentTimeMillis());
+    }
+
+    List<Estimate> top(int k, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        List<Snapshot> snapshots = new ArrayList<>(sliceCount);
+        for (Slice slice : slices) {
+            Snapshot snapshot = slice.snapshot(epoch);
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
+        }
+
+        Map<String, long[]> merged = new HashMap<>();
+        for (Snapshot snapshot : snapshots) {
+            for (String key : snapshot.entries().keySet()) {
+                merged.computeIfAbsent(key, unused -> new long[2]);
+            }
+        }
+        merged.forEach((key, total) -> {
+            for (Snapshot snapshot : snapshots) {
+                long[] entry = snapshot.entries().get(key);
+                if (entry != null) {
+                    total[0] += entry[0];
+                    total[1] += entry[1];
+                } else {
+                    // Missing from a full slice: the key may still have had up to its minimum count there
+                    total[0] += snapshot.floor();
+                    total[1] += snapshot.floor();
+                }
+            }
+        });
+
+        return merged.entrySet().stream()
+            .map(entry -> new Estimate(entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+            .sorted(Comparator.comparingLong(Estimate::count).reversed().thenComparing(Estimate::key))
+            .limit(k)
+            .toList();
+    }
+
+    /**
+     * Estimated event count for a key; the true count lies in [count - error, count]
+     */
+    public record Estimate(String key, long count, long error) {
+    }
+
+    /**
+     * Entries of one slice as key -> {count, error}; floor is the most a key that is not
+     * in the slice can have had there (0 unless the slice was full)
+     */
+    private record Snapshot(Map<String, long[]> entries, long floor) {
+    }
+
+    private final class Slice {
+        private final String[] keys = new String[capacity];
+        private final long[] counts = new long[capacity];
+        private final long[] errors = new long[capacity];
+        private final Map<String, Integer> positions = new HashMap<>();
+        private int size;
+        private long epoch = -1;
+
+        synchronized void add(String key, long weight, long currentEpoch) {
+            if (epoch != currentEpoch) {
+                epoch = currentEpoch;
+                Arrays.fill(keys, 0, size, null);
+                positions.clear();
+                size = 0;
+            }
+
+            Integer position = positions.get(key);
+            if (position != null) {
+                counts[position] += weight;
+                siftDown(position);
+            } else if (size < capacity) {
+                place(size, key, weight, 0);
+                size++;
+                siftUp(size - 1);
+            } else {
+                long min = counts[0];
+                positions.remove(keys[0]);
+                place(0, key, min + weight, min);
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Copy of the slice if it is inside the window, else null
+         */
+        synchronized Snapshot snapshot(long currentEpoch) {
+            if (epoch < 0 || currentEpoch - epoch >= sliceCount) {
+                return null;
+            }
+            Map<String, long[]> entries = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                entries.put(keys[i], new long[] {counts[i], errors[i]});
+            }
+            return new Snapshot(entries, size == capacity ? counts[0] : 0);
+        }
+
+        private void place(int position, String key, long count, long error) {
+            keys[position] = key;
+            counts[position] = count;
+            errors[position] = error;
+            positions.put(key, position);
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (counts[parent] <= counts[position]) {
+                    return;
+                }
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && counts[right] < counts[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            String key = keys[a];
+            long count = counts[a];
+            long error = errors[a];
+            place(a, keys[b], counts[b], errors[b]);
+            place(b, key, count, error);
+        }
+    }
+}
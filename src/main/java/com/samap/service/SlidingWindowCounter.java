@@ -0,0 +1,141 @@
+package com.samap.service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded, per-key sliding window event counter.
+ *
+ * Each key keeps a small ring of time buckets covering the window, so counting is
+ * O(buckets) and memory per key is fixed. The number of tracked keys is capped;
+ * when the cap is hit, keys with no activity inside the window are purged first and,
+ * if that is not enough, the tenth of the keys with the fewest events in the window
+ * (least recently updated first) is evicted. Spraying throwaway keys therefore evicts
+ * other throwaway keys, never the key with the most activity being tracked.
+ */
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    public SlidingWindowCounter(Duration window, int bucketCount, int maxKeys) {
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1, window.toMillis() / bucketCount);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Record one event for the key and return the count inside the window
+     */
+    public long increment(String key) {
+        return increment(key, System.currentTimeMillis());
+    }
+
+    long increment(String key, long nowMillis) {
+        if (key == null) {
+            return 0;
+        }
+
+        Window window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= maxKeys) {
+                makeRoom(nowMillis);
+            }
+            window = windows.computeIfAbsent(key, k -> new Window());
+        }
+        return window.add(nowMillis / bucketMillis);
+    }
+
+    /**
+     * Count of events for the key inside the window
+     */
+    public long count(String key) {
+        return count(key, System.currentTimeMillis());
+    }
+
+    long count(String key, long nowMillis) {
+        if (key == null) {
+            return 0;
+        }
+        Window window = windows.get(key);
+        return window != null ? window.sum(nowMillis / bucketMillis) : 0;
+    }
+
+    /**
+     * Drop keys that have had no events inside the window
+     */
+    public void purgeExpired() {
+        purgeExpired(System.currentTimeMillis());
+    }
+
+    void purgeExpired(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        windows.entrySet().removeIf(entry -> epoch - entry.getValue().lastEpoch >= bucketCount);
+    }
+
+    /**
+     * Number of keys currently tracked
+     */
+    public int size() {
+        return windows.size();
+    }
+
+    private void makeRoom(long nowMillis) {
+        purgeExpired(nowMillis);
+        if (windows.size() < maxKeys) {
+            return;
+        }
+
+        // Keep the toEvict quietest keys in a heap whose head is the busiest of them
+        long epoch = nowMillis / bucketMillis;
+        int toEvict = Math.max(1, maxKeys / 10);
+        Comparator<Candidate> quietestFirst = Comparator.comparingLong(Candidate::count)
+            .thenComparingLong(Candidate::lastEpoch);
+        PriorityQueue<Candidate> quietest = new PriorityQueue<>(toEvict + 1, quietestFirst.reversed());
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            Window window = entry.getValue();
+            quietest.add(new Candidate(entry.getKey(), window.sum(epoch), window.lastEpoch));
+            if (quietest.size() > toEvict) {
+                quietest.poll();
+            }
+        }
+        for (Candidate candidate : quietest) {
+            windows.remove(candidate.key());
+        }
+    }
+
+    private record Candidate(String key, long count, long lastEpoch) {
+    }
+
+    private final class Window {
+        private final long[] counts = new long[bucketCount];
+        private final long[] epochs = new long[bucketCount];
+        private volatile long lastEpoch;
+
+        synchronized long add(long epoch) {
+            int index = (int) (epoch % bucketCount);
+            if (epochs[index] != epoch) {
+                epochs[index] = epoch;
+                counts[index] = 0;
+            }
+            counts[index]++;
+            lastEpoch = epoch;
+            return sum(epoch);
+        }
+
+        synchronized long sum(long epoch) {
+            long total = 0;
+            for (int i = 0; i < bucketCount; i++) {
+                if (epoch - epochs[i] < bucketCount) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+    }
+}
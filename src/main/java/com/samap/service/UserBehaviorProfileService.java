@@ -0,0 +1,309 @@
+package com.samap.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-user login behaviour: the most recent IP addresses and user agents of successful
+ * logins and a histogram of login hours, updated as each login is recorded. Login risk
+ * scoring reads the profile instead of the user's audit history.
+ *
+ * Profiles live in an LRU bounded by {@code audit.behavior-profiles.max-users}. With
+ * {@code audit.behavior-profiles.redis.enabled} each login is also written to a Redis
+ * hash per user (one field per IP, user agent and hour, so concurrent writes from
+ * different nodes merge), and a profile is re-read from Redis when it is missing locally
+ * or older than the refresh interval.
+ *
+ * Without Redis (the default) profiles exist only in memory: after a restart, or once a
+ * user is evicted from the LRU, the profile starts empty and the user's next login is
+ * scored as a new location and device. {@code User.lastLoginIp} cannot stand in for it,
+ * since it already holds the IP of the login being scored. Enable Redis where those
+ * false positives matter.
+ */
+@Service
+@Slf4j
+public class UserBehaviorProfileService {
+
+    private static final String KEY_PREFIX = "samap:profile:";
+    private static final String IP_FIELD = "ip:";
+    private static final String USER_AGENT_FIELD = "ua:";
+    private static final String HOUR_FIELD = "hour:";
+
+    @Value("${audit.behavior-profiles.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.behavior-profiles.max-users:50000}")
+    private int maxUsers;
+
+    @Value("${audit.behavior-profiles.recent-ips:10}")
+    private int recentIps;
+
+    @Value("${audit.behavior-profiles.recent-user-agents:5}")
+    private int recentUserAgents;
+
+    @Value("${audit.behavior-profiles.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${audit.behavior-profiles.redis.ttl-days:90}")
+    private int ttlDays;
+
+    @Value("${audit.behavior-profiles.redis.refresh-ms:60000}")
+    private long refreshMs;
+
+    private final ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider;
+    private Map<String, Profile> profiles;
+
+    public UserBehaviorProfileService(ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider) {
+        this.redisTemplateProvider = redisTemplateProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        profiles = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Profile> eldest) {
+                return size() > maxUsers;
+            }
+        });
+        if (redisEnabled && redisTemplateProvider.getIfAvailable() == null) {
+            log.warn("Behaviour profile sharing through Redis requested but Redis is not available, profiles are per node");
+            redisEnabled = false;
+        }
+        log.info("User behaviour profiles {} (up to {} users{})", enabled ? "enabled" : "disabled", maxUsers,
+            redisEnabled ? ", shared through Redis" : "");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Add a successful login to the user's profile
+     */
+    public void recordLogin(String username, String ipAddress, String userAgent, LocalDateTime timestamp) {
+        if (!enabled || username == null) {
+            return;
+        }
+        String key = normalize(username);
+        int hour = timestamp.getHour();
+
+        getProfile(key).record(ipAddress, userAgent, hour);
+
+        if (redisEnabled) {
+            long at = timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            publish(key, ipAddress, userAgent, hour, at);
+        }
+    }
+
+    /**
+     * The user's profile; empty when the user has no recorded logins. Never queries the database.
+     */
+    public Profile getProfile(String username) {
+        String key = normalize(username);
+        Profile profile = profiles.get(key);
+        if (redisEnabled && (profile == null || profile.isOlderThan(refreshMs))) {
+            Profile loaded = load(key);
+            if (loaded != null) {
+                profiles.put(key, loaded);
+                return loaded;
+            }
+        }
+        if (profile == null) {
+            profile = profiles.computeIfAbsent(key, k -> new Profile(recentIps, recentUserAgents));
+        }
+        return profile;
+    }
+
+    /**
+     * Number of profiles held in memory
+     */
+    public int getProfileCount() {
+        return profiles.size();
+    }
+
+    private void publish(String username, String ipAddress, String userAgent, int hour, long at) {
+        byte[] key = bytes(KEY_PREFIX + username);
+        byte[] seen = bytes(Long.toString(at));
+        long ttlSeconds = Duration.ofDays(ttlDays).toSeconds();
+        try {
+            redisTemplateProvider.getObject().execute((RedisCallback<Void>) connection -> {
+                connection.openPipeline();
+                if (ipAddress != null) {
+                    connection.hashCommands().hSet(key, bytes(IP_FIELD + ipAddress), seen);
+                }
+                if (userAgent != null) {
+                    connection.hashCommands().hSet(key, bytes(USER_AGENT_FIELD + userAgent), seen);
+                }
+                connection.hashCommands().hIncrBy(key, bytes(HOUR_FIELD + hour), 1);
+                connection.keyCommands().expire(key, ttlSeconds);
+                connection.closePipeline();
+                return null;
+            });
+        } catch (Exception e) {
+            // The local profile already has the login; other nodes miss it until the next one
+            log.warn("Failed to publish behaviour profile of {} to Redis: {}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * Profile rebuilt from the user's Redis hash, or null when Redis fails. IPs and user
+     * agents beyond the most recent ones kept are removed from the hash.
+     */
+    private Profile load(String username) {
+        byte[] key = bytes(KEY_PREFIX + username);
+        try {
+            Map<byte[], byte[]> fields = redisTemplateProvider.getObject().execute(
+                (RedisCallback<Map<byte[], byte[]>>) connection -> connection.hashCommands().hGetAll(key));
+
+            Map<String, Long> ips = new LinkedHashMap<>();
+            Map<String, Long> userAgents = new LinkedHashMap<>();
+            long[] hours = new long[24];
+            if (fields != null) {
+                for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) {
+                    String field = new String(entry.getKey(), StandardCharsets.UTF_8);
+                    long value = Long.parseLong(new String(entry.getValue(), StandardCharsets.UTF_8));
+                    if (field.startsWith(IP_FIELD)) {
+                        ips.put(field.substring(IP_FIELD.length()), value);
+                    } else if (field.startsWith(USER_AGENT_FIELD)) {
+                        userAgents.put(field.substring(USER_AGENT_FIELD.length()), value);
+                    } else if (field.startsWith(HOUR_FIELD)) {
+                        hours[Integer.parseInt(field.substring(HOUR_FIELD.length()))] = value;
+                    }
+                }
+            }
+
+            Profile profile = new Profile(recentIps, recentUserAgents);
+            List<String> expired = new ArrayList<>();
+            profile.restore(mostRecent(ips, recentIps, IP_FIELD, expired),
+                mostRecent(userAgents, recentUserAgents, USER_AGENT_FIELD, expired), hours);
+
+            if (!expired.isEmpty()) {
+                byte[][] stale = expired.stream().map(UserBehaviorProfileService::bytes).toArray(byte[][]::new);
+                redisTemplateProvider.getObject().execute(
+                    (RedisCallback<Long>) connection -> connection.hashCommands().hDel(key, stale));
+            }
+            return profile;
+        } catch (Exception e) {
+            log.warn("Failed to read behaviour profile of {} from Redis, using this node's: {}", username, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The limit most recently seen values, oldest first; the field names of the rest go to expired
+     */
+    private static List<String> mostRecent(Map<String, Long> lastSeen, int limit, String prefix, List<String> expired) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(lastSeen.entrySet());
+        entries.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
+
+        List<String> kept = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (i < limit) {
+                kept.add(0, entries.get(i).getKey());
+            } else {
+                expired.add(prefix + entries.get(i).getKey());
+            }
+        }
+        return kept;
+    }
+
+    static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One user's recent successful logins
+     */
+    public static final class Profile {
+        private final int maxIps;
+        private final int maxUserAgents;
+        private final Deque<String> ips = new ArrayDeque<>();
+        private final Deque<String> userAgents = new ArrayDeque<>();
+        private final long[] hours = new long[24];
+        private long logins;
+        private volatile long loadedAt = System.currentTimeMillis();
+
+        Profile(int maxIps, int maxUserAgents) {
+            this.maxIps = maxIps;
+            this.maxUserAgents = maxUserAgents;
+        }
+
+        synchronized void record(String ipAddress, String userAgent, int hour) {
+            touch(ips, ipAddress, maxIps);
+            touch(userAgents, userAgent, maxUserAgents);
+            hours[hour]++;
+            logins++;
+        }
+
+        synchronized void restore(List<String> recentIps, List<String> recentUserAgents, long[] hourCounts) {
+            recentIps.forEach(ip -> touch(ips, ip, maxIps));
+            recentUserAgents.forEach(userAgent -> touch(userAgents, userAgent, maxUserAgents));
+            for (int hour = 0; hour < hours.length; hour++) {
+                hours[hour] = hourCounts[hour];
+                logins += hourCounts[hour];
+            }
+        }
+
+        boolean isOlderThan(long millis) {
+            return System.currentTimeMillis() - loadedAt > millis;
+        }
+
+        // Most recent value last; a repeated value moves to the end
+        private static void touch(Deque<String> recent, String value, int limit) {
+            if (value == null) {
+                return;
+            }
+            recent.remove(value);
+            recent.addLast(value);
+            while (recent.size() > limit) {
+                recent.removeFirst();
+            }
+        }
+
+        public synchronized boolean hasIp(String ipAddress) {
+            return ips.contains(ipAddress);
+        }
+
+        public synchronized boolean hasUserAgent(String userAgent) {
+            return userAgents.contains(userAgent);
+        }
+
+        public synchronized long getLogins() {
+            return logins;
+        }
+
+        /**
+         * Share of the user's logins in the given hour and the hours either side of it
+         */
+        public synchronized double getHourShare(int hour) {
+            if (logins == 0) {
+                return 0.0;
+            }
+            long around = hours[(hour + 23) % 24] + hours[hour] + hours[(hour + 1) % 24];
+            return (double) around / logins;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.samap.service;
 
+import com.samap.config.ReplicaRoutingAspect.ReplicaLag;
 import com.samap.model.AuditLog;
 import com.samap.model.Role;
 import com.samap.model.User;
@@ -343,6 +344,7 @@ public class UserService {
      * Get user statistics
      */
     @Transactional(readOnly = true)
+    @ReplicaLag("${samap.datasource.replicas.max-lag-ms.dashboard:30000}")
     public UserStatistics getUserStatistics() {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime inactiveDate = now.minusDays(30);
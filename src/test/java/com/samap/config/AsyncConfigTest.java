@@ -0,0 +1,125 @@
+package com.samap.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.MDC;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Executors chosen by {@code spring.threads.virtual.enabled}: virtual threads on Java 21,
+ * the platform pools with a warning on older runtimes, and the correlation ID carried over
+ * either way.
+ */
+@ExtendWith(OutputCaptureExtension.class)
+class AsyncConfigTest {
+
+    private final List<Executor> executors = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (Executor executor : executors) {
+            if (executor instanceof ThreadPoolTaskExecutor pool) {
+                pool.shutdown();
+            } else if (executor instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualThreadFlagRunsTheDefaultExecutorAndBulkheadsOnVirtualThreads() throws Exception {
+        AsyncConfig config = config(true);
+
+        Executor taskExecutor = config.getAsyncExecutor();
+        executors.add(taskExecutor);
+        assertInstanceOf(SimpleAsyncTaskExecutor.class, taskExecutor);
+        assertEquals(List.of("request-1", "true"), runUnderCorrelationId(taskExecutor, "request-1"));
+        for (Executor executor : List.of(config.monitoringExecutor(), config.riskExecutor())) {
+            executors.add(executor);
+            assertInstanceOf(ExecutorBulkheads.ThrottledExecutor.class, executor);
+            assertEquals(List.of("request-1", "true"), runUnderCorrelationId(executor, "request-1"));
+        }
+        assertTrue(config.executorBulkheads().getStats().stream()
+            .allMatch(stats -> Boolean.TRUE.equals(stats.get("virtualThreads"))));
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void virtualThreadFlagFallsBackToPlatformPoolsBeforeJava21(CapturedOutput output) throws Exception {
+        AsyncConfig config = config(true);
+
+        for (Executor executor : List.of(config.getAsyncExecutor(), config.monitoringExecutor(), config.riskExecutor())) {
+            executors.add(executor);
+            assertInstanceOf(ThreadPoolTaskExecutor.class, executor);
+            assertEquals(List.of("request-1", "false"), runUnderCorrelationId(executor, "request-1"));
+        }
+        assertTrue(output.getOut().contains("spring.threads.virtual.enabled is set but Java "
+            + Runtime.version().feature() + " has no virtual threads"));
+    }
+
+    @Test
+    void platformPoolsAreUsedWhenTheFlagIsOff(CapturedOutput output) throws Exception {
+        AsyncConfig config = config(false);
+
+        Executor executor = config.getAsyncExecutor();
+        executors.add(executor);
+
+        assertInstanceOf(ThreadPoolTaskExecutor.class, executor);
+        assertEquals(List.of("request-1", "false"), runUnderCorrelationId(executor, "request-1"));
+        assertFalse(output.getOut().contains("spring.threads.virtual.enabled is set"));
+    }
+
+    private static AsyncConfig config(boolean virtualThreads) {
+        AsyncConfig config = new AsyncConfig(new MockEnvironment());
+        ReflectionTestUtils.setField(config, "virtualThreads", virtualThreads);
+        ReflectionTestUtils.setField(config, "virtualConcurrencyLimit", -1);
+        return config;
+    }
+
+    /**
+     * Correlation ID and virtual-thread flag seen by a task submitted under the given ID
+     */
+    private static List<String> runUnderCorrelationId(Executor executor, String id) throws Exception {
+        CompletableFuture<List<String>> seen = new CompletableFuture<>();
+        MDC.put(CorrelationId.MDC_KEY, id);
+        try {
+            executor.execute(() -> seen.complete(List.of(MDC.get(CorrelationId.MDC_KEY), isVirtual(Thread.currentThread()))));
+        } finally {
+            MDC.remove(CorrelationId.MDC_KEY);
+        }
+        return seen.get(2, TimeUnit.SECONDS);
+    }
+
+    // Thread.isVirtual() only exists from Java 21; the build still targets 17
+    private static String isVirtual(Thread thread) {
+        try {
+            return String.valueOf(Thread.class.getMethod("isVirtual").invoke(thread));
+        } catch (ReflectiveOperationException e) {
+            return "false";
+        }
+    }
+}
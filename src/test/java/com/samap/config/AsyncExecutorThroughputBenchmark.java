@@ -0,0 +1,94 @@
+package com.samap.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the platform-thread async pool with the virtual-thread executor on
+ * blocking, I/O-shaped work such as audit writes and alert notifications.
+ *
+ * Not part of the regular build; run with {@code mvn -Pjava21,benchmark test}.
+ */
+class AsyncExecutorThroughputBenchmark {
+
+    private static final int TASKS = 5_000;
+    private static final long BLOCKING_MILLIS = 20;
+
+    @Test
+    void compareAsyncExecutorThroughput() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads need Java 21");
+
+        Result platform = run(executor(false));
+        Result virtual = run(executor(true));
+
+        System.out.printf("%-10s %10s %12s %12s%n", "mode", "tasks/s", "elapsed ms", "rejections");
+        System.out.printf("%-10s %10.0f %12d %12d%n", "platform", platform.throughput(), platform.elapsedMs, platform.rejections);
+        System.out.printf("%-10s %10.0f %12d %12d%n", "virtual", virtual.throughput(), virtual.elapsedMs, virtual.rejections);
+
+        assertTrue(virtual.throughput() > platform.throughput(),
+            "Virtual threads should outperform the bounded pool on blocking work");
+    }
+
+    private Executor executor(boolean virtualThreads) {
+        AsyncConfig config = new AsyncConfig(new StandardEnvironment());
+        ReflectionTestUtils.setField(config, "virtualThreads", virtualThreads);
+        ReflectionTestUtils.setField(config, "virtualConcurrencyLimit", -1);
+        return config.getAsyncExecutor();
+    }
+
+    /**
+     * Submit every task, backing off briefly whenever the executor rejects one
+     */
+    private Result run(Executor executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        AtomicLong rejections = new AtomicLong();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < TASKS; i++) {
+            while (true) {
+                try {
+                    executor.execute(() -> {
+                        try {
+                            Thread.sleep(BLOCKING_MILLIS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                    break;
+                } catch (TaskRejectedException e) {
+                    rejections.incrementAndGet();
+                    Thread.sleep(1);
+                }
+            }
+        }
+
+        assertTrue(done.await(5, TimeUnit.MINUTES), "Benchmark did not finish");
+        return new Result(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), rejections.get());
+    }
+
+    private static final class Result {
+        private final long elapsedMs;
+        private final long rejections;
+
+        private Result(long elapsedMs, long rejections) {
+            this.elapsedMs = elapsedMs;
+            this.rejections = rejections;
+        }
+
+        double throughput() {
+            return TASKS * 1000.0 / Math.max(1, elapsedMs);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.samap.config;
+
+import com.samap.service.AuditService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * One audit event per request, carrying the {@code @Auditable} action; async requests
+ * are audited when they complete, with the final status. Failures and high-risk
+ * operations take the security event path.
+ */
+class AuditRequestFilterTest {
+
+    private final AuditService auditService = mock(AuditService.class);
+    private final AuditRequestFilter filter = new AuditRequestFilter(auditService);
+
+    @Test
+    void synchronousRequestIsAuditedWithTheAnnotatedAction() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {
+            handledAs((HttpServletRequest) req, "USER_LIST");
+            response.setStatus(200);
+        });
+
+        verify(auditService).logApiAccess(eq("alice"), eq("USER_LIST"), eq("USER"), eq("/api/users"), eq("GET"),
+            isNull(), eq(200), anyLong(), any(), any(), any(), isNull(), isNull());
+    }
+
+    @Test
+    void requestWithoutAnActionIsAuditedWithANullAction() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> handledAs((HttpServletRequest) req, null));
+
+        verify(auditService).logApiAccess(eq("alice"), isNull(), eq("USER"), eq("/api/users"), eq("GET"),
+            isNull(), eq(200), anyLong(), any(), any(), any(), isNull(), isNull());
+    }
+
+    @Test
+    void asyncRequestIsAuditedOnCompletionWithTheFinalStatus() throws Exception {
+        MockHttpServletRequest request = request();
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FilterChain chain = (req, res) -> {
+            handledAs((HttpServletRequest) req, "AUDIT_EXPORT");
+            req.startAsync(req, res);
+        };
+        filter.doFilter(request, response, chain);
+
+        assertTrue(request.isAsyncStarted());
+        verify(auditService, never()).logApiAccess(any(), any(), any(), any(), any(), any(), any(), any(),
+            any(), any(), any(), any(), any());
+
+        // The streamed body fails halfway through after the handler returned
+        response.setStatus(503);
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+
+        verify(auditService).logRequestSecurityEvent(eq("alice"), eq("AUDIT_EXPORT"), eq("USER"), eq("/api/users"),
+            eq("GET"), isNull(), eq(503), anyLong(), any(), any(), any(), isNull(), isNull(), eq(false));
+    }
+
+    @Test
+    void failedRequestIsEmittedAsASecurityEvent() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {
+            handledAs((HttpServletRequest) req, "USER_DELETE");
+            ((AuditContext) req.getAttribute(AuditContext.ATTRIBUTE)).setErrorMessage("User not found");
+            response.setStatus(404);
+        });
+
+        verify(auditService).logRequestSecurityEvent(eq("alice"), eq("USER_DELETE"), eq("USER"), eq("/api/users"),
+            eq("GET"), isNull(), eq(404), anyLong(), any(), any(), any(), isNull(), eq("User not found"), eq(false));
+        verify(auditService, never()).logApiAccess(any(), any(), any(), any(), any(), any(), any(), any(),
+            any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void escapingExceptionIsEmittedAsAServerErrorSecurityEvent() {
+        MockHttpServletRequest request = request();
+
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(request, new MockHttpServletResponse(),
+            (req, res) -> {
+                handledAs((HttpServletRequest) req, null);
+                throw new IllegalStateException("boom");
+            }));
+
+        verify(auditService).logRequestSecurityEvent(eq("alice"), isNull(), eq("USER"), eq("/api/users"),
+            eq("GET"), isNull(), eq(500), anyLong(), any(), any(), any(), isNull(), eq("boom"), eq(false));
+    }
+
+    @Test
+    void successfulHighRiskOperationIsEmittedAsASecurityEvent() throws Exception {
+        MockHttpServletRequest request = request();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            handledAs((HttpServletRequest) req, "MANUAL_SECURITY_SCAN");
+            ((AuditContext) req.getAttribute(AuditContext.ATTRIBUTE)).setHighRisk(true);
+        });
+
+        verify(auditService).logRequestSecurityEvent(eq("alice"), eq("MANUAL_SECURITY_SCAN"), eq("USER"),
+            eq("/api/users"), eq("GET"), isNull(), eq(200), anyLong(), any(), any(), any(), isNull(), isNull(), eq(true));
+    }
+
+    @Test
+    void callerSuppliedCorrelationIdIsRecordedInTheDetails() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(CorrelationId.HEADER, "client-42");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> handledAs((HttpServletRequest) req, null));
+
+        verify(auditService).logApiAccess(eq("alice"), isNull(), eq("USER"), eq("/api/users"), eq("GET"),
+            isNull(), eq(200), anyLong(), any(), any(), any(), eq("Client correlation ID: client-42"), isNull());
+    }
+
+    @Test
+    void unhandledRequestIsNotAudited() throws Exception {
+        filter.doFilter(request(), new MockHttpServletResponse(), (req, res) -> { });
+
+        verify(auditService, never()).logApiAccess(any(), any(), any(), any(), any(), any(), any(), any(),
+            any(), any(), any(), any(), any());
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.setServletPath("/api/users");
+        return request;
+    }
+
+    // What AuditAspect records while the controller method runs
+    private void handledAs(HttpServletRequest request, String action) {
+        AuditContext context = (AuditContext) request.getAttribute(AuditContext.ATTRIBUTE);
+        context.setHandled(true);
+        context.setUsername("alice");
+        context.setAction(action);
+        context.setResource("USER");
+    }
+}
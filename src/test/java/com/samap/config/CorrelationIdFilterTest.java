@@ -0,0 +1,36 @@
+package com.samap.config;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every request runs under a server-minted correlation ID, whatever the caller sends.
+ */
+class CorrelationIdFilterTest {
+
+    private final CorrelationIdFilter filter = new CorrelationIdFilter();
+
+    @Test
+    void callerSuppliedIdIsNotAdopted() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.addHeader(CorrelationId.HEADER, "chosen-by-client");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.doFilter(request, response, (req, res) -> seen.set(MDC.get(CorrelationId.MDC_KEY)));
+
+        assertNotEquals("chosen-by-client", seen.get());
+        assertTrue(CorrelationId.isValid(seen.get()));
+        assertEquals(seen.get(), response.getHeader(CorrelationId.HEADER));
+        assertNull(MDC.get(CorrelationId.MDC_KEY));
+    }
+}
@@ -0,0 +1,83 @@
+package com.samap.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Format, ordering and uniqueness of minted correlation IDs.
+ */
+class CorrelationIdTest {
+
+    private static final Pattern UUID_V7 =
+        Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-7[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}");
+
+    @Test
+    void idsAreVersion7UuidsCarryingTheCurrentTime() {
+        long before = System.currentTimeMillis();
+        String id = CorrelationId.next();
+        long after = System.currentTimeMillis();
+
+        assertTrue(UUID_V7.matcher(id).matches(), id);
+        assertTrue(CorrelationId.isValid(id));
+        UUID uuid = UUID.fromString(id);
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+        // The sub-millisecond counter may carry the timestamp slightly ahead of the clock
+        assertTrue(timestamp >= before && timestamp <= after + 1, id);
+    }
+
+    @Test
+    void idsSortInCreationOrderWithinTheSameMillisecond() {
+        String previous = CorrelationId.next();
+        for (int i = 0; i < 100_000; i++) {
+            String id = CorrelationId.next();
+            assertTrue(id.compareTo(previous) > 0, previous + " then " + id);
+            previous = id;
+        }
+    }
+
+    @Test
+    void concurrentCallersGetUniqueIdsInOrderPerThread() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<List<String>>> callers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                callers.add(() -> {
+                    List<String> ids = new ArrayList<>(perThread);
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(CorrelationId.next());
+                    }
+                    return ids;
+                });
+            }
+
+            Set<String> all = new HashSet<>();
+            for (Future<List<String>> result : executor.invokeAll(callers)) {
+                List<String> ids = result.get();
+                for (int i = 1; i < ids.size(); i++) {
+                    assertTrue(ids.get(i).compareTo(ids.get(i - 1)) > 0);
+                }
+                all.addAll(ids);
+            }
+            assertEquals(threads * perThread, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
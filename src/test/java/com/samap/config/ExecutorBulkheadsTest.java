@@ -0,0 +1,265 @@
+package com.samap.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Bulkhead sizing, rejection accounting, metrics and runtime resizing on real executors.
+ */
+class ExecutorBulkheadsTest {
+
+    private final ExecutorBulkheads bulkheads = new ExecutorBulkheads();
+    private final List<Executor> executors = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        for (Executor executor : executors) {
+            if (executor instanceof ThreadPoolTaskExecutor pool) {
+                pool.shutdown();
+            } else if (executor instanceof ExecutorBulkheads.ThrottledExecutor throttled) {
+                throttled.close();
+            }
+        }
+    }
+
+    @Test
+    void fullPoolAndQueueRejectAndCountTheTask() throws Exception {
+        Executor executor = pool("audit", 1, 1, 1, ExecutorBulkheads.RejectionPolicy.ABORT);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+
+        Map<String, Object> stats = stats("audit");
+        assertEquals(1L, stats.get("rejectedCount"));
+        assertEquals(1, stats.get("queueDepth"));
+        assertEquals(1, stats.get("activeCount"));
+    }
+
+    @Test
+    void discardPolicyDropsTheTaskButStillCountsIt() throws Exception {
+        Executor executor = pool("notifications", 1, 1, 0, ExecutorBulkheads.RejectionPolicy.DISCARD);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+
+        executor.execute(() -> { });
+
+        assertEquals(1L, stats("notifications").get("rejectedCount"));
+    }
+
+    @Test
+    void metricsAreReportedPerExecutor() {
+        pool("audit", 2, 4, 10, ExecutorBulkheads.RejectionPolicy.CALLER_RUNS);
+        pool("security", 1, 2, 5, ExecutorBulkheads.RejectionPolicy.ABORT);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        bulkheads.bindTo(registry);
+
+        assertEquals(0.0, registry.get("samap_executor_queue_depth").tag("executor", "audit").gauge().value());
+        assertEquals(0.0, registry.get("samap_executor_rejected_total").tag("executor", "security")
+            .functionCounter().count());
+        assertEquals(List.of("audit", "security"),
+            bulkheads.getStats().stream().map(stats -> stats.get("name")).toList());
+    }
+
+    @Test
+    void tasksRunUnderTheSubmittersCorrelationId() throws Exception {
+        Executor executor = pool("audit", 1, 1, 10, ExecutorBulkheads.RejectionPolicy.ABORT);
+        CompletableFuture<String> seen = new CompletableFuture<>();
+
+        MDC.put(CorrelationId.MDC_KEY, "request-1");
+        try {
+            executor.execute(() -> seen.complete(MDC.get(CorrelationId.MDC_KEY)));
+        } finally {
+            MDC.remove(CorrelationId.MDC_KEY);
+        }
+
+        assertEquals("request-1", seen.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void resizeGrowsAndShrinksThePool() {
+        pool("audit", 2, 4, 10, ExecutorBulkheads.RejectionPolicy.ABORT);
+
+        Map<String, Object> grown = bulkheads.resize("audit", 6, 8);
+        assertEquals(6, grown.get("coreSize"));
+        assertEquals(8, grown.get("maxSize"));
+
+        // Shrinking below the current core size must lower core before max
+        Map<String, Object> shrunk = bulkheads.resize("audit", 1, 2);
+        assertEquals(1, shrunk.get("coreSize"));
+        assertEquals(2, shrunk.get("maxSize"));
+    }
+
+    @Test
+    void resizeOfAVirtualExecutorChangesItsConcurrencyLimit() {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need JDK 21");
+        executors.add(bulkheads.createVirtual("reports", 4, 10, ExecutorBulkheads.RejectionPolicy.ABORT));
+
+        assertEquals(16, bulkheads.resize("reports", 0, 16).get("concurrencyLimit"));
+    }
+
+    @Test
+    void throttledExecutorQueuesUpToItsCapacityThenAppliesTheRejectionPolicy() throws Exception {
+        Executor executor = throttled("risk", 1, 1, ExecutorBulkheads.RejectionPolicy.ABORT);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        executor.execute(queuedRan::countDown);
+
+        // The submitter is rejected straight away instead of waiting for a slot
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+
+        Map<String, Object> stats = stats("risk");
+        assertEquals(1L, stats.get("rejectedCount"));
+        assertEquals(1, stats.get("queueDepth"));
+        assertEquals(1, stats.get("activeCount"));
+        assertEquals(ExecutorBulkheads.RejectionPolicy.ABORT, stats.get("rejectionPolicy"));
+
+        release.countDown();
+        assertTrue(queuedRan.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void throttledCallerRunsPolicyRunsTheTaskOnTheSubmitter() throws Exception {
+        Executor executor = throttled("monitoring", 1, 0, ExecutorBulkheads.RejectionPolicy.CALLER_RUNS);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+
+        Thread submitter = Thread.currentThread();
+        CompletableFuture<Thread> ranOn = new CompletableFuture<>();
+        executor.execute(() -> ranOn.complete(Thread.currentThread()));
+
+        assertEquals(submitter, ranOn.getNow(null));
+        assertEquals(1L, stats("monitoring").get("rejectedCount"));
+    }
+
+    @Test
+    void throttledDiscardOldestPolicyDropsTheOldestQueuedTask() throws Exception {
+        Executor executor = throttled("notification", 1, 1, ExecutorBulkheads.RejectionPolicy.DISCARD_OLDEST);
+        CountDownLatch running = new CountDownLatch(1);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch newestRan = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        executor.execute(() -> ran.add("oldest"));
+        executor.execute(() -> {
+            ran.add("newest");
+            newestRan.countDown();
+        });
+
+        release.countDown();
+
+        assertTrue(newestRan.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("newest"), ran);
+        assertEquals(1L, stats("notification").get("rejectedCount"));
+    }
+
+    @Test
+    void raisingTheConcurrencyLimitStartsQueuedTasks() throws Exception {
+        Executor executor = throttled("audit", 1, 10, ExecutorBulkheads.RejectionPolicy.ABORT);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch queuedRan = new CountDownLatch(2);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        executor.execute(queuedRan::countDown);
+        executor.execute(queuedRan::countDown);
+
+        assertEquals(3, bulkheads.resize("audit", 0, 3).get("concurrencyLimit"));
+
+        assertTrue(queuedRan.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void resizeRejectsInvalidSizesAndUnknownExecutors() {
+        pool("audit", 2, 4, 10, ExecutorBulkheads.RejectionPolicy.ABORT);
+
+        assertThrows(IllegalArgumentException.class, () -> bulkheads.resize("audit", 5, 4));
+        assertThrows(IllegalArgumentException.class, () -> bulkheads.resize("audit", -1, 4));
+        assertThrows(IllegalArgumentException.class, () -> bulkheads.resize("audit", 0, 0));
+        assertThrows(NoSuchElementException.class, () -> bulkheads.resize("missing", 1, 1));
+        assertEquals(2, stats("audit").get("coreSize"));
+    }
+
+    @Test
+    void executorNamesAreUnique() {
+        pool("audit", 1, 1, 1, ExecutorBulkheads.RejectionPolicy.ABORT);
+
+        assertThrows(IllegalStateException.class,
+            () -> pool("audit", 2, 2, 1, ExecutorBulkheads.RejectionPolicy.CALLER_RUNS));
+    }
+
+    private Executor pool(String name, int core, int max, int queue, ExecutorBulkheads.RejectionPolicy policy) {
+        Executor executor = bulkheads.createPool(name, core, max, queue, policy);
+        executors.add(executor);
+        return executor;
+    }
+
+    // Platform threads stand in for virtual ones, which need Java 21
+    private Executor throttled(String name, int limit, int queue, ExecutorBulkheads.RejectionPolicy policy) {
+        Executor executor = bulkheads.createThrottled(name, limit, queue, policy,
+            new SimpleAsyncTaskExecutor("test-" + name + "-"));
+        executors.add(executor);
+        return executor;
+    }
+
+    private Map<String, Object> stats(String name) {
+        return bulkheads.getStats().stream()
+            .filter(stats -> name.equals(stats.get("name")))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
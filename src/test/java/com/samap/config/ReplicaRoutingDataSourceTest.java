@@ -0,0 +1,201 @@
+package com.samap.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Routes between two local H2 databases standing in for a primary and a replica. Each
+ * holds a marker row naming itself; the replica also has a table the lag query reads,
+ * so tests can simulate replication lag. Queries go through a shared EntityManager
+ * under a JpaTransactionManager, with Hibernate's connection handling as the
+ * application configures it.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final String LAG_QUERY = "SELECT lag_ms FROM replica_lag";
+
+    private JdbcDataSource primary;
+    private JdbcDataSource replica;
+    private FailingDataSource replicaPool;
+    private ReplicaRoutingDataSource routing;
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        new JdbcTemplate(replica).execute("CREATE TABLE replica_lag (lag_ms BIGINT)");
+        new JdbcTemplate(replica).update("INSERT INTO replica_lag VALUES (0)");
+
+        replicaPool = new FailingDataSource(replica);
+        routing = new ReplicaRoutingDataSource(primary, Map.of("replica-1", replicaPool), LAG_QUERY, 5000);
+        routing.afterPropertiesSet();
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new LazyConnectionDataSourceProxy(routing));
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setPackagesToScan(ReplicaRoutingDataSourceTest.class.getPackageName() + ".none");
+        factoryBean.setJpaPropertyMap(Map.of("hibernate.dialect", "org.hibernate.dialect.H2Dialect"));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.setMaxLag(null);
+        TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+        entityManagerFactory.close();
+        new JdbcTemplate(primary).execute("SHUTDOWN");
+        new JdbcTemplate(replica).execute("SHUTDOWN");
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaAndEverythingElseThePrimary() {
+        assertEquals("replica", readOnly.execute(status -> marker()));
+        assertEquals("primary", readWrite.execute(status -> marker()));
+        assertEquals("primary", marker());
+    }
+
+    @Test
+    void eachTransactionOfARequestIsRoutedOnItsOwn() {
+        assertEquals("replica", readOnly.execute(status -> marker()));
+        assertEquals("primary", readWrite.execute(status -> marker()));
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    void requestScopedEntityManagerPinsTheFirstConnection() {
+        // What open-in-view does, and why it is turned off
+        EntityManager requestEntityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(requestEntityManager));
+        try {
+            assertEquals("replica", readOnly.execute(status -> marker()));
+            assertEquals("replica", readWrite.execute(status -> marker()));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            requestEntityManager.close();
+        }
+    }
+
+    @Test
+    void connectionsWithExplicitCredentialsAreRoutedToo() {
+        assertEquals("replica", readOnly.execute(status -> markerWithCredentials()));
+        assertEquals("primary", markerWithCredentials());
+    }
+
+    @Test
+    void replicaLaggingBeyondTheToleranceIsSkipped() {
+        setReplicaLag(10_000);
+
+        assertEquals("primary", readOnly.execute(status -> marker()));
+
+        ReplicaRoutingDataSource.setMaxLag(60_000L);
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    void zeroToleranceReadsFromThePrimary() {
+        ReplicaRoutingDataSource.setMaxLag(0L);
+
+        assertEquals("primary", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    void failedProbeFailsOverUntilTheReplicaRecovers() {
+        replicaPool.failing = true;
+        routing.checkReplicas();
+        assertEquals("primary", readOnly.execute(status -> marker()));
+
+        replicaPool.failing = false;
+        routing.checkReplicas();
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    void refusedConnectionFailsOverImmediately() {
+        replicaPool.failing = true;
+
+        assertEquals("primary", readOnly.execute(status -> marker()));
+        assertFalse((Boolean) routing.getReplicaStatus().get(0).get("healthy"));
+    }
+
+    private String marker() {
+        return (String) entityManager.createNativeQuery("SELECT name FROM marker").getSingleResult();
+    }
+
+    private String markerWithCredentials() {
+        try (Connection connection = routing.getConnection("", "");
+             ResultSet resultSet = connection.createStatement().executeQuery("SELECT name FROM marker")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void setReplicaLag(long lagMs) {
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_ms = ?", lagMs);
+        routing.checkReplicas();
+    }
+
+    private static JdbcDataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE marker (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO marker VALUES (?)", name);
+        return dataSource;
+    }
+
+    /**
+     * Replica pool that can be made to refuse connections
+     */
+    private static final class FailingDataSource extends DelegatingDataSource {
+        private volatile boolean failing;
+
+        FailingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (failing) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
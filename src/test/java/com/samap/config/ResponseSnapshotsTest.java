@@ -0,0 +1,133 @@
+package com.samap.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Snapshot refresh, single-flight recomputation and ETags that ignore volatile fields.
+ */
+class ResponseSnapshotsTest {
+
+    private final ResponseSnapshots snapshots = new ResponseSnapshots(new ObjectMapper().findAndRegisterModules());
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(snapshots, "enabled", true);
+        ReflectionTestUtils.setField(snapshots, "refreshMs", 60_000L);
+        ReflectionTestUtils.setField(snapshots, "maxEntries", 10);
+        ReflectionTestUtils.setField(snapshots, "etagIgnoredFields", List.of("timestamp", "uptime"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void bodyIsComputedOncePerRefreshInterval() {
+        AtomicInteger calls = new AtomicInteger();
+
+        snapshots.respond("key", () -> Map.of("count", calls.incrementAndGet()));
+        ResponseEntity<Map<String, Integer>> second = snapshots.respond("key", () -> Map.of("count", calls.incrementAndGet()));
+
+        assertEquals(1, calls.get());
+        assertEquals(1, second.getBody().get("count"));
+    }
+
+    @Test
+    void etagIgnoresTimestampsAndUptimeAtAnyDepth() {
+        ReflectionTestUtils.setField(snapshots, "refreshMs", 0L);
+
+        String first = snapshots.respond("key", () -> body(5, LocalDateTime.now().minusMinutes(1), "1 minutes")).getHeaders().getETag();
+        String second = snapshots.respond("key", () -> body(5, LocalDateTime.now(), "2 minutes")).getHeaders().getETag();
+        String changed = snapshots.respond("key", () -> body(6, LocalDateTime.now(), "2 minutes")).getHeaders().getETag();
+
+        assertEquals(first, second);
+        assertNotEquals(second, changed);
+    }
+
+    @Test
+    void staleSnapshotIsServedWhileAnotherRequestRefreshesIt() throws Exception {
+        snapshots.respond("key", () -> "old");
+        ReflectionTestUtils.setField(snapshots, "refreshMs", 0L);
+
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<ResponseEntity<String>> slow = executor.submit(() -> snapshots.respond("key", () -> {
+            refreshing.countDown();
+            await(release);
+            return "new";
+        }));
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+
+        // Neither blocked nor recomputed while the refresh runs
+        assertEquals("old", snapshots.respond("key", () -> "unexpected").getBody());
+
+        release.countDown();
+        assertEquals("new", slow.get(5, TimeUnit.SECONDS).getBody());
+    }
+
+    @Test
+    void firstRequestsForAKeyShareOneComputation() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<ResponseEntity<Integer>> first = executor.submit(() -> snapshots.respond("key", () -> {
+            refreshing.countDown();
+            await(release);
+            return calls.incrementAndGet();
+        }));
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+        Future<ResponseEntity<Integer>> second = executor.submit(() -> snapshots.respond("key", calls::incrementAndGet));
+
+        release.countDown();
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(1, second.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failedComputationIsRetriedByTheNextRequest() {
+        assertThrows(IllegalStateException.class, () -> snapshots.respond("key", () -> {
+            throw new IllegalStateException("database unavailable");
+        }));
+
+        assertEquals("ok", snapshots.respond("key", () -> "ok").getBody());
+    }
+
+    private static Map<String, Object> body(int total, LocalDateTime timestamp, String uptime) {
+        return Map.of(
+            "total", total,
+            "timestamp", timestamp,
+            "systemStatus", Map.of("status", "OPERATIONAL", "uptime", uptime, "timestamp", timestamp));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
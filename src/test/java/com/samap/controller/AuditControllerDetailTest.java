@@ -0,0 +1,103 @@
+package com.samap.controller;
+
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditArchiveService;
+import com.samap.service.AuditDictionaryService;
+import com.samap.service.AuditExportService;
+import com.samap.service.AuditIngestionService;
+import com.samap.service.AuditPartitionService;
+import com.samap.service.AuditRollupService;
+import com.samap.service.AuditSearchService;
+import com.samap.service.AuditService;
+import com.samap.service.DistinctCountService;
+import com.samap.service.HeavyHitterService;
+import com.samap.service.NotificationService;
+import com.samap.service.RiskAssessmentService;
+import com.samap.service.SecurityMonitoringService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/audit/logs/{id}: the full entry, TEXT columns included, from the database or,
+ * once archived, from the archive.
+ */
+class AuditControllerDetailTest {
+
+    private final AuditLogRepository auditLogRepository = mock(AuditLogRepository.class);
+    private final AuditArchiveService auditArchiveService = mock(AuditArchiveService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        AuditService auditService = new AuditService(auditLogRepository, mock(RiskAssessmentService.class),
+            mock(AuditIngestionService.class), mock(AuditPartitionService.class), auditArchiveService,
+            mock(AuditDictionaryService.class), mock(AuditRollupService.class), mock(AuditSearchService.class),
+            mock(AuditActivityRollupService.class), mock(HeavyHitterService.class), mock(DistinctCountService.class),
+            mock(SecurityMonitoringService.class));
+        AuditController controller = new AuditController(auditService, mock(NotificationService.class),
+            mock(AuditExportService.class), mock(HeavyHitterService.class), mock(DistinctCountService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void entryInTheDatabaseIsReturnedWithItsDetails() throws Exception {
+        when(auditLogRepository.findById(7L)).thenReturn(Optional.of(auditLog(7L, "live details")));
+
+        mockMvc.perform(get("/api/audit/logs/7"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(7))
+            .andExpect(jsonPath("$.details").value("live details"))
+            .andExpect(jsonPath("$.errorMessage").value("bad credentials"));
+
+        verify(auditArchiveService, never()).findById(7L);
+    }
+
+    @Test
+    void archivedEntryIsReadFromTheArchive() throws Exception {
+        when(auditLogRepository.findById(7L)).thenReturn(Optional.empty());
+        when(auditArchiveService.findById(7L)).thenReturn(Optional.of(auditLog(7L, "archived details")));
+
+        mockMvc.perform(get("/api/audit/logs/7"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(7))
+            .andExpect(jsonPath("$.details").value("archived details"));
+    }
+
+    @Test
+    void unknownEntryIsNotFound() throws Exception {
+        when(auditLogRepository.findById(7L)).thenReturn(Optional.empty());
+        when(auditArchiveService.findById(7L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/audit/logs/7"))
+            .andExpect(status().isNotFound())
+            .andExpect(content().string(""));
+    }
+
+    private static AuditLog auditLog(Long id, String details) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setUsername("alice");
+        auditLog.setAction(AuditLog.ACTION_LOGIN_FAILED);
+        auditLog.setStatus(AuditLog.ActionStatus.FAILURE);
+        auditLog.setTimestamp(LocalDateTime.of(2024, 3, 1, 10, 0));
+        auditLog.setDetails(details);
+        auditLog.setErrorMessage("bad credentials");
+        return auditLog;
+    }
+}
@@ -0,0 +1,88 @@
+package com.samap.controller;
+
+import com.samap.service.AuditExportService;
+import com.samap.service.AuditExportService.Format;
+import com.samap.service.AuditService;
+import com.samap.service.DistinctCountService;
+import com.samap.service.HeavyHitterService;
+import com.samap.service.NotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The streamed export response, plain and gzipped.
+ */
+class AuditControllerExportTest {
+
+    private static final String BODY = "id,timestamp,username\r\n1,2024-03-01T10:00,alice\r\n";
+
+    private final AuditExportService exportService = mock(AuditExportService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        AuditController controller = new AuditController(mock(AuditService.class), mock(NotificationService.class),
+            exportService, mock(HeavyHitterService.class), mock(DistinctCountService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return 1L;
+        }).when(exportService).export(any(), eq(Format.CSV), any());
+    }
+
+    @Test
+    void plainExportStreamsTheRows() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/audit/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "text/csv"))
+            .andReturn();
+
+        assertEquals(BODY, result.getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void gzipExportIsACompleteGzipStream() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/audit/export").param("gzip", "true"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "application/gzip"))
+            .andReturn();
+
+        byte[] compressed = result.getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(BODY, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        String disposition = result.getResponse().getHeader("Content-Disposition");
+        assertTrue(disposition != null && disposition.endsWith(".csv.gz\""), disposition);
+    }
+}
@@ -0,0 +1,76 @@
+package com.samap.controller;
+
+import com.samap.config.ExecutorBulkheads;
+import com.samap.config.ResponseSnapshots;
+import com.samap.service.HealthCheckService;
+import com.samap.service.MonitoringService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The executor resize endpoint's responses for valid, invalid and unknown executors.
+ */
+class MonitoringControllerExecutorTest {
+
+    private final ExecutorBulkheads executorBulkheads = mock(ExecutorBulkheads.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MonitoringController controller = new MonitoringController(mock(HealthCheckService.class),
+            mock(MonitoringService.class), executorBulkheads, mock(ResponseSnapshots.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void resizeReturnsTheNewSizing() throws Exception {
+        when(executorBulkheads.resize("audit", 4, 8))
+            .thenReturn(Map.of("name", "audit", "coreSize", 4, "maxSize", 8));
+
+        mockMvc.perform(put("/api/monitoring/executors/audit").param("coreSize", "4").param("maxSize", "8"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.success").value(true))
+            .andExpect(jsonPath("$.data.coreSize").value(4))
+            .andExpect(jsonPath("$.data.maxSize").value(8));
+    }
+
+    @Test
+    void invalidSizesAreABadRequest() throws Exception {
+        when(executorBulkheads.resize("audit", 8, 4))
+            .thenThrow(new IllegalArgumentException("Require 0 <= coreSize <= maxSize and maxSize >= 1"));
+
+        mockMvc.perform(put("/api/monitoring/executors/audit").param("coreSize", "8").param("maxSize", "4"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.success").value(false))
+            .andExpect(jsonPath("$.error.code").value("INVALID_EXECUTOR_SIZE"));
+    }
+
+    @Test
+    void unknownExecutorIsNotFound() throws Exception {
+        when(executorBulkheads.resize("missing", 1, 1)).thenThrow(new NoSuchElementException("Unknown executor: missing"));
+
+        mockMvc.perform(put("/api/monitoring/executors/missing").param("coreSize", "1").param("maxSize", "1"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void missingSizeParametersAreRejectedBeforeResizing() throws Exception {
+        mockMvc.perform(put("/api/monitoring/executors/audit").param("coreSize", "1"))
+            .andExpect(status().isBadRequest());
+
+        verify(executorBulkheads, never()).resize("audit", 1, 0);
+    }
+}
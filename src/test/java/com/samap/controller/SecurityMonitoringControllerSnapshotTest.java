@@ -0,0 +1,84 @@
+package com.samap.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samap.config.ResponseSnapshots;
+import com.samap.service.NotificationService;
+import com.samap.service.SecurityMonitoringService;
+import com.samap.service.SecurityMonitoringService.SecurityStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Polled security endpoints answer 304 while only the generation time changes, and the
+ * alert limit is clamped before it becomes part of a snapshot key.
+ */
+class SecurityMonitoringControllerSnapshotTest {
+
+    private final SecurityMonitoringService securityMonitoringService = mock(SecurityMonitoringService.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ResponseSnapshots snapshots = new ResponseSnapshots(new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(snapshots, "enabled", true);
+        // Every request recomputes, as after the refresh interval
+        ReflectionTestUtils.setField(snapshots, "refreshMs", 0L);
+        ReflectionTestUtils.setField(snapshots, "maxEntries", 10);
+        ReflectionTestUtils.setField(snapshots, "etagIgnoredFields", List.of("timestamp", "uptime"));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(
+            new SecurityMonitoringController(securityMonitoringService, notificationService, snapshots)).build();
+    }
+
+    @Test
+    void unchangedStatusIsNotModifiedAlthoughItsTimestampMoved() throws Exception {
+        when(securityMonitoringService.getCurrentSecurityStatus())
+            .thenReturn(securityStatus("LOW", LocalDateTime.now().minusSeconds(10)))
+            .thenReturn(securityStatus("LOW", LocalDateTime.now()))
+            .thenReturn(securityStatus("HIGH", LocalDateTime.now()));
+
+        String etag = mockMvc.perform(get("/api/security/status"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/security/status").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/security/status").header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"));
+    }
+
+    @Test
+    void alertLimitIsClampedToTheAlertsKept() throws Exception {
+        when(notificationService.getRecentAlerts(anyInt())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/security/alerts").param("limit", "1000000")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/security/alerts").param("limit", "-5")).andExpect(status().isOk());
+
+        verify(notificationService).getRecentAlerts(NotificationService.MAX_RECENT_ALERTS);
+        verify(notificationService).getRecentAlerts(0);
+    }
+
+    private static SecurityStatus securityStatus(String threatLevel, LocalDateTime timestamp) {
+        return SecurityStatus.builder()
+            .threatLevel(threatLevel)
+            .totalActivities(42)
+            .timestamp(timestamp)
+            .build();
+    }
+}
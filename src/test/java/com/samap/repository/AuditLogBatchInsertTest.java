@@ -0,0 +1,94 @@
+package com.samap.repository;
+
+import com.samap.model.AuditLog;
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditDictionaryService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.BaseSessionEventListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that audit inserts are grouped into JDBC batches now that ids come
+ * from a pooled sequence instead of an IDENTITY column.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class})
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.session.events.auto=com.samap.repository.AuditLogBatchInsertTest$BatchCountingListener"
+})
+class AuditLogBatchInsertTest {
+
+    private static final int JDBC_BATCH_SIZE = 20;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void resetCounter() {
+        BatchCountingListener.BATCHES.set(0);
+    }
+
+    @Test
+    void auditSavesInOneTransactionAreSentAsJdbcBatches() {
+        int events = 45;
+        List<AuditLog> auditLogs = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            auditLogs.add(auditLog(i));
+        }
+
+        auditLogRepository.saveAll(auditLogs);
+        entityManager.flush();
+
+        int expectedRoundTrips = (events + JDBC_BATCH_SIZE - 1) / JDBC_BATCH_SIZE;
+        assertEquals(expectedRoundTrips, BatchCountingListener.BATCHES.get());
+        assertEquals(events, auditLogRepository.count());
+    }
+
+    @Test
+    void singleBatchWhenEventsFitInBatchSize() {
+        for (int i = 0; i < JDBC_BATCH_SIZE; i++) {
+            auditLogRepository.save(auditLog(i));
+        }
+        entityManager.flush();
+
+        assertEquals(1, BatchCountingListener.BATCHES.get());
+    }
+
+    private AuditLog auditLog(int i) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername("user" + (i % 5));
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setIpAddress("10.0.0." + i);
+        auditLog.setTimestamp(LocalDateTime.now());
+        return auditLog;
+    }
+
+    /**
+     * Counts JDBC batch executions; registered through hibernate.session.events.auto
+     */
+    public static class BatchCountingListener extends BaseSessionEventListener {
+        static final AtomicInteger BATCHES = new AtomicInteger();
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            BATCHES.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.samap.repository;
+
+import com.samap.model.AuditLog;
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditDictionaryService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Queries on dictionary-encoded columns keep matching values that are interned after the
+ * query was first compiled. Runs in its own context so LOGIN_FAILED is not in the
+ * dictionary when the queries first run.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class})
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "audit.dictionary.max-cached-entries=1000"
+})
+@DirtiesContext
+class AuditLogDictionaryQueryTest {
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void failedLoginQueriesMatchRowsInternedAfterTheFirstRun() {
+        LocalDateTime since = LocalDateTime.now().minusHours(1);
+        assertEquals(0, auditLogRepository.countFailedLoginsSince(since));
+        assertEquals(0, auditLogRepository.findFailedLoginAttempts(PageRequest.of(0, 10)).getTotalElements());
+
+        AuditLog failedLogin = new AuditLog();
+        failedLogin.setUsername("alice");
+        failedLogin.setAction(AuditLog.ACTION_LOGIN_FAILED);
+        failedLogin.setIpAddress("10.0.0.1");
+        failedLogin.setStatus(AuditLog.ActionStatus.FAILURE);
+        failedLogin.setTimestamp(LocalDateTime.now());
+        auditLogRepository.save(failedLogin);
+        entityManager.flush();
+
+        assertEquals(1, auditLogRepository.countFailedLoginsSince(since));
+        assertEquals(1, auditLogRepository.countFailedLoginsByUserSince("alice", since));
+        assertEquals(1, auditLogRepository.countFailedLoginsByIpSince("10.0.0.1", since));
+        assertEquals(1, auditLogRepository.findFailedLoginAttemptsByUsername("alice").size());
+        assertEquals(1, auditLogRepository.findFailedLoginAttempts(PageRequest.of(0, 10)).getTotalElements());
+    }
+}
@@ -0,0 +1,98 @@
+package com.samap.repository;
+
+import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditCursor;
+import com.samap.service.AuditDictionaryService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Walking the keyset queries page by page returns every row exactly once, in
+ * (timestamp, id) descending order, also when many rows share a timestamp.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class AuditLogKeysetPagingTest {
+
+    private static final LocalDateTime TS = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void pagesSplitInsideARunOfEqualTimestampsWithoutSkippingOrRepeating() {
+        List<AuditLog> saved = new ArrayList<>();
+        saved.add(save("alice", TS.plusMinutes(1)));
+        for (int i = 0; i < 7; i++) {
+            saved.add(save(i % 2 == 0 ? "alice" : "bob", TS));
+        }
+        saved.add(save("alice", TS.minusMinutes(1)));
+        entityManager.flush();
+
+        List<Long> expected = saved.stream()
+            .sorted(Comparator.comparing(AuditLog::getTimestamp).thenComparing(AuditLog::getId).reversed())
+            .map(AuditLog::getId)
+            .toList();
+
+        List<Long> walked = new ArrayList<>();
+        AuditCursor cursor = AuditCursor.START;
+        Slice<AuditLogSummary> page;
+        do {
+            page = auditLogRepository.findAfter(cursor.getTimestamp(), cursor.getId(), PageRequest.of(0, 3));
+            page.getContent().forEach(row -> walked.add(row.getId()));
+            if (page.hasContent()) {
+                cursor = AuditCursor.decode(AuditCursor.after(page.getContent().get(page.getNumberOfElements() - 1)).encode());
+            }
+        } while (page.hasNext());
+
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    void filteredKeysetQueryBreaksTiesTheSameWay() {
+        List<Long> aliceIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            aliceIds.add(save("alice", TS).getId());
+            save("bob", TS);
+        }
+        entityManager.flush();
+        aliceIds.sort(Comparator.reverseOrder());
+
+        Slice<AuditLogSummary> first = auditLogRepository.findByUsernameAfter("alice", TS.plusSeconds(1), Long.MAX_VALUE,
+            PageRequest.of(0, 2));
+        AuditLogSummary last = first.getContent().get(1);
+        Slice<AuditLogSummary> second = auditLogRepository.findByUsernameAfter("alice", last.getTimestamp(), last.getId(),
+            PageRequest.of(0, 5));
+
+        assertEquals(aliceIds.subList(0, 2), first.getContent().stream().map(AuditLogSummary::getId).toList());
+        assertEquals(aliceIds.subList(2, 5), second.getContent().stream().map(AuditLogSummary::getId).toList());
+    }
+
+    private AuditLog save(String username, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        return auditLogRepository.save(auditLog);
+    }
+}
@@ -0,0 +1,161 @@
+package com.samap.repository;
+
+import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditCursor;
+import com.samap.service.AuditDictionaryService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The summary list queries select none of the TEXT columns and return the same rows,
+ * in the same order, as loading the entities and converting them with
+ * {@link AuditLogSummary#of}.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class})
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.samap.repository.QueryPlanRegressionTest$SqlCapture"
+})
+class AuditLogSummaryQueryTest {
+
+    private static final LocalDateTime TS = LocalDateTime.of(2024, 3, 1, 10, 0);
+    private static final List<String> TEXT_COLUMNS =
+        List.of("details", "request_params", "error_message", "risk_factors", "anomaly_reasons");
+    private static final PageRequest PAGE = PageRequest.of(0, 50);
+    private static final Comparator<AuditLog> NEWEST_FIRST =
+        Comparator.comparing(AuditLog::getTimestamp).thenComparing(AuditLog::getId).reversed();
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 12; i++) {
+            AuditLog auditLog = new AuditLog();
+            auditLog.setUsername(i % 3 == 0 ? "alice" : "bob");
+            auditLog.setAction(i % 4 == 0 ? AuditLog.ACTION_LOGIN_FAILED : AuditLog.ACTION_DATA_ACCESS);
+            auditLog.setResource("USER");
+            auditLog.setResourceId(String.valueOf(i));
+            auditLog.setStatus(i % 4 == 0 ? AuditLog.ActionStatus.FAILURE : AuditLog.ActionStatus.SUCCESS);
+            auditLog.setIpAddress("10.0.0." + i);
+            auditLog.setEndpoint("/api/users/" + i);
+            auditLog.setHttpMethod("GET");
+            auditLog.setResponseStatus(i % 4 == 0 ? 401 : 200);
+            auditLog.setExecutionTimeMs(10L + i);
+            auditLog.setRiskLevel(i % 5 == 0 ? AuditLog.RiskLevel.HIGH : AuditLog.RiskLevel.LOW);
+            auditLog.setRiskScore(i / 12.0);
+            auditLog.setIsAnomaly(i % 6 == 0);
+            auditLog.setCorrelationId("corr-" + i / 4);
+            auditLog.setTimestamp(TS.plusMinutes(i));
+            auditLog.setRequestParams("{\"page\":" + i + "}");
+            auditLog.setDetails("details " + i);
+            auditLog.setErrorMessage(i % 4 == 0 ? "bad credentials" : null);
+            auditLog.setRiskFactors("factor " + i);
+            auditLog.setAnomalyReasons(i % 6 == 0 ? "odd hour" : null);
+            ids.add(auditLogRepository.save(auditLog).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void summaryQueriesReturnTheEntityRowsWithoutReadingTextColumns() {
+        assertEquals(
+            summariesOf(auditLogRepository.findByUsernameOrderByTimestampDesc("alice", PAGE).getContent()),
+            summaries(() -> auditLogRepository.findSummariesByUsername("alice", PAGE).getContent()));
+
+        PageRequest newestFirst = PageRequest.of(0, 50, Sort.by(Sort.Direction.DESC, "timestamp"));
+        assertEquals(
+            summariesOf(auditLogRepository.findAll(newestFirst).getContent()),
+            summaries(() -> auditLogRepository.findAllSummaries(newestFirst).getContent()));
+
+        assertEquals(
+            entities(auditLog -> AuditLog.ACTION_LOGIN_FAILED.equals(auditLog.getAction()), NEWEST_FIRST),
+            summaries(() -> auditLogRepository.findByActionOrderByTimestampDesc(AuditLog.ACTION_LOGIN_FAILED, PAGE).getContent()));
+
+        assertEquals(
+            entities(AuditLog::isHighRisk, NEWEST_FIRST),
+            summaries(() -> auditLogRepository.findHighRiskActivities(PAGE).getContent()));
+
+        assertEquals(
+            entities(auditLog -> Boolean.TRUE.equals(auditLog.getIsAnomaly()), NEWEST_FIRST),
+            summaries(() -> auditLogRepository.findByIsAnomalyTrueOrderByTimestampDesc(PAGE).getContent()));
+
+        assertEquals(
+            entities(auditLog -> "corr-1".equals(auditLog.getCorrelationId()), NEWEST_FIRST.reversed()),
+            summaries(() -> auditLogRepository.findByCorrelationIdOrderByTimestampAscIdAsc("corr-1")));
+
+        assertEquals(
+            entities(auditLog -> true, NEWEST_FIRST),
+            summaries(() -> auditLogRepository.findAfter(AuditCursor.START.getTimestamp(), AuditCursor.START.getId(), PAGE)
+                .getContent()));
+
+        List<Long> some = List.of(ids.get(1), ids.get(7), ids.get(11));
+        assertEquals(
+            entities(auditLog -> some.contains(auditLog.getId()), Comparator.comparing(AuditLog::getId)),
+            summaries(() -> auditLogRepository.findSummariesByIdIn(some)).stream()
+                .sorted(Comparator.comparing(AuditLogSummary::getId))
+                .toList());
+    }
+
+    @Test
+    void entityQueriesDoReadTheTextColumns() {
+        QueryPlanRegressionTest.SqlCapture.STATEMENTS.clear();
+        AuditLog auditLog = auditLogRepository.findByUsernameOrderByTimestampDesc("alice", PAGE).getContent().get(0);
+
+        String sql = QueryPlanRegressionTest.SqlCapture.STATEMENTS.get(0).toLowerCase(Locale.ROOT);
+        TEXT_COLUMNS.forEach(column -> assertTrue(sql.contains(column), column + " not selected:\n" + sql));
+        assertEquals("details 9", auditLog.getDetails());
+    }
+
+    /**
+     * Runs a summary query and checks that none of its statements touch a TEXT column
+     */
+    private List<AuditLogSummary> summaries(Supplier<List<AuditLogSummary>> query) {
+        QueryPlanRegressionTest.SqlCapture.STATEMENTS.clear();
+        List<AuditLogSummary> rows = query.get();
+        List<String> statements = List.copyOf(QueryPlanRegressionTest.SqlCapture.STATEMENTS);
+        assertFalse(statements.isEmpty(), "no SQL captured");
+        for (String statement : statements) {
+            String sql = statement.toLowerCase(Locale.ROOT);
+            TEXT_COLUMNS.forEach(column -> assertFalse(sql.contains(column), column + " selected:\n" + sql));
+        }
+        assertFalse(rows.isEmpty(), "query returned nothing:\n" + statements);
+        return rows;
+    }
+
+    private List<AuditLogSummary> entities(Predicate<AuditLog> filter, Comparator<AuditLog> order) {
+        return summariesOf(auditLogRepository.findAll().stream().filter(filter).sorted(order).toList());
+    }
+
+    private static List<AuditLogSummary> summariesOf(List<AuditLog> auditLogs) {
+        return auditLogs.stream().map(AuditLogSummary::of).toList();
+    }
+}
@@ -0,0 +1,207 @@
+package com.samap.repository;
+
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditDictionaryService;
+import com.samap.service.AuditPartitionService;
+import com.samap.service.PostgresIndexBuilder;
+import com.samap.service.PostgresIndexService;
+import com.samap.service.SequenceAlignmentService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * PostgreSQL plans of the queries {@link QueryPlanRegressionTest} can only hold to the
+ * latency budget on H2: the high-risk and anomaly listings must read their partial
+ * indexes, the case-insensitive user lookups the upper() expression indexes, the locked
+ * and must-change-password listings their partial indexes, and wide timestamp ranges the
+ * BRIN index.
+ *
+ * Runs against the database given by {@code -Dquery.postgres.url} (with
+ * {@code query.postgres.username} and {@code query.postgres.password}), e.g.
+ * {@code mvn -Ppostgres-plans test -Dquery.postgres.url=jdbc:postgresql://localhost:5432/samap_plans},
+ * and is skipped without it. Use a scratch database: the schema is set up as in
+ * production (partitioned audit_logs, indexes from {@link PostgresIndexService}) and the
+ * dataset is deleted afterwards. Needs PostgreSQL 16 or later, whose EXPLAIN
+ * (GENERIC_PLAN) plans the captured statements without binding their parameters.
+ *
+ * Only the statement that reads the rows is checked; the Page count queries and eager
+ * fetches that follow it may pick any index.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfSystemProperty(named = "query.postgres.url", matches = ".+")
+@Import({PostgresQueryPlanTest.SchemaBeforeJpa.class, SequenceAlignmentService.class, AuditPartitionService.class,
+    AuditDictionaryService.class, AuditActivityRollupService.class, PostgresIndexService.class,
+    PostgresIndexBuilder.class})
+@TestPropertySource(properties = {
+    "spring.jpa.hibernate.ddl-auto=update",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.samap.repository.QueryPlanRegressionTest$SqlCapture"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PostgresQueryPlanTest {
+
+    private static final Pageable PAGE = PageRequest.of(0, 20);
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuditDictionaryService auditDictionaryService;
+
+    @Autowired
+    private PostgresIndexService postgresIndexService;
+
+    @Autowired
+    private PostgresIndexBuilder postgresIndexBuilder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    /**
+     * Same ordering as {@link com.samap.config.SchemaInitializationConfig}, by type since
+     * imported beans are named after their class
+     */
+    @TestConfiguration
+    static class SchemaBeforeJpa {
+
+        @Bean
+        static EntityManagerFactoryDependsOnPostProcessor schemaInitializersBeforeJpa() {
+            return new EntityManagerFactoryDependsOnPostProcessor(SequenceAlignmentService.class,
+                AuditPartitionService.class, AuditDictionaryService.class);
+        }
+    }
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getProperty("query.postgres.url"));
+        registry.add("spring.datasource.username", () -> System.getProperty("query.postgres.username", "postgres"));
+        registry.add("spring.datasource.password", () -> System.getProperty("query.postgres.password", ""));
+    }
+
+    /**
+     * A query and the index its plan must read. Bitmap-only cases turn off sequential
+     * and plain index scans first: a BRIN index is only ever read through a bitmap scan,
+     * and on this dataset the planner may rightly prefer either alternative, so what is
+     * checked is that it picks the BRIN index over the btree on timestamp.
+     */
+    record PlanCase(String name, String index, boolean bitmapOnly, Runnable query) {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    Stream<PlanCase> queries() {
+        LocalDateTime cursorTs = now.minusDays(1);
+        long cursorId = QueryPlanDataset.AUDIT_ROWS;
+
+        return Stream.of(
+            plan("findHighRiskActivities", "idx_audit_high_risk_ts", () -> auditLogRepository.findHighRiskActivities(PAGE)),
+            plan("findHighRiskActivitiesAfter", "idx_audit_high_risk_ts", () -> auditLogRepository.findHighRiskActivitiesAfter(cursorTs, cursorId, PAGE)),
+            plan("findAnomalous", "idx_audit_anomaly_ts", () -> auditLogRepository.findByIsAnomalyTrueOrderByTimestampDesc(PAGE)),
+            plan("findAnomalousActivitiesAfter", "idx_audit_anomaly_ts", () -> auditLogRepository.findAnomalousActivitiesAfter(cursorTs, cursorId, PAGE)),
+            new PlanCase("getActivityStatistics", "idx_audit_timestamp_brin", true, () -> auditLogRepository.getActivityStatistics(now.minusDays(7))),
+
+            plan("findByUsernameIgnoreCase", "idx_user_username_upper", () -> userRepository.findByUsernameIgnoreCase("User42")),
+            plan("existsByUsernameIgnoreCase", "idx_user_username_upper", () -> userRepository.existsByUsernameIgnoreCase("User42")),
+            plan("findByEmailIgnoreCase", "idx_user_email_upper", () -> userRepository.findByEmailIgnoreCase("User42@example.com")),
+            plan("existsByEmailIgnoreCase", "idx_user_email_upper", () -> userRepository.existsByEmailIgnoreCase("User42@example.com")),
+            plan("findLockedUsers", "idx_user_locked_until", () -> userRepository.findLockedUsers(now)),
+            plan("findByMustChangePassword", "idx_user_must_change_password", () -> userRepository.findByMustChangePasswordTrue())
+        );
+    }
+
+    @BeforeAll
+    void loadDataset() {
+        Integer version = jdbcTemplate.queryForObject("SELECT current_setting('server_version_num')::int", Integer.class);
+        assumeTrue(version != null && version >= 160000, "EXPLAIN (GENERIC_PLAN) needs PostgreSQL 16, server is " + version);
+
+        QueryPlanDataset.load(jdbcTemplate, auditDictionaryService, now);
+        postgresIndexService.ensureIndexes();
+        List<String> invalid = PostgresIndexService.INDEXES.stream()
+            .map(PostgresIndexService.IndexDefinition::name)
+            .filter(name -> !postgresIndexBuilder.isValid(name))
+            .toList();
+        assertTrue(invalid.isEmpty(), "indexes not built: " + invalid);
+        // Expression indexes get statistics of their own
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    void dropDataset() {
+        QueryPlanDataset.drop(jdbcTemplate);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void queryReadsItsPartialExpressionOrBrinIndex(PlanCase planCase) {
+        QueryPlanRegressionTest.SqlCapture.STATEMENTS.clear();
+        planCase.query().run();
+        List<String> statements = List.copyOf(QueryPlanRegressionTest.SqlCapture.STATEMENTS);
+        assertFalse(statements.isEmpty(), "no SQL captured for " + planCase.name());
+
+        if (planCase.bitmapOnly()) {
+            // Scoped to the test transaction, which is rolled back
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            jdbcTemplate.execute("SET LOCAL enable_indexscan = off");
+            jdbcTemplate.execute("SET LOCAL enable_indexonlyscan = off");
+        }
+        String plan = explain(statements.get(0));
+        assertTrue(plan.contains(planCase.index()),
+            planCase.name() + " does not read " + planCase.index() + ":\n" + plan);
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN (GENERIC_PLAN) " + numberParameters(sql), String.class));
+    }
+
+    // Hibernate's JDBC placeholders to the $n parameters EXPLAIN understands
+    private static String numberParameters(String sql) {
+        StringBuilder numbered = new StringBuilder(sql.length() + 16);
+        int parameter = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        return numbered.toString();
+    }
+
+    private static PlanCase plan(String name, String index, Runnable query) {
+        return new PlanCase(name, index, false, query);
+    }
+}
@@ -0,0 +1,101 @@
+package com.samap.repository;
+
+import com.samap.model.AuditDictionaryEntry.Kind;
+import com.samap.model.AuditLog;
+import com.samap.service.AuditDictionaryService;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic audit history and user base shared by the plan suites: a month of audit
+ * rows in timestamp order with few failures, high-risk rows and anomalies, and users of
+ * whom few are suspended, locked or must change their password.
+ */
+final class QueryPlanDataset {
+
+    static final int AUDIT_ROWS = 100_000;
+    static final int USERS = 5_000;
+    static final int DAYS = 30;
+
+    private QueryPlanDataset() {
+    }
+
+    static void load(JdbcTemplate jdbcTemplate, AuditDictionaryService auditDictionaryService, LocalDateTime now) {
+        int[] actions = {
+            auditDictionaryService.intern(Kind.ACTION, AuditLog.ACTION_LOGIN),
+            auditDictionaryService.intern(Kind.ACTION, AuditLog.ACTION_DATA_ACCESS),
+            auditDictionaryService.intern(Kind.ACTION, AuditLog.ACTION_LOGIN_FAILED),
+            auditDictionaryService.intern(Kind.ACTION, AuditLog.ACTION_SECURITY_ALERT)
+        };
+        long spacingMillis = DAYS * 24L * 3600 * 1000 / AUDIT_ROWS;
+
+        List<Object[]> rows = new ArrayList<>(AUDIT_ROWS);
+        for (int i = 0; i < AUDIT_ROWS; i++) {
+            int action = i % 10 < 4 ? 0 : i % 10 < 8 ? 1 : i % 10 == 8 ? 2 : 3;
+            String status = action == 2 ? "FAILURE" : action == 3 ? (i % 7 == 0 ? "BLOCKED" : "WARNING") : "SUCCESS";
+            String riskLevel = i % 100 == 0 ? "CRITICAL" : i % 100 < 3 ? "HIGH" : i % 10 == 5 ? "MEDIUM" : "LOW";
+            rows.add(new Object[] {
+                (long) i + 1,
+                "user" + (i * 7919 % USERS),
+                actions[action],
+                status,
+                "10.0." + (i % 20) + "." + (i * 31 % 250),
+                riskLevel,
+                i % 200 == 0,
+                Timestamp.valueOf(now.minusNanos((AUDIT_ROWS - i) * spacingMillis * 1_000_000)),
+                "corr-" + i / 3
+            });
+        }
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO audit_logs (id, username, action_ref, status, ip_address, risk_level, is_anomaly, timestamp, correlation_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+
+        List<Object[]> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[] {
+                (long) i + 1,
+                "user" + i,
+                "user" + i + "@example.com",
+                "{noop}secret",
+                i % 50 == 0 ? "SUSPENDED" : i % 10 == 0 ? "INACTIVE" : "ACTIVE",
+                i % 100 == 0 ? 5 : 0,
+                i % 100 == 0 ? Timestamp.valueOf(now.plusMinutes(30)) : null,
+                i % 20 == 0 ? null : Timestamp.valueOf(now.minusHours(i % (DAYS * 24))),
+                "10.0." + (i % 20) + "." + (i * 31 % 250),
+                i % 40 == 0,
+                Timestamp.valueOf(now.minusHours(i % (DAYS * 24)))
+            });
+        }
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO users (id, username, email, password, account_status, failed_login_attempts, " +
+            "account_locked_until, last_login, last_login_ip, must_change_password, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", users);
+
+        // Few admins and auditors, everyone else a plain user
+        jdbcTemplate.update("INSERT INTO roles (id, name, role_type) VALUES " +
+            "(1, 'ADMIN', 'SYSTEM'), (2, 'AUDITOR', 'SYSTEM'), (3, 'USER', 'SYSTEM')");
+        jdbcTemplate.update("INSERT INTO permissions (id, name, resource, action, permission_type) VALUES " +
+            "(1, 'AUDIT_EXPORT', 'AUDIT', 'EXPORT', 'DATA'), (2, 'USER_READ', 'USER', 'READ', 'FUNCTIONAL')");
+        jdbcTemplate.update("INSERT INTO role_permissions (role_id, permission_id) VALUES (1, 1), (1, 2), (3, 2)");
+        List<Object[]> userRoles = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            userRoles.add(new Object[] {(long) i + 1, i % 500 == 0 ? 1L : i % 100 == 1 ? 2L : 3L});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)", userRoles);
+
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    static void drop(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("DELETE FROM audit_logs");
+        jdbcTemplate.update("DELETE FROM user_roles");
+        jdbcTemplate.update("DELETE FROM role_permissions");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("DELETE FROM roles");
+        jdbcTemplate.update("DELETE FROM permissions");
+    }
+}
@@ -0,0 +1,234 @@
+package com.samap.repository;
+
+import com.samap.model.AuditLog;
+import com.samap.model.User;
+import com.samap.service.AuditActivityRollupService;
+import com.samap.service.AuditDictionaryService;
+import com.samap.service.PostgresIndexBuilder;
+import com.samap.service.PostgresIndexService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plan regression suite for the repository queries on H2. Creates the portable
+ * indexes from the same definitions {@link PostgresIndexService} builds in production,
+ * loads a synthetic audit history and user base, runs every query, EXPLAINs each
+ * statement Hibernate issued (including Page count queries) and fails when a query
+ * scans its table or exceeds the latency budget ({@code -Dquery.latency-budget-ms},
+ * default 250).
+ *
+ * H2 cannot build the partial, expression and BRIN indexes, and does not reorder
+ * Hibernate's many-to-many joins, so the queries that depend on those are only held to
+ * the latency budget here; {@link PostgresQueryPlanTest} checks their plans on a real
+ * PostgreSQL. The few queries that scan by design are listed but not checked.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class, PostgresIndexService.class,
+    PostgresIndexBuilder.class})
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.samap.repository.QueryPlanRegressionTest$SqlCapture"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanRegressionTest {
+
+    private static final int AUDIT_ROWS = QueryPlanDataset.AUDIT_ROWS;
+    private static final int DAYS = QueryPlanDataset.DAYS;
+    private static final long LATENCY_BUDGET_MS = Long.getLong("query.latency-budget-ms", 250);
+    private static final Pageable PAGE = PageRequest.of(0, 20);
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuditDictionaryService auditDictionaryService;
+
+    @Autowired
+    private PostgresIndexService postgresIndexService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    /**
+     * What the plan of a query must look like on H2
+     */
+    enum Expect {
+        INDEXED,
+        /**
+         * Plan not checked: needs a partial or expression index H2 cannot build, or join
+         * reordering that H2 does not do for Hibernate's nested many-to-many joins
+         */
+        LATENCY_ONLY,
+        /** Reads the whole table by design, so it is not held to the latency budget either */
+        FULL_SCAN
+    }
+
+    record QueryCase(String name, String table, Expect expect, Runnable query) {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    Stream<QueryCase> queries() {
+        LocalDateTime hourAgo = now.minusHours(1);
+        LocalDateTime cursorTs = now.minusDays(1);
+        long cursorId = AUDIT_ROWS;
+
+        return Stream.of(
+            audit("findByUsername", Expect.INDEXED, () -> auditLogRepository.findByUsernameOrderByTimestampDesc("user42", PAGE)),
+            audit("findSummariesByUsername", Expect.INDEXED, () -> auditLogRepository.findSummariesByUsername("user42", PAGE)),
+            audit("findSummariesByIdIn", Expect.INDEXED, () -> auditLogRepository.findSummariesByIdIn(List.of(42L, 4242L))),
+            // Unfiltered listing; its page count reads the whole table
+            audit("findAllSummaries", Expect.FULL_SCAN, () -> auditLogRepository.findAllSummaries(PAGE)),
+            audit("findByCorrelationId", Expect.INDEXED, () -> auditLogRepository.findByCorrelationIdOrderByTimestampAscIdAsc("corr-4242")),
+            audit("findByAction", Expect.INDEXED, () -> auditLogRepository.findByActionOrderByTimestampDesc(AuditLog.ACTION_LOGIN_FAILED, PAGE)),
+            audit("findByStatus", Expect.INDEXED, () -> auditLogRepository.findByStatusOrderByTimestampDesc(AuditLog.ActionStatus.BLOCKED, PAGE)),
+            audit("findByRiskLevel", Expect.INDEXED, () -> auditLogRepository.findByRiskLevelOrderByTimestampDesc(AuditLog.RiskLevel.CRITICAL, PAGE)),
+            audit("findByTimestampBetween", Expect.INDEXED, () -> auditLogRepository.findByTimestampBetween(now.minusHours(2), hourAgo, PAGE)),
+            audit("findByTimestampBefore", Expect.INDEXED, () -> auditLogRepository.findByTimestampBeforeOrderByTimestampAscIdAsc(now.minusDays(DAYS - 1), PAGE)),
+            audit("findFailedLoginAttempts", Expect.INDEXED, () -> auditLogRepository.findFailedLoginAttempts(PAGE)),
+            audit("findFailedLoginAttemptsByUsername", Expect.INDEXED, () -> auditLogRepository.findFailedLoginAttemptsByUsername("user42")),
+            audit("findFailedLoginAttemptsByIp", Expect.INDEXED, () -> auditLogRepository.findFailedLoginAttemptsByIp("10.0.1.42")),
+            audit("findHighRiskActivities", Expect.INDEXED, () -> auditLogRepository.findHighRiskActivities(PAGE)),
+            audit("findAnomalous", Expect.LATENCY_ONLY, () -> auditLogRepository.findByIsAnomalyTrueOrderByTimestampDesc(PAGE)),
+            audit("findByIpAddress", Expect.INDEXED, () -> auditLogRepository.findByIpAddressOrderByTimestampDesc("10.0.1.42", PAGE)),
+            // Substring matching; the indexed path is AuditSearchService's trigram search on PostgreSQL
+            audit("searchAuditLogs", Expect.FULL_SCAN, () -> auditLogRepository.searchAuditLogs("user4", List.of(), List.of(), PAGE)),
+            audit("countFailedLoginsSince", Expect.INDEXED, () -> auditLogRepository.countFailedLoginsSince(hourAgo)),
+            audit("countFailedLoginsByUserSince", Expect.INDEXED, () -> auditLogRepository.countFailedLoginsByUserSince("user42", hourAgo)),
+            audit("countFailedLoginsByIpSince", Expect.INDEXED, () -> auditLogRepository.countFailedLoginsByIpSince("10.0.1.42", hourAgo)),
+            audit("getActivityStatistics", Expect.INDEXED, () -> auditLogRepository.getActivityStatistics(hourAgo)),
+            audit("getUserRiskTotals", Expect.INDEXED, () -> auditLogRepository.getUserRiskTotals("user42", hourAgo)),
+            audit("getTopActiveUsers", Expect.INDEXED, () -> auditLogRepository.getTopActiveUsers(hourAgo, PAGE)),
+            audit("getTopIpAddresses", Expect.INDEXED, () -> auditLogRepository.getTopIpAddresses(hourAgo, PAGE)),
+            audit("getActivityTrendsByHour", Expect.INDEXED, () -> auditLogRepository.getActivityTrendsByHour(hourAgo)),
+            audit("deleteByTimestampBefore", Expect.INDEXED, () -> auditLogRepository.deleteByTimestampBefore(now.minusDays(DAYS + 1))),
+            audit("findAfter", Expect.INDEXED, () -> auditLogRepository.findAfter(cursorTs, cursorId, PAGE)),
+            audit("findByUsernameAfter", Expect.INDEXED, () -> auditLogRepository.findByUsernameAfter("user42", cursorTs, cursorId, PAGE)),
+            audit("findByActionAfter", Expect.INDEXED, () -> auditLogRepository.findByActionAfter(AuditLog.ACTION_LOGIN_FAILED, cursorTs, cursorId, PAGE)),
+            audit("findHighRiskActivitiesAfter", Expect.INDEXED, () -> auditLogRepository.findHighRiskActivitiesAfter(cursorTs, cursorId, PAGE)),
+            audit("findAnomalousActivitiesAfter", Expect.LATENCY_ONLY, () -> auditLogRepository.findAnomalousActivitiesAfter(cursorTs, cursorId, PAGE)),
+            audit("findFailedLoginAttemptsAfter", Expect.INDEXED, () -> auditLogRepository.findFailedLoginAttemptsAfter(cursorTs, cursorId, PAGE)),
+            audit("findByTimestampBetweenAfter", Expect.INDEXED, () -> auditLogRepository.findByTimestampBetweenAfter(now.minusDays(2), cursorTs, cursorTs, cursorId, PAGE)),
+
+            user("findByUsernameIgnoreCase", Expect.LATENCY_ONLY, () -> userRepository.findByUsernameIgnoreCase("User42")),
+            user("findByEmailIgnoreCase", Expect.LATENCY_ONLY, () -> userRepository.findByEmailIgnoreCase("User42@example.com")),
+            user("existsByUsernameIgnoreCase", Expect.LATENCY_ONLY, () -> userRepository.existsByUsernameIgnoreCase("User42")),
+            user("existsByEmailIgnoreCase", Expect.LATENCY_ONLY, () -> userRepository.existsByEmailIgnoreCase("User42@example.com")),
+            user("findByAccountStatus", Expect.INDEXED, () -> userRepository.findByAccountStatus(User.AccountStatus.SUSPENDED)),
+            user("findUsersWithHighFailedAttempts", Expect.INDEXED, () -> userRepository.findUsersWithHighFailedAttempts(5)),
+            user("findLockedUsers", Expect.LATENCY_ONLY, () -> userRepository.findLockedUsers(now)),
+            user("findInactiveUsers", Expect.LATENCY_ONLY, () -> userRepository.findInactiveUsers(now.minusDays(DAYS - 1))),
+            user("findByRoleName", Expect.LATENCY_ONLY, () -> userRepository.findByRoleName("ADMIN")),
+            user("findByPermissionName", Expect.LATENCY_ONLY, () -> userRepository.findByPermissionName("AUDIT_EXPORT")),
+            user("searchUsers", Expect.FULL_SCAN, () -> userRepository.searchUsers("user4", PAGE)),
+            user("findUsersCreatedBetween", Expect.INDEXED, () -> userRepository.findUsersCreatedBetween(now.minusDays(2), now.minusDays(1))),
+            user("countByAccountStatus", Expect.INDEXED, () -> userRepository.countByAccountStatus(User.AccountStatus.SUSPENDED)),
+            user("findByMustChangePassword", Expect.LATENCY_ONLY, () -> userRepository.findByMustChangePasswordTrue()),
+            user("findByLastLoginIp", Expect.INDEXED, () -> userRepository.findByLastLoginIp("10.0.1.42")),
+            user("getUserStatistics", Expect.FULL_SCAN, () -> userRepository.getUserStatistics(now, now.minusDays(DAYS - 1)))
+        );
+    }
+
+    @BeforeAll
+    void loadDataset() {
+        postgresIndexService.ensureIndexes();
+        QueryPlanDataset.load(jdbcTemplate, auditDictionaryService, now);
+    }
+
+    @AfterAll
+    void dropDataset() {
+        QueryPlanDataset.drop(jdbcTemplate);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void queryUsesAnIndexAndMeetsLatencyBudget(QueryCase queryCase) {
+        // The first run also compiles the query
+        SqlCapture.STATEMENTS.clear();
+        queryCase.query().run();
+        List<String> statements = new ArrayList<>(SqlCapture.STATEMENTS);
+        assertFalse(statements.isEmpty(), "no SQL captured for " + queryCase.name());
+        if (queryCase.expect() == Expect.FULL_SCAN) {
+            return;
+        }
+
+        long bestMillis = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            queryCase.query().run();
+            bestMillis = Math.min(bestMillis, (System.nanoTime() - start) / 1_000_000);
+        }
+        assertTrue(bestMillis <= LATENCY_BUDGET_MS,
+            queryCase.name() + " took " + bestMillis + " ms, budget is " + LATENCY_BUDGET_MS + " ms");
+
+        if (queryCase.expect() == Expect.LATENCY_ONLY) {
+            return;
+        }
+        String tableScan = "PUBLIC." + queryCase.table().toUpperCase() + ".tableScan";
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains(tableScan), queryCase.name() + " scans " + queryCase.table() + ":\n" + plan);
+        }
+    }
+
+    private String explain(String sql) {
+        // H2 plans statements with unbound parameters, so the captured SQL is explained as is
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (ResultSet resultSet = connection.prepareStatement("EXPLAIN " + sql).executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        });
+    }
+
+    private static QueryCase audit(String name, Expect expect, Runnable query) {
+        return new QueryCase(name, "audit_logs", expect, query);
+    }
+
+    private static QueryCase user(String name, Expect expect, Runnable query) {
+        return new QueryCase(name, "users", expect, query);
+    }
+
+    /**
+     * Records every statement Hibernate prepares; registered through
+     * hibernate.session_factory.statement_inspector
+     */
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
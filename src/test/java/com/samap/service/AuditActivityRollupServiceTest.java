@@ -0,0 +1,168 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import com.samap.service.AuditService.ActivityStatistics;
+import com.samap.service.RiskAssessmentService.RiskTotals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Roll-ups maintained as audit rows commit (so the tests run outside the usual
+ * rolled-back test transaction), the statistics read from them, the chunked backfill
+ * of older rows and retention.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class AuditActivityRollupServiceTest {
+
+    @Autowired
+    private AuditActivityRollupService rollupService;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        clear();
+        ReflectionTestUtils.setField(rollupService, "backfillChunkHours", 24);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(rollupService, "enabled", true);
+        clear();
+    }
+
+    @Test
+    void rowsAreBucketedAtTheirOwnTimestamp() {
+        LocalDateTime happenedAt = LocalDateTime.now().minusHours(3).withMinute(17).withSecond(42);
+
+        save("alice", happenedAt, AuditLog.RiskLevel.LOW);
+
+        assertEquals(List.of(happenedAt.truncatedTo(ChronoUnit.MINUTES)), bucketStarts("audit_activity_minute"));
+        assertEquals(List.of(happenedAt.truncatedTo(ChronoUnit.HOURS)), bucketStarts("audit_activity_hour"));
+    }
+
+    @Test
+    void rowWithoutATimestampIsBucketedNow() {
+        LocalDateTime before = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+
+        save("alice", null, AuditLog.RiskLevel.LOW);
+
+        LocalDateTime bucket = bucketStarts("audit_activity_minute").get(0);
+        assertTrue(!bucket.isBefore(before) && !bucket.isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void statisticsSumHoursAndEdgeMinutesSinceTheGivenTime() {
+        LocalDateTime now = LocalDateTime.now();
+        save("alice", now.minusHours(5), AuditLog.RiskLevel.HIGH);
+        save("alice", now.minusHours(2), AuditLog.RiskLevel.LOW);
+        save("bob", now.minusMinutes(1), AuditLog.RiskLevel.CRITICAL);
+        save("bob", now.minusHours(30), AuditLog.RiskLevel.LOW);
+
+        ActivityStatistics statistics = rollupService.getActivityStatistics(now.minusHours(24));
+        RiskTotals alice = rollupService.getUserRiskTotals("alice", now.minusHours(24));
+
+        assertEquals(3, statistics.getTotalActivities());
+        assertEquals(2, statistics.getHighRiskActivities());
+        assertEquals(2, alice.getTotalActivities());
+        assertEquals(1, alice.getHighRiskActivities());
+    }
+
+    @Test
+    void backfillAggregatesOlderRowsChunkByChunkWithoutCountingTwice() {
+        LocalDateTime now = LocalDateTime.now();
+        ReflectionTestUtils.setField(rollupService, "enabled", false);
+        for (int hoursAgo : new int[] {2, 7, 30, 55, 71}) {
+            save("alice", now.minusHours(hoursAgo), AuditLog.RiskLevel.LOW);
+        }
+        ReflectionTestUtils.setField(rollupService, "enabled", true);
+        // Counted live; the backfill starts below its bucket
+        save("alice", now.minusMinutes(1), AuditLog.RiskLevel.LOW);
+        ReflectionTestUtils.setField(rollupService, "backfillChunkHours", 6);
+
+        rollupService.backfill("audit_activity_hour", ChronoUnit.HOURS, null);
+        rollupService.backfill("audit_activity_minute", ChronoUnit.MINUTES, now.minusHours(168));
+
+        assertEquals(6, eventCount("audit_activity_hour"));
+        assertEquals(6, eventCount("audit_activity_minute"));
+        assertEquals(6, rollupService.getActivityStatistics(now.minusHours(80)).getTotalActivities());
+
+        // A second run resumes from the oldest bucket and finds nothing left
+        assertEquals(0, rollupService.backfill("audit_activity_hour", ChronoUnit.HOURS, null));
+        assertEquals(6, eventCount("audit_activity_hour"));
+    }
+
+    @Test
+    void backfillStopsAtTheRetentionLimit() {
+        LocalDateTime now = LocalDateTime.now();
+        ReflectionTestUtils.setField(rollupService, "enabled", false);
+        save("alice", now.minusHours(3), AuditLog.RiskLevel.LOW);
+        save("alice", now.minusHours(200), AuditLog.RiskLevel.LOW);
+        ReflectionTestUtils.setField(rollupService, "enabled", true);
+
+        rollupService.backfill("audit_activity_minute", ChronoUnit.MINUTES, now.minusHours(168));
+
+        assertEquals(1, eventCount("audit_activity_minute"));
+    }
+
+    @Test
+    void pruneDropsMinutesPastRetentionAndKeepsTheirHours() {
+        LocalDateTime now = LocalDateTime.now();
+        save("alice", now.minusHours(200), AuditLog.RiskLevel.LOW);
+        save("alice", now.minusHours(1), AuditLog.RiskLevel.LOW);
+
+        rollupService.pruneExpiredBuckets();
+
+        assertEquals(1, eventCount("audit_activity_minute"));
+        assertEquals(2, eventCount("audit_activity_hour"));
+    }
+
+    private void save(String username, LocalDateTime timestamp, AuditLog.RiskLevel riskLevel) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setRiskLevel(riskLevel);
+        auditLog.setTimestamp(timestamp);
+        auditLogRepository.save(auditLog);
+    }
+
+    private List<LocalDateTime> bucketStarts(String table) {
+        return jdbcTemplate.queryForList("SELECT bucket_start FROM " + table + " ORDER BY bucket_start", LocalDateTime.class);
+    }
+
+    private long eventCount(String table) {
+        Long count = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(event_count), 0) FROM " + table, Long.class);
+        return count != null ? count : 0;
+    }
+
+    private void clear() {
+        jdbcTemplate.update("DELETE FROM audit_activity_minute");
+        jdbcTemplate.update("DELETE FROM audit_activity_hour");
+        jdbcTemplate.update("DELETE FROM audit_logs");
+    }
+}
@@ -0,0 +1,173 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Segment files written and read back: every column, both format versions, the header
+ * used for pruning and the filtered count.
+ */
+class AuditArchiveSegmentTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 10, 0, 0, 123_456_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyColumnRoundTrips() throws IOException {
+        AuditLog full = row(7, T0, "alice");
+        full.setResource("USER");
+        full.setResourceId("42");
+        full.setIpAddress("10.0.0.1");
+        full.setUserAgent("firefox");
+        full.setSessionId("s-1");
+        full.setEndpoint("/api/users/42");
+        full.setHttpMethod("GET");
+        full.setRequestParams("verbose=true");
+        full.setDetails("détails ünïcode");
+        full.setErrorMessage("boom");
+        full.setRiskLevel(AuditLog.RiskLevel.HIGH);
+        full.setRiskScore(0.75);
+        full.setRiskFactors("new device");
+        full.setLocationCountry("DE");
+        full.setLocationCity("Berlin");
+        full.setDeviceFingerprint("fp");
+        full.setIsAnomaly(true);
+        full.setAnomalyReasons("odd hour");
+        full.setCorrelationId("corr-1");
+        full.setResponseStatus(500);
+        full.setExecutionTimeMs(-3L);
+        full.setEventCount(12);
+        full.setLatencyMinMs(1L);
+        full.setLatencyMaxMs(90L);
+        full.setLatencySumMs(300L);
+        AuditLog sparse = row(9, T0.plusSeconds(1), null);
+        sparse.setStatus(null);
+        sparse.setRiskScore(null);
+        sparse.setIsAnomaly(null);
+
+        AuditArchiveSegment segment = AuditArchiveSegment.write(dir.resolve("a.seg"), List.of(full, sparse));
+        List<AuditLog> rows = AuditArchiveSegment.open(segment.getPath()).read(null, null, null);
+
+        assertEquals(2, rows.size());
+        AuditLog read = rows.get(0);
+        assertEquals(7L, read.getId());
+        assertEquals(T0, read.getTimestamp());
+        assertEquals("alice", read.getUsername());
+        assertEquals("USER", read.getResource());
+        assertEquals("détails ünïcode", read.getDetails());
+        assertEquals(AuditLog.ActionStatus.SUCCESS, read.getStatus());
+        assertEquals(AuditLog.RiskLevel.HIGH, read.getRiskLevel());
+        assertEquals(0.75, read.getRiskScore());
+        assertEquals(true, read.getIsAnomaly());
+        assertEquals("corr-1", read.getCorrelationId());
+        assertEquals(500, read.getResponseStatus());
+        assertEquals(-3L, read.getExecutionTimeMs());
+        assertEquals(12, read.getEventCount());
+        assertEquals(300L, read.getLatencySumMs());
+
+        AuditLog empty = rows.get(1);
+        assertNull(empty.getUsername());
+        assertNull(empty.getStatus());
+        assertNull(empty.getRiskScore());
+        assertNull(empty.getIsAnomaly());
+        assertNull(empty.getEventCount());
+    }
+
+    @Test
+    void versionOneSegmentsAreReadWithoutRollupColumns() throws IOException {
+        AuditLog rolledUp = row(1, T0, "alice");
+        rolledUp.setEventCount(5);
+        rolledUp.setResponseStatus(200);
+        rolledUp.setIsAnomaly(false);
+        AuditArchiveSegment.write(dir.resolve("v1.seg"), List.of(rolledUp, row(2, T0.plusMinutes(1), "bob")), (short) 1);
+
+        List<AuditLog> rows = AuditArchiveSegment.open(dir.resolve("v1.seg")).read(null, null, null);
+
+        assertEquals(List.of(1L, 2L), rows.stream().map(AuditLog::getId).toList());
+        assertEquals(200, rows.get(0).getResponseStatus());
+        assertEquals(false, rows.get(0).getIsAnomaly());
+        assertNull(rows.get(0).getEventCount());
+        assertEquals("bob", rows.get(1).getUsername());
+    }
+
+    @Test
+    void headerCarriesRangesAndUsernameBloomFilter() throws IOException {
+        List<AuditLog> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row(1_000 + i, T0.plusMinutes(i), "user-" + (i % 10)));
+        }
+        AuditArchiveSegment.write(dir.resolve("a.seg"), rows);
+
+        AuditArchiveSegment segment = AuditArchiveSegment.open(dir.resolve("a.seg"));
+
+        assertEquals(100, segment.getRowCount());
+        assertEquals(1_000, segment.getMinId());
+        assertEquals(1_099, segment.getMaxId());
+        assertEquals(T0, segment.getMinTimestamp());
+        assertEquals(T0.plusMinutes(99), segment.getMaxTimestamp());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(segment.mightContainUsername("user-" + i));
+        }
+        assertFalse(segment.mightContainUsername("mallory"));
+
+        assertTrue(segment.overlaps(T0.plusMinutes(99), null));
+        assertFalse(segment.overlaps(T0.plusMinutes(100), null));
+        assertFalse(segment.overlaps(null, T0.minusNanos(1_000)));
+        assertTrue(segment.within(T0, T0.plusMinutes(99)));
+        assertFalse(segment.within(T0.plusMinutes(1), null));
+    }
+
+    @Test
+    void readAndCountApplyTheSameFilters() throws IOException {
+        List<AuditLog> rows = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            rows.add(row(i + 1, T0.plusMinutes(i), i % 3 == 0 ? "alice" : "bob"));
+        }
+        AuditArchiveSegment segment = AuditArchiveSegment.write(dir.resolve("a.seg"), rows);
+        LocalDateTime from = T0.plusMinutes(10);
+        LocalDateTime to = T0.plusMinutes(39);
+
+        List<AuditLog> alice = segment.read(from, to, "alice");
+
+        assertEquals(10, alice.size());
+        assertTrue(alice.stream().allMatch(a -> "alice".equals(a.getUsername())));
+        assertEquals(10, segment.count(from, to, "alice"));
+        assertEquals(30, segment.count(from, to, null));
+        assertEquals(0, segment.count(from, to, "mallory"));
+        assertEquals(60, segment.count(null, null, null));
+    }
+
+    @Test
+    void foreignFilesAreRejected() throws IOException {
+        Path file = dir.resolve("junk.seg");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertThrows(IOException.class, () -> AuditArchiveSegment.open(file));
+    }
+
+    private static AuditLog row(long id, LocalDateTime timestamp, String username) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+}
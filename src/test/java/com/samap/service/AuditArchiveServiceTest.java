@@ -0,0 +1,100 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Segment pruning by timestamp range and username bloom filter, and counts that are not
+ * capped like reads are.
+ */
+class AuditArchiveServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    @TempDir
+    Path archiveDir;
+
+    private AuditArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // One segment per day, each with its own users
+        for (int day = 0; day < 3; day++) {
+            List<AuditLog> rows = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                rows.add(row(day * 100L + i, T0.plusDays(day).plusHours(i), "day" + day + "-user" + (i % 4)));
+            }
+            AuditArchiveSegment.write(archiveDir.resolve("day" + day + ".seg"), rows);
+        }
+        // Left over from a run that died mid-write
+        Files.writeString(archiveDir.resolve("day3.seg.tmp"), "partial");
+
+        archiveService = new AuditArchiveService(mock(AuditLogRepository.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(archiveService, "directory", archiveDir.toString());
+        ReflectionTestUtils.setField(archiveService, "maxResults", 10);
+        archiveService.init();
+    }
+
+    @Test
+    void segmentsOutsideTheRangeOrWithoutTheUsernameAreSkipped() {
+        assertEquals(3, archiveService.getSegmentCount());
+        assertFalse(Files.exists(archiveDir.resolve("day3.seg.tmp")));
+
+        assertEquals(List.of("day1.seg", "day2.seg"),
+            names(archiveService.findSegments(T0.plusDays(1).plusHours(5), null, null)));
+        assertEquals(List.of("day0.seg"), names(archiveService.findSegments(null, T0.plusHours(23), null)));
+        assertEquals(List.of("day2.seg"), names(archiveService.findSegments(null, null, "day2-user3")));
+        assertEquals(List.of(), names(archiveService.findSegments(null, null, "mallory")));
+
+        assertTrue(archiveService.mayContain(T0.plusDays(2), T0.plusDays(5)));
+        assertFalse(archiveService.mayContain(T0.plusDays(3), null));
+    }
+
+    @Test
+    void readsAreCappedAndCountsAreNot() {
+        List<AuditLog> newest = archiveService.find(null, null, null);
+
+        assertEquals(10, newest.size());
+        assertEquals(223L, newest.get(0).getId());
+        assertEquals(72, archiveService.count(null, null, null));
+        assertEquals(6, archiveService.count(null, null, "day1-user2"));
+        // Partly covered segments are decoded, fully covered ones counted from the header
+        assertEquals(24 + 12, archiveService.count(T0.plusDays(1), T0.plusDays(2).plusHours(11), null));
+    }
+
+    @Test
+    void rowsAreFoundByIdWithinTheSegmentIdRange() {
+        assertEquals("day1-user1", archiveService.findById(105).orElseThrow().getUsername());
+        assertTrue(archiveService.findById(150).isEmpty());
+    }
+
+    private static List<String> names(List<AuditArchiveSegment> segments) {
+        return segments.stream().map(segment -> segment.getPath().getFileName().toString()).toList();
+    }
+
+    private static AuditLog row(long id, LocalDateTime timestamp, String username) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+}
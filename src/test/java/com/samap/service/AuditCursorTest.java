@@ -0,0 +1,74 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditCursorTest {
+
+    private static final LocalDateTime TS = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_000);
+
+    @Test
+    void tokenRoundTripsTimestampAndId() {
+        AuditCursor cursor = AuditCursor.after(row(42L, TS));
+
+        AuditCursor decoded = AuditCursor.decode(cursor.encode());
+
+        assertEquals(TS, decoded.getTimestamp());
+        assertEquals(42L, decoded.getId());
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = AuditCursor.after(row(Long.MAX_VALUE - 1, TS)).encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void missingTokenStartsAtTheNewestRow() {
+        assertSame(AuditCursor.START, AuditCursor.decode(null));
+        assertSame(AuditCursor.START, AuditCursor.decode(" "));
+        assertTrue(AuditCursor.START.precedes(row(Long.MAX_VALUE - 1, LocalDateTime.of(9999, 1, 1, 0, 0))));
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AuditCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> AuditCursor.decode(token("2|" + TS + "|1")));
+        assertThrows(IllegalArgumentException.class, () -> AuditCursor.decode(token("1|yesterday|1")));
+        assertThrows(IllegalArgumentException.class, () -> AuditCursor.decode(token("1|" + TS + "|x")));
+        assertThrows(IllegalArgumentException.class, () -> AuditCursor.decode(token("1|" + TS)));
+    }
+
+    @Test
+    void equalTimestampsAreOrderedByIdDescending() {
+        AuditCursor cursor = AuditCursor.after(row(10L, TS));
+
+        assertTrue(cursor.precedes(row(9L, TS)));
+        assertFalse(cursor.precedes(row(10L, TS)));
+        assertFalse(cursor.precedes(row(11L, TS)));
+        assertTrue(cursor.precedes(row(99L, TS.minusNanos(1000))));
+        assertFalse(cursor.precedes(row(1L, TS.plusNanos(1000))));
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static AuditLog row(long id, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+}
@@ -0,0 +1,135 @@
+package com.samap.service;
+
+import com.samap.model.AuditDictionaryEntry.Kind;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Dictionary cache against a local H2 audit_dictionary table; a counting DataSource
+ * shows which calls are served from the cache and which go to the database.
+ */
+class AuditDictionaryServiceTest {
+
+    private JdbcDataSource database;
+    private CountingDataSource dataSource;
+    private AuditDictionaryService dictionary;
+
+    @BeforeEach
+    void setUp() {
+        database = new JdbcDataSource();
+        database.setURL("jdbc:h2:mem:dictionary-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(database).execute("CREATE TABLE audit_dictionary (id INT AUTO_INCREMENT PRIMARY KEY, " +
+            "kind VARCHAR(20) NOT NULL, entry_value VARCHAR(500) NOT NULL, UNIQUE (kind, entry_value))");
+
+        dataSource = new CountingDataSource(database);
+        dictionary = new AuditDictionaryService(dataSource);
+        ReflectionTestUtils.setField(dictionary, "maxCachedEntries", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(database).execute("SHUTDOWN");
+    }
+
+    @Test
+    void cachedValuesAreServedWithoutTheDatabase() {
+        int id = dictionary.intern(Kind.ACTION, "LOGIN");
+        dataSource.connections = 0;
+
+        assertEquals(id, dictionary.intern(Kind.ACTION, "LOGIN"));
+        assertEquals(id, dictionary.lookup(Kind.ACTION, "LOGIN"));
+        assertEquals("LOGIN", dictionary.resolve(id));
+        assertEquals(0, dataSource.connections);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedOnceTheCacheIsFull() {
+        int login = dictionary.intern(Kind.ACTION, "LOGIN");
+        int logout = dictionary.intern(Kind.ACTION, "LOGOUT");
+        dictionary.resolve(login);
+
+        int export = dictionary.intern(Kind.ACTION, "DATA_EXPORT");
+        assertEquals(2, dictionary.getCachedEntryCount());
+
+        dataSource.connections = 0;
+        assertEquals("LOGIN", dictionary.resolve(login));
+        assertEquals("DATA_EXPORT", dictionary.resolve(export));
+        assertEquals(0, dataSource.connections);
+
+        // Evicted both ways, and cached again after one read
+        assertEquals(logout, dictionary.lookup(Kind.ACTION, "LOGOUT"));
+        assertEquals(1, dataSource.connections);
+        assertEquals("LOGOUT", dictionary.resolve(logout));
+        assertEquals(1, dataSource.connections);
+        assertEquals(2, dictionary.getCachedEntryCount());
+    }
+
+    @Test
+    void unknownValuesMapToTheUnknownReferenceWithoutBeingCreated() {
+        assertEquals(AuditDictionaryService.UNKNOWN_REF, dictionary.lookup(Kind.ACTION, "NEVER_LOGGED"));
+        assertEquals(0, new JdbcTemplate(database).queryForObject("SELECT COUNT(*) FROM audit_dictionary", Integer.class));
+    }
+
+    @Test
+    void legacyColumnsAreBackfilledInIdRangesAndDropped() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("DROP TABLE audit_dictionary");
+        jdbcTemplate.execute("CREATE TABLE audit_logs (id BIGINT PRIMARY KEY, action VARCHAR(100) NOT NULL, " +
+            "resource VARCHAR(100), endpoint VARCHAR(500), http_method VARCHAR(10), user_agent VARCHAR(500))");
+        for (int id = 1; id <= 25; id++) {
+            jdbcTemplate.update("INSERT INTO audit_logs (id, action, resource, endpoint, http_method, user_agent) " +
+                "VALUES (?, ?, ?, '/api/users', 'GET', NULL)", id, id % 2 == 0 ? "LOGIN" : "LOGOUT",
+                id % 5 == 0 ? null : "USER");
+        }
+        ReflectionTestUtils.setField(dictionary, "migrationBatchSize", 10);
+
+        dictionary.migrateLegacyColumns();
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+            "WHERE LOWER(table_name) = 'audit_logs' AND LOWER(column_name) IN " +
+            "('action', 'resource', 'endpoint', 'http_method', 'user_agent')", Integer.class));
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_dictionary", Integer.class));
+        assertEquals(List.of("LOGIN", "LOGOUT"), jdbcTemplate.queryForList(
+            "SELECT d.entry_value FROM audit_logs l JOIN audit_dictionary d ON d.id = l.action_ref " +
+            "WHERE l.id IN (24, 25) ORDER BY l.id", String.class));
+        assertEquals(5, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM audit_logs WHERE resource_ref IS NULL", Integer.class));
+        assertEquals(25, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM audit_logs WHERE endpoint_ref IS NOT NULL AND http_method_ref IS NOT NULL " +
+            "AND user_agent_ref IS NULL", Integer.class));
+
+        // Already migrated: nothing left to do
+        dictionary.migrateLegacyColumns();
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_dictionary", Integer.class));
+    }
+
+    /**
+     * Counts connections handed out, i.e. database round trips
+     */
+    private static final class CountingDataSource extends DelegatingDataSource {
+        private int connections;
+
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            connections++;
+            return super.getConnection();
+        }
+    }
+}
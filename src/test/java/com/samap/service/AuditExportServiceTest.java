@@ -0,0 +1,167 @@
+package com.samap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import com.samap.service.AuditExportService.ExportFilter;
+import com.samap.service.AuditExportService.Format;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CSV and NDJSON output of exports over an H2 database and real archive segments.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class, AuditArchiveService.class,
+    AuditExportService.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class AuditExportServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 10, 0);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path archiveDir;
+
+    @Autowired
+    private AuditExportService exportService;
+
+    @Autowired
+    private AuditArchiveService archiveService;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        // The archive service outlives the test; start each test with this test's empty archive
+        ((List<?>) ReflectionTestUtils.getField(archiveService, "segments")).clear();
+        ReflectionTestUtils.setField(archiveService, "directory", archiveDir.toString());
+        archiveService.init();
+    }
+
+    @Test
+    void csvQuotesSeparatorsAndNeutralisesFormulas() throws Exception {
+        AuditLog row = save("=HYPERLINK(\"x\")", T0);
+        row.setDetails("a, \"quoted\"\nsecond line");
+        entityManager.flush();
+
+        List<String> records = csvRecords(export(new ExportFilter(), Format.CSV));
+
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).startsWith("id,timestamp,username,action,"));
+        String record = records.get(1);
+        assertTrue(record.contains(",\"'=HYPERLINK(\"\"x\"\")\","), record);
+        assertTrue(record.contains(",\"a, \"\"quoted\"\"\nsecond line\","), record);
+        assertTrue(record.contains("," + AuditLog.ACTION_DATA_ACCESS + ","), record);
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLineWithoutNullFields() throws Exception {
+        save("alice", T0);
+        save("bob", T0.plusMinutes(1));
+        entityManager.flush();
+
+        String[] lines = export(new ExportFilter(), Format.NDJSON).split("\n");
+
+        assertEquals(2, lines.length);
+        JsonNode first = MAPPER.readTree(lines[0]);
+        assertEquals("alice", first.get("username").asText());
+        assertEquals(AuditLog.ACTION_DATA_ACCESS, first.get("action").asText());
+        assertEquals("2024-03-01T10:00", first.get("timestamp").asText());
+        assertFalse(first.has("errorMessage"));
+        assertEquals("bob", MAPPER.readTree(lines[1]).get("username").asText());
+    }
+
+    @Test
+    void unknownActionExportsNothing() throws Exception {
+        save("alice", T0);
+        archive(row(9_000L, "alice", T0.minusDays(1)));
+        entityManager.flush();
+
+        ExportFilter filter = new ExportFilter();
+        filter.setAction("NEVER_LOGGED");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, exportService.export(filter, Format.NDJSON, out));
+        assertEquals("", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void archivedRowsComeFirstAndRowsInBothTiersAreExportedOnce() throws Exception {
+        AuditLog stillInDatabase = save("alice", T0.minusDays(1));
+        save("alice", T0);
+        entityManager.flush();
+        archive(row(1L, "alice", T0.minusDays(3)), copyOf(stillInDatabase));
+
+        List<Long> ids = new ArrayList<>();
+        for (String line : export(new ExportFilter(), Format.NDJSON).split("\n")) {
+            ids.add(MAPPER.readTree(line).get("id").asLong());
+        }
+
+        assertEquals(3, ids.size());
+        assertEquals(1L, ids.get(0));
+        assertEquals(ids.stream().distinct().count(), ids.size());
+    }
+
+    private String export(ExportFilter filter, Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(filter, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    // Records end with CRLF; a bare LF is inside a quoted field
+    private static List<String> csvRecords(String csv) {
+        List<String> records = new ArrayList<>(List.of(csv.split("\r\n")));
+        records.removeIf(String::isEmpty);
+        return records;
+    }
+
+    private AuditLog save(String username, LocalDateTime timestamp) {
+        return auditLogRepository.save(row(null, username, timestamp));
+    }
+
+    private void archive(AuditLog... rows) throws Exception {
+        ((List<?>) ReflectionTestUtils.getField(archiveService, "segments")).clear();
+        AuditArchiveSegment.write(archiveDir.resolve("audit-" + rows[0].getId() + ".seg"), List.of(rows));
+        archiveService.init();
+    }
+
+    private static AuditLog copyOf(AuditLog auditLog) {
+        AuditLog copy = row(auditLog.getId(), auditLog.getUsername(), auditLog.getTimestamp());
+        copy.setDetails(auditLog.getDetails());
+        return copy;
+    }
+
+    private static AuditLog row(Long id, String username, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+}
@@ -0,0 +1,159 @@
+package com.samap.service;
+
+import com.samap.config.MessageQueueConfig.MessagePublisher;
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local write-behind pipeline against a mocked repository. The first saveAll blocks
+ * until released, which holds the writer thread so tests can fill the queue behind it.
+ */
+class AuditIngestionServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> savedBatches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private AuditLogRepository auditLogRepository;
+    private AuditIngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() {
+        auditLogRepository = mock(AuditLogRepository.class);
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(auditLogRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            boolean blocking = first.getAndSet(false);
+            Iterable<AuditLog> batch = invocation.getArgument(0);
+            List<String> usernames = new CopyOnWriteArrayList<>();
+            batch.forEach(auditLog -> usernames.add(auditLog.getUsername()));
+            if (blocking) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            savedBatches.add(usernames);
+            return batch;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        ingestionService.shutdown();
+    }
+
+    @Test
+    void queuedEventsAreWrittenInBatchesOfAtMostBatchSize() {
+        start(100, 2, AuditIngestionService.OverflowPolicy.DROP_OLDEST);
+        holdWriter();
+
+        for (int i = 1; i <= 4; i++) {
+            ingestionService.submit(auditLog(i));
+        }
+        release.countDown();
+
+        verify(auditLogRepository, timeout(2000).times(3)).saveAll(anyIterable());
+        assertEquals(List.of(List.of("user-0"), List.of("user-1", "user-2"), List.of("user-3", "user-4")), savedBatches);
+    }
+
+    @Test
+    void dropOldestMakesRoomWithoutWritingOnTheCaller() {
+        start(2, 10, AuditIngestionService.OverflowPolicy.DROP_OLDEST);
+        holdWriter();
+
+        ingestionService.submit(auditLog(1));
+        ingestionService.submit(auditLog(2));
+        ingestionService.submit(auditLog(3));
+
+        // The caller returned without a write of its own: only the held batch is in flight
+        verify(auditLogRepository, timeout(2000).times(1)).saveAll(anyIterable());
+        assertEquals(1.0, meterRegistry.get("samap_audit_dropped_total").counter().count());
+
+        release.countDown();
+        verify(auditLogRepository, timeout(2000).times(2)).saveAll(anyIterable());
+        assertEquals(List.of(List.of("user-0"), List.of("user-2", "user-3")), savedBatches);
+    }
+
+    @Test
+    void dropNewestKeepsTheQueuedEvents() {
+        start(2, 10, AuditIngestionService.OverflowPolicy.DROP_NEWEST);
+        holdWriter();
+
+        ingestionService.submit(auditLog(1));
+        ingestionService.submit(auditLog(2));
+        ingestionService.submit(auditLog(3));
+        release.countDown();
+
+        verify(auditLogRepository, timeout(2000).times(2)).saveAll(anyIterable());
+        assertEquals(List.of(List.of("user-0"), List.of("user-1", "user-2")), savedBatches);
+        assertEquals(1.0, meterRegistry.get("samap_audit_dropped_total").counter().count());
+    }
+
+    @Test
+    void shutdownDrainsEventsStillQueued() {
+        start(100, 2, AuditIngestionService.OverflowPolicy.DROP_OLDEST);
+        ReflectionTestUtils.setField(ingestionService, "shutdownTimeoutMs", 50L);
+        holdWriter();
+
+        for (int i = 1; i <= 3; i++) {
+            ingestionService.submit(auditLog(i));
+        }
+        // The writer is still held, so the queued events are flushed by shutdown itself
+        ingestionService.shutdown();
+
+        assertEquals(List.of(List.of("user-1", "user-2"), List.of("user-3")), savedBatches);
+        assertEquals(0, ingestionService.getQueueDepth());
+    }
+
+    private void start(int capacity, int batchSize, AuditIngestionService.OverflowPolicy policy) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MessagePublisher> publisherProvider = mock(ObjectProvider.class);
+
+        ingestionService = new AuditIngestionService(auditLogRepository, mock(AuditSpoolService.class),
+            mock(AuditDictionaryService.class),
+            mock(PlatformTransactionManager.class), meterRegistry, publisherProvider);
+        ReflectionTestUtils.setField(ingestionService, "transport", AuditIngestionService.Transport.LOCAL);
+        ReflectionTestUtils.setField(ingestionService, "queueCapacity", capacity);
+        ReflectionTestUtils.setField(ingestionService, "batchSize", batchSize);
+        ReflectionTestUtils.setField(ingestionService, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(ingestionService, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(ingestionService, "shutdownTimeoutMs", 1000L);
+        ingestionService.start();
+    }
+
+    /**
+     * Hand the writer one event and wait until it is blocked persisting it
+     */
+    private void holdWriter() {
+        ingestionService.submit(auditLog(0));
+        verify(auditLogRepository, timeout(2000)).saveAll(anyIterable());
+    }
+
+    private AuditLog auditLog(int i) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername("user-" + i);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(LocalDateTime.now());
+        return auditLog;
+    }
+}
@@ -0,0 +1,112 @@
+package com.samap.service;
+
+import com.rabbitmq.client.Channel;
+import com.samap.config.MessageQueueConfig;
+import com.samap.config.MessageQueueConfig.MessagePublisher;
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Broker messages persisted through the consumer into a real (H2) audit table: an
+ * event that waited in the queue keeps the time it happened, not the time it was consumed.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class AuditQueueConsumerPersistenceTest {
+
+    private final MessageConverter converter = new MessageQueueConfig().jsonMessageConverter();
+    private final Channel channel = mock(Channel.class);
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private AuditIngestionService ingestionService;
+    private AuditQueueConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MessagePublisher> publisherProvider = mock(ObjectProvider.class);
+        ingestionService = new AuditIngestionService(auditLogRepository, mock(AuditSpoolService.class),
+            mock(AuditDictionaryService.class),
+            transactionManager, new SimpleMeterRegistry(), publisherProvider);
+        ReflectionTestUtils.setField(ingestionService, "transport", AuditIngestionService.Transport.RABBITMQ);
+        ReflectionTestUtils.setField(ingestionService, "queueCapacity", 10);
+        ReflectionTestUtils.setField(ingestionService, "batchSize", 10);
+        ReflectionTestUtils.setField(ingestionService, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(ingestionService, "shutdownTimeoutMs", 1000L);
+        ingestionService.start();
+
+        consumer = new AuditQueueConsumer(ingestionService, converter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestionService.shutdown();
+    }
+
+    @Test
+    void delayedConsumeKeepsTheEventTimestamp() throws Exception {
+        LocalDateTime happenedAt = LocalDateTime.now().minusHours(20).truncatedTo(ChronoUnit.MILLIS);
+        LocalDateTime laterAt = happenedAt.plusMinutes(5);
+
+        consumer.onBatch(List.of(message(auditLog("alice", happenedAt), 1), message(auditLog("bob", laterAt), 2)), channel);
+        verify(channel).basicAck(2L, true);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        List<AuditLog> stored = auditLogRepository.findAll().stream()
+            .sorted((a, b) -> a.getUsername().compareTo(b.getUsername()))
+            .toList();
+        assertEquals(2, stored.size());
+        assertEquals(happenedAt, stored.get(0).getTimestamp());
+        assertEquals(laterAt, stored.get(1).getTimestamp());
+    }
+
+    private Message message(AuditLog auditLog, long deliveryTag) {
+        MessageProperties properties = new MessageProperties();
+        Message message = converter.toMessage(auditLog, properties);
+        message.getMessageProperties().setDeliveryTag(deliveryTag);
+        return message;
+    }
+
+    private AuditLog auditLog(String username, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+}
@@ -0,0 +1,255 @@
+package com.samap.service;
+
+import com.rabbitmq.client.Channel;
+import com.samap.config.CorrelationId;
+import com.samap.config.MessageQueueConfig;
+import com.samap.config.MessageQueueConfig.MessagePublisher;
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.MDC;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Audit ingestion over RabbitMQ, run against an in-process broker stand-in: messages the
+ * writer thread publishes are captured per routing key and handed to the batch consumer
+ * with delivery tags, and a mocked channel records the acknowledgements.
+ */
+class AuditRabbitIngestionTest {
+
+    private final MessageConverter converter = new MessageQueueConfig().jsonMessageConverter();
+    private final InProcessBroker broker = new InProcessBroker();
+    private final Channel channel = mock(Channel.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AuditLogRepository auditLogRepository;
+    private AuditIngestionService ingestionService;
+    private AuditQueueConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        auditLogRepository = mock(AuditLogRepository.class);
+        broker.setMessageConverter(converter);
+
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MessagePublisher> publisherProvider = mock(ObjectProvider.class);
+        when(publisherProvider.getIfAvailable()).thenReturn(new MessagePublisher(broker));
+
+        ingestionService = new AuditIngestionService(auditLogRepository, mock(AuditSpoolService.class),
+            mock(AuditDictionaryService.class),
+            mock(PlatformTransactionManager.class), meterRegistry, publisherProvider);
+        ReflectionTestUtils.setField(ingestionService, "transport", AuditIngestionService.Transport.RABBITMQ);
+        ReflectionTestUtils.setField(ingestionService, "queueCapacity", 100);
+        ReflectionTestUtils.setField(ingestionService, "batchSize", 50);
+        ReflectionTestUtils.setField(ingestionService, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(ingestionService, "overflowPolicy", AuditIngestionService.OverflowPolicy.CALLER_RUNS);
+        ReflectionTestUtils.setField(ingestionService, "shutdownTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(ingestionService, "breakerFailureThreshold", 5);
+        ReflectionTestUtils.setField(ingestionService, "breakerOpenMs", 60_000L);
+        ingestionService.start();
+
+        consumer = new AuditQueueConsumer(ingestionService, converter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestionService.shutdown();
+    }
+
+    @Test
+    void publishedEventsArePersistedAndAckedAsOneBatch() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            ingestionService.submit(auditLog(i));
+        }
+
+        List<Message> delivered = broker.awaitAndDeliver(MessageQueueConfig.AUDIT_EVENT_ROUTING_KEY, 5);
+        assertEquals(5, delivered.size());
+        verify(auditLogRepository, never()).saveAll(anyIterable());
+        // Published by the writer thread under each event's own correlation ID
+        assertEquals(List.of("corr-0", "corr-1", "corr-2", "corr-3", "corr-4"), broker.correlationIds);
+
+        consumer.onBatch(delivered, channel);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AuditLog>> saved = ArgumentCaptor.forClass(List.class);
+        verify(auditLogRepository).saveAll(saved.capture());
+        assertEquals(5, saved.getValue().size());
+        assertEquals("user-3", saved.getValue().get(3).getUsername());
+        assertEquals("corr-3", saved.getValue().get(3).getCorrelationId());
+        verify(channel).basicAck(5L, true);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void batchIsRequeuedWhenItCannotBePersisted() throws Exception {
+        when(auditLogRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("database down"));
+
+        ingestionService.submit(auditLog(1));
+        ingestionService.submit(auditLog(2));
+        consumer.onBatch(broker.awaitAndDeliver(MessageQueueConfig.AUDIT_EVENT_ROUTING_KEY, 2), channel);
+
+        verify(channel).basicNack(2L, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void undecodableMessageIsRejectedAndTheRestAcked() throws Exception {
+        ingestionService.submit(auditLog(1));
+        List<Message> delivered = new ArrayList<>(broker.awaitAndDeliver(MessageQueueConfig.AUDIT_EVENT_ROUTING_KEY, 1));
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setDeliveryTag(2L);
+        delivered.add(new Message("{not json".getBytes(StandardCharsets.UTF_8), properties));
+
+        consumer.onBatch(delivered, channel);
+
+        verify(channel).basicReject(2L, false);
+        verify(channel).basicAck(1L, true);
+        verify(auditLogRepository).saveAll(anyIterable());
+    }
+
+    @Test
+    void eventsFallBackToLocalQueueWhenBrokerIsUnreachable() {
+        broker.down.set(true);
+
+        ingestionService.submit(auditLog(1));
+
+        verify(auditLogRepository, timeout(2000)).saveAll(anyIterable());
+        assertTrue(broker.deliver(MessageQueueConfig.AUDIT_EVENT_ROUTING_KEY).isEmpty());
+    }
+
+    @Test
+    void submitNeverWaitsOnTheBroker() {
+        broker.latency.set(true);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            ingestionService.submit(auditLog(i));
+        }
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+        broker.latency.set(false);
+        assertEquals(5, broker.awaitAndDeliver(MessageQueueConfig.AUDIT_EVENT_ROUTING_KEY, 5).size());
+    }
+
+    @Test
+    void breakerStopsTryingTheBrokerAfterRepeatedFailures() throws Exception {
+        ReflectionTestUtils.setField(ingestionService, "breakerFailureThreshold", 2);
+        broker.down.set(true);
+
+        for (int i = 0; i < 4; i++) {
+            ingestionService.submit(auditLog(i));
+            verify(auditLogRepository, timeout(2000).times(i + 1)).saveAll(anyIterable());
+        }
+
+        // Two failed publishes opened the breaker; the later batches went straight to the database
+        assertEquals(2, broker.attempts.get());
+        assertEquals(1.0, meterRegistry.get("samap_audit_publish_breaker_open").gauge().value());
+        assertEquals(2.0, meterRegistry.get("samap_audit_publish_failed_total").counter().count());
+    }
+
+    private AuditLog auditLog(int i) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername("user-" + i);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setEndpoint("/api/users/" + i);
+        auditLog.setHttpMethod("GET");
+        auditLog.setResponseStatus(200);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setCorrelationId("corr-" + i);
+        auditLog.setTimestamp(LocalDateTime.now());
+        return auditLog;
+    }
+
+    /**
+     * Minimal AMQP stand-in: a RabbitTemplate that keeps published messages in memory
+     * per routing key and assigns delivery tags when they are handed to a consumer.
+     */
+    private static final class InProcessBroker extends RabbitTemplate {
+
+        private final List<Message> published = new ArrayList<>();
+        private final List<String> routingKeys = new ArrayList<>();
+        private final List<String> correlationIds = new ArrayList<>();
+        private final AtomicBoolean down = new AtomicBoolean();
+        private final AtomicBoolean latency = new AtomicBoolean();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private long nextDeliveryTag = 1;
+
+        @Override
+        public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+            attempts.incrementAndGet();
+            while (latency.get()) {
+                Thread.onSpinWait();
+            }
+            if (down.get()) {
+                throw new AmqpConnectException(new ConnectException("broker unreachable"));
+            }
+            assertEquals(MessageQueueConfig.AUDIT_EXCHANGE, exchange);
+            synchronized (this) {
+                published.add(message);
+                routingKeys.add(routingKey);
+                correlationIds.add(MDC.get(CorrelationId.MDC_KEY));
+            }
+        }
+
+        /**
+         * Wait for the writer thread to publish the expected number of messages, then deliver them
+         */
+        List<Message> awaitAndDeliver(String routingKey, int expected) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (System.nanoTime() < deadline) {
+                synchronized (this) {
+                    if (published.size() >= expected) {
+                        break;
+                    }
+                }
+                Thread.onSpinWait();
+            }
+            return deliver(routingKey);
+        }
+
+        synchronized List<Message> deliver(String routingKey) {
+            List<Message> delivery = new ArrayList<>();
+            for (int i = published.size() - 1; i >= 0; i--) {
+                if (routingKeys.get(i).equals(routingKey)) {
+                    delivery.add(0, published.remove(i));
+                    routingKeys.remove(i);
+                }
+            }
+            delivery.forEach(message -> message.getMessageProperties().setDeliveryTag(nextDeliveryTag++));
+            return delivery;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Roll-up buckets driven by explicit request times; summaries are captured as they
+ * are handed to the ingestion pipeline.
+ */
+class AuditRollupServiceTest {
+
+    private static final LocalDateTime MINUTE = LocalDateTime.of(2024, 3, 1, 10, 15);
+
+    private final AuditIngestionService ingestionService = mock(AuditIngestionService.class);
+    private AuditRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        rollupService = new AuditRollupService(ingestionService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(rollupService, "enabled", true);
+        ReflectionTestUtils.setField(rollupService, "endpointPatterns", List.of("/api/users/**"));
+        ReflectionTestUtils.setField(rollupService, "methods", List.of("GET"));
+        ReflectionTestUtils.setField(rollupService, "maxBuckets", 100);
+        rollupService.init();
+    }
+
+    @Test
+    void disabledByDefault() {
+        AuditRollupService defaults = new AuditRollupService(ingestionService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(defaults, "endpointPatterns", List.of("/api/users/**"));
+        ReflectionTestUtils.setField(defaults, "methods", List.of("GET"));
+
+        assertFalse(defaults.isRolledUp("/api/users", "GET", 200));
+    }
+
+    @Test
+    void onlySuccessfulMatchingRequestsAreRolledUp() {
+        assertTrue(rollupService.isRolledUp("/api/users/42", "GET", 200));
+        assertFalse(rollupService.isRolledUp("/api/users/42", "GET", 404));
+        assertFalse(rollupService.isRolledUp("/api/users/42", "POST", 200));
+        assertFalse(rollupService.isRolledUp("/api/audit/logs", "GET", 200));
+    }
+
+    @Test
+    void summaryCarriesTheBucketMinuteAndLatencyStatistics() {
+        rollupService.record("alice", "/api/users", "GET", 200, 10, MINUTE.plusSeconds(5));
+        rollupService.record("alice", "/api/users", "GET", 200, 30, MINUTE.plusSeconds(40));
+        rollupService.record("alice", "/api/users", "GET", 200, 20, MINUTE.plusSeconds(59));
+
+        rollupService.flush(MINUTE.plusMinutes(1));
+
+        List<AuditLog> summaries = submitted();
+        assertEquals(1, summaries.size());
+        AuditLog summary = summaries.get(0);
+        assertEquals(AuditLog.ACTION_DATA_ACCESS_ROLLUP, summary.getAction());
+        assertEquals(MINUTE, summary.getTimestamp());
+        assertEquals(3, summary.getEventCount());
+        assertEquals(10L, summary.getLatencyMinMs());
+        assertEquals(30L, summary.getLatencyMaxMs());
+        assertEquals(60L, summary.getLatencySumMs());
+        assertEquals(20L, summary.getExecutionTimeMs());
+    }
+
+    @Test
+    void requestsAreBucketedPerUserStatusAndMinute() {
+        rollupService.record("alice", "/api/users", "GET", 200, 5, MINUTE);
+        rollupService.record("alice", "/api/users", "GET", 200, 5, MINUTE.plusSeconds(30));
+        rollupService.record("alice", "/api/users", "GET", 304, 5, MINUTE);
+        rollupService.record("bob", "/api/users", "GET", 200, 5, MINUTE);
+        rollupService.record("alice", "/api/users", "GET", 200, 5, MINUTE.plusMinutes(1));
+
+        rollupService.flush(MINUTE.plusMinutes(2));
+
+        List<AuditLog> summaries = submitted();
+        summaries.sort(Comparator.comparing(AuditLog::getTimestamp)
+            .thenComparing(AuditLog::getUsername)
+            .thenComparing(AuditLog::getResponseStatus));
+        assertEquals(4, summaries.size());
+        assertEquals(List.of(2, 1, 1, 1), summaries.stream().map(AuditLog::getEventCount).toList());
+        assertEquals(List.of(MINUTE, MINUTE, MINUTE, MINUTE.plusMinutes(1)),
+            summaries.stream().map(AuditLog::getTimestamp).toList());
+    }
+
+    @Test
+    void openMinuteIsNotFlushedUntilItCloses() {
+        rollupService.record("alice", "/api/users", "GET", 200, 5, MINUTE.plusSeconds(10));
+
+        rollupService.flush(MINUTE);
+        verify(ingestionService, never()).submit(any());
+
+        rollupService.record("alice", "/api/users", "GET", 200, 5, MINUTE.plusSeconds(20));
+        rollupService.flush(MINUTE.plusMinutes(1));
+
+        List<AuditLog> summaries = submitted();
+        assertEquals(1, summaries.size());
+        assertEquals(2, summaries.get(0).getEventCount());
+    }
+
+    @Test
+    void bucketCapSendsOverflowToIndividualRows() {
+        ReflectionTestUtils.setField(rollupService, "maxBuckets", 1);
+
+        assertTrue(rollupService.record("alice", "/api/users", "GET", 200, 5, MINUTE));
+        assertFalse(rollupService.record("bob", "/api/users", "GET", 200, 5, MINUTE));
+        // Existing buckets keep counting
+        assertTrue(rollupService.record("alice", "/api/users", "GET", 200, 5, MINUTE));
+    }
+
+    private List<AuditLog> submitted() {
+        ArgumentCaptor<AuditLog> captor = ArgumentCaptor.forClass(AuditLog.class);
+        verify(ingestionService, atLeastOnce()).submit(captor.capture());
+        return new ArrayList<>(captor.getAllValues());
+    }
+}
@@ -0,0 +1,163 @@
+package com.samap.service;
+
+import com.samap.model.AuditDictionaryEntry.Kind;
+import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
+import com.samap.model.User;
+import com.samap.repository.AuditLogRepository;
+import com.samap.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Ranking, matching and paging of the indexed search query on H2, which runs the same
+ * SQL without the trigram indexes. Whether PostgreSQL uses the indexes, and so the
+ * latency of a search, is not covered.
+ */
+@DataJpaTest
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class, AuditSearchService.class,
+    PostgresIndexBuilder.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class AuditSearchServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    @Autowired
+    private AuditSearchService searchService;
+
+    @Autowired
+    private AuditDictionaryService dictionaryService;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("Alice");
+        user.setEmail("alice@example.com");
+        user.setPassword("password123");
+        userRepository.save(user);
+    }
+
+    @Test
+    void exactMatchesRankAbovePrefixAboveSubstringAndRecencyWithinATier() {
+        save("alicebob", "10.0.0.5", null, 0);
+        save("alice", "10.0.0.1", null, 1);
+        save("malice", "10.0.0.2", null, 2);
+        save("Alice", "10.0.0.3", null, 5);
+        save("bob", "10.0.0.4", "ALICE_FILES", 3);
+        save("bob", "10.0.0.6", "REPORTS", 4);
+
+        List<String> hits = usernames(searchService.search("alice", PageRequest.of(0, 10)));
+
+        // Exact (either case), then prefix, then substring and dictionary matches, newest first
+        assertEquals(List.of("alice", "Alice", "alicebob", "malice", "bob"), hits);
+    }
+
+    @Test
+    void exactTierIgnoresTheCaseOfTheTerm() {
+        save("alicebob", "10.0.0.5", null, 0);
+        save("alice", "10.0.0.1", null, 1);
+        save("Alice", "10.0.0.3", null, 2);
+
+        assertEquals(List.of("alice", "Alice", "alicebob"), usernames(searchService.search("ALICE", PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void ipAddressesMatchExactlyAndByPrefix() {
+        save("bob", "10.0.0.10", null, 0);
+        save("carol", "10.0.0.1", null, 1);
+        save("dave", "192.168.0.1", null, 2);
+
+        assertEquals(List.of("carol", "bob"), usernames(searchService.search("10.0.0.1", PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void shortTermsOnlyMatchExactly() {
+        save("al", "10.0.0.1", null, 0);
+        save("alice", "10.0.0.2", null, 1);
+        save("sal", "10.0.0.3", "AL", 2);
+
+        assertEquals(List.of("al"), usernames(searchService.search("AL", PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void likeWildcardsInTheTermAreMatchedLiterally() {
+        save("a_bcd", "10.0.0.1", null, 0);
+        save("axbcd", "10.0.0.2", null, 1);
+        save("100%ok", "10.0.0.3", null, 2);
+        save("100xok", "10.0.0.4", null, 3);
+
+        assertEquals(List.of("a_bcd"), usernames(searchService.search("a_b", PageRequest.of(0, 10))));
+        assertEquals(List.of("100%ok"), usernames(searchService.search("0%o", PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void dictionaryLookupTreatsWildcardsLiterally() {
+        dictionaryService.intern(Kind.RESOURCE, "REPORT_X");
+        dictionaryService.intern(Kind.RESOURCE, "REPORTAX");
+
+        assertEquals(List.of("REPORT_X"), dictionaryService.findValuesContaining(Kind.RESOURCE, "t_x", 10));
+        assertEquals(1, dictionaryService.findIdsContaining(Kind.RESOURCE, "t_x", 10).size());
+    }
+
+    @Test
+    void pagesThroughTiersWithAnExactTotal() {
+        save("alice", "10.0.0.1", null, 0);
+        save("alice", "10.0.0.1", null, 1);
+        save("alicebob", "10.0.0.2", null, 2);
+        save("malice", "10.0.0.3", null, 3);
+        save("malice", "10.0.0.3", null, 4);
+
+        Page<AuditLogSummary> first = searchService.search("alice", PageRequest.of(0, 2));
+        Page<AuditLogSummary> last = searchService.search("alice", PageRequest.of(2, 2));
+
+        assertEquals(5, first.getTotalElements());
+        assertEquals(List.of("alice", "alice"), usernames(first));
+        assertEquals(5, last.getTotalElements());
+        assertEquals(List.of("malice"), usernames(last));
+    }
+
+    @Test
+    void blankTermFindsNothing() {
+        save("alice", "10.0.0.1", null, 0);
+
+        assertFalse(searchService.search("  ", PageRequest.of(0, 10)).hasContent());
+    }
+
+    private void save(String username, String ipAddress, String resource, int minutesAgo) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setResource(resource);
+        auditLog.setIpAddress(ipAddress);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(NOW.minusMinutes(minutesAgo));
+        auditLogRepository.save(auditLog);
+        entityManager.flush();
+    }
+
+    private static List<String> usernames(Page<AuditLogSummary> page) {
+        return page.getContent().stream().map(AuditLogSummary::getUsername).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
+import com.samap.repository.AuditLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Offset pages merging database rows with archive segments. The database is an
+ * in-memory list behind the mocked summary query; the archive is real segment files.
+ */
+class AuditServiceArchiveMergeTest {
+
+    private static final Comparator<AuditLog> NEWEST_FIRST =
+        Comparator.comparing(AuditLog::getTimestamp).thenComparing(AuditLog::getId).reversed();
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    @TempDir
+    Path archiveDir;
+
+    private final AuditLogRepository auditLogRepository = mock(AuditLogRepository.class);
+    private final List<AuditLog> database = new ArrayList<>();
+    private AuditArchiveService archiveService;
+    private AuditService auditService;
+
+    @BeforeEach
+    void setUp() {
+        archiveService = new AuditArchiveService(auditLogRepository, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(archiveService, "directory", archiveDir.toString());
+        ReflectionTestUtils.setField(archiveService, "maxResults", 5);
+
+        auditService = new AuditService(auditLogRepository, mock(RiskAssessmentService.class),
+            mock(AuditIngestionService.class), mock(AuditPartitionService.class), archiveService,
+            mock(AuditDictionaryService.class), mock(AuditRollupService.class), mock(AuditSearchService.class),
+            mock(AuditActivityRollupService.class), mock(HeavyHitterService.class), mock(DistinctCountService.class),
+            mock(SecurityMonitoringService.class));
+        ReflectionTestUtils.setField(auditService, "maxArchiveOffsetRows", 50);
+
+        when(auditLogRepository.findSummariesByUsername(eq("alice"), any())).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(1);
+            List<AuditLogSummary> rows = database.stream()
+                .sorted(NEWEST_FIRST)
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .map(AuditLogSummary::of)
+                .toList();
+            return new PageImpl<>(rows, pageable, database.size());
+        });
+    }
+
+    @Test
+    void pagesInterleaveBothTiersAndCountEveryArchivedRow() throws Exception {
+        // Database rows on even minutes, 20 archived rows on odd minutes and before them
+        for (int i = 0; i < 5; i++) {
+            database.add(row(100 + i, T0.plusMinutes(2L * i)));
+        }
+        List<AuditLog> archived = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            archived.add(row(200 + i, T0.plusMinutes(2L * i + 1)));
+        }
+        for (int i = 0; i < 15; i++) {
+            archived.add(row(300 + i, T0.minusMinutes(15 - i)));
+        }
+        // Archived but not yet deleted from the database: listed and counted once
+        archived.add(row(104, T0.plusMinutes(8)));
+        writeSegment(archived);
+        archiveService.init();
+
+        Page<AuditLogSummary> first = auditService.getAuditLogsByUsername("alice", PageRequest.of(0, 4));
+        Page<AuditLogSummary> third = auditService.getAuditLogsByUsername("alice", PageRequest.of(2, 4));
+
+        assertEquals(List.of(204L, 104L, 203L, 103L), ids(first));
+        assertEquals(List.of(200L, 100L, 314L, 313L), ids(third));
+        // Larger than the 5 rows an archive read is capped at
+        assertEquals(25, first.getTotalElements());
+        assertEquals(7, first.getTotalPages());
+    }
+
+    @Test
+    void pagesPastTheOffsetWindowAreRejectedBeforeAnyQuery() throws Exception {
+        writeSegment(List.of(row(1, T0)));
+        archiveService.init();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> auditService.getAuditLogsByUsername("alice", PageRequest.of(10, 5)));
+
+        assertTrue(e.getMessage().contains("/cursor"));
+        verify(auditLogRepository, never()).findSummariesByUsername(any(), any());
+    }
+
+    @Test
+    void withoutArchivedRowsTheDatabaseIsPagedDirectly() {
+        for (int i = 0; i < 3; i++) {
+            database.add(row(100 + i, T0.plusMinutes(i)));
+        }
+        archiveService.init();
+
+        Page<AuditLogSummary> deep = auditService.getAuditLogsByUsername("alice", PageRequest.of(1_000, 2_000));
+
+        assertEquals(List.of(), ids(deep));
+        verify(auditLogRepository).findSummariesByUsername("alice", PageRequest.of(1_000, 2_000));
+    }
+
+    private void writeSegment(List<AuditLog> rows) throws Exception {
+        List<AuditLog> ordered = new ArrayList<>(rows);
+        ordered.sort(NEWEST_FIRST.reversed());
+        AuditArchiveSegment.write(archiveDir.resolve("a.seg"), ordered);
+    }
+
+    private static List<Long> ids(Page<AuditLogSummary> page) {
+        return page.getContent().stream().map(AuditLogSummary::getId).toList();
+    }
+
+    private static AuditLog row(long id, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setUsername("alice");
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+}
@@ -0,0 +1,165 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.model.AuditLogSummary;
+import com.samap.repository.AuditLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset pages that merge database rows with archive segments, walked to the end. The
+ * database is an in-memory list behind the mocked keyset query; the archive is real
+ * segment files.
+ */
+class AuditServiceKeysetArchiveTest {
+
+    private static final Comparator<AuditLog> NEWEST_FIRST =
+        Comparator.comparing(AuditLog::getTimestamp).thenComparing(AuditLog::getId).reversed();
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    @TempDir
+    Path archiveDir;
+
+    private final AuditLogRepository auditLogRepository = mock(AuditLogRepository.class);
+    private final List<AuditLog> database = new ArrayList<>();
+    private AuditArchiveService archiveService;
+    private AuditService auditService;
+
+    @BeforeEach
+    void setUp() {
+        archiveService = new AuditArchiveService(auditLogRepository, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(archiveService, "directory", archiveDir.toString());
+        ReflectionTestUtils.setField(archiveService, "maxResults", 10_000);
+
+        auditService = new AuditService(auditLogRepository, mock(RiskAssessmentService.class),
+            mock(AuditIngestionService.class), mock(AuditPartitionService.class), archiveService,
+            mock(AuditDictionaryService.class), mock(AuditRollupService.class), mock(AuditSearchService.class),
+            mock(AuditActivityRollupService.class), mock(HeavyHitterService.class), mock(DistinctCountService.class),
+            mock(SecurityMonitoringService.class));
+
+        when(auditLogRepository.findByUsernameAfter(eq("alice"), any(), anyLong(), any())).thenAnswer(invocation -> {
+            AuditCursor position = cursor(invocation.getArgument(1), invocation.getArgument(2));
+            Pageable pageable = invocation.getArgument(3);
+            List<AuditLogSummary> rows = database.stream()
+                .filter(position::precedes)
+                .sorted(NEWEST_FIRST)
+                .limit(pageable.getPageSize() + 1L)
+                .map(AuditLogSummary::of)
+                .toList();
+            boolean hasNext = rows.size() > pageable.getPageSize();
+            return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+        });
+    }
+
+    @Test
+    void archivedRowsInterleaveAtThePageBoundaryWithoutGapsOrRepeats() throws Exception {
+        // Database rows every other minute, archived rows in between and a block of older ones
+        for (int i = 0; i < 10; i++) {
+            database.add(row(100 + i, T0.plusMinutes(2L * i)));
+        }
+        List<AuditLog> archived = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            archived.add(row(200 + i, T0.plusMinutes(2L * i + 1)));
+        }
+        for (int i = 0; i < 6; i++) {
+            archived.add(row(300 + i, T0.minusMinutes(10 - i)));
+        }
+        // Archived but not yet deleted from the database: listed once
+        AuditLog both = row(105, T0.plusMinutes(10));
+        archived.add(both);
+        writeSegment("a.seg", archived);
+        archiveService.init();
+
+        List<Long> walked = walk(3);
+
+        List<AuditLog> expected = new ArrayList<>(database);
+        archived.stream().filter(a -> a.getId() != 105).forEach(expected::add);
+        expected.sort(NEWEST_FIRST);
+        assertEquals(expected.stream().map(AuditLog::getId).toList(), walked);
+    }
+
+    @Test
+    void equalTimestampsAcrossTiersAreOrderedById() throws Exception {
+        database.add(row(10, T0));
+        database.add(row(12, T0));
+        writeSegment("a.seg", List.of(row(11, T0), row(13, T0), row(9, T0)));
+        archiveService.init();
+
+        assertEquals(List.of(13L, 12L, 11L, 10L, 9L), walk(2));
+    }
+
+    @Test
+    void archiveReadIsCappedAtThePageSize() throws Exception {
+        List<AuditLog> archived = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            archived.add(row(1000 + i, T0.minusMinutes(40 - i)));
+        }
+        writeSegment("old.seg", archived.subList(0, 20));
+        writeSegment("new.seg", archived.subList(20, 40));
+        archiveService.init();
+
+        List<AuditLog> page = archiveService.find(null, T0, "alice", a -> true, 5);
+
+        assertEquals(List.of(1039L, 1038L, 1037L, 1036L, 1035L), page.stream().map(AuditLog::getId).toList());
+
+        List<Long> walked = walk(5);
+        assertEquals(40, walked.size());
+        assertEquals(1039L, walked.get(0));
+        assertEquals(1000L, walked.get(39));
+    }
+
+    private List<Long> walk(int size) {
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        AuditService.CursorSlice slice;
+        do {
+            slice = auditService.getAuditLogsByUsernameAfter("alice", cursor, size);
+            assertTrue(slice.getSize() <= size);
+            slice.getContent().forEach(row -> walked.add(row.getId()));
+            cursor = slice.getNextCursor();
+            assertTrue(++pages < 100, "paging does not terminate");
+        } while (slice.isHasNext());
+        return walked;
+    }
+
+    private void writeSegment(String name, List<AuditLog> rows) throws Exception {
+        List<AuditLog> ordered = new ArrayList<>(rows);
+        ordered.sort(NEWEST_FIRST.reversed());
+        AuditArchiveSegment.write(archiveDir.resolve(name), ordered);
+    }
+
+    private static AuditCursor cursor(LocalDateTime ts, long id) {
+        AuditLog position = row(id, ts);
+        return AuditCursor.decode(AuditCursor.after(position).encode());
+    }
+
+    private static AuditLog row(long id, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setUsername("alice");
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+}
@@ -0,0 +1,102 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import com.samap.service.RiskAssessmentService.AnomalyAssessment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Failed and high-risk requests logged as security events: action naming, anomaly
+ * evaluation and the hand-off to security monitoring.
+ */
+class AuditServiceSecurityEventTest {
+
+    private final RiskAssessmentService riskAssessmentService = mock(RiskAssessmentService.class);
+    private final AuditIngestionService auditIngestionService = mock(AuditIngestionService.class);
+    private final AuditRollupService auditRollupService = mock(AuditRollupService.class);
+    private final SecurityMonitoringService securityMonitoringService = mock(SecurityMonitoringService.class);
+    private AuditService auditService;
+
+    @BeforeEach
+    void setUp() {
+        auditService = new AuditService(mock(AuditLogRepository.class), riskAssessmentService, auditIngestionService,
+            mock(AuditPartitionService.class), mock(AuditArchiveService.class), mock(AuditDictionaryService.class),
+            auditRollupService, mock(AuditSearchService.class), mock(AuditActivityRollupService.class),
+            mock(HeavyHitterService.class), mock(DistinctCountService.class), securityMonitoringService);
+        when(riskAssessmentService.evaluateAnomaly(any())).thenReturn(new AnomalyAssessment(false, null));
+    }
+
+    @Test
+    void failedAnnotatedRequestIsLoggedAsActionFailed() {
+        when(riskAssessmentService.calculateApiAccessRiskScore(any())).thenReturn(0.2);
+
+        request("USER_DELETE", 404, false);
+
+        AuditLog auditLog = submitted();
+        assertEquals("USER_DELETE_FAILED", auditLog.getAction());
+        assertEquals(AuditLog.ActionStatus.FAILURE, auditLog.getStatus());
+        assertEquals(404, auditLog.getResponseStatus());
+        verify(riskAssessmentService).evaluateAnomaly(auditLog);
+        verify(riskAssessmentService).recordActivity(auditLog);
+        verify(auditRollupService, never()).record(any(), any(), any(), anyInt(), anyLong());
+    }
+
+    @Test
+    void failedRequestWithoutAnActionIsLoggedAsApiError() {
+        when(riskAssessmentService.calculateApiAccessRiskScore(any())).thenReturn(0.2);
+
+        request(null, 500, false);
+
+        assertEquals(AuditLog.ACTION_API_ERROR, submitted().getAction());
+    }
+
+    @Test
+    void highRiskOperationIsRaisedToHighRiskAndMonitored() {
+        when(riskAssessmentService.calculateApiAccessRiskScore(any())).thenReturn(0.1);
+
+        request("MANUAL_SECURITY_SCAN", 200, true);
+
+        AuditLog auditLog = submitted();
+        assertEquals("MANUAL_SECURITY_SCAN", auditLog.getAction());
+        assertEquals(AuditLog.RiskLevel.HIGH, auditLog.getRiskLevel());
+        verify(securityMonitoringService).monitorHighRiskActivity(auditLog);
+        verify(securityMonitoringService, never()).monitorAnomalousActivity(any());
+    }
+
+    @Test
+    void anomalousFailureIsReportedToMonitoring() {
+        when(riskAssessmentService.calculateApiAccessRiskScore(any())).thenReturn(0.2);
+        when(riskAssessmentService.evaluateAnomaly(any())).thenReturn(new AnomalyAssessment(true, "odd hour"));
+
+        request("USER_DELETE", 403, false);
+
+        AuditLog auditLog = submitted();
+        assertTrue(auditLog.getIsAnomaly());
+        assertEquals("odd hour", auditLog.getAnomalyReasons());
+        verify(securityMonitoringService).monitorAnomalousActivity(auditLog);
+        verify(securityMonitoringService, never()).monitorHighRiskActivity(any());
+    }
+
+    private void request(String action, int status, boolean highRisk) {
+        auditService.logRequestSecurityEvent("alice", action, "USER", "/api/users/7", "DELETE", null, status, 12L,
+            "10.0.0.1", "firefox", null, null, null, highRisk);
+    }
+
+    private AuditLog submitted() {
+        ArgumentCaptor<AuditLog> captor = ArgumentCaptor.forClass(AuditLog.class);
+        verify(auditIngestionService).submit(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,146 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Replaying spool segments left by a previous run, with records damaged on disk.
+ */
+class AuditSpoolServiceTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private final AuditLogRepository auditLogRepository = mock(AuditLogRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void intactSegmentIsReplayedAndDeleted() throws IOException {
+        spoolThenStop("alice", "bob", "carol");
+
+        AuditSpoolService spool = start();
+        spool.replay();
+
+        assertEquals(List.of("alice", "bob", "carol"), replayedUsernames());
+        assertEquals(0, discarded());
+        assertEquals(List.of(), files(".corrupt"));
+    }
+
+    @Test
+    void corruptRecordIsSkippedAndLaterRecordsAreStillReplayed() throws IOException {
+        Path segment = spoolThenStop("alice", "bob", "carol");
+        corruptRecord(segment, 1);
+
+        AuditSpoolService spool = start();
+        spool.replay();
+
+        assertEquals(List.of("alice", "carol"), replayedUsernames());
+        assertEquals(1, discarded());
+        assertEquals(List.of(segment.getFileName().toString().replace(".log", ".corrupt")), files(".corrupt"));
+    }
+
+    @Test
+    void tornLastRecordQuarantinesTheSegment() throws IOException {
+        Path segment = spoolThenStop("alice", "bob");
+        corruptRecord(segment, 1);
+
+        AuditSpoolService spool = start();
+        spool.replay();
+        // Nothing left to replay on the next run
+        spool.replay();
+
+        assertEquals(List.of("alice"), replayedUsernames());
+        assertEquals(1, discarded());
+        assertEquals(1, files(".corrupt").size());
+    }
+
+    private Path spoolThenStop(String... usernames) throws IOException {
+        AuditSpoolService spool = start();
+        List<AuditLog> auditLogs = new ArrayList<>();
+        for (String username : usernames) {
+            AuditLog auditLog = new AuditLog();
+            auditLog.setUsername(username);
+            auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+            auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+            auditLog.setTimestamp(LocalDateTime.of(2024, 3, 4, 12, 0));
+            auditLogs.add(auditLog);
+        }
+        spool.append(auditLogs);
+        spool.shutdown();
+        return spoolDir.resolve(files(".log").get(0));
+    }
+
+    private AuditSpoolService start() throws IOException {
+        AuditSpoolService spool = new AuditSpoolService(auditLogRepository, mock(AuditDictionaryService.class),
+            mock(PlatformTransactionManager.class),
+            Jackson2ObjectMapperBuilder.json().build(),
+            meterRegistry);
+        ReflectionTestUtils.setField(spool, "mode", AuditSpoolService.SpoolMode.FALLBACK);
+        ReflectionTestUtils.setField(spool, "directory", spoolDir.toString());
+        ReflectionTestUtils.setField(spool, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(spool, "fsyncPolicy", AuditSpoolService.FsyncPolicy.NEVER);
+        ReflectionTestUtils.setField(spool, "replayBatchSize", 500);
+        spool.start();
+        return spool;
+    }
+
+    /**
+     * Flip a payload byte of the index-th record
+     */
+    private static void corruptRecord(Path segment, int index) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long position = 0;
+            for (int i = 0; i < index; i++) {
+                file.seek(position);
+                position += 8 + file.readInt();
+            }
+            file.seek(position + 8 + 5);
+            int value = file.read();
+            file.seek(position + 8 + 5);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> replayedUsernames() {
+        ArgumentCaptor<List<AuditLog>> batches = ArgumentCaptor.forClass(List.class);
+        verify(auditLogRepository, atLeastOnce()).saveAll(batches.capture());
+        List<String> usernames = new ArrayList<>();
+        batches.getAllValues().forEach(batch -> batch.forEach(auditLog -> usernames.add(auditLog.getUsername())));
+        return usernames;
+    }
+
+    private double discarded() {
+        return meterRegistry.counter("samap_audit_spool_discarded_total").count();
+    }
+
+    private List<String> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith("segment-") && name.endsWith(suffix))
+                .sorted()
+                .toList();
+        }
+    }
+}
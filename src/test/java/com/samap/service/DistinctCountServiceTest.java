@@ -0,0 +1,83 @@
+package com.samap.service;
+
+import com.samap.service.DistinctCountService.Dimension;
+import com.samap.service.DistinctCountService.DistinctCount;
+import com.samap.service.DistinctCountService.Window;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local distinct counts and publishing the changed sketches to a mocked Redis.
+ */
+class DistinctCountServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private DistinctCountService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<RedisTemplate<String, Object>> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(redisTemplate);
+        when(provider.getObject()).thenReturn(redisTemplate);
+
+        service = new DistinctCountService(provider);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "precision", 12);
+        ReflectionTestUtils.setField(service, "nodeId", "node-a");
+        service.init();
+    }
+
+    @Test
+    void countsDistinctValuesPerDimension() {
+        for (int i = 0; i < 300; i++) {
+            service.record("user-" + (i % 40), "10.0.0." + (i % 7), i % 2 == 0 ? "curl" : null);
+        }
+
+        assertEquals(40, service.getDistinct(Dimension.USERNAME, Window.FIVE_MINUTES).getCount());
+        assertEquals(7, service.getDistinct(Dimension.IP_ADDRESS, Window.ONE_HOUR).getCount());
+        DistinctCount agents = service.getDistinct(Dimension.USER_AGENT, Window.ONE_DAY);
+        assertEquals(1, agents.getCount());
+        assertEquals(1, agents.getNodes());
+    }
+
+    @Test
+    void failedPublishIsRetriedOnTheNextFlush() {
+        ReflectionTestUtils.setField(service, "redisEnabled", true);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+            .thenThrow(new RedisConnectionFailureException("connection refused"))
+            .thenReturn(null);
+        service.record("alice", "10.0.0.1", "curl");
+
+        service.flushToRedis();
+        service.flushToRedis();
+        // Published now; nothing changed since
+        service.flushToRedis();
+
+        verify(redisTemplate, times(2)).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void successfulPublishIsNotRepeated() {
+        ReflectionTestUtils.setField(service, "redisEnabled", true);
+        service.record("alice", "10.0.0.1", "curl");
+
+        service.flushToRedis();
+        service.flushToRedis();
+
+        verify(redisTemplate, times(1)).execute(any(RedisCallback.class));
+    }
+}
@@ -0,0 +1,98 @@
+package com.samap.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Estimates checked against known cardinalities; random 64-bit hashes go through the
+ * {@code addHash} seam so the estimator is tested apart from the string hash.
+ */
+class HyperLogLogTest {
+
+    @Test
+    void estimateStaysWithinThreeStandardErrors() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int cardinality : new int[] {1_000, 20_000, 200_000}) {
+            HyperLogLog sketch = new HyperLogLog(14);
+            for (int i = 0; i < cardinality; i++) {
+                sketch.addHash(random.nextLong());
+            }
+            assertWithin(cardinality, sketch.estimate(), 3 * sketch.standardError());
+        }
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 50; i++) {
+            sketch.add("user-" + i);
+        }
+        assertEquals(50, sketch.estimate());
+        assertEquals(0, new HyperLogLog(14).estimate());
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 5_000; i++) {
+                sketch.add("10.0." + (i / 256) + "." + (i % 256));
+            }
+        }
+        assertWithin(5_000, sketch.estimate(), 3 * sketch.standardError());
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog first = new HyperLogLog(14);
+        HyperLogLog second = new HyperLogLog(14);
+        // 30k distinct values, 10k of them seen by both sketches
+        for (int i = 0; i < 20_000; i++) {
+            first.add("user-" + i);
+        }
+        for (int i = 10_000; i < 30_000; i++) {
+            second.add("user-" + i);
+        }
+
+        HyperLogLog union = first.copy();
+        union.merge(second);
+
+        assertWithin(30_000, union.estimate(), 3 * union.standardError());
+        // Merging is idempotent and order-independent
+        HyperLogLog reverse = second.copy();
+        reverse.merge(first);
+        reverse.merge(first);
+        assertArrayEquals(union.toBytes(), reverse.toBytes());
+    }
+
+    @Test
+    void serializedRegistersRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 1_000; i++) {
+            sketch.add("agent-" + i);
+        }
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertEquals(10, restored.getPrecision());
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    @Test
+    void sketchesOfDifferentPrecisionDoNotMerge() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(14).merge(new HyperLogLog(12)));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[100]));
+    }
+
+    private static void assertWithin(long expected, long estimate, double relativeError) {
+        assertTrue(Math.abs(estimate - expected) <= expected * relativeError,
+            "estimate " + estimate + " for " + expected + " is off by more than " + relativeError * 100 + "%");
+    }
+}
@@ -0,0 +1,80 @@
+package com.samap.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Index builds routed through a mocked builder: superseded indexes go only once every
+ * replacement is valid, and only the portable definitions are used off PostgreSQL.
+ */
+class PostgresIndexServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PostgresIndexBuilder indexBuilder = mock(PostgresIndexBuilder.class);
+    private final PostgresIndexService service = new PostgresIndexService(jdbcTemplate, indexBuilder);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "enabled", true);
+    }
+
+    @Test
+    void supersededIndexesAreDroppedOnceEveryIndexIsValid() {
+        when(indexBuilder.isPostgres()).thenReturn(true);
+        when(indexBuilder.ensureIndex(anyString(), anyString(), anyString())).thenReturn(true);
+
+        service.ensureIndexes();
+
+        verify(indexBuilder, times(PostgresIndexService.INDEXES.size())).ensureIndex(anyString(), anyString(), anyString());
+        verify(indexBuilder).dropIndex("idx_audit_user");
+        verify(indexBuilder).dropIndex("idx_audit_timestamp");
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void supersededIndexesAreKeptWhileABuildIsInvalidOrFails() {
+        when(indexBuilder.isPostgres()).thenReturn(true);
+        when(indexBuilder.ensureIndex(anyString(), anyString(), anyString())).thenReturn(true);
+        when(indexBuilder.ensureIndex(eq("idx_audit_user_ts"), anyString(), anyString())).thenReturn(false);
+        when(indexBuilder.ensureIndex(eq("idx_audit_ts_id"), anyString(), anyString()))
+            .thenThrow(new IllegalStateException("canceling statement due to lock timeout"));
+
+        service.ensureIndexes();
+
+        // The failure does not stop the remaining builds
+        verify(indexBuilder, times(PostgresIndexService.INDEXES.size())).ensureIndex(anyString(), anyString(), anyString());
+        verify(indexBuilder, never()).dropIndex(anyString());
+    }
+
+    @Test
+    void otherDatabasesGetThePortableIndexesDirectly() {
+        when(indexBuilder.isPostgres()).thenReturn(false);
+
+        service.ensureIndexes();
+
+        verify(jdbcTemplate).execute("CREATE INDEX IF NOT EXISTS idx_audit_user_ts ON audit_logs (username, timestamp, id)");
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE INDEX IF NOT EXISTS idx_audit_high_risk_ts"));
+        verify(indexBuilder, never()).ensureIndex(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void disabledDoesNothing() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        service.ensureIndexes();
+
+        verifyNoInteractions(indexBuilder, jdbcTemplate);
+    }
+}
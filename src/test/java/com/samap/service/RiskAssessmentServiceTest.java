@@ -0,0 +1,84 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.model.User;
+import com.samap.repository.AuditLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Login risk scored from the in-memory windows and a real behaviour profile; the
+ * repository and roll-ups are never consulted.
+ */
+class RiskAssessmentServiceTest {
+
+    private static final String IP = "10.0.0.1";
+    private static final String USER_AGENT = "firefox";
+
+    private RiskAssessmentService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        UserBehaviorProfileService profiles = new UserBehaviorProfileService(mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(profiles, "enabled", true);
+        ReflectionTestUtils.setField(profiles, "maxUsers", 100);
+        ReflectionTestUtils.setField(profiles, "recentIps", 10);
+        ReflectionTestUtils.setField(profiles, "recentUserAgents", 5);
+        profiles.init();
+
+        service = new RiskAssessmentService(mock(AuditLogRepository.class), mock(AuditActivityRollupService.class),
+            profiles);
+    }
+
+    @Test
+    void failedLoginsCountWhateverTheUsernameCase() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 12; i++) {
+            login("alice", AuditLog.ActionStatus.SUCCESS, now);
+        }
+        login("Alice", AuditLog.ActionStatus.FAILURE, now);
+        login("ALICE", AuditLog.ActionStatus.FAILURE, now);
+        login("alice", AuditLog.ActionStatus.FAILURE, now);
+
+        // 3 failures score 0.3 of the failed login weight
+        assertEquals(0.09, service.calculateLoginRiskScore(user("aLiCe"), IP, USER_AGENT), 1e-9);
+    }
+
+    @Test
+    void loginIsUnusualOnlyWhenTheUserRarelyLogsInAroundThisHour() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 12; i++) {
+            login("alice", AuditLog.ActionStatus.SUCCESS, now);
+            login("bob", AuditLog.ActionStatus.SUCCESS, now.plusHours(12));
+        }
+
+        // None of bob's logins fall near this hour
+        assertEquals(0.0, service.calculateLoginRiskScore(user("alice"), IP, USER_AGENT), 1e-9);
+        assertEquals(0.08, service.calculateLoginRiskScore(user("bob"), IP, USER_AGENT), 1e-9);
+    }
+
+    private void login(String username, AuditLog.ActionStatus status, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(username);
+        auditLog.setAction(status == AuditLog.ActionStatus.SUCCESS ? AuditLog.ACTION_LOGIN : AuditLog.ACTION_LOGIN_FAILED);
+        auditLog.setStatus(status);
+        auditLog.setIpAddress(IP);
+        auditLog.setUserAgent(USER_AGENT);
+        auditLog.setTimestamp(timestamp);
+        service.recordActivity(auditLog);
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        return user;
+    }
+}
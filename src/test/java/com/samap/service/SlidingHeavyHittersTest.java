@@ -0,0 +1,121 @@
+package com.samap.service;
+
+import com.samap.service.SlidingHeavyHitters.Estimate;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Top-K estimates driven by explicit clock values: a 60 second window of 6 slices of
+ * 10 seconds each.
+ */
+class SlidingHeavyHittersTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void countsAreExactWhileTheSliceHasRoom() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(Duration.ofSeconds(60), 6, 10);
+        hitters.add("alice", 3, T0);
+        hitters.add("bob", 1, T0);
+        hitters.add("alice", 2, T0 + 15_000);
+        hitters.add("carol", 4, T0 + 15_000);
+
+        assertEquals(List.of(new Estimate("alice", 5, 0), new Estimate("carol", 4, 0)), hitters.top(2, T0 + 20_000));
+    }
+
+    @Test
+    void newKeyInAFullSliceInheritsTheMinimumAsError() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(Duration.ofSeconds(60), 6, 2);
+        hitters.add("alice", 5, T0);
+        hitters.add("bob", 2, T0);
+        hitters.add("carol", 1, T0);
+
+        // carol replaced bob (2) and may have had anywhere between 1 and 3 events
+        assertEquals(List.of(new Estimate("alice", 5, 0), new Estimate("carol", 3, 2)), hitters.top(5, T0));
+    }
+
+    @Test
+    void estimatesBoundTheTrueCountAndHeavyKeysAreAlwaysTracked() {
+        int capacity = 20;
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(Duration.ofSeconds(60), 6, capacity);
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 20_000; i++) {
+            // A few heavy users over a long tail of occasional ones
+            String key = random.nextInt(4) == 0 ? "heavy-" + random.nextInt(3) : "user-" + random.nextInt(2_000);
+            long now = T0 + random.nextInt(60_000);
+            hitters.add(key, 1, now);
+            actual.merge(key, 1L, Long::sum);
+            total++;
+        }
+
+        List<Estimate> top = hitters.top(capacity * 6, T0 + 59_999);
+        for (Estimate estimate : top) {
+            long count = actual.getOrDefault(estimate.key(), 0L);
+            assertTrue(estimate.count() >= count, estimate + " under-estimates " + count);
+            assertTrue(estimate.count() - estimate.error() <= count, estimate + " error does not cover " + count);
+        }
+        for (Map.Entry<String, Long> entry : actual.entrySet()) {
+            if (entry.getValue() > total / capacity) {
+                assertTrue(top.stream().anyMatch(estimate -> estimate.key().equals(entry.getKey())),
+                    entry.getKey() + " with " + entry.getValue() + " events is not tracked");
+            }
+        }
+        assertEquals(List.of("heavy-0", "heavy-1", "heavy-2"),
+            top.subList(0, 3).stream().map(Estimate::key).sorted().toList());
+    }
+
+    @Test
+    void keyMissingFromAFullSliceIsCreditedItsFloor() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(Duration.ofSeconds(60), 6, 2);
+        hitters.add("alice", 4, T0);
+        hitters.add("bob", 3, T0);
+        hitters.add("carol", 7, T0 + 10_000);
+
+        // carol was not in the first (full) slice but could have had up to bob's 3 there
+        Estimate carol = hitters.top(3, T0 + 10_000).get(0);
+        assertEquals(new Estimate("carol", 10, 3), carol);
+    }
+
+    @Test
+    void slicesExpireAsTheWindowMoves() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(Duration.ofSeconds(60), 6, 10);
+        hitters.add("alice", 1, T0);
+        hitters.add("alice", 1, T0 + 30_000);
+        hitters.add("bob", 1, T0 + 30_000);
+
+        assertEquals(new Estimate("alice", 2, 0), hitters.top(1, T0 + 59_999).get(0));
+        assertEquals(new Estimate("alice", 1, 0), hitters.top(1, T0 + 60_000).get(0));
+        assertTrue(hitters.top(5, T0 + 90_000).isEmpty());
+    }
+
+    @Test
+    void reusedSliceStartsEmpty() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(Duration.ofSeconds(60), 6, 10);
+        hitters.add("alice", 5, T0);
+
+        // Same ring slot one full window later
+        hitters.add("bob", 1, T0 + 60_000);
+
+        assertEquals(List.of(new Estimate("bob", 1, 0)), hitters.top(5, T0 + 60_000));
+    }
+
+    @Test
+    void nullKeysAndNonPositiveWeightsAreIgnored() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(Duration.ofSeconds(60), 6, 10);
+        hitters.add(null, 1, T0);
+        hitters.add("alice", 0, T0);
+        hitters.add("alice", -3, T0);
+
+        assertTrue(hitters.top(5, T0).isEmpty());
+    }
+}
@@ -0,0 +1,129 @@
+package com.samap.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sliding window counts driven by explicit clock values: a 60 second window of
+ * 6 buckets of 10 seconds each.
+ */
+class SlidingWindowCounterTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(Duration.ofSeconds(60), 6, 100);
+
+    @Test
+    void countsEventsPerKeyInsideTheWindow() {
+        assertEquals(1, counter.increment("alice", T0));
+        assertEquals(2, counter.increment("alice", T0 + 15_000));
+        counter.increment("bob", T0 + 15_000);
+
+        assertEquals(2, counter.count("alice", T0 + 20_000));
+        assertEquals(1, counter.count("bob", T0 + 20_000));
+        assertEquals(0, counter.count("carol", T0 + 20_000));
+    }
+
+    @Test
+    void eventsExpireBucketByBucket() {
+        counter.increment("alice", T0);
+        counter.increment("alice", T0 + 30_000);
+
+        assertEquals(2, counter.count("alice", T0 + 59_999));
+        assertEquals(1, counter.count("alice", T0 + 60_000));
+        assertEquals(1, counter.count("alice", T0 + 89_999));
+        assertEquals(0, counter.count("alice", T0 + 90_000));
+    }
+
+    @Test
+    void reusedBucketStartsFromZero() {
+        counter.increment("alice", T0);
+        counter.increment("alice", T0);
+
+        // Same ring slot one full window later
+        assertEquals(1, counter.increment("alice", T0 + 60_000));
+    }
+
+    @Test
+    void purgeDropsOnlyKeysIdleForTheWholeWindow() {
+        counter.increment("idle", T0);
+        counter.increment("active", T0 + 50_000);
+
+        counter.purgeExpired(T0 + 65_000);
+
+        assertEquals(1, counter.size());
+        assertEquals(1, counter.count("active", T0 + 65_000));
+    }
+
+    @Test
+    void keyCapPurgesIdleKeysBeforeEvictingActiveOnes() {
+        SlidingWindowCounter bounded = new SlidingWindowCounter(Duration.ofSeconds(60), 6, 10);
+        for (int i = 0; i < 5; i++) {
+            bounded.increment("idle-" + i, T0);
+        }
+        for (int i = 0; i < 5; i++) {
+            bounded.increment("active-" + i, T0 + 60_000);
+        }
+
+        bounded.increment("new", T0 + 70_000);
+
+        assertEquals(6, bounded.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1, bounded.count("active-" + i, T0 + 70_000));
+        }
+    }
+
+    @Test
+    void keyCapHoldsWhenEveryKeyIsActive() {
+        SlidingWindowCounter bounded = new SlidingWindowCounter(Duration.ofSeconds(60), 6, 10);
+        for (int i = 0; i < 25; i++) {
+            bounded.increment("key-" + i, T0);
+        }
+
+        assertTrue(bounded.size() <= 10);
+        assertEquals(1, bounded.count("key-24", T0));
+    }
+
+    @Test
+    void keySprayEvictsTheQuietestKeysAndKeepsTheActiveOne() {
+        SlidingWindowCounter bounded = new SlidingWindowCounter(Duration.ofSeconds(60), 6, 100);
+        for (int i = 0; i < 5; i++) {
+            bounded.increment("target", T0 + i * 1_000);
+        }
+
+        // Throwaway keys, all inside the window and newer than the target's last event
+        for (int i = 0; i < 5_000; i++) {
+            bounded.increment("spray-" + i, T0 + 10_000 + i);
+        }
+
+        assertTrue(bounded.size() <= 100);
+        assertEquals(5, bounded.count("target", T0 + 20_000));
+    }
+
+    @Test
+    void keyCapEvictsTheLeastRecentlyUpdatedAmongEquallyQuietKeys() {
+        SlidingWindowCounter bounded = new SlidingWindowCounter(Duration.ofSeconds(60), 6, 10);
+        bounded.increment("oldest", T0);
+        for (int i = 0; i < 9; i++) {
+            bounded.increment("key-" + i, T0 + 20_000);
+        }
+
+        bounded.increment("new", T0 + 30_000);
+
+        assertEquals(0, bounded.count("oldest", T0 + 30_000));
+        for (int i = 0; i < 9; i++) {
+            assertEquals(1, bounded.count("key-" + i, T0 + 30_000));
+        }
+    }
+
+    @Test
+    void nullKeysAreIgnored() {
+        assertEquals(0, counter.increment(null, T0));
+        assertEquals(0, counter.count(null, T0));
+        assertEquals(0, counter.size());
+    }
+}
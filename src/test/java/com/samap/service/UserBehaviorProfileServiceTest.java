@@ -0,0 +1,164 @@
+package com.samap.service;
+
+import com.samap.service.UserBehaviorProfileService.Profile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local profiles, the LRU bound and rebuilding a profile from a mocked Redis hash.
+ */
+class UserBehaviorProfileServiceTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 3, 4, 12, 0);
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+    private final RedisHashCommands hashCommands = mock(RedisHashCommands.class);
+    private UserBehaviorProfileService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<RedisTemplate<String, Object>> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(redisTemplate);
+        when(provider.getObject()).thenReturn(redisTemplate);
+        when(connection.hashCommands()).thenReturn(hashCommands);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+            .thenAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+
+        service = new UserBehaviorProfileService(provider);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxUsers", 100);
+        ReflectionTestUtils.setField(service, "recentIps", 2);
+        ReflectionTestUtils.setField(service, "recentUserAgents", 2);
+        ReflectionTestUtils.setField(service, "ttlDays", 90);
+        ReflectionTestUtils.setField(service, "refreshMs", 60_000L);
+        service.init();
+    }
+
+    @Test
+    void keepsTheMostRecentIpsAndUserAgentsPerUserCaseInsensitively() {
+        service.recordLogin("Alice", "10.0.0.1", "firefox", NOON);
+        service.recordLogin("alice", "10.0.0.2", "firefox", NOON);
+        service.recordLogin("ALICE", "10.0.0.1", "curl", NOON);
+        service.recordLogin("alice", "10.0.0.3", null, NOON);
+
+        Profile profile = service.getProfile("aLiCe");
+        // 10.0.0.1 was seen again after 10.0.0.2, so 10.0.0.2 is the one dropped
+        assertTrue(profile.hasIp("10.0.0.1"));
+        assertFalse(profile.hasIp("10.0.0.2"));
+        assertTrue(profile.hasIp("10.0.0.3"));
+        assertTrue(profile.hasUserAgent("firefox"));
+        assertTrue(profile.hasUserAgent("curl"));
+        assertEquals(4, profile.getLogins());
+        assertEquals(1, service.getProfileCount());
+    }
+
+    @Test
+    void leastRecentlyUsedProfileIsEvicted() {
+        ReflectionTestUtils.setField(service, "maxUsers", 2);
+        service.recordLogin("alice", "10.0.0.1", "firefox", NOON);
+        service.recordLogin("bob", "10.0.0.2", "firefox", NOON);
+        // Reading alice makes bob the eldest
+        service.getProfile("alice");
+        service.recordLogin("carol", "10.0.0.3", "firefox", NOON);
+
+        assertEquals(2, service.getProfileCount());
+        assertEquals(1, service.getProfile("alice").getLogins());
+        assertFalse(service.getProfile("bob").hasIp("10.0.0.2"));
+    }
+
+    @Test
+    void hourShareCountsTheHourAndItsNeighboursAcrossMidnight() {
+        for (int hour : new int[] {23, 23, 0, 1, 12, 12, 12, 12, 12, 12}) {
+            service.recordLogin("alice", "10.0.0.1", "firefox", NOON.withHour(hour));
+        }
+        Profile profile = service.getProfile("alice");
+
+        assertEquals(0.4, profile.getHourShare(0), 1e-9);
+        assertEquals(0.3, profile.getHourShare(23), 1e-9);
+        assertEquals(0.6, profile.getHourShare(11), 1e-9);
+        assertEquals(0.0, profile.getHourShare(6), 1e-9);
+        assertEquals(0.0, service.getProfile("nobody").getHourShare(12), 1e-9);
+    }
+
+    @Test
+    void profileIsRebuiltFromTheRedisHashAndOlderValuesAreTrimmed() {
+        ReflectionTestUtils.setField(service, "redisEnabled", true);
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        fields.put(bytes("ip:10.0.0.1"), bytes("1000"));
+        fields.put(bytes("ip:10.0.0.2"), bytes("3000"));
+        fields.put(bytes("ip:10.0.0.3"), bytes("2000"));
+        fields.put(bytes("ua:firefox"), bytes("1000"));
+        fields.put(bytes("hour:9"), bytes("4"));
+        fields.put(bytes("hour:10"), bytes("6"));
+        when(hashCommands.hGetAll(aryEq(bytes("samap:profile:alice")))).thenReturn(fields);
+
+        Profile profile = service.getProfile("Alice");
+
+        assertTrue(profile.hasIp("10.0.0.2"));
+        assertTrue(profile.hasIp("10.0.0.3"));
+        assertFalse(profile.hasIp("10.0.0.1"));
+        assertTrue(profile.hasUserAgent("firefox"));
+        assertEquals(10, profile.getLogins());
+        assertEquals(1.0, profile.getHourShare(10), 1e-9);
+        verify(hashCommands).hDel(aryEq(bytes("samap:profile:alice")), aryEq(bytes("ip:10.0.0.1")));
+        // Fresh enough to be served locally
+        assertSame(profile, service.getProfile("alice"));
+    }
+
+    @Test
+    void loginsArePublishedAsOneFieldPerValue() {
+        ReflectionTestUtils.setField(service, "redisEnabled", true);
+        when(hashCommands.hGetAll(any())).thenReturn(Map.of());
+
+        service.recordLogin("Alice", "10.0.0.1", "firefox", NOON);
+
+        verify(hashCommands).hSet(aryEq(bytes("samap:profile:alice")), aryEq(bytes("ip:10.0.0.1")), any());
+        verify(hashCommands).hSet(aryEq(bytes("samap:profile:alice")), aryEq(bytes("ua:firefox")), any());
+        verify(hashCommands).hIncrBy(aryEq(bytes("samap:profile:alice")), aryEq(bytes("hour:12")), eq(1L));
+        verify(hashCommands, never()).hDel(any(), any());
+    }
+
+    @Test
+    void failingRedisFallsBackToTheLocalProfile() {
+        service.recordLogin("alice", "10.0.0.1", "firefox", NOON);
+        ReflectionTestUtils.setField(service, "redisEnabled", true);
+        when(hashCommands.hGetAll(any())).thenThrow(new RedisConnectionFailureException("connection refused"));
+        when(hashCommands.hSet(any(), any(), any())).thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        service.recordLogin("bob", "10.0.0.2", "firefox", NOON);
+
+        assertTrue(service.getProfile("bob").hasIp("10.0.0.2"));
+        assertTrue(service.getProfile("alice").hasIp("10.0.0.1"));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
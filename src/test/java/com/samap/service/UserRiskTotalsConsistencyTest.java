@@ -0,0 +1,113 @@
+package com.samap.service;
+
+import com.samap.model.AuditLog;
+import com.samap.repository.AuditLogRepository;
+import com.samap.service.RiskAssessmentService.RiskTotals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A user's risk totals read from the activity roll-ups match the same totals computed
+ * from audit_logs, for windows starting at any minute the roll-ups still hold. Rows are
+ * committed, as the roll-ups only change when a transaction does.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({AuditDictionaryService.class, AuditActivityRollupService.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class UserRiskTotalsConsistencyTest {
+
+    private static final AuditLog.RiskLevel[] LEVELS = AuditLog.RiskLevel.values();
+
+    @Autowired
+    private AuditActivityRollupService rollupService;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    @BeforeEach
+    void setUp() {
+        clear();
+        for (int i = 0; i < 120; i++) {
+            // Spread over the last 30 hours, so windows cut through hours and minutes
+            LocalDateTime at = now.minusMinutes(i * 15L + i % 7).minusSeconds(i % 50);
+            save(i % 3 == 0 ? "bob" : "alice", at, LEVELS[i % LEVELS.length], i % 11 == 0,
+                i % 4 == 0 ? null : (i * 13 % 100) / 100.0, i % 10 == 0 ? 3 : null);
+        }
+        // Arrives last but happened 20 hours ago, as a queued or replayed event would
+        save("alice", now.minusHours(20).minusMinutes(3), AuditLog.RiskLevel.CRITICAL, true, 0.9, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clear();
+    }
+
+    @Test
+    void rollupAndRepositoryTotalsAgree() {
+        for (LocalDateTime since : new LocalDateTime[] {
+                now.minusHours(24), now.minusHours(20).minusMinutes(3), now.minusMinutes(97), now.minusMinutes(5),
+                now.minusHours(29).withMinute(0)}) {
+            for (String username : new String[] {"alice", "bob", "nobody"}) {
+                LocalDateTime window = since.truncatedTo(ChronoUnit.MINUTES);
+                RiskTotals fromRollups = rollupService.getUserRiskTotals(username, window);
+                RiskTotals fromRows = RiskTotals.of(auditLogRepository.getUserRiskTotals(username, window).get(0));
+
+                String context = username + " since " + window;
+                assertEquals(fromRows.getTotalActivities(), fromRollups.getTotalActivities(), context);
+                assertEquals(fromRows.getHighRiskActivities(), fromRollups.getHighRiskActivities(), context);
+                assertEquals(fromRows.getAnomalousActivities(), fromRollups.getAnomalousActivities(), context);
+                assertEquals(fromRows.getAverageRiskScore(), fromRollups.getAverageRiskScore(), 1e-9, context);
+            }
+        }
+    }
+
+    @Test
+    void totalsCountSummaryRowsByTheirEventCount() {
+        LocalDateTime since = now.minusHours(24).truncatedTo(ChronoUnit.MINUTES);
+        long rows = auditLogRepository.findAll().stream()
+            .filter(auditLog -> auditLog.getUsername().equals("alice") && !auditLog.getTimestamp().isBefore(since))
+            .mapToLong(auditLog -> auditLog.getEventCount() != null ? auditLog.getEventCount() : 1)
+            .sum();
+
+        assertEquals(rows, rollupService.getUserRiskTotals("alice", since).getTotalActivities());
+    }
+
+    private void save(String username, LocalDateTime timestamp, AuditLog.RiskLevel riskLevel, boolean anomaly,
+                      Double riskScore, Integer eventCount) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUsername(username);
+        auditLog.setAction(AuditLog.ACTION_DATA_ACCESS);
+        auditLog.setStatus(AuditLog.ActionStatus.SUCCESS);
+        auditLog.setTimestamp(timestamp);
+        auditLog.setRiskLevel(riskLevel);
+        auditLog.setIsAnomaly(anomaly);
+        auditLog.setRiskScore(riskScore);
+        auditLog.setEventCount(eventCount);
+        auditLogRepository.save(auditLog);
+    }
+
+    private void clear() {
+        jdbcTemplate.update("DELETE FROM audit_activity_minute");
+        jdbcTemplate.update("DELETE FROM audit_activity_hour");
+        jdbcTemplate.update("DELETE FROM audit_logs");
+    }
+}